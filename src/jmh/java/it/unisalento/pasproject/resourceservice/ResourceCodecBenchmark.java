@@ -0,0 +1,207 @@
+package it.unisalento.pasproject.resourceservice;
+
+import it.unisalento.pasproject.resourceservice.domain.*;
+import it.unisalento.pasproject.resourceservice.repositories.codec.AvailabilityBson;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ResourceCodecBenchmark class measures the cost per document of decoding and encoding a large resource collection,
+ * as a findAll would, with the ResourceCodec and with the Spring Data MappingMongoConverter.
+ * Run it with {@code ./gradlew jmh}; scores are nanoseconds per document and the gc profiler reports the bytes allocated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResourceCodecBenchmark {
+    private static final int DOCUMENTS = 10_000;
+
+    private final ResourceCodec resourceCodec = new ResourceCodec();
+
+    private final DocumentCodec documentCodec = new DocumentCodec();
+
+    private MappingMongoConverter mappingMongoConverter;
+
+    private List<Resource> resources;
+
+    private List<byte[]> codecDocuments;
+
+    private List<byte[]> converterDocuments;
+
+    @Setup
+    public void setup() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of(
+                AvailabilityBson.AvailabilityWritingConverter.INSTANCE,
+                AvailabilityBson.AvailabilityReadingConverter.INSTANCE));
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setInitialEntitySet(Set.of(ResourceCPU.class, ResourceGPU.class, ResourceSoC.class));
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        mappingMongoConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        mappingMongoConverter.setCustomConversions(conversions);
+        mappingMongoConverter.afterPropertiesSet();
+
+        resources = new ArrayList<>(DOCUMENTS);
+        codecDocuments = new ArrayList<>(DOCUMENTS);
+        converterDocuments = new ArrayList<>(DOCUMENTS);
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Resource resource = createResource(i);
+            resources.add(resource);
+            codecDocuments.add(encodeWithCodec(resource));
+            converterDocuments.add(encodeWithConverter(resource));
+        }
+    }
+
+    private static Resource createResource(int i) {
+        Resource resource;
+
+        switch (i % 3) {
+            case 0 -> {
+                ResourceCPU resourceCPU = new ResourceCPU();
+                resourceCPU.setArchitecture("x86_64");
+                resourceCPU.setCores(16);
+                resourceCPU.setThreads(32);
+                resourceCPU.setBaseFrequency(4.5);
+                resourceCPU.setMaxFrequency(5.7);
+                resourceCPU.setCacheSize(64);
+                resourceCPU.setTdp(170);
+                resourceCPU.setHyperThreading(true);
+                resourceCPU.setSingleCoreScore(2900);
+                resourceCPU.setMulticoreScore(21000);
+                resource = resourceCPU;
+            }
+            case 1 -> {
+                ResourceGPU resourceGPU = new ResourceGPU();
+                resourceGPU.setArchitecture("Ada Lovelace");
+                resourceGPU.setVramType("GDDR6X");
+                resourceGPU.setVramSize(24);
+                resourceGPU.setCoreClock(2.23);
+                resourceGPU.setBoostClock(2.52);
+                resourceGPU.setMemoryClock("21 Gbps");
+                resourceGPU.setTdp(450);
+                resourceGPU.setRayTracingSupport(true);
+                resourceGPU.setDlssSupport(true);
+                resourceGPU.setOpenclScore(320000);
+                resourceGPU.setVulkanScore(280000);
+                resourceGPU.setCudaScore(360000);
+                resource = resourceGPU;
+            }
+            default -> {
+                ResourceSoC resourceSoC = new ResourceSoC();
+                resourceSoC.setArchitecture("ARMv8");
+                resourceSoC.setCpuCores(12);
+                resourceSoC.setGpuCores(38);
+                resourceSoC.setCpuBaseFrequency(3.5);
+                resourceSoC.setCpuMaxFrequency(4.0);
+                resourceSoC.setTdp(40);
+                resourceSoC.setSingleCoreScore(2800);
+                resourceSoC.setMulticoreScore(15000);
+                resourceSoC.setOpenclScore(90000);
+                resource = resourceSoC;
+            }
+        }
+
+        resource.setId(new ObjectId().toHexString());
+        resource.setName("Resource " + i);
+        resource.setType(i % 3 == 0 ? "cpu" : i % 3 == 1 ? "gpu" : "soc");
+        resource.setGreenEnergyType("solar");
+        resource.setCountry("Italy");
+        resource.setRegion("Puglia");
+        resource.setCity("Lecce");
+        resource.setKWh(0.2);
+        resource.setMemberEmail("member" + (i % 100) + "@example.com");
+        resource.setStatus(Resource.Status.AVAILABLE);
+        resource.setVersion(i);
+
+        List<Availability> availability = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            Availability slot = new Availability();
+            slot.setDayOfWeek(day);
+            slot.setStartTime(LocalTime.of(9, 0));
+            slot.setEndTime(LocalTime.of(18, 0));
+            availability.add(slot);
+        }
+        resource.setAvailability(availability);
+
+        return resource;
+    }
+
+    private byte[] encodeWithCodec(Resource resource) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        resourceCodec.encode(new BsonBinaryWriter(buffer), resource, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    private byte[] encodeWithConverter(Resource resource) {
+        Document document = new Document();
+        mappingMongoConverter.write(resource, document);
+
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public List<Resource> decodeWithCodec() {
+        List<Resource> decoded = new ArrayList<>(DOCUMENTS);
+        for (byte[] bytes : codecDocuments) {
+            decoded.add(resourceCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public List<Resource> decodeWithConverter() {
+        List<Resource> decoded = new ArrayList<>(DOCUMENTS);
+        for (byte[] bytes : converterDocuments) {
+            Document document = documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build());
+            decoded.add(mappingMongoConverter.read(Resource.class, document));
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public int encodeWithCodec() {
+        int size = 0;
+        for (Resource resource : resources) {
+            size += encodeWithCodec(resource).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public int encodeWithConverter() {
+        int size = 0;
+        for (Resource resource : resources) {
+            size += encodeWithConverter(resource).length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,134 @@
+package it.unisalento.pasproject.resourceservice;
+
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageDTO;
+import it.unisalento.pasproject.resourceservice.service.ResourceMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ResourceMapperBenchmark class compares the previous Optional-based copy of a CPU resource
+ * with the generated ResourceMapper, for both the DTO and the message conversion.
+ * Run it with {@code ./gradlew jmh}; the gc profiler reports the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResourceMapperBenchmark {
+    private ResourceMapper resourceMapper;
+
+    private ResourceCPU resourceCPU;
+
+    @Setup
+    public void setup() {
+        resourceMapper = Mappers.getMapper(ResourceMapper.class);
+
+        resourceCPU = new ResourceCPU();
+        resourceCPU.setId("6650a1b2c3d4e5f601234567");
+        resourceCPU.setName("AMD Ryzen 9 7950X");
+        resourceCPU.setType("cpu");
+        resourceCPU.setGreenEnergyType("solar");
+        resourceCPU.setCountry("Italy");
+        resourceCPU.setRegion("Puglia");
+        resourceCPU.setCity("Lecce");
+        resourceCPU.setKWh(0.17);
+        resourceCPU.setMemberEmail("member@example.com");
+        resourceCPU.setStatus(Resource.Status.AVAILABLE);
+        resourceCPU.setArchitecture("x86_64");
+        resourceCPU.setCores(16);
+        resourceCPU.setThreads(32);
+        resourceCPU.setBaseFrequency(4.5);
+        resourceCPU.setMaxFrequency(5.7);
+        resourceCPU.setCacheSize(64);
+        resourceCPU.setTdp(170);
+        resourceCPU.setHyperThreading(true);
+        resourceCPU.setOverclockingSupport(true);
+        resourceCPU.setSingleCoreScore(2900);
+        resourceCPU.setMulticoreScore(21000);
+        resourceCPU.setVersion(3);
+
+        List<Availability> availability = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            Availability slot = new Availability();
+            slot.setDayOfWeek(day);
+            slot.setStartTime(LocalTime.of(9, 0));
+            slot.setEndTime(LocalTime.of(18, 0));
+            availability.add(slot);
+        }
+        resourceCPU.setAvailability(availability);
+    }
+
+    @Benchmark
+    public ResourceDTO baselineToResourceDTO() {
+        ResourceCpuDTO resourceCpuDTO = new ResourceCpuDTO();
+
+        Optional.ofNullable(resourceCPU.getId()).ifPresent(resourceCpuDTO::setId);
+        Optional.ofNullable(resourceCPU.getName()).ifPresent(resourceCpuDTO::setName);
+        Optional.ofNullable(resourceCPU.getType()).ifPresent(resourceCpuDTO::setType);
+        Optional.ofNullable(resourceCPU.getGreenEnergyType()).ifPresent(resourceCpuDTO::setGreenEnergyType);
+        Optional.ofNullable(resourceCPU.getCountry()).ifPresent(resourceCpuDTO::setCountry);
+        Optional.ofNullable(resourceCPU.getRegion()).ifPresent(resourceCpuDTO::setRegion);
+        Optional.ofNullable(resourceCPU.getCity()).ifPresent(resourceCpuDTO::setCity);
+        Optional.ofNullable(resourceCPU.getAvailability()).ifPresent(resourceCpuDTO::setAvailability);
+        Optional.of(resourceCPU.getKWh()).ifPresent(resourceCpuDTO::setKWh);
+        Optional.ofNullable(resourceCPU.getMemberEmail()).ifPresent(resourceCpuDTO::setMemberEmail);
+        Optional.ofNullable(resourceCPU.getStatus()).ifPresent(status -> resourceCpuDTO.setStatus(ResourceDTO.Status.valueOf(status.name())));
+        Optional.ofNullable(resourceCPU.getCurrentTaskId()).ifPresent(resourceCpuDTO::setCurrentTaskId);
+        Optional.ofNullable(resourceCPU.getArchitecture()).ifPresent(resourceCpuDTO::setArchitecture);
+        Optional.of(resourceCPU.getCores()).ifPresent(resourceCpuDTO::setCores);
+        Optional.of(resourceCPU.getThreads()).ifPresent(resourceCpuDTO::setThreads);
+        Optional.of(resourceCPU.getBaseFrequency()).ifPresent(resourceCpuDTO::setBaseFrequency);
+        Optional.of(resourceCPU.getMaxFrequency()).ifPresent(resourceCpuDTO::setMaxFrequency);
+        Optional.of(resourceCPU.getCacheSize()).ifPresent(resourceCpuDTO::setCacheSize);
+        Optional.of(resourceCPU.getTdp()).ifPresent(resourceCpuDTO::setTdp);
+        Optional.of(resourceCPU.isHyperThreading()).ifPresent(resourceCpuDTO::setHyperThreading);
+        Optional.of(resourceCPU.isOverclockingSupport()).ifPresent(resourceCpuDTO::setOverclockingSupport);
+        Optional.of(resourceCPU.getSingleCoreScore()).ifPresent(resourceCpuDTO::setSingleCoreScore);
+        Optional.of(resourceCPU.getMulticoreScore()).ifPresent(resourceCpuDTO::setMulticoreScore);
+
+        String[] parts = resourceCPU.getName().split(" ", 2);
+        resourceCpuDTO.setBrand(parts[0]);
+        resourceCpuDTO.setModel(parts.length > 1 ? parts[1] : null);
+
+        return resourceCpuDTO;
+    }
+
+    @Benchmark
+    public ResourceDTO generatedToResourceDTO() {
+        return resourceMapper.toResourceDTO(resourceCPU);
+    }
+
+    @Benchmark
+    public ResourceMessageDTO baselineToResourceMessageDTO() {
+        ResourceMessageDTO resourceMessageDTO = new ResourceMessageDTO();
+
+        Optional.ofNullable(resourceCPU.getId()).ifPresent(resourceMessageDTO::setId);
+        Optional.ofNullable(resourceCPU.getName()).ifPresent(resourceMessageDTO::setName);
+        Optional.ofNullable(resourceCPU.getAvailability()).ifPresent(resourceMessageDTO::setAvailability);
+        Optional.of(resourceCPU.getKWh()).ifPresent(resourceMessageDTO::setKWh);
+        Optional.ofNullable(resourceCPU.getMemberEmail()).ifPresent(resourceMessageDTO::setMemberEmail);
+        Optional.ofNullable(resourceCPU.getStatus()).ifPresent(status -> resourceMessageDTO.setStatus(ResourceMessageDTO.Status.valueOf(status.name())));
+        Optional.ofNullable(resourceCPU.getCurrentTaskId()).ifPresent(resourceMessageDTO::setCurrentTaskId);
+        Optional.of(resourceCPU.getSingleCoreScore()).ifPresent(resourceMessageDTO::setSingleCoreScore);
+        Optional.of(resourceCPU.getMulticoreScore()).ifPresent(resourceMessageDTO::setMulticoreScore);
+        resourceMessageDTO.setVersion(resourceCPU.getVersion());
+
+        return resourceMessageDTO;
+    }
+
+    @Benchmark
+    public ResourceMessageDTO generatedToResourceMessageDTO() {
+        return resourceMapper.toResourceMessageDTO(resourceCPU);
+    }
+}
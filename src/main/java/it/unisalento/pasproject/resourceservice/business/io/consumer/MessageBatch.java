@@ -0,0 +1,144 @@
+package it.unisalento.pasproject.resourceservice.business.io.consumer;
+
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * MessageBatch is a batch of messages pulled from a queue, with their converted payloads.
+ * The messages stay unacknowledged until they are acked or nacked, one by one or all together.
+ * Closing the batch requeues the messages that were not settled and closes the channel they were received on,
+ * so it must always be closed, preferably with try-with-resources.
+ *
+ * @param <T> the type of the payloads
+ */
+public class MessageBatch<T> implements AutoCloseable {
+
+    /**
+     * A pulled message with its converted payload.
+     *
+     * @param payload the converted payload
+     * @param deliveryTag the delivery tag of the message on the channel of the batch
+     */
+    public record PulledMessage<T>(T payload, long deliveryTag) {
+    }
+
+    private final Channel channel;
+
+    private final List<PulledMessage<T>> messages;
+
+    /**
+     * The delivery tags of the messages not yet acked or nacked.
+     */
+    private final NavigableSet<Long> outstanding = new TreeSet<>();
+
+    MessageBatch(Channel channel, List<PulledMessage<T>> messages) {
+        this.channel = channel;
+        this.messages = Collections.unmodifiableList(messages);
+        messages.forEach(message -> outstanding.add(message.deliveryTag()));
+    }
+
+    /**
+     * Returns the messages of the batch, in delivery order.
+     *
+     * @return the pulled messages
+     */
+    public List<PulledMessage<T>> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Returns the payloads of the batch, in delivery order.
+     *
+     * @return the converted payloads
+     */
+    public List<T> getPayloads() {
+        return messages.stream().map(PulledMessage::payload).toList();
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    /**
+     * Acks all the outstanding messages with a single multiple ack.
+     */
+    public void ack() {
+        if (!outstanding.isEmpty()) {
+            settle(() -> channel.basicAck(outstanding.last(), true));
+            outstanding.clear();
+        }
+    }
+
+    /**
+     * Nacks all the outstanding messages with a single multiple nack.
+     *
+     * @param requeue whether the messages are requeued, or dead-lettered when the queue has a dead letter exchange
+     */
+    public void nack(boolean requeue) {
+        if (!outstanding.isEmpty()) {
+            settle(() -> channel.basicNack(outstanding.last(), true, requeue));
+            outstanding.clear();
+        }
+    }
+
+    /**
+     * Acks a single message.
+     *
+     * @param message the message to ack
+     */
+    public void ack(PulledMessage<T> message) {
+        if (outstanding.remove(message.deliveryTag())) {
+            settle(() -> channel.basicAck(message.deliveryTag(), false));
+        }
+    }
+
+    /**
+     * Nacks a single message.
+     *
+     * @param message the message to nack
+     * @param requeue whether the message is requeued, or dead-lettered when the queue has a dead letter exchange
+     */
+    public void nack(PulledMessage<T> message, boolean requeue) {
+        if (outstanding.remove(message.deliveryTag())) {
+            settle(() -> channel.basicNack(message.deliveryTag(), false, requeue));
+        }
+    }
+
+    /**
+     * Requeues the outstanding messages and closes the channel.
+     * The channel is closed physically, so any message delivered after the batch was filled goes back to the queue too.
+     */
+    @Override
+    public void close() {
+        try {
+            nack(true);
+        } finally {
+            RabbitUtils.setPhysicalCloseRequired(channel, true);
+            RabbitUtils.closeChannel(channel);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChannelOperation {
+        void run() throws IOException;
+    }
+
+    private static void settle(ChannelOperation operation) {
+        try {
+            operation.run();
+        } catch (IOException e) {
+            throw new AmqpIOException(e);
+        }
+    }
+}
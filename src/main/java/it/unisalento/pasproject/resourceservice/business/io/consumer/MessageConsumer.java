@@ -4,6 +4,8 @@ import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 /**
  * MessageConsumer is a service class that consumes messages using a specific strategy.
  * The strategy is injected via constructor and can be changed at runtime.
@@ -44,4 +46,18 @@ public class MessageConsumer {
     public String consumeMessage(String message, String queueName) {
         return strategy.consumeMessage(message, queueName);
     }
+
+    /**
+     * Pulls a batch of messages from a queue using the current strategy.
+     *
+     * @param <T> the type of the payloads
+     * @param queueName the name of the queue to pull from
+     * @param maxMessages the maximum number of messages in the batch
+     * @param maxWait the maximum time to wait for the batch to fill
+     * @param type the class of the payloads
+     * @return the batch, to be acked or nacked and then closed
+     */
+    public <T> MessageBatch<T> consumeBatch(String queueName, int maxMessages, Duration maxWait, Class<T> type) {
+        return strategy.consumeBatch(queueName, maxMessages, maxWait, type);
+    }
 }
@@ -1,5 +1,7 @@
 package it.unisalento.pasproject.resourceservice.business.io.consumer;
 
+import java.time.Duration;
+
 /**
  * The MessageConsumerStrategy interface provides a contract for implementing different
  * strategies for consuming messages. The strategies can be used interchangeably in a
@@ -24,4 +26,17 @@ public interface MessageConsumerStrategy {
      * @return the result of the consumption, as defined by the specific strategy
      */
     String consumeMessage(String message, String queueName);
+
+    /**
+     * Pulls a batch of messages from a queue, converting their payloads to the given type.
+     * It returns when the batch is full or the wait expires, whichever comes first.
+     *
+     * @param <T> the type of the payloads
+     * @param queueName the name of the queue to pull from
+     * @param maxMessages the maximum number of messages in the batch
+     * @param maxWait the maximum time to wait for the batch to fill
+     * @param type the class of the payloads
+     * @return the batch, to be acked or nacked and then closed
+     */
+    <T> MessageBatch<T> consumeBatch(String queueName, int maxMessages, Duration maxWait, Class<T> type);
 }
\ No newline at end of file
@@ -1,12 +1,31 @@
 package it.unisalento.pasproject.resourceservice.business.io.consumer;
 
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Objects;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RabbitMQConsumer class for consuming messages from RabbitMQ.
@@ -19,46 +38,123 @@ public class RabbitMQConsumer implements MessageConsumerStrategy{
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMQConsumer.class);
 
+    /**
+     * The largest prefetch accepted by the broker, and therefore the largest batch.
+     */
+    private static final int MAX_PREFETCH = 65535;
+
     /**
      * RabbitTemplate instance for sending messages to RabbitMQ.
      */
     private final RabbitTemplate rabbitTemplate;
 
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
     @Autowired
     public RabbitMQConsumer(RabbitTemplate rabbitTemplate) {
         this.rabbitTemplate = rabbitTemplate;
     }
 
+    /**
+     * Consumes an already received message. Nothing has to be settled with the broker, the message is returned as is.
+     *
+     * @param message The message to consume.
+     * @return The consumed message.
+     */
     @Override
     public <T> T consumeMessage(T message) {
-        //TODO: Implement this method
-        return null;
+        LOGGER.debug("RabbitMQ message consumed: {}", message);
+        return message;
     }
 
     /**
-     * Method to consume a message from RabbitMQ.
+     * Receives a single message from a queue.
      *
-     * @param message The message to consume.
-     * @return The consumed message.
+     * @param message Unused, kept for the strategy contract.
+     * @param queueName The name of the queue to receive from.
+     * @return The body of the message as text, or null if the queue is empty.
+     */
+    @Override
+    public String consumeMessage(String message, String queueName) {
+        Message received = rabbitTemplate.receive(queueName);
 
-    //@RabbitListener(queues = "${rabbitmq.queue.security.name}")
-    public String consumeMessage(String message){
-        LOGGER.info(String.format("RabbitMQ message received: %s", message));
-        messageProducer.sendMessage("Exchange CONFIRM!",securityRoutingKey,securityExchange);
-        return message;
+        return received != null ? new String(received.getBody(), StandardCharsets.UTF_8) : null;
     }
 
-    //@Override
-    //@RabbitListener(queues = "${rabbitmq.queue.json.name}")
-    public <T> T consumeMessage(T message) {
-        LOGGER.info(String.format("RabbitMQ message received: %s", message.toString()));
-        return message;
-    }
+    /**
+     * Pulls a batch of messages with a short-lived consumer on a dedicated channel.
+     * The prefetch is the size of the batch, so the broker pushes the whole batch without a round trip per message,
+     * unlike basic.get. Messages whose payload cannot be converted are nacked without requeue, so they are
+     * dead-lettered when the queue has a dead letter exchange; they are not part of the batch.
+     * To drain a large backlog, pull and settle batches in a loop until an empty batch is returned.
      */
-
     @Override
-    public String consumeMessage(String message, String queueName) {
-        String ret = Objects.requireNonNull(rabbitTemplate.receive(queueName)).toString();
-        return ret;
+    public <T> MessageBatch<T> consumeBatch(String queueName, int maxMessages, Duration maxWait, Class<T> type) {
+        int batchSize = Math.clamp(maxMessages, 1, MAX_PREFETCH);
+        MessageConverter messageConverter = rabbitTemplate.getMessageConverter();
+
+        Connection connection = rabbitTemplate.getConnectionFactory().createConnection();
+        Channel channel = connection.createChannel(false);
+
+        try {
+            BlockingQueue<Message> deliveries = new LinkedBlockingQueue<>();
+
+            channel.basicQos(batchSize);
+            String consumerTag = channel.basicConsume(queueName, false, new DefaultConsumer(channel) {
+                @Override
+                public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                    deliveries.add(new Message(body, messagePropertiesConverter.toMessageProperties(properties, envelope, "UTF-8")));
+                }
+            });
+
+            List<MessageBatch.PulledMessage<T>> messages = new ArrayList<>(Math.min(batchSize, 1024));
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            int received = 0;
+
+            while (received < batchSize) {
+                Message delivery = deliveries.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if (delivery == null) {
+                    break;
+                }
+
+                received++;
+                long deliveryTag = delivery.getMessageProperties().getDeliveryTag();
+
+                try {
+                    delivery.getMessageProperties().setInferredArgumentType(type);
+                    messages.add(new MessageBatch.PulledMessage<>(type.cast(messageConverter.fromMessage(delivery)), deliveryTag));
+                } catch (MessageConversionException | ClassCastException e) {
+                    LOGGER.error("Rejecting unconvertible message from {}: {}", queueName, e.getMessage());
+                    channel.basicNack(deliveryTag, false, false);
+                }
+            }
+
+            channel.basicCancel(consumerTag);
+
+            LOGGER.debug("Pulled {} messages from {}", messages.size(), queueName);
+
+            return new MessageBatch<>(channel, messages);
+        } catch (IOException e) {
+            closePhysically(channel);
+            throw new AmqpIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closePhysically(channel);
+            throw new IllegalStateException("Interrupted while pulling from " + queueName, e);
+        } catch (RuntimeException e) {
+            closePhysically(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a channel physically, so that its unacknowledged messages go back to the queue.
+     *
+     * @param channel The channel to close.
+     */
+    private static void closePhysically(Channel channel) {
+        RabbitUtils.setPhysicalCloseRequired(channel, true);
+        RabbitUtils.closeChannel(channel);
     }
 }
@@ -0,0 +1,32 @@
+package it.unisalento.pasproject.resourceservice.business.io.converter;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Jackson2CborMessageConverter is a message converter that encodes payloads as CBOR, a compact binary form of JSON.
+ * Field values are written as typed binary values instead of text, so messages are smaller and cheaper to encode and decode.
+ */
+public class Jackson2CborMessageConverter extends AbstractJackson2MessageConverter {
+
+    /**
+     * The content type of CBOR messages.
+     */
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    /**
+     * Constructs a new Jackson2CborMessageConverter.
+     *
+     * @param trustedPackages the packages trusted for type id based deserialization
+     */
+    public Jackson2CborMessageConverter(String... trustedPackages) {
+        super(CBORMapper.builder()
+                        .findAndAddModules()
+                        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                        .build(),
+                MimeTypeUtils.parseMimeType(CONTENT_TYPE_CBOR),
+                trustedPackages);
+    }
+}
@@ -0,0 +1,73 @@
+package it.unisalento.pasproject.resourceservice.business.io.converter;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+
+import java.util.Set;
+
+/**
+ * NegotiatingMessageConverter is a message converter that chooses the encoding by content type.
+ * Incoming messages are decoded with the converter registered for their content type, so JSON and CBOR are both accepted.
+ * Outgoing messages of the binary types are encoded as CBOR when binary outbound encoding is enabled, every other
+ * message is encoded with the default JSON converter.
+ * It is a SmartMessageConverter, so replies of the request/reply exchanges are decoded to the type the caller asks for.
+ */
+public class NegotiatingMessageConverter extends ContentTypeDelegatingMessageConverter implements SmartMessageConverter {
+
+    /**
+     * The message types that can be sent as CBOR.
+     */
+    private final Set<Class<?>> binaryTypes;
+
+    /**
+     * Whether the binary types are sent as CBOR.
+     */
+    private final boolean binaryOutbound;
+
+    /**
+     * Constructs a new NegotiatingMessageConverter.
+     *
+     * @param jsonConverter the default JSON converter
+     * @param cborConverter the CBOR converter
+     * @param binaryTypes the message types that can be sent as CBOR
+     * @param binaryOutbound whether the binary types are sent as CBOR
+     */
+    public NegotiatingMessageConverter(MessageConverter jsonConverter, MessageConverter cborConverter,
+                                       Set<Class<?>> binaryTypes, boolean binaryOutbound) {
+        super(jsonConverter);
+        addDelegate(MessageProperties.CONTENT_TYPE_JSON, jsonConverter);
+        addDelegate(Jackson2CborMessageConverter.CONTENT_TYPE_CBOR, cborConverter);
+        this.binaryTypes = binaryTypes;
+        this.binaryOutbound = binaryOutbound;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        if (binaryOutbound && object != null && binaryTypes.contains(object.getClass())) {
+            messageProperties.setContentType(Jackson2CborMessageConverter.CONTENT_TYPE_CBOR);
+        }
+
+        return super.toMessage(object, messageProperties);
+    }
+
+    /**
+     * Decodes a message with the converter registered for its content type, passing the conversion hint to it.
+     *
+     * @param message the message to decode
+     * @param conversionHint the hint of the delegate, such as the ParameterizedTypeReference of a reply
+     * @return the decoded payload
+     * @throws MessageConversionException if the message cannot be decoded
+     */
+    @Override
+    public Object fromMessage(Message message, Object conversionHint) throws MessageConversionException {
+        MessageConverter delegate = getConverterForContentType(message.getMessageProperties().getContentType());
+
+        return delegate instanceof SmartMessageConverter smartMessageConverter
+                ? smartMessageConverter.fromMessage(message, conversionHint)
+                : delegate.fromMessage(message);
+    }
+}
@@ -1,12 +1,16 @@
 package it.unisalento.pasproject.resourceservice.business.io.producer;
 
 import lombok.Setter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * MessageProducer is a service class that produces messages using a specific strategy.
- * The strategy is injected via constructor and can be changed at runtime.
+ * The strategy is selected by rabbitmq.producer.mode when the producer is created and applies to every sender;
+ * it can be changed at runtime.
  */
 @Setter
 @Service
@@ -15,13 +19,17 @@ public class MessageProducer {
     private MessageProducerStrategy strategy;
 
     /**
-     * Constructs a new MessageProducer with the given strategy.
+     * Constructs a new MessageProducer with the strategy of the configured producer mode.
      *
-     * @param strategy the strategy to use for producing messages
+     * @param defaultStrategy the strategy publishing each message on its own
+     * @param batchStrategy the strategy publishing messages in batches with publisher confirms, available only in batch mode
+     * @param producerMode the producer mode, default or batch
      */
     @Autowired
-    public MessageProducer(MessageProducerStrategy strategy) {
-        this.strategy = strategy;
+    public MessageProducer(@Qualifier("RabbitMQProducer") MessageProducerStrategy defaultStrategy,
+                           @Qualifier("RabbitMQBatchProducer") ObjectProvider<MessageProducerStrategy> batchStrategy,
+                           @Value("${rabbitmq.producer.mode:default}") String producerMode) {
+        this.strategy = "batch".equalsIgnoreCase(producerMode) ? batchStrategy.getObject() : defaultStrategy;
     }
 
     /**
@@ -0,0 +1,410 @@
+package it.unisalento.pasproject.resourceservice.business.io.producer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * RabbitMQBatchProducer is a service class that implements the MessageProducerStrategy interface for high-throughput publishing.
+ * Messages are queued and published in batches on a single channel, each one with its own correlation data.
+ * Publisher confirms are handled asynchronously: nacked or returned messages are published again up to a maximum number of attempts,
+ * ahead of the queued messages. A message nacked after later ones were published can still be overtaken by them.
+ * Once the producer is stopped, messages are published synchronously and the caller waits for their confirm.
+ * Throughput, confirm latency and outstanding confirms are exposed as metrics.
+ * It publishes through its own connection factory and template, with correlated confirms, returns and mandatory publishing,
+ * so the shared template used by the other senders keeps its plain settings.
+ * It exists only with rabbitmq.producer.mode=batch, where MessageProducer selects it.
+ */
+@Service("RabbitMQBatchProducer")
+@ConditionalOnProperty(name = "rabbitmq.producer.mode", havingValue = "batch")
+public class RabbitMQBatchProducer implements MessageProducerStrategy, SmartLifecycle, DisposableBean {
+
+    /**
+     * Logger instance for logging events.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMQBatchProducer.class);
+
+    /**
+     * Connection factory with publisher confirms and returns, dedicated to this producer.
+     */
+    private final CachingConnectionFactory confirmingConnectionFactory;
+
+    /**
+     * RabbitTemplate instance for sending messages to RabbitMQ, dedicated to this producer.
+     */
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * Messages waiting to be published.
+     */
+    private final BlockingQueue<PendingMessage> queue;
+
+    /**
+     * Messages to publish again, published before the queued ones.
+     */
+    private final Queue<PendingMessage> retries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Held for reading while a message is queued and for writing while stopping, so no message is queued after the publish loop exits.
+     */
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger outstandingConfirms = new AtomicInteger();
+
+    private final Counter publishedCounter;
+    private final Counter confirmedCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Timer confirmLatency;
+
+    @Value("${rabbitmq.producer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${rabbitmq.producer.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${rabbitmq.producer.confirm-timeout-ms:5000}")
+    private long confirmTimeout;
+
+    private Thread publisher;
+
+    private volatile boolean running;
+
+    /**
+     * Set once stop has published the last retries, after which a late nack can no longer be retried.
+     */
+    private volatile boolean drained;
+
+    /**
+     * A message waiting to be published, with the number of times it has been published so far.
+     */
+    private record PendingMessage(Object payload, String routingKey, String exchange, String replyTo, int attempts) {
+        PendingMessage nextAttempt() {
+            return new PendingMessage(payload, routingKey, exchange, replyTo, attempts + 1);
+        }
+    }
+
+    /**
+     * Constructs a new RabbitMQBatchProducer publishing on the broker of the given connection factory.
+     *
+     * @param connectionFactory the shared connection factory, whose broker connection settings are reused
+     * @param messageConverter the MessageConverter used to convert the messages
+     * @param meterRegistry the MeterRegistry where the producer metrics are registered
+     * @param queueCapacity the maximum number of messages waiting to be published
+     */
+    @Autowired
+    public RabbitMQBatchProducer(CachingConnectionFactory connectionFactory, MessageConverter messageConverter, MeterRegistry meterRegistry,
+                                 @Value("${rabbitmq.producer.queue-capacity:10000}") int queueCapacity) {
+        this.confirmingConnectionFactory = new CachingConnectionFactory(connectionFactory.getRabbitConnectionFactory());
+        this.confirmingConnectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        this.confirmingConnectionFactory.setPublisherReturns(true);
+        this.confirmingConnectionFactory.setConnectionNameStrategy(factory -> "rabbitmq-batch-producer");
+
+        this.rabbitTemplate = new RabbitTemplate(confirmingConnectionFactory);
+        this.rabbitTemplate.setMessageConverter(messageConverter);
+        // Unroutable messages are returned, so they can be published again
+        this.rabbitTemplate.setMandatory(true);
+
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        this.publishedCounter = Counter.builder("resource.producer.published").register(meterRegistry);
+        this.confirmedCounter = Counter.builder("resource.producer.confirmed").register(meterRegistry);
+        this.retriedCounter = Counter.builder("resource.producer.retried").register(meterRegistry);
+        this.failedCounter = Counter.builder("resource.producer.failed").register(meterRegistry);
+        this.confirmLatency = Timer.builder("resource.producer.confirm.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("resource.producer.confirms.outstanding", outstandingConfirms, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("resource.producer.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Queues a message of a generic type for publishing.
+     *
+     * @param <T> the type of the message
+     * @param messageDTO the message to send
+     * @param routingKey the routing key for the message
+     * @param exchange the exchange to use for the message
+     */
+    @Override
+    public <T> void sendMessage(T messageDTO, String routingKey, String exchange) {
+        enqueue(new PendingMessage(messageDTO, routingKey, exchange, null, 0));
+    }
+
+    /**
+     * Queues a message of a generic type for publishing with a specific replyTo address.
+     *
+     * @param <T> the type of the message
+     * @param messageDTO the message to send
+     * @param routingKey the routing key for the message
+     * @param exchange the exchange to use for the message
+     * @param replyTo the address to which replies to the message should be sent
+     */
+    @Override
+    public <T> void sendMessage(T messageDTO, String routingKey, String exchange, String replyTo) {
+        enqueue(new PendingMessage(messageDTO, routingKey, exchange, replyTo, 0));
+    }
+
+    private void enqueue(PendingMessage message) {
+        lifecycleLock.readLock().lock();
+        try {
+            if (running) {
+                // Blocks the caller when the queue is full, so producers are slowed down instead of losing messages
+                queue.put(message);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+
+        // The publish loop is not running, so the caller publishes and waits for the confirm
+        publishAndConfirm(message);
+    }
+
+    /**
+     * Publishes the queued messages in batches until the producer is stopped, the messages to publish again first.
+     */
+    private void publishLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty() || !retries.isEmpty()) {
+            try {
+                PendingMessage retry;
+
+                while (batch.size() < batchSize && (retry = retries.poll()) != null) {
+                    batch.add(retry);
+                }
+
+                if (batch.isEmpty()) {
+                    PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                    if (first == null) {
+                        continue;
+                    }
+
+                    batch.add(first);
+                }
+
+                queue.drainTo(batch, batchSize - batch.size());
+
+                publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Publishes a batch of messages on a single channel, registering an asynchronous confirm handler for each one.
+     * If publishing fails midway, only the messages not yet published are retried, in their order: the published ones
+     * are already tracked by their confirm handlers, which retry them if they are nacked.
+     *
+     * @param batch the messages to publish
+     */
+    private void publish(List<PendingMessage> batch) {
+        AtomicInteger published = new AtomicInteger();
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingMessage message : batch) {
+                    CorrelationData correlationData = new CorrelationData();
+                    long start = System.nanoTime();
+
+                    operations.convertAndSend(message.exchange(), message.routingKey(), message.payload(), replyTo(message), correlationData);
+                    published.incrementAndGet();
+                    publishedCounter.increment();
+                    outstandingConfirms.incrementAndGet();
+
+                    // Registered once the message is published, a confirm received meanwhile completes the handler immediately
+                    correlationData.getFuture().whenComplete((confirm, ex) -> {
+                        outstandingConfirms.decrementAndGet();
+                        confirmLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                        if (ex != null || confirm == null || !confirm.isAck()) {
+                            LOGGER.warn("Message nacked on {}: {}", message.exchange(), confirm != null ? confirm.getReason() : ex);
+                            retry(message);
+                        } else if (correlationData.getReturned() != null) {
+                            LOGGER.warn("Message returned by {}: {}", message.exchange(), correlationData.getReturned().getReplyText());
+                            retry(message);
+                        } else {
+                            confirmedCounter.increment();
+                        }
+                    });
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.error("Cannot publish {} of {} messages: {}", batch.size() - published.get(), batch.size(), e.getMessage());
+            batch.subList(published.get(), batch.size()).forEach(this::retry);
+            return;
+        }
+
+        LOGGER.debug("RabbitMQ batch of {} messages sent", batch.size());
+    }
+
+    private static MessagePostProcessor replyTo(PendingMessage message) {
+        return m -> {
+            if (message.replyTo() != null) {
+                m.getMessageProperties().setReplyTo(message.replyTo());
+            }
+            return m;
+        };
+    }
+
+    /**
+     * Publishes a message on the calling thread and waits for its confirm, publishing it again up to the maximum number of attempts.
+     *
+     * @param message the message to publish
+     * @throws AmqpException if the message is not confirmed
+     */
+    private void publishAndConfirm(PendingMessage message) {
+        for (int attempts = 1; ; attempts++) {
+            CorrelationData correlationData = new CorrelationData();
+            String reason;
+
+            try {
+                rabbitTemplate.convertAndSend(message.exchange(), message.routingKey(), message.payload(), replyTo(message), correlationData);
+                publishedCounter.increment();
+
+                CorrelationData.Confirm confirm = correlationData.getFuture().get(confirmTimeout, TimeUnit.MILLISECONDS);
+
+                if (confirm.isAck() && correlationData.getReturned() == null) {
+                    confirmedCounter.increment();
+                    return;
+                }
+
+                reason = confirm.isAck() ? correlationData.getReturned().getReplyText() : confirm.getReason();
+            } catch (AmqpException | ExecutionException | TimeoutException e) {
+                reason = e.toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedCounter.increment();
+                throw new AmqpException("Interrupted while waiting for the confirm of a message to " + message.exchange(), e);
+            }
+
+            if (attempts >= maxAttempts) {
+                failedCounter.increment();
+                throw new AmqpException("Message to " + message.exchange() + " with routing key " + message.routingKey()
+                        + " not confirmed after " + attempts + " attempts: " + reason);
+            }
+
+            LOGGER.warn("Message to {} not confirmed, publishing it again: {}", message.exchange(), reason);
+            retriedCounter.increment();
+        }
+    }
+
+    /**
+     * Publishes a message again ahead of the queued ones, unless it has already been published the maximum number of times.
+     *
+     * @param message the message to publish again
+     */
+    private void retry(PendingMessage message) {
+        PendingMessage next = message.nextAttempt();
+
+        if (next.attempts() >= maxAttempts || drained) {
+            LOGGER.error("Message to {} with routing key {} dropped after {} attempts", message.exchange(), message.routingKey(), next.attempts());
+            failedCounter.increment();
+            return;
+        }
+
+        retries.add(next);
+        retriedCounter.increment();
+    }
+
+    @Override
+    public void start() {
+        drained = false;
+        running = true;
+        publisher = Thread.ofPlatform().name("rabbitmq-batch-producer").daemon(true).start(this::publishLoop);
+    }
+
+    @Override
+    public void stop() {
+        lifecycleLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+
+        try {
+            // The publish loop drains the queue before exiting
+            publisher.join(TimeUnit.SECONDS.toMillis(10));
+
+            // The confirms still outstanding may ask for retries, which the loop no longer publishes
+            long deadline = System.currentTimeMillis() + confirmTimeout;
+            while (outstandingConfirms.get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        drained = true;
+
+        PendingMessage message;
+        while ((message = retries.poll()) != null) {
+            try {
+                publishAndConfirm(message);
+            } catch (AmqpException e) {
+                LOGGER.error("Message to {} with routing key {} dropped on stop: {}", message.exchange(), message.routingKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes the dedicated connection once the application no longer publishes.
+     */
+    @Override
+    public void destroy() {
+        confirmingConnectionFactory.destroy();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the components that publish through this producer, such as the update coalescer.
+     *
+     * @return the lifecycle phase
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+}
@@ -43,8 +43,8 @@ public class RabbitMQProducer implements MessageProducerStrategy {
      */
     @Override
     public <T> void sendMessage(T messageDTO, String routingKey, String exchange) {
-        LOGGER.info(String.format("RabbitMQ message sent: %s", messageDTO.toString()));
         rabbitTemplate.convertAndSend(exchange, routingKey, messageDTO);
+        LOGGER.debug("RabbitMQ message sent to {} with routing key {}", exchange, routingKey);
     }
 
     /**
@@ -59,10 +59,10 @@ public class RabbitMQProducer implements MessageProducerStrategy {
      */
     @Override
     public <T> void sendMessage(T messageDTO, String routingKey, String exchange, String replyTo) {
-        LOGGER.info(String.format("RabbitMQ message sent: %s", messageDTO.toString()));
         rabbitTemplate.convertAndSend(exchange, routingKey, messageDTO, m -> {
             m.getMessageProperties().setReplyTo(replyTo);
             return m;
         });
+        LOGGER.debug("RabbitMQ message sent to {} with routing key {}", exchange, routingKey);
     }
 }
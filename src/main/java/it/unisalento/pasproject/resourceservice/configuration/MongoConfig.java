@@ -0,0 +1,42 @@
+package it.unisalento.pasproject.resourceservice.configuration;
+
+import com.mongodb.MongoClientSettings;
+import it.unisalento.pasproject.resourceservice.repositories.codec.AvailabilityBson;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+/**
+ * MongoConfig is a configuration class that sets up the encoding of the resources in MongoDB.
+ * It registers the ResourceCodec with the driver and the matching availability converters with Spring Data,
+ * so that documents written by the codec and by the repositories share the same compact format.
+ */
+@Configuration
+public class MongoConfig {
+    /**
+     * Adds the ResourceCodecProvider in front of the default codecs of the driver.
+     * @return the MongoClientSettings customizer
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer resourceCodecCustomizer() {
+        return builder -> builder.codecRegistry(CodecRegistries.fromRegistries(
+                CodecRegistries.fromProviders(new ResourceCodecProvider()),
+                MongoClientSettings.getDefaultCodecRegistry()));
+    }
+
+    /**
+     * Registers the compact availability encoding with the Spring Data mapping converter.
+     * @return the custom conversions
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                AvailabilityBson.AvailabilityWritingConverter.INSTANCE,
+                AvailabilityBson.AvailabilityReadingConverter.INSTANCE));
+    }
+}
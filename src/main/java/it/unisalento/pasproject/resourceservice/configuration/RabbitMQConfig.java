@@ -1,13 +1,38 @@
 package it.unisalento.pasproject.resourceservice.configuration;
 
+import it.unisalento.pasproject.resourceservice.business.io.converter.Jackson2CborMessageConverter;
+import it.unisalento.pasproject.resourceservice.business.io.converter.NegotiatingMessageConverter;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDeltaDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageStatusDTO;
+import it.unisalento.pasproject.resourceservice.dto.ScoreDTO;
+import it.unisalento.pasproject.resourceservice.dto.ScoreMessageDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RejectAndDontRequeueRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * RabbitMQConfig is a configuration class that sets up the RabbitMQ message broker.
@@ -35,6 +60,36 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.routing.resourceusage.key}")
     private String resourceUsageTopic;
 
+    @Value("${rabbitmq.queue.resourcedelta.name}")
+    private String resourceDeltaQueue;
+
+    @Value("${rabbitmq.routing.resourcedelta.key}")
+    private String resourceDeltaTopic;
+
+    @Value("${rabbitmq.queue.resourcesnapshot.name}")
+    private String resourceSnapshotQueue;
+
+    @Value("${rabbitmq.routing.resourcesnapshot.key}")
+    private String resourceSnapshotTopic;
+
+    @Value("${rabbitmq.queue.resourcequery.name}")
+    private String resourceQueryQueue;
+
+    @Value("${rabbitmq.routing.resourcequery.key}")
+    private String resourceQueryTopic;
+
+    @Value("${rabbitmq.stream.resource.name}")
+    private String resourceStream;
+
+    @Value("${rabbitmq.stream.resource.max-age}")
+    private String resourceStreamMaxAge;
+
+    @Value("${rabbitmq.stream.resource.max-length-bytes}")
+    private long resourceStreamMaxLengthBytes;
+
+    @Value("${rabbitmq.stream.resource.max-segment-size-bytes}")
+    private long resourceStreamMaxSegmentSizeBytes;
+
     // Others queues and topics for resource messages
 
     @Value("${rabbitmq.exchange.data.name}")
@@ -52,6 +107,7 @@ public class RabbitMQConfig {
 
     /**
      * Defines the resource assignment queue.
+     * It has no dead letter exchange: its listener republishes the rejected messages to it, see statusDeadLetterRecoverer.
      *
      * @return a new Queue instance
      */
@@ -62,6 +118,7 @@ public class RabbitMQConfig {
 
     /**
      * Defines the resource usage queue.
+     * It has no dead letter exchange: its listener republishes the rejected messages to it, see statusDeadLetterRecoverer.
      *
      * @return a new Queue instance
      */
@@ -70,6 +127,57 @@ public class RabbitMQConfig {
         return new Queue(resourceUsageQueue);
     }
 
+    /**
+     * Defines the resource delta queue.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceDeltaQueue() {
+        return new Queue(resourceDeltaQueue);
+    }
+
+    /**
+     * Defines the resource snapshot request queue.
+     * Rejected messages are dead-lettered with their original routing key.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceSnapshotQueue() {
+        return QueueBuilder.durable(resourceSnapshotQueue)
+                .deadLetterExchange(deadLetterExchange)
+                .build();
+    }
+
+    /**
+     * Defines the resource query queue.
+     * Queries are answered on their reply-to queue, so a query that fails is not worth keeping.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceQueryQueue() {
+        return new Queue(resourceQueryQueue);
+    }
+
+    /**
+     * Defines the resource data stream.
+     * It keeps the new and updated resource events for the retention period, so consumers can replay them from any offset.
+     * The downstream services read it with their own stream clients; this service only feeds it through the bindings below.
+     *
+     * @return a new Queue instance of type stream
+     */
+    @Bean
+    public Queue resourceStream() {
+        return QueueBuilder.durable(resourceStream)
+                .withArgument("x-queue-type", "stream")
+                .withArgument("x-max-age", resourceStreamMaxAge)
+                .withArgument("x-max-length-bytes", resourceStreamMaxLengthBytes)
+                .withArgument("x-stream-max-segment-size-bytes", resourceStreamMaxSegmentSizeBytes)
+                .build();
+    }
+
     /**
      * Defines the resource data exchange.
      *
@@ -93,12 +201,81 @@ public class RabbitMQConfig {
                 .with(newResourceTopic);
     }
 
+    /**
+     * Defines the binding between the resource delta queue and the resource data exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceDeltaBinding() {
+        return BindingBuilder
+                .bind(resourceDeltaQueue())
+                .to(resourceDataExchange())
+                .with(resourceDeltaTopic);
+    }
+
+    /**
+     * Defines the binding between the resource snapshot request queue and the resource data exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceSnapshotBinding() {
+        return BindingBuilder
+                .bind(resourceSnapshotQueue())
+                .to(resourceDataExchange())
+                .with(resourceSnapshotTopic);
+    }
+
+    /**
+     * Defines the binding between the resource query queue and the resource data exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceQueryBinding() {
+        return BindingBuilder
+                .bind(resourceQueryQueue())
+                .to(resourceDataExchange())
+                .with(resourceQueryTopic);
+    }
+
+    /**
+     * Defines the binding between the resource data stream and the resource data exchange.
+     * Every new resource snapshot published on the exchange is also appended to the stream.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceStreamBinding() {
+        return BindingBuilder
+                .bind(resourceStream())
+                .to(resourceDataExchange())
+                .with(newResourceTopic);
+    }
+
+    /**
+     * Defines the binding between the resource data stream and the resource data exchange for the deltas.
+     * Snapshots and deltas are kept in the same stream, so a replay rebuilds the resources in order.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceStreamDeltaBinding() {
+        return BindingBuilder
+                .bind(resourceStream())
+                .to(resourceDataExchange())
+                .with(resourceDeltaTopic);
+    }
+
     /**
      * Defines the binding between the resource assignment queue and the resource data exchange.
+     * It is not declared in sharded mode, where the status messages are routed to the shard queues.
      *
      * @return a new Binding instance
      */
     @Bean
+    @ConditionalOnProperty(name = "rabbitmq.sharding.enabled", havingValue = "false", matchIfMissing = true)
     public Binding resourceAssignmentBinding() {
         return BindingBuilder
                 .bind(resourceAssignmentQueue())
@@ -108,10 +285,12 @@ public class RabbitMQConfig {
 
     /**
      * Defines the binding between the resource usage queue and the resource data exchange.
+     * It is not declared in sharded mode, where the status messages are routed to the shard queues.
      *
      * @return a new Binding instance
      */
     @Bean
+    @ConditionalOnProperty(name = "rabbitmq.sharding.enabled", havingValue = "false", matchIfMissing = true)
     public Binding resourceUsageBinding() {
         return BindingBuilder
                 .bind(resourceUsageQueue())
@@ -121,14 +300,384 @@ public class RabbitMQConfig {
 
     // ------  END RESOURCE MESSAGES  ------ //
 
+    // ------  DEAD LETTERS  ------ //
+    // The assignment and deallocation queues predate dead-lettering: redeclaring them with x-dead-letter-exchange
+    // would fail with PRECONDITION_FAILED on brokers where they already exist, so their listener republishes the
+    // messages it rejects to the dead letter exchange itself. No dead-letter-exchange policy must be set on them,
+    // it would dead-letter the rejected messages a second time.
+    // The queues introduced with dead-lettering declare it with their own arguments.
+    @Value("${rabbitmq.exchange.deadletter.name}")
+    private String deadLetterExchange;
+
+    @Value("${rabbitmq.queue.resourceassignment.dlq.name}")
+    private String resourceAssignmentDeadLetterQueue;
+
+    @Value("${rabbitmq.queue.resourcedeallocation.dlq.name}")
+    private String resourceUsageDeadLetterQueue;
+
+    @Value("${rabbitmq.queue.resourcesnapshot.dlq.name}")
+    private String resourceSnapshotDeadLetterQueue;
+
+    /**
+     * Defines the dead letter exchange.
+     * Dead-lettered messages keep their original routing key, so each dead letter queue is bound with the key of its source.
+     *
+     * @return a new DirectExchange instance
+     */
+    @Bean
+    public DirectExchange deadLetterExchange() {
+        return new DirectExchange(deadLetterExchange);
+    }
+
+    /**
+     * Defines the dead letter queue of the resource assignment messages.
+     * In sharded mode it also receives the assignment messages rejected by the shard queues.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceAssignmentDeadLetterQueue() {
+        return new Queue(resourceAssignmentDeadLetterQueue);
+    }
+
+    /**
+     * Defines the dead letter queue of the resource usage messages.
+     * In sharded mode it also receives the deallocation messages rejected by the shard queues.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceUsageDeadLetterQueue() {
+        return new Queue(resourceUsageDeadLetterQueue);
+    }
+
+    /**
+     * Defines the dead letter queue of the resource snapshot requests.
+     *
+     * @return a new Queue instance
+     */
+    @Bean
+    public Queue resourceSnapshotDeadLetterQueue() {
+        return new Queue(resourceSnapshotDeadLetterQueue);
+    }
+
+    /**
+     * Defines the binding between the resource assignment dead letter queue and the dead letter exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceAssignmentDeadLetterBinding() {
+        return BindingBuilder
+                .bind(resourceAssignmentDeadLetterQueue())
+                .to(deadLetterExchange())
+                .with(resourceAssignmentTopic);
+    }
+
+    /**
+     * Defines the binding between the resource usage dead letter queue and the dead letter exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceUsageDeadLetterBinding() {
+        return BindingBuilder
+                .bind(resourceUsageDeadLetterQueue())
+                .to(deadLetterExchange())
+                .with(resourceUsageTopic);
+    }
+
+    /**
+     * Defines the binding between the resource snapshot dead letter queue and the dead letter exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceSnapshotDeadLetterBinding() {
+        return BindingBuilder
+                .bind(resourceSnapshotDeadLetterQueue())
+                .to(deadLetterExchange())
+                .with(resourceSnapshotTopic);
+    }
+
+    /**
+     * Creates the recoverer dead-lettering the status messages rejected by the assignment and deallocation listeners.
+     * These queues have no dead letter exchange, so their messages are republished to it with their original routing
+     * key and the exception that rejected them, before being rejected. The messages of the shard queues, which have
+     * a dead letter exchange, are left to the broker.
+     *
+     * @param connectionFactory the connection factory to use
+     * @return a new MessageRecoverer instance
+     */
+    @Bean
+    public MessageRecoverer statusDeadLetterRecoverer(ConnectionFactory connectionFactory) {
+        RepublishMessageRecoverer recoverer = new RepublishMessageRecoverer(amqpTemplate(connectionFactory), deadLetterExchange);
+        recoverer.setErrorRoutingKeyPrefix("");
+        Set<String> queues = Set.of(resourceAssignmentQueue, resourceUsageQueue);
+
+        return (message, cause) -> {
+            if (queues.contains(message.getMessageProperties().getConsumerQueue())) {
+                recoverer.recover(message, cause);
+            }
+        };
+    }
+
+    // ------  END DEAD LETTERS  ------ //
+
+    // ------  RETRY  ------ //
+    @Value("${rabbitmq.listener.retry.max-attempts}")
+    private int retryMaxAttempts;
+
+    @Value("${rabbitmq.listener.retry.initial-interval}")
+    private long retryInitialInterval;
+
+    @Value("${rabbitmq.listener.retry.multiplier}")
+    private double retryMultiplier;
+
+    @Value("${rabbitmq.listener.retry.max-interval}")
+    private long retryMaxInterval;
+
+    /**
+     * Builds the retry policy of the listeners.
+     * Failures are retried up to the maximum number of attempts, except the ones that would fail again the same way:
+     * an unknown resource, a message that cannot be converted or a message already rejected by the listener.
+     * I/O errors are not retried either: in the manual acknowledgement listeners they come from acknowledging,
+     * so some messages may already be acknowledged and a retry would apply and acknowledge them again.
+     *
+     * @return a new SimpleRetryPolicy instance
+     */
+    private SimpleRetryPolicy listenerRetryPolicy() {
+        return new SimpleRetryPolicy(retryMaxAttempts, Map.of(
+                ResourceNotFoundException.class, false,
+                MessageConversionException.class, false,
+                AmqpRejectAndDontRequeueException.class, false,
+                IOException.class, false), true, true);
+    }
+
+    /**
+     * Checks if an exception is caused by an I/O error.
+     *
+     * @param throwable the exception
+     * @return true if the exception or one of its causes is an IOException, false otherwise
+     */
+    private static boolean isCausedByIOException(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates the retry interceptor of the single message listeners.
+     * Failed deliveries are retried in place with exponential backoff, then rejected without requeue and dead-lettered.
+     *
+     * @return a new RetryOperationsInterceptor instance
+     */
+    @Bean
+    public RetryOperationsInterceptor listenerRetryInterceptor() {
+        return RetryInterceptorBuilder.stateless()
+                .retryPolicy(listenerRetryPolicy())
+                .backOffOptions(retryInitialInterval, retryMultiplier, retryMaxInterval)
+                .recoverer(new RejectAndDontRequeueRecoverer())
+                .build();
+    }
+
+    /**
+     * Creates the retry interceptor of the batch listeners.
+     * A failed batch is retried as a whole with exponential backoff. Batch listeners acknowledge manually, so when
+     * the retries are exhausted the unacknowledged messages of the batch are explicitly rejected and dead-lettered.
+     * A batch that failed while being acknowledged is neither retried nor rejected, since part of it is already
+     * acknowledged: the channel is broken, and the broker redelivers the unacknowledged messages when it is closed.
+     * The same happens when the messages cannot be republished to the dead letter exchange.
+     *
+     * @param connectionFactory the connection factory to use
+     * @return a new RetryOperationsInterceptor instance
+     */
+    @Bean
+    public RetryOperationsInterceptor batchListenerRetryInterceptor(ConnectionFactory connectionFactory) {
+        MessageRecoverer deadLetterRecoverer = statusDeadLetterRecoverer(connectionFactory);
+
+        return RetryInterceptorBuilder.stateless()
+                .retryPolicy(listenerRetryPolicy())
+                .backOffOptions(retryInitialInterval, retryMultiplier, retryMaxInterval)
+                .recoverer((MessageBatchRecoverer) (messages, cause) -> {
+                    if (isCausedByIOException(cause)) {
+                        throw new AmqpIOException("Cannot acknowledge a batch of " + messages.size() + " messages", cause);
+                    }
+
+                    messages.forEach(message -> deadLetterRecoverer.recover(message, cause));
+                    throw new AmqpRejectAndDontRequeueException("Retry policy exhausted for a batch of " + messages.size() + " messages", true, cause);
+                })
+                .build();
+    }
+
+    /**
+     * Creates the container factory of the single message listeners.
+     * It replaces the one auto-configured by Spring Boot to add the retry interceptor; rejected messages are never
+     * requeued, so a failing message cannot loop between the broker and the listener.
+     *
+     * @param configurer the configurer applying the Spring Boot listener properties
+     * @param connectionFactory the connection factory to use
+     * @return a new SimpleRabbitListenerContainerFactory instance
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                               ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(converter());
+        factory.setDefaultRequeueRejected(false);
+        factory.setAdviceChain(listenerRetryInterceptor());
+        return factory;
+    }
+
+    // ------  END RETRY  ------ //
+
+    // ------  BATCH LISTENERS  ------ //
+    @Value("${rabbitmq.listener.batch.size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.listener.batch.receive-timeout}")
+    private long batchReceiveTimeout;
+
+    /**
+     * Creates a container factory for batch listeners.
+     * Messages are grouped by the consumer into batches of at most batchSize messages, a partial batch is
+     * delivered when no message arrives within the receive timeout. Acknowledgements are manual, so every
+     * message of a batch can be acked or rejected depending on the outcome of its write. A batch whose listener
+     * throws is retried with backoff by the batch retry interceptor.
+     *
+     * @param configurer the configurer applying the Spring Boot listener properties
+     * @param connectionFactory the connection factory to use
+     * @return a new SimpleRabbitListenerContainerFactory instance
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                              ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(converter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeout);
+        // The prefetch must be at least as large as a batch, otherwise batches are never filled
+        factory.setPrefetchCount(batchSize);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setDefaultRequeueRejected(false);
+        factory.setAdviceChain(batchListenerRetryInterceptor(connectionFactory));
+        return factory;
+    }
+
+    // ------  END BATCH LISTENERS  ------ //
+
+    // ------  SECURITY MESSAGES  ------ //
+    @Value("${rabbitmq.exchange.security.name}")
+    private String securityExchange;
+
+    @Value("${rabbitmq.routing.security.revocation.key}")
+    private String revocationTopic;
+
+    /**
+     * Defines the security exchange.
+     *
+     * @return a new TopicExchange instance
+     */
+    @Bean
+    public TopicExchange securityExchange() {
+        return new TopicExchange(securityExchange);
+    }
+
+    /**
+     * Defines the revocation queue.
+     * Every instance needs every revocation, so the queue is exclusive to this instance and deleted with it.
+     *
+     * @return a new AnonymousQueue instance
+     */
+    @Bean
+    public Queue revocationQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * Defines the binding between the revocation queue and the security exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding revocationBinding() {
+        return BindingBuilder
+                .bind(revocationQueue())
+                .to(securityExchange())
+                .with(revocationTopic);
+    }
+
+    // ------  END SECURITY MESSAGES  ------ //
+
+    // ------  RESOURCE CHANGES  ------ //
+
+    @Value("${rabbitmq.exchange.resourcechanges.name}")
+    private String resourceChangesExchange;
+
+    /**
+     * Defines the resource changes exchange, where instances announce the resources they changed.
+     *
+     * @return a new FanoutExchange instance
+     */
+    @Bean
+    public FanoutExchange resourceChangesExchange() {
+        return new FanoutExchange(resourceChangesExchange);
+    }
+
+    /**
+     * Defines the resource changes queue of this instance.
+     *
+     * @return a new AnonymousQueue instance
+     */
+    @Bean
+    public Queue resourceChangesQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * Defines the binding between the resource changes queue and the resource changes exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding resourceChangesBinding() {
+        return BindingBuilder
+                .bind(resourceChangesQueue())
+                .to(resourceChangesExchange());
+    }
+
+    // ------  END RESOURCE CHANGES  ------ //
+
+    @Value("${rabbitmq.converter.binary.outbound:false}")
+    private boolean binaryOutbound;
+
+    /**
+     * The packages trusted for type id based deserialization, the same for JSON and CBOR.
+     */
+    private static final String[] TRUSTED_PACKAGES = {"*"};
+
     /**
-     * Creates a message converter for JSON messages.
+     * Creates a message converter negotiated by content type.
+     * JSON and CBOR messages are both accepted; resource, delta, status and score messages are sent as CBOR only
+     * when binary outbound encoding is enabled, so consumers that only read JSON keep working.
      *
-     * @return a new Jackson2JsonMessageConverter instance.
+     * @return a new NegotiatingMessageConverter instance.
      */
     @Bean
     public MessageConverter converter() {
-        return new Jackson2JsonMessageConverter();
+        return new NegotiatingMessageConverter(
+                new Jackson2JsonMessageConverter(TRUSTED_PACKAGES),
+                new Jackson2CborMessageConverter(TRUSTED_PACKAGES),
+                Set.of(ResourceMessageDTO.class, ResourceDeltaDTO.class, ResourceMessageStatusDTO.class, ScoreMessageDTO.class, ScoreDTO.class),
+                binaryOutbound);
     }
 
     /**
@@ -0,0 +1,126 @@
+package it.unisalento.pasproject.resourceservice.configuration;
+
+import org.springframework.amqp.core.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RabbitMQShardingConfig is a configuration class that sets up the sharded consumption of status messages.
+ * A consistent-hash exchange, bound to the resource data exchange with the assignment and deallocation routing keys,
+ * partitions the status messages by resource id into a fixed number of shard queues. Each shard queue has a single
+ * active consumer, so messages for the same resource are never reordered.
+ * The producers of the status messages must set the resource id in the rabbitmq.sharding.hash-header header: the exchange
+ * hashes an absent header as an empty value, so all such messages land on one shard. Sharding must only be enabled once
+ * the producers set the header; the shard consumers report the messages without it.
+ * It is enabled with rabbitmq.sharding.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rabbitmq.sharding.enabled", havingValue = "true")
+public class RabbitMQShardingConfig {
+    @Value("${rabbitmq.exchange.data.name}")
+    private String resourceDataExchange;
+
+    @Value("${rabbitmq.routing.resourceassignment.key}")
+    private String resourceAssignmentTopic;
+
+    @Value("${rabbitmq.routing.resourceusage.key}")
+    private String resourceUsageTopic;
+
+    @Value("${rabbitmq.exchange.sharded.name}")
+    private String shardedExchange;
+
+    @Value("${rabbitmq.queue.sharded.prefix}")
+    private String shardQueuePrefix;
+
+    @Value("${rabbitmq.sharding.shards}")
+    private int shards;
+
+    @Value("${rabbitmq.sharding.hash-header}")
+    private String hashHeader;
+
+    @Value("${rabbitmq.exchange.shardmembership.name}")
+    private String shardMembershipExchange;
+
+    @Value("${rabbitmq.exchange.deadletter.name}")
+    private String deadLetterExchange;
+
+    /**
+     * Returns the name of the queue of the given shard.
+     *
+     * @param prefix the shard queue prefix
+     * @param shard the shard index
+     * @return the queue name
+     */
+    public static String shardQueueName(String prefix, int shard) {
+        return prefix + "." + shard;
+    }
+
+    /**
+     * Defines the consistent-hash exchange, the shard queues and their bindings.
+     * Messages are hashed on the resource id header, every shard queue is bound with the same weight.
+     * Rejected messages keep their assignment or deallocation routing key and reach the same dead letter queues of the unsharded mode.
+     *
+     * @return the declarables of the sharded topology
+     */
+    @Bean
+    public Declarables shardedStatusDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+
+        CustomExchange exchange = new CustomExchange(shardedExchange, "x-consistent-hash", true, false,
+                Map.of("hash-header", hashHeader));
+        declarables.add(exchange);
+
+        TopicExchange dataExchange = new TopicExchange(resourceDataExchange);
+        declarables.add(BindingBuilder.bind(exchange).to(dataExchange).with(resourceAssignmentTopic));
+        declarables.add(BindingBuilder.bind(exchange).to(dataExchange).with(resourceUsageTopic));
+
+        for (int shard = 0; shard < shards; shard++) {
+            Queue queue = QueueBuilder.durable(shardQueueName(shardQueuePrefix, shard))
+                    .singleActiveConsumer()
+                    .deadLetterExchange(deadLetterExchange)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with("1").noargs());
+        }
+
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Defines the shard membership exchange, where instances announce themselves.
+     *
+     * @return a new FanoutExchange instance
+     */
+    @Bean
+    public FanoutExchange shardMembershipExchange() {
+        return new FanoutExchange(shardMembershipExchange);
+    }
+
+    /**
+     * Defines the shard membership queue of this instance.
+     *
+     * @return a new AnonymousQueue instance
+     */
+    @Bean
+    public Queue shardMembershipQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * Defines the binding between the shard membership queue and the shard membership exchange.
+     *
+     * @return a new Binding instance
+     */
+    @Bean
+    public Binding shardMembershipBinding() {
+        return BindingBuilder
+                .bind(shardMembershipQueue())
+                .to(shardMembershipExchange());
+    }
+}
@@ -0,0 +1,61 @@
+package it.unisalento.pasproject.resourceservice.controller;
+
+import it.unisalento.pasproject.resourceservice.dto.DeadLetterListDTO;
+import it.unisalento.pasproject.resourceservice.dto.MessageDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import it.unisalento.pasproject.resourceservice.service.DeadLetterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.*;
+
+import static it.unisalento.pasproject.resourceservice.security.SecurityConstants.ROLE_ADMIN;
+
+/**
+ * DeadLetterController is a REST controller that provides admin endpoints for the dead letter queues.
+ * It uses the DeadLetterService to inspect and replay the dead-lettered messages.
+ */
+@RestController
+@RequestMapping("/api/resource/admin/deadletter")
+public class DeadLetterController {
+    private final DeadLetterService deadLetterService;
+
+    /**
+     * Constructs a new DeadLetterController with the given DeadLetterService.
+     *
+     * @param deadLetterService the service to use for the dead letter queues
+     */
+    @Autowired
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * Returns the messages at the head of a dead letter queue, leaving them in the queue.
+     *
+     * @param queue the dead letter queue: assignment, deallocation or snapshot
+     * @param limit the maximum number of messages to return
+     * @return a DeadLetterListDTO containing the messages
+     * @throws ResourceNotFoundException if the dead letter queue does not exist
+     */
+    @GetMapping("/{queue}")
+    @Secured({ROLE_ADMIN})
+    public DeadLetterListDTO inspect(@PathVariable String queue, @RequestParam(defaultValue = "20") int limit) throws ResourceNotFoundException {
+        return deadLetterService.inspect(queue, limit);
+    }
+
+    /**
+     * Republishes the messages at the head of a dead letter queue with their original routing key.
+     *
+     * @param queue the dead letter queue: assignment, deallocation or snapshot
+     * @param limit the maximum number of messages to replay
+     * @return a MessageDTO with the number of replayed messages
+     * @throws ResourceNotFoundException if the dead letter queue does not exist
+     */
+    @PostMapping("/{queue}/replay")
+    @Secured({ROLE_ADMIN})
+    public MessageDTO replay(@PathVariable String queue, @RequestParam(defaultValue = "20") int limit) throws ResourceNotFoundException {
+        int replayed = deadLetterService.replay(queue, limit);
+
+        return new MessageDTO("Replayed " + replayed + " messages.", 200);
+    }
+}
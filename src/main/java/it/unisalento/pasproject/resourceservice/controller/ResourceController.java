@@ -5,17 +5,28 @@ import it.unisalento.pasproject.resourceservice.dto.*;
 import it.unisalento.pasproject.resourceservice.exceptions.ExistingResourceException;
 import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
 import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import it.unisalento.pasproject.resourceservice.service.ResourceChangeTracker;
+import it.unisalento.pasproject.resourceservice.service.ResourceChangesService;
+import it.unisalento.pasproject.resourceservice.service.ResourceLookupService;
 import it.unisalento.pasproject.resourceservice.service.ResourceQueryFilters;
 import it.unisalento.pasproject.resourceservice.service.ResourceService;
+import it.unisalento.pasproject.resourceservice.service.ResourceSubscriptionService;
+import it.unisalento.pasproject.resourceservice.service.ResourceWaitService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
 
 import static it.unisalento.pasproject.resourceservice.security.SecurityConstants.ROLE_MEMBRO;
 
@@ -30,6 +41,16 @@ public class ResourceController {
 
     private final ResourceService resourceService;
 
+    private final ResourceChangeTracker resourceChangeTracker;
+
+    private final ResourceLookupService resourceLookupService;
+
+    private final ResourceChangesService resourceChangesService;
+
+    private final ResourceSubscriptionService resourceSubscriptionService;
+
+    private final ResourceWaitService resourceWaitService;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourceController.class);
 
     /**
@@ -37,55 +58,176 @@ public class ResourceController {
      *
      * @param resourceRepository the repository to use for data access
      * @param resourceService the service to use for business logic
+     * @param resourceChangeTracker the tracker used to compute the ETags
+     * @param resourceLookupService the service writing the lists of resources
+     * @param resourceChangesService the service serving the delta sync
+     * @param resourceSubscriptionService the service pushing the changes to the stream subscribers
+     * @param resourceWaitService the service completing the requests waiting for available resources
      */
     @Autowired
-    public ResourceController(ResourceRepository resourceRepository, ResourceService resourceService) {
+    public ResourceController(ResourceRepository resourceRepository, ResourceService resourceService, ResourceChangeTracker resourceChangeTracker,
+                              ResourceLookupService resourceLookupService, ResourceChangesService resourceChangesService,
+                              ResourceSubscriptionService resourceSubscriptionService, ResourceWaitService resourceWaitService) {
         this.resourceRepository = resourceRepository;
         this.resourceService = resourceService;
+        this.resourceChangeTracker = resourceChangeTracker;
+        this.resourceLookupService = resourceLookupService;
+        this.resourceChangesService = resourceChangesService;
+        this.resourceSubscriptionService = resourceSubscriptionService;
+        this.resourceWaitService = resourceWaitService;
     }
 
     /**
-     * Returns all resources.
+     * Returns a resource.
+     * The ETag is the id and version of the resource; when its current version is already known,
+     * a matching If-None-Match is answered with 304 without reading the resource.
      *
-     * @return a ResourceListDTO containing all resources
+     * @param id the id of the resource
+     * @param webRequest the request, checked against the ETag
+     * @return the resource, or null if it was not modified
+     * @throws ResourceNotFoundException if the resource does not exist
      */
-    @GetMapping(value="/find/all")
+    @GetMapping(value="/find/{id}")
     @Secured({ROLE_MEMBRO})
-    public ResourceListDTO getAllResources() {
-        ResourceListDTO resourceListDTO = new ResourceListDTO();
-        List<ResourceDTO> list = new ArrayList<>();
-        resourceListDTO.setResourcesList(list);
+    public ResourceDTO getResource(@PathVariable String id, WebRequest webRequest) throws ResourceNotFoundException {
+        String knownTag = resourceChangeTracker.getResourceTag(id);
+
+        if (knownTag != null && webRequest.checkNotModified(knownTag)) {
+            return null;
+        }
+
+        long changeCount = resourceChangeTracker.getChangeCount();
+
+        Resource resource = resourceRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Resource not found with id: " + id + "."));
+
+        String tag = resourceChangeTracker.recordVersion(id, resource.getVersion(), changeCount);
+
+        if (tag != null && webRequest.checkNotModified(tag)) {
+            return null;
+        }
 
-        List<Resource> resources = resourceRepository.findAll();
+        return resourceService.getResourceDTO(resource);
+    }
 
-        for (Resource resource : resources) {
-            list.add(resourceService.getResourceDTO(resource));
+    /**
+     * Returns all resources.
+     * The list is written by the ResourceLookupService, as an unfiltered GET /find.
+     *
+     * @param fields the ResourceDTO properties to return, all of them if absent
+     * @param webRequest the request, checked against the ETag of the list
+     * @param request the request, whose query string identifies the list
+     * @param response the response, always written directly unless the list was not modified
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value="/find/all")
+    @Secured({ROLE_MEMBRO})
+    public void getAllResources(@RequestParam(required = false) Set<String> fields, WebRequest webRequest, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        if (checkListNotModified(webRequest, "all?" + request.getQueryString())) {
+            return;
         }
 
-        return resourceListDTO;
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        resourceQueryFilters.setFields(fields);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resourceLookupService.writeResourceList(resourceQueryFilters, response.getOutputStream());
+        response.flushBuffer();
     }
 
     /**
      * Returns resources that match the given filter criteria.
+     * The list is written by the ResourceLookupService, which chooses the writer as the AMQP queries do.
      *
      * @param resourceQueryFilters the type of the resources to return
-     * @return a ResourceListDTO containing the matching resources
-     * @throws ResourceNotFoundException if no resources match the given criteria
+     * @param webRequest the request, checked against the ETag of the list
+     * @param request the request, whose query string identifies the list
+     * @param response the response, always written directly unless the list was not modified
+     * @throws IOException if writing the response fails
      */
     @GetMapping("/find")
     @Secured(ROLE_MEMBRO)
-    public ResourceListDTO getByFilter(@ModelAttribute ResourceQueryFilters resourceQueryFilters) throws ResourceNotFoundException {
-        ResourceListDTO resourceListDTO = new ResourceListDTO();
-        List<ResourceDTO> list = new ArrayList<>();
-        resourceListDTO.setResourcesList(list);
+    public void getByFilter(@ModelAttribute ResourceQueryFilters resourceQueryFilters, WebRequest webRequest, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        if (checkListNotModified(webRequest, "find?" + request.getQueryString())) {
+            return;
+        }
 
-        List<Resource> resources = resourceService.findResources(resourceQueryFilters);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resourceLookupService.writeResourceList(resourceQueryFilters, response.getOutputStream());
+        response.flushBuffer();
+    }
 
-        for (Resource resource : resources) {
-            list.add(resourceService.getResourceDTO(resource));
-        }
+    /**
+     * Returns the resources with the given ids, in the same order, marking the ones not found.
+     *
+     * @param resourceIdsRequestDTO the ids of the resources
+     * @param response the response, always written directly
+     * @throws IOException if writing the response fails
+     */
+    @PostMapping(value="/find/ids", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Secured({ROLE_MEMBRO})
+    public void getByIds(@RequestBody ResourceIdsRequestDTO resourceIdsRequestDTO, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resourceLookupService.writeResources(resourceIdsRequestDTO.getIds(), response.getOutputStream());
+        response.flushBuffer();
+    }
 
-        return resourceListDTO;
+    /**
+     * Returns the resources created or updated since a token, so mirrors of the catalog transfer only what changed.
+     *
+     * @param since the token returned by the previous request, absent for a full sync
+     * @return a page of changed resources with the token for the next request
+     */
+    @GetMapping(value="/changes")
+    @Secured({ROLE_MEMBRO})
+    public ResourceChangesDTO getChanges(@RequestParam(required = false) String since) {
+        return resourceChangesService.getChanges(since);
+    }
+
+    /**
+     * Opens a server-sent event stream of the changes of the resources matching the given filters.
+     * Each change is sent as a "resource" event carrying the ResourceDTO in its latest state.
+     *
+     * @param resourceQueryFilters the filters, with the semantics of /find
+     * @return the emitter of the stream
+     */
+    @GetMapping(value="/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Secured({ROLE_MEMBRO})
+    public SseEmitter streamResources(@ModelAttribute ResourceQueryFilters resourceQueryFilters) {
+        return resourceSubscriptionService.subscribe(resourceQueryFilters);
+    }
+
+    /**
+     * Waits until resources matching the given filters are available, or the timeout passes.
+     * The request holds no thread while waiting.
+     *
+     * @param resourceQueryFilters the filters, with the semantics of /find; the status is always AVAILABLE
+     * @param timeout the milliseconds to wait, the configured default if absent
+     * @return a ResourceListDTO containing the available matching resources, empty if none became available in time
+     */
+    @GetMapping(value="/wait")
+    @Secured({ROLE_MEMBRO})
+    public DeferredResult<ResourceListDTO> waitForResource(@ModelAttribute ResourceQueryFilters resourceQueryFilters,
+                                                           @RequestParam(required = false) Long timeout) {
+        return resourceWaitService.waitForAvailable(resourceQueryFilters, timeout);
+    }
+
+    /**
+     * Checks a list request against the ETag of the list, which changes with every resource change seen by this instance.
+     * The ETag is computed before the list is read, so a change made meanwhile is never hidden behind it.
+     *
+     * @param webRequest the request
+     * @param key the key of the list
+     * @return true if the list was not modified and the 304 response is set
+     */
+    private boolean checkListNotModified(WebRequest webRequest, String key) {
+        String tag = resourceChangeTracker.getListTag(resourceChangeTracker.getChangeCount(), key);
+        return tag != null && webRequest.checkNotModified(tag);
     }
 
     /**
@@ -0,0 +1,108 @@
+package it.unisalento.pasproject.resourceservice.controller;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.MemberUtilizationDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceUtilizationDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.AccessDeniedException;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidRangeException;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import it.unisalento.pasproject.resourceservice.service.ResourceStatusHistoryService;
+import it.unisalento.pasproject.resourceservice.service.UserCheckService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+import static it.unisalento.pasproject.resourceservice.security.SecurityConstants.ROLE_ADMIN;
+import static it.unisalento.pasproject.resourceservice.security.SecurityConstants.ROLE_MEMBRO;
+
+/**
+ * ResourceHistoryController is a REST controller that provides endpoints for the status history of the resources.
+ * It uses the ResourceStatusHistoryService to compute the utilization over a time range.
+ */
+@RestController
+@RequestMapping("/api/resource/history")
+public class ResourceHistoryController {
+    private final ResourceStatusHistoryService resourceStatusHistoryService;
+
+    private final UserCheckService userCheckService;
+
+    private final ResourceRepository resourceRepository;
+
+    /**
+     * Constructs a new ResourceHistoryController with the given services.
+     *
+     * @param resourceStatusHistoryService the service to use for the history queries
+     * @param userCheckService the service to use to check the current user
+     * @param resourceRepository the repository to use to find the owner of a resource
+     */
+    @Autowired
+    public ResourceHistoryController(ResourceStatusHistoryService resourceStatusHistoryService, UserCheckService userCheckService,
+                                     ResourceRepository resourceRepository) {
+        this.resourceStatusHistoryService = resourceStatusHistoryService;
+        this.userCheckService = userCheckService;
+        this.resourceRepository = resourceRepository;
+    }
+
+    /**
+     * Returns the utilization and busy time of a resource over a range.
+     * Members can only read the utilization of their own resources, administrators the one of any resource.
+     *
+     * @param id the id of the resource
+     * @param from the start of the range, ISO-8601 instant
+     * @param to the end of the range, ISO-8601 instant
+     * @return the utilization of the resource
+     * @throws ResourceNotFoundException if the current user is not an administrator and the resource does not exist
+     * @throws AccessDeniedException if the current user is neither the owner of the resource nor an administrator
+     */
+    @GetMapping("/utilization/resource/{id}")
+    @Secured({ROLE_MEMBRO, ROLE_ADMIN})
+    public ResourceUtilizationDTO getResourceUtilization(@PathVariable String id,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        // Administrators can also read the history of deleted resources
+        if (!userCheckService.isAdministrator()) {
+            Resource resource = resourceRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Resource not found with id: " + id + "."));
+
+            if (resource.getMemberEmail() == null || !userCheckService.isCorrectUser(resource.getMemberEmail())) {
+                throw new AccessDeniedException("You can only read the utilization of your own resources.");
+            }
+        }
+
+        checkRange(from, to);
+        return resourceStatusHistoryService.getResourceUtilization(id, from, to);
+    }
+
+    /**
+     * Returns the utilization and busy time of the resources of a member over a range.
+     * Members can only read their own utilization, administrators the one of any member.
+     *
+     * @param email the email of the member
+     * @param from the start of the range, ISO-8601 instant
+     * @param to the end of the range, ISO-8601 instant
+     * @return the utilization of the resources of the member
+     * @throws AccessDeniedException if the current user is neither the member nor an administrator
+     */
+    @GetMapping("/utilization/member/{email}")
+    @Secured({ROLE_MEMBRO, ROLE_ADMIN})
+    public MemberUtilizationDTO getMemberUtilization(@PathVariable String email,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        if (!userCheckService.isCorrectUser(email) && !userCheckService.isAdministrator()) {
+            throw new AccessDeniedException("You can only read the utilization of your own resources.");
+        }
+
+        checkRange(from, to);
+        return resourceStatusHistoryService.getMemberUtilization(email, from, to);
+    }
+
+    private static void checkRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new InvalidRangeException("The start of the range must be before its end.");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package it.unisalento.pasproject.resourceservice.domain;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -8,6 +9,7 @@ import java.time.LocalTime;
 
 @Getter
 @Setter
+@EqualsAndHashCode
 public class Availability {
     private DayOfWeek dayOfWeek;
     private LocalTime startTime;
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -81,4 +82,24 @@ public abstract class Resource {
      * The user to whom the resource is assigned.
      */
     private String currentTaskId;
+
+    /**
+     * The version of the resource, increased by every change and carried by the resource events.
+     */
+    private long version;
+
+    /**
+     * The sequence number of the last applied status message.
+     */
+    private Long lastStatusSequence;
+
+    /**
+     * The position of the last change of the resource in the catalog-wide change sequence, used by the delta sync.
+     */
+    private long changeSequence;
+
+    /**
+     * The time the change sequence was assigned.
+     */
+    private Instant changedAt;
 }
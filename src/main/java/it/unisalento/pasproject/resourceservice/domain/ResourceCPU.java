@@ -2,6 +2,7 @@ package it.unisalento.pasproject.resourceservice.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.annotation.TypeAlias;
 
 /**
  * The ResourceCPU class is a subclass of Resource that represents a CPU resource.
@@ -9,7 +10,13 @@ import lombok.Setter;
  */
 @Getter
 @Setter
+@TypeAlias(ResourceCPU.TYPE_ALIAS)
 public class ResourceCPU extends Resource {
+    /**
+     * The short type discriminator stored in the _class field.
+     */
+    public static final String TYPE_ALIAS = "cpu";
+
     /**
      * The architecture of the CPU.
      */
@@ -2,6 +2,7 @@ package it.unisalento.pasproject.resourceservice.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.annotation.TypeAlias;
 
 /**
  * The ResourceGPU class is a subclass of Resource that represents a GPU resource.
@@ -9,7 +10,13 @@ import lombok.Setter;
  */
 @Getter
 @Setter
+@TypeAlias(ResourceGPU.TYPE_ALIAS)
 public class ResourceGPU extends Resource {
+    /**
+     * The short type discriminator stored in the _class field.
+     */
+    public static final String TYPE_ALIAS = "gpu";
+
     /**
      * The architecture of the GPU.
      */
@@ -2,10 +2,17 @@ package it.unisalento.pasproject.resourceservice.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.annotation.TypeAlias;
 
 @Getter
 @Setter
+@TypeAlias(ResourceSoC.TYPE_ALIAS)
 public class ResourceSoC extends Resource {
+    /**
+     * The short type discriminator stored in the _class field.
+     */
+    public static final String TYPE_ALIAS = "soc";
+
     private String architecture;
     private int cpuCores;
     private int gpuCores;
@@ -0,0 +1,56 @@
+package it.unisalento.pasproject.resourceservice.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.Instant;
+
+/**
+ * The ResourceStatusEvent class represents a status transition of a resource.
+ * It is stored in a time-series collection, bucketed by its meta field (resource and member), so that
+ * the history of a resource or of a member over a range is read from a few buckets.
+ */
+@Getter
+@Setter
+@Document(collection = "resource_status_history")
+@TimeSeries(timeField = "timestamp", metaField = "meta", granularity = Granularity.SECONDS)
+public class ResourceStatusEvent {
+    /**
+     * The series the event belongs to.
+     */
+    @Getter
+    @Setter
+    public static class Meta {
+        private String resourceId;
+        private String memberEmail;
+    }
+
+    @Id
+    private String id;
+
+    private Meta meta;
+
+    /**
+     * The status before the transition, null if unknown.
+     */
+    private Resource.Status oldStatus;
+
+    /**
+     * The status after the transition.
+     */
+    private Resource.Status newStatus;
+
+    /**
+     * The task the resource is assigned to after the transition.
+     */
+    private String currentTaskId;
+
+    /**
+     * The time of the transition.
+     */
+    private Instant timestamp;
+}
@@ -0,0 +1,34 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The DeadLetterDTO class is a data transfer object that represents a dead-lettered message.
+ * It includes the routing key the message was published with, why and how many times it was dead-lettered, and its payload.
+ */
+@Getter
+@Setter
+public class DeadLetterDTO {
+    /**
+     * The original routing key of the message.
+     */
+    private String routingKey;
+
+    /**
+     * The reason of the last dead-lettering (rejected, expired, maxlen...).
+     */
+    private String reason;
+
+    /**
+     * The number of times the message was dead-lettered.
+     */
+    private long count;
+
+    private String contentType;
+
+    /**
+     * The payload, as text for JSON messages and Base64 encoded otherwise.
+     */
+    private String payload;
+}
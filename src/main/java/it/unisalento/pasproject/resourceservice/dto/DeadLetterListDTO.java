@@ -0,0 +1,35 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DeadLetterListDTO class is a data transfer object that represents the content of a dead letter queue.
+ * It includes the name of the queue, the number of messages in it and the inspected messages.
+ */
+@Getter
+@Setter
+public class DeadLetterListDTO {
+    private String queue;
+
+    /**
+     * The number of messages in the queue.
+     */
+    private long messageCount;
+
+    /**
+     * The inspected messages, from the head of the queue.
+     */
+    private List<DeadLetterDTO> messages;
+
+    /**
+     * Default constructor for the DeadLetterListDTO class.
+     * Initializes the messages as a new ArrayList.
+     */
+    public DeadLetterListDTO() {
+        this.messages = new ArrayList<>();
+    }
+}
@@ -0,0 +1,43 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MemberUtilizationDTO class is a data transfer object that represents how the resources of a member spent a time range.
+ * It includes the utilization of every resource with a known status in the range and their totals.
+ */
+@Getter
+@Setter
+public class MemberUtilizationDTO {
+    private String memberEmail;
+
+    private Instant from;
+
+    private Instant to;
+
+    private long busySeconds;
+
+    private long availableSeconds;
+
+    private long unavailableSeconds;
+
+    /**
+     * The busy time over the busy and available time of all the resources.
+     */
+    private double utilization;
+
+    private List<ResourceUtilizationDTO> resources;
+
+    /**
+     * Default constructor for the MemberUtilizationDTO class.
+     * Initializes the resources as a new ArrayList.
+     */
+    public MemberUtilizationDTO() {
+        this.resources = new ArrayList<>();
+    }
+}
@@ -0,0 +1,44 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The ResourceChangeMessageDTO class is a data transfer object that instances exchange to report the resources they changed.
+ * It includes properties such as instanceId, resourceId, previousStatus and status.
+ */
+@Getter
+@Setter
+public class ResourceChangeMessageDTO {
+    /**
+     * The unique identifier of the instance that made the change.
+     */
+    private String instanceId;
+
+    /**
+     * The ID of the changed resource.
+     */
+    private String resourceId;
+
+    /**
+     * The status of the resource before the change, or null if it is not known.
+     */
+    private ResourceMessageDTO.Status previousStatus;
+
+    /**
+     * The status of the resource after the change, or null if the change did not set it.
+     */
+    private ResourceMessageDTO.Status status;
+
+    /**
+     * Default constructor for the ResourceChangeMessageDTO class.
+     */
+    public ResourceChangeMessageDTO() {}
+
+    public ResourceChangeMessageDTO(String instanceId, String resourceId, ResourceMessageDTO.Status previousStatus, ResourceMessageDTO.Status status) {
+        this.instanceId = instanceId;
+        this.resourceId = resourceId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+}
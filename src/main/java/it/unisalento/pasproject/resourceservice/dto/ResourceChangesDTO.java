@@ -0,0 +1,34 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The ResourceChangesDTO class is a data transfer object that represents a page of the resource changes since a token.
+ * It includes the changed resources, the token to pass on the next request and whether more changes are already available.
+ */
+@Getter
+@Setter
+public class ResourceChangesDTO {
+    /**
+     * The resources created or updated since the token, in change order.
+     */
+    private List<ResourceDTO> resourcesList;
+
+    /**
+     * The token to request the following changes with.
+     */
+    private String token;
+
+    /**
+     * Whether more changes are available right away.
+     */
+    private boolean hasMore;
+
+    /**
+     * Default constructor for the ResourceChangesDTO class.
+     */
+    public ResourceChangesDTO() {}
+}
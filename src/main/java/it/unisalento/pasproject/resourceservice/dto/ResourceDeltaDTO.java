@@ -0,0 +1,90 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.service.AvailabilityDeserializer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The ResourceDeltaDTO class is a data transfer object that represents a change of a resource.
+ * It includes the id and the version of the resource and only the fields that changed; unchanged fields are null and are not serialized.
+ * A consumer applies a delta only if its version is greater than the version it already holds.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResourceDeltaDTO {
+    /**
+     * The ID of the resource.
+     */
+    private String id;
+
+    /**
+     * The version of the resource after the change.
+     */
+    private long version;
+
+    private String name;
+
+    @JsonDeserialize(using = AvailabilityDeserializer.class)
+    private List<Availability> availability;
+
+    private Double kWh;
+
+    private String memberEmail;
+
+    private ResourceMessageDTO.Status status;
+
+    private String currentTaskId;
+
+    private Double singleCoreScore;
+
+    private Double multicoreScore;
+
+    private Double openclScore;
+
+    private Double vulkanScore;
+
+    private Double cudaScore;
+
+    /**
+     * Default constructor for the ResourceDeltaDTO class.
+     */
+    public ResourceDeltaDTO() {}
+
+    /**
+     * Checks if the delta carries no changed field.
+     * @return true if no field changed, false otherwise
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return name == null && availability == null && kWh == null && memberEmail == null && status == null
+                && currentTaskId == null && singleCoreScore == null && multicoreScore == null
+                && openclScore == null && vulkanScore == null && cudaScore == null;
+    }
+
+    /**
+     * Merges a newer delta of the same resource into this one.
+     * The fields changed by the newer delta overwrite the ones of this delta, and the version becomes the newer one.
+     * @param newer the newer delta
+     */
+    public void merge(ResourceDeltaDTO newer) {
+        version = Math.max(version, newer.version);
+        if (newer.name != null) name = newer.name;
+        if (newer.availability != null) availability = newer.availability;
+        if (newer.kWh != null) kWh = newer.kWh;
+        if (newer.memberEmail != null) memberEmail = newer.memberEmail;
+        if (newer.status != null) status = newer.status;
+        if (newer.currentTaskId != null) currentTaskId = newer.currentTaskId;
+        if (newer.singleCoreScore != null) singleCoreScore = newer.singleCoreScore;
+        if (newer.multicoreScore != null) multicoreScore = newer.multicoreScore;
+        if (newer.openclScore != null) openclScore = newer.openclScore;
+        if (newer.vulkanScore != null) vulkanScore = newer.vulkanScore;
+        if (newer.cudaScore != null) cudaScore = newer.cudaScore;
+    }
+}
@@ -0,0 +1,18 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The ResourceIdsRequestDTO class is a data transfer object that represents a request for several resources by id.
+ */
+@Getter
+@Setter
+public class ResourceIdsRequestDTO {
+    /**
+     * The IDs of the requested resources, in the order of the response.
+     */
+    private List<String> ids;
+}
@@ -1,6 +1,8 @@
 package it.unisalento.pasproject.resourceservice.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.service.AvailabilityDeserializer;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -29,6 +31,7 @@ public class ResourceMessageDTO {
     /**
      * The number of hours the resource is available.
      */
+    @JsonDeserialize(using = AvailabilityDeserializer.class)
     private List<Availability> availability;
 
     /**
@@ -76,6 +79,11 @@ public class ResourceMessageDTO {
      */
     private double cudaScore;
 
+    /**
+     * The version of the resource, deltas with a greater version apply on top of this snapshot.
+     */
+    private long version;
+
     /**
      * Default constructor for the ResourceMessageDTO class.
      */
@@ -21,4 +21,11 @@ public class ResourceMessageStatusDTO {
     private Status status;
 
     private String currentTaskId;
+
+    /**
+     * The per-resource sequence number of the message, increased by the producer for every status change.
+     * Messages with a sequence not greater than the last applied one are stale or duplicated and are ignored.
+     * It is null for producers that do not send it, whose messages are always applied.
+     */
+    private Long sequence;
 }
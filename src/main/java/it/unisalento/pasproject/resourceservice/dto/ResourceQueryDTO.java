@@ -0,0 +1,25 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import it.unisalento.pasproject.resourceservice.service.ResourceQueryFilters;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The ResourceQueryDTO class is a data transfer object that represents a single query of a ResourceQueryRequestDTO.
+ * It either looks resources up by id, like POST /find/ids, or filters them, like GET /find.
+ */
+@Getter
+@Setter
+public class ResourceQueryDTO {
+    /**
+     * The IDs of the requested resources, if the query is a lookup.
+     */
+    private List<String> ids;
+
+    /**
+     * The filters of the query, used when no ids are given.
+     */
+    private ResourceQueryFilters filters;
+}
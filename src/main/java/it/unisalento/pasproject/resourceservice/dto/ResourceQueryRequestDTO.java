@@ -0,0 +1,19 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The ResourceQueryRequestDTO class is a data transfer object that represents a batch of resource queries sent over AMQP.
+ * The reply holds one result per query, in the same order.
+ */
+@Getter
+@Setter
+public class ResourceQueryRequestDTO {
+    /**
+     * The queries to answer.
+     */
+    private List<ResourceQueryDTO> queries;
+}
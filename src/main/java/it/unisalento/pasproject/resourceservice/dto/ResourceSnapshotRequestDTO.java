@@ -0,0 +1,17 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The ResourceSnapshotRequestDTO class is a data transfer object that represents a request for the full snapshot of a resource.
+ * It is sent by consumers that missed a delta or that do not hold the resource yet.
+ */
+@Getter
+@Setter
+public class ResourceSnapshotRequestDTO {
+    /**
+     * The ID of the requested resource.
+     */
+    private String id;
+}
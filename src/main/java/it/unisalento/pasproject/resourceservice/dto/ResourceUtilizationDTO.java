@@ -0,0 +1,25 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The ResourceUtilizationDTO class is a data transfer object that represents how a resource spent a time range.
+ * It includes the seconds spent in each status and the utilization, the share of the available time the resource was busy.
+ */
+@Getter
+@Setter
+public class ResourceUtilizationDTO {
+    private String resourceId;
+
+    private long busySeconds;
+
+    private long availableSeconds;
+
+    private long unavailableSeconds;
+
+    /**
+     * The busy time over the busy and available time, 0 if the resource was never offered.
+     */
+    private double utilization;
+}
@@ -0,0 +1,28 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The RevocationMessageDTO class is a data transfer object pushed by the security service
+ * when a user is disabled or enabled again.
+ * It includes properties such as email and revoked.
+ */
+@Getter
+@Setter
+public class RevocationMessageDTO {
+    /**
+     * The email of the user.
+     */
+    private String email;
+
+    /**
+     * Whether the user is revoked (disabled) or restored.
+     */
+    private boolean revoked;
+
+    /**
+     * Default constructor for the RevocationMessageDTO class.
+     */
+    public RevocationMessageDTO() {}
+}
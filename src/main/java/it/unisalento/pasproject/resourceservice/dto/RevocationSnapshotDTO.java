@@ -0,0 +1,27 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RevocationSnapshotDTO class is a data transfer object that represents the full list of revoked users.
+ * It is requested from the security service at startup, before incremental revocation messages are applied.
+ */
+@Getter
+@Setter
+public class RevocationSnapshotDTO {
+    /**
+     * The emails of the revoked (disabled) users.
+     */
+    private List<String> revokedUsers;
+
+    /**
+     * Default constructor for the RevocationSnapshotDTO class.
+     */
+    public RevocationSnapshotDTO() {
+        this.revokedUsers = new ArrayList<>();
+    }
+}
@@ -0,0 +1,33 @@
+package it.unisalento.pasproject.resourceservice.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The ShardMemberMessageDTO class is a data transfer object that instances exchange to agree on the
+ * assignment of the status shards.
+ * It includes properties such as instanceId and leaving.
+ */
+@Getter
+@Setter
+public class ShardMemberMessageDTO {
+    /**
+     * The unique identifier of the instance.
+     */
+    private String instanceId;
+
+    /**
+     * Whether the instance is shutting down and gives up its shards.
+     */
+    private boolean leaving;
+
+    /**
+     * Default constructor for the ShardMemberMessageDTO class.
+     */
+    public ShardMemberMessageDTO() {}
+
+    public ShardMemberMessageDTO(String instanceId, boolean leaving) {
+        this.instanceId = instanceId;
+        this.leaving = leaving;
+    }
+}
@@ -0,0 +1,16 @@
+package it.unisalento.pasproject.resourceservice.exceptions;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+/**
+ * The InvalidAvailabilityException is thrown while deserializing an availability list that is malformed,
+ * not aligned to 30 minutes or overlapping.
+ * It carries the location of the offending value, so both the REST error and the AMQP rejection point to it.
+ */
+public class InvalidAvailabilityException extends MismatchedInputException {
+    public InvalidAvailabilityException(JsonParser p, String message, JsonLocation location) {
+        super(p, message, location);
+    }
+}
@@ -3,8 +3,8 @@ package it.unisalento.pasproject.resourceservice.exceptions;
 import it.unisalento.pasproject.resourceservice.exceptions.global.CustomErrorException;
 import org.springframework.http.HttpStatus;
 
-public class BadFormatAvailabilityException extends CustomErrorException {
-    public BadFormatAvailabilityException(String message) {
+public class InvalidChangeTokenException extends CustomErrorException {
+    public InvalidChangeTokenException(String message) {
         super(message, HttpStatus.BAD_REQUEST);
     }
 }
@@ -0,0 +1,10 @@
+package it.unisalento.pasproject.resourceservice.exceptions;
+
+import it.unisalento.pasproject.resourceservice.exceptions.global.CustomErrorException;
+import org.springframework.http.HttpStatus;
+
+public class InvalidRangeException extends CustomErrorException {
+    public InvalidRangeException(String message) {
+        super(message, HttpStatus.BAD_REQUEST);
+    }
+}
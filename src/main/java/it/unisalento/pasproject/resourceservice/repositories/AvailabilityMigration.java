@@ -0,0 +1,104 @@
+package it.unisalento.pasproject.resourceservice.repositories;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.repositories.codec.AvailabilityBson;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The AvailabilityMigration class rewrites the availability of the resources stored with the previous encoding
+ * ({dayOfWeek, startTime, endTime}) to the compact one ({d, s, e}) of AvailabilityBson.
+ * The from/to filters of /find only query the compact fields, so a resource is not found by them until it is migrated.
+ */
+@Component
+public class AvailabilityMigration {
+    private static final String AVAILABILITY_FIELD = "availability";
+
+    private static final String LEGACY_START_FIELD = AVAILABILITY_FIELD + ".startTime";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AvailabilityMigration.class);
+
+    @Autowired
+    public AvailabilityMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Migrates the resources with an availability in the previous encoding.
+     * The values are the ones the codec reads, so the resources do not change and keep their version and change sequence.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        try {
+            MongoCollection<Document> resources = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Resource.class));
+            List<UpdateOneModel<Document>> updates = new ArrayList<>(BATCH_SIZE);
+            long migrated = 0;
+
+            for (Document document : resources.find(Filters.exists(LEGACY_START_FIELD)).projection(Projections.include(AVAILABILITY_FIELD))) {
+                List<Document> legacy = document.getList(AVAILABILITY_FIELD, Document.class);
+                List<Document> converted = convert(document.get("_id"), legacy);
+
+                if (converted == null) {
+                    continue;
+                }
+
+                // A resource written meanwhile already has the compact encoding, the write wins
+                updates.add(new UpdateOneModel<>(
+                        Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(AVAILABILITY_FIELD, legacy)),
+                        Updates.set(AVAILABILITY_FIELD, converted)));
+
+                if (updates.size() == BATCH_SIZE) {
+                    migrated += resources.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                    updates.clear();
+                }
+            }
+
+            if (!updates.isEmpty()) {
+                migrated += resources.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            }
+
+            if (migrated > 0) {
+                LOGGER.info("Migrated the availability of {} resources to the compact encoding", migrated);
+            }
+        } catch (MongoException e) {
+            LOGGER.error("Cannot migrate the availability of the resources: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Converts an availability in the previous encoding, entry by entry.
+     * @param id the id of the resource
+     * @param legacy the availability in the previous encoding
+     * @return the availability in the compact encoding, null if an entry is incomplete
+     */
+    private static List<Document> convert(Object id, List<Document> legacy) {
+        List<Document> converted = new ArrayList<>(legacy.size());
+
+        for (Document entry : legacy) {
+            try {
+                converted.add(AvailabilityBson.toDocument(AvailabilityBson.fromDocument(entry)));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot migrate the availability of resource {}: {}", id, e.getMessage());
+                return null;
+            }
+        }
+
+        return converted;
+    }
+}
@@ -0,0 +1,111 @@
+package it.unisalento.pasproject.resourceservice.repositories;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The ResourceChangeSequence class assigns the catalog-wide change sequence persisted on each resource document.
+ * The sequence is a counter document incremented atomically, so it is monotonic across instances;
+ * every write of a resource takes the next value, and the delta sync reads the resources with a greater one.
+ */
+@Component
+public class ResourceChangeSequence {
+    public static final String SEQUENCE_FIELD = "changeSequence";
+
+    public static final String CHANGED_AT_FIELD = "changedAt";
+
+    private static final String COUNTERS_COLLECTION = "counters";
+
+    private static final String COUNTER_ID = "resourceChangeSequence";
+
+    private static final String COUNTER_VALUE_FIELD = "value";
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private static final FindOneAndUpdateOptions INCREMENT_OPTIONS = new FindOneAndUpdateOptions()
+            .upsert(true)
+            .returnDocument(ReturnDocument.AFTER);
+
+    private final MongoTemplate mongoTemplate;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceChangeSequence.class);
+
+    @Autowired
+    public ResourceChangeSequence(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Reserves a block of consecutive sequence values with a single update.
+     * @param count the number of values
+     * @return the last value of the block, whose first value is the returned one minus count plus one
+     */
+    public long allocate(int count) {
+        Document counter = mongoTemplate.getCollection(COUNTERS_COLLECTION).findOneAndUpdate(
+                Filters.eq("_id", COUNTER_ID), Updates.inc(COUNTER_VALUE_FIELD, (long) count), INCREMENT_OPTIONS);
+
+        return ((Number) counter.get(COUNTER_VALUE_FIELD)).longValue();
+    }
+
+    /**
+     * Assigns the next sequence value to a resource about to be written.
+     * @param resource the resource
+     */
+    public void assign(Resource resource) {
+        resource.setChangeSequence(allocate(1));
+        resource.setChangedAt(Instant.now());
+    }
+
+    /**
+     * Indexes the sequence and assigns one to the resources written before it existed,
+     * with a change time at the epoch, since they are long settled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            MongoCollection<Document> resources = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Resource.class));
+            resources.createIndex(Indexes.ascending(SEQUENCE_FIELD));
+
+            List<Object> ids = new ArrayList<>();
+            resources.find(Filters.exists(SEQUENCE_FIELD, false))
+                    .projection(Projections.include("_id"))
+                    .forEach(document -> ids.add(document.get("_id")));
+
+            for (int from = 0; from < ids.size(); from += BACKFILL_BATCH_SIZE) {
+                List<Object> batch = ids.subList(from, Math.min(from + BACKFILL_BATCH_SIZE, ids.size()));
+                long sequence = allocate(batch.size()) - batch.size();
+                List<UpdateOneModel<Document>> updates = new ArrayList<>(batch.size());
+
+                for (Object id : batch) {
+                    // Another instance may be backfilling too, the first write wins
+                    updates.add(new UpdateOneModel<>(
+                            Filters.and(Filters.eq("_id", id), Filters.exists(SEQUENCE_FIELD, false)),
+                            Updates.combine(Updates.set(SEQUENCE_FIELD, ++sequence), Updates.set(CHANGED_AT_FIELD, new Date(0)))));
+                }
+
+                resources.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+            }
+
+            if (!ids.isEmpty()) {
+                LOGGER.info("Assigned a change sequence to {} resources", ids.size());
+            }
+        } catch (MongoException e) {
+            LOGGER.error("Cannot initialize the resource change sequence: {}", e.getMessage());
+        }
+    }
+}
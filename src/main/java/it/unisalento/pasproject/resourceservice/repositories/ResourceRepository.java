@@ -7,7 +7,8 @@ import org.springframework.data.mongodb.repository.MongoRepository;
  * The ResourceRepository interface is a Spring Data MongoDB repository for the Resource domain object.
  * It extends the MongoRepository interface, which provides methods for CRUD operations.
  * The type of the domain object is Resource, and the type of the ID is String.
+ * The hot read and write paths are served by ResourceRepositoryCustom through the ResourceCodec.
  */
-public interface ResourceRepository extends MongoRepository<Resource, String> {
+public interface ResourceRepository extends MongoRepository<Resource, String>, ResourceRepositoryCustom {
     Resource findByNameAndMemberEmail(String name, String memberEmail);
 }
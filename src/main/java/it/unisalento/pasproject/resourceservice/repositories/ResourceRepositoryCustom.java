@@ -0,0 +1,45 @@
+package it.unisalento.pasproject.resourceservice.repositories;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The ResourceRepositoryCustom interface declares the repository methods that read and write resources through the ResourceCodec
+ * instead of the reflective mapping converter.
+ * They override the corresponding methods of MongoRepository.
+ */
+public interface ResourceRepositoryCustom {
+    List<Resource> findAll();
+
+    Optional<Resource> findById(String id);
+
+    <S extends Resource> S save(S resource);
+
+    /**
+     * Updates a stored resource only if it is still at the version it was read at.
+     * The fields of the resource are set and the version is incremented in a single write; the last applied status
+     * sequence is left to the status messages, which own it. Fields that are null in the resource are left unchanged.
+     * @param resource the updated resource, whose version is set to the new one when the update is applied
+     * @param expectedVersion the version the resource was read at
+     * @return true if the update was applied, false if the resource changed meanwhile or does not exist anymore
+     */
+    boolean updateIfVersion(Resource resource, long expectedVersion);
+
+    /**
+     * Finds the resources matching a query.
+     * @param query the query, using the field names of the stored documents; its fields, if any, are projected
+     * @return the matching resources, with only the projected fields set
+     */
+    List<Resource> findByQuery(Query query);
+
+    /**
+     * Finds the resources with the given ids in a single query.
+     * @param ids the ids of the resources
+     * @return the resources found, in no particular order
+     */
+    List<Resource> findByIds(Collection<String> ids);
+}
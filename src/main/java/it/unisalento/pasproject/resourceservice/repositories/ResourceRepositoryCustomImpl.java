@@ -0,0 +1,149 @@
+package it.unisalento.pasproject.resourceservice.repositories;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt64;
+import org.bson.Document;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The ResourceRepositoryCustomImpl class implements ResourceRepositoryCustom on a collection typed to Resource,
+ * so that documents are decoded and encoded by the ResourceCodec registered with the driver.
+ */
+public class ResourceRepositoryCustomImpl implements ResourceRepositoryCustom {
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final QueryMapper queryMapper;
+
+    private final MongoPersistentEntity<?> resourceEntity;
+
+    private final ResourceChangeSequence resourceChangeSequence;
+
+    @Autowired
+    public ResourceRepositoryCustomImpl(MongoTemplate mongoTemplate, ResourceChangeSequence resourceChangeSequence) {
+        this.mongoTemplate = mongoTemplate;
+        this.resourceChangeSequence = resourceChangeSequence;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        this.resourceEntity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Resource.class);
+    }
+
+    private MongoCollection<Resource> collection() {
+        return mongoTemplate.getCollection(resourceEntity.getCollection()).withDocumentClass(Resource.class);
+    }
+
+    private static Object idValue(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static Bson idFilter(String id) {
+        return Filters.eq("_id", idValue(id));
+    }
+
+    @Override
+    public List<Resource> findAll() {
+        return collection().find().into(new ArrayList<>());
+    }
+
+    @Override
+    public Optional<Resource> findById(String id) {
+        return Optional.ofNullable(collection().find(idFilter(id)).first());
+    }
+
+    @Override
+    public <S extends Resource> S save(S resource) {
+        resourceChangeSequence.assign(resource);
+
+        if (resource.getId() == null) {
+            resource.setId(new ObjectId().toHexString());
+            collection().insertOne(resource);
+        } else {
+            collection().replaceOne(idFilter(resource.getId()), resource, UPSERT);
+        }
+
+        return resource;
+    }
+
+    @Override
+    public boolean updateIfVersion(Resource resource, long expectedVersion) {
+        resourceChangeSequence.assign(resource);
+
+        BsonDocument fields = new BsonDocument();
+        collection().getCodecRegistry().get(Resource.class)
+                .encode(new BsonDocumentWriter(fields), resource, EncoderContext.builder().build());
+
+        fields.remove(ResourceCodec.ID_FIELD);
+        fields.remove("version");
+        fields.remove("lastStatusSequence");
+
+        BsonDocument update = new BsonDocument("$set", fields)
+                .append("$inc", new BsonDocument("version", new BsonInt64(1)));
+
+        // Resources written before versioning have no version, which is read as 0
+        Bson versionFilter = expectedVersion == 0
+                ? Filters.or(Filters.eq("version", 0L), Filters.exists("version", false))
+                : Filters.eq("version", expectedVersion);
+
+        boolean updated = collection().updateOne(Filters.and(idFilter(resource.getId()), versionFilter), update).getMatchedCount() == 1;
+
+        if (updated) {
+            resource.setVersion(expectedVersion + 1);
+        }
+
+        return updated;
+    }
+
+    @Override
+    public List<Resource> findByQuery(Query query) {
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), resourceEntity);
+        FindIterable<Resource> results = collection().find(filter);
+
+        if (!query.getFieldsObject().isEmpty()) {
+            results = results.projection(queryMapper.getMappedFields(query.getFieldsObject(), resourceEntity));
+        }
+
+        if (!query.getSortObject().isEmpty()) {
+            results = results.sort(queryMapper.getMappedSort(query.getSortObject(), resourceEntity));
+        }
+
+        if (query.getSkip() > 0) {
+            results = results.skip((int) query.getSkip());
+        }
+
+        if (query.isLimited()) {
+            results = results.limit(query.getLimit());
+        }
+
+        return results.into(new ArrayList<>());
+    }
+
+    @Override
+    public List<Resource> findByIds(Collection<String> ids) {
+        List<Object> idValues = new ArrayList<>(ids.size());
+
+        for (String id : ids) {
+            idValues.add(idValue(id));
+        }
+
+        return collection().find(Filters.in("_id", idValues)).into(new ArrayList<>(ids.size()));
+    }
+}
@@ -0,0 +1,134 @@
+package it.unisalento.pasproject.resourceservice.repositories.codec;
+
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * The AvailabilityBson class holds the compact BSON encoding of an Availability: {d: dayOfWeek (1-7), s: start minute, e: end minute}.
+ * An interval ending at midnight is stored with end minute 1440, so that e is always greater than s and range queries work.
+ * Both the ResourceCodec and the Spring Data converters use it, so every read and write path agrees on the format.
+ * Documents written with the previous encoding ({dayOfWeek, startTime, endTime}) are still read.
+ */
+public final class AvailabilityBson {
+    public static final String DAY_FIELD = "d";
+
+    public static final String START_FIELD = "s";
+
+    public static final String END_FIELD = "e";
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private AvailabilityBson() {
+    }
+
+    /**
+     * Returns the minute of the day of a time, as stored in the start field.
+     * @param time the time
+     * @return the minute of the day
+     */
+    public static int startMinute(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+
+    /**
+     * Returns the minute of the day of a time, as stored in the end field, where midnight is the end of the day.
+     * @param time the time
+     * @return the minute of the day, 1440 for midnight
+     */
+    public static int endMinute(LocalTime time) {
+        return time.equals(LocalTime.MIDNIGHT) ? MINUTES_PER_DAY : time.toSecondOfDay() / 60;
+    }
+
+    private static LocalTime toTime(int minuteOfDay) {
+        return minuteOfDay >= MINUTES_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.ofSecondOfDay(minuteOfDay * 60L);
+    }
+
+    public static void write(BsonWriter writer, Availability availability) {
+        writer.writeStartDocument();
+        writer.writeInt32(DAY_FIELD, availability.getDayOfWeek().getValue());
+        writer.writeInt32(START_FIELD, startMinute(availability.getStartTime()));
+        writer.writeInt32(END_FIELD, endMinute(availability.getEndTime()));
+        writer.writeEndDocument();
+    }
+
+    public static Availability read(BsonReader reader) {
+        Availability availability = new Availability();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case DAY_FIELD -> availability.setDayOfWeek(DayOfWeek.of(reader.readInt32()));
+                case START_FIELD -> availability.setStartTime(toTime(reader.readInt32()));
+                case END_FIELD -> availability.setEndTime(toTime(reader.readInt32()));
+                // Previous encoding
+                case "dayOfWeek" -> availability.setDayOfWeek(DayOfWeek.valueOf(reader.readString()));
+                case "startTime" -> availability.setStartTime(legacyTime(reader.readDateTime()));
+                case "endTime" -> availability.setEndTime(legacyTime(reader.readDateTime()));
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return availability;
+    }
+
+    public static Document toDocument(Availability availability) {
+        return new Document(DAY_FIELD, availability.getDayOfWeek().getValue())
+                .append(START_FIELD, startMinute(availability.getStartTime()))
+                .append(END_FIELD, endMinute(availability.getEndTime()));
+    }
+
+    public static Availability fromDocument(Document document) {
+        Availability availability = new Availability();
+
+        if (document.containsKey(DAY_FIELD)) {
+            availability.setDayOfWeek(DayOfWeek.of(document.getInteger(DAY_FIELD)));
+            availability.setStartTime(toTime(document.getInteger(START_FIELD)));
+            availability.setEndTime(toTime(document.getInteger(END_FIELD)));
+        } else {
+            availability.setDayOfWeek(DayOfWeek.valueOf(document.getString("dayOfWeek")));
+            availability.setStartTime(legacyTime(document.getDate("startTime").getTime()));
+            availability.setEndTime(legacyTime(document.getDate("endTime").getTime()));
+        }
+
+        return availability;
+    }
+
+    /**
+     * The previous encoding stored times as dates in the default zone, as Spring Data does for LocalTime.
+     */
+    private static LocalTime legacyTime(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalTime();
+    }
+
+    @WritingConverter
+    public enum AvailabilityWritingConverter implements Converter<Availability, Document> {
+        INSTANCE;
+
+        @Override
+        public Document convert(Availability source) {
+            return toDocument(source);
+        }
+    }
+
+    @ReadingConverter
+    public enum AvailabilityReadingConverter implements Converter<Document, Availability> {
+        INSTANCE;
+
+        @Override
+        public Availability convert(Document source) {
+            return fromDocument(source);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package it.unisalento.pasproject.resourceservice.repositories.codec;
+
+import it.unisalento.pasproject.resourceservice.domain.*;
+import org.bson.*;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ResourceCodec class encodes and decodes the Resource hierarchy directly with the driver, without reflection.
+ * The subtype is stored in the _class field as a short alias (cpu, gpu, soc), the same one Spring Data writes through @TypeAlias,
+ * and the availability uses the compact encoding of AvailabilityBson.
+ * Field names are the ones Spring Data uses, so documents written by either side can be read by the other,
+ * including documents that still carry the fully qualified class name.
+ */
+public class ResourceCodec implements Codec<Resource> {
+    public static final String ID_FIELD = "_id";
+
+    public static final String TYPE_FIELD = "_class";
+
+    private final ResourceFactory resourceFactory = new ResourceFactory();
+
+    @Override
+    public Class<Resource> getEncoderClass() {
+        return Resource.class;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Resource resource, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        if (resource.getId() != null) {
+            writer.writeName(ID_FIELD);
+            if (ObjectId.isValid(resource.getId())) {
+                writer.writeObjectId(new ObjectId(resource.getId()));
+            } else {
+                writer.writeString(resource.getId());
+            }
+        }
+
+        writer.writeString(TYPE_FIELD, typeAlias(resource));
+
+        writeString(writer, "name", resource.getName());
+        writeString(writer, "type", resource.getType());
+        writeString(writer, "brand", resource.getBrand());
+        writeString(writer, "model", resource.getModel());
+        writeString(writer, "greenEnergyType", resource.getGreenEnergyType());
+        writeString(writer, "country", resource.getCountry());
+        writeString(writer, "region", resource.getRegion());
+        writeString(writer, "city", resource.getCity());
+
+        if (resource.getAvailability() != null) {
+            writer.writeStartArray("availability");
+            for (Availability availability : resource.getAvailability()) {
+                AvailabilityBson.write(writer, availability);
+            }
+            writer.writeEndArray();
+        }
+
+        writer.writeDouble("kWh", resource.getKWh());
+        writeString(writer, "memberEmail", resource.getMemberEmail());
+        writeString(writer, "status", resource.getStatus() != null ? resource.getStatus().name() : null);
+        writeString(writer, "currentTaskId", resource.getCurrentTaskId());
+        writer.writeInt64("version", resource.getVersion());
+
+        if (resource.getLastStatusSequence() != null) {
+            writer.writeInt64("lastStatusSequence", resource.getLastStatusSequence());
+        }
+
+        writer.writeInt64("changeSequence", resource.getChangeSequence());
+
+        if (resource.getChangedAt() != null) {
+            writer.writeDateTime("changedAt", resource.getChangedAt().toEpochMilli());
+        }
+
+        switch (resource) {
+            case ResourceCPU resourceCPU -> {
+                writeString(writer, "architecture", resourceCPU.getArchitecture());
+                writer.writeInt32("cores", resourceCPU.getCores());
+                writer.writeInt32("threads", resourceCPU.getThreads());
+                writer.writeDouble("baseFrequency", resourceCPU.getBaseFrequency());
+                writer.writeDouble("maxFrequency", resourceCPU.getMaxFrequency());
+                writer.writeInt32("cacheSize", resourceCPU.getCacheSize());
+                writer.writeDouble("tdp", resourceCPU.getTdp());
+                writer.writeBoolean("hyperThreading", resourceCPU.isHyperThreading());
+                writer.writeBoolean("overclockingSupport", resourceCPU.isOverclockingSupport());
+                writer.writeDouble("singleCoreScore", resourceCPU.getSingleCoreScore());
+                writer.writeDouble("multicoreScore", resourceCPU.getMulticoreScore());
+            }
+            case ResourceGPU resourceGPU -> {
+                writeString(writer, "architecture", resourceGPU.getArchitecture());
+                writeString(writer, "vramType", resourceGPU.getVramType());
+                writer.writeInt32("vramSize", resourceGPU.getVramSize());
+                writer.writeDouble("coreClock", resourceGPU.getCoreClock());
+                writer.writeDouble("boostClock", resourceGPU.getBoostClock());
+                writeString(writer, "memoryClock", resourceGPU.getMemoryClock());
+                writer.writeDouble("tdp", resourceGPU.getTdp());
+                writer.writeBoolean("rayTracingSupport", resourceGPU.isRayTracingSupport());
+                writer.writeBoolean("dlssSupport", resourceGPU.isDlssSupport());
+                writer.writeDouble("openclScore", resourceGPU.getOpenclScore());
+                writer.writeDouble("vulkanScore", resourceGPU.getVulkanScore());
+                writer.writeDouble("cudaScore", resourceGPU.getCudaScore());
+            }
+            case ResourceSoC resourceSoC -> {
+                writeString(writer, "architecture", resourceSoC.getArchitecture());
+                writer.writeInt32("cpuCores", resourceSoC.getCpuCores());
+                writer.writeInt32("gpuCores", resourceSoC.getGpuCores());
+                writer.writeDouble("cpuBaseFrequency", resourceSoC.getCpuBaseFrequency());
+                writer.writeDouble("cpuMaxFrequency", resourceSoC.getCpuMaxFrequency());
+                writer.writeDouble("gpuBaseFrequency", resourceSoC.getGpuBaseFrequency());
+                writer.writeDouble("gpuMaxFrequency", resourceSoC.getGpuMaxFrequency());
+                writer.writeDouble("tdp", resourceSoC.getTdp());
+                writer.writeDouble("singleCoreScore", resourceSoC.getSingleCoreScore());
+                writer.writeDouble("multicoreScore", resourceSoC.getMulticoreScore());
+                writer.writeDouble("openclScore", resourceSoC.getOpenclScore());
+                writer.writeDouble("vulkanScore", resourceSoC.getVulkanScore());
+                writer.writeDouble("cudaScore", resourceSoC.getCudaScore());
+            }
+            default -> throw new BsonSerializationException("Unsupported resource type: " + resource.getClass().getName());
+        }
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Resource decode(BsonReader reader, DecoderContext decoderContext) {
+        Resource resource = resourceFactory.getResourceType(readType(reader));
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String field = reader.readName();
+
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+            } else if (!decodeCommon(reader, field, resource) && !decodeSpecific(reader, field, resource)) {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return resource;
+    }
+
+    /**
+     * Looks ahead for the _class field and resets the reader, since documents written by Spring Data do not always start with it.
+     * @param reader the reader, positioned before the start of the document
+     * @return the type of the resource
+     */
+    public static ResourceFactory.ResourceType readType(BsonReader reader) {
+        BsonReaderMark mark = reader.getMark();
+        String alias = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.readName().equals(TYPE_FIELD)) {
+                alias = reader.readString();
+                break;
+            }
+            reader.skipValue();
+        }
+        mark.reset();
+
+        if (alias == null) {
+            throw new BsonSerializationException("Resource document without " + TYPE_FIELD + " field");
+        }
+
+        return switch (alias) {
+            case ResourceCPU.TYPE_ALIAS -> ResourceFactory.ResourceType.CPU;
+            case ResourceGPU.TYPE_ALIAS -> ResourceFactory.ResourceType.GPU;
+            case ResourceSoC.TYPE_ALIAS -> ResourceFactory.ResourceType.SOC;
+            default -> {
+                // Fully qualified class name written before the aliases were introduced
+                if (alias.equals(ResourceCPU.class.getName())) yield ResourceFactory.ResourceType.CPU;
+                if (alias.equals(ResourceGPU.class.getName())) yield ResourceFactory.ResourceType.GPU;
+                if (alias.equals(ResourceSoC.class.getName())) yield ResourceFactory.ResourceType.SOC;
+                throw new BsonSerializationException("Unknown resource type: " + alias);
+            }
+        };
+    }
+
+    private boolean decodeCommon(BsonReader reader, String field, Resource resource) {
+        switch (field) {
+            case ID_FIELD -> resource.setId(reader.getCurrentBsonType() == BsonType.OBJECT_ID
+                    ? reader.readObjectId().toHexString() : reader.readString());
+            case "name" -> resource.setName(reader.readString());
+            case "type" -> resource.setType(reader.readString());
+            case "brand" -> resource.setBrand(reader.readString());
+            case "model" -> resource.setModel(reader.readString());
+            case "greenEnergyType" -> resource.setGreenEnergyType(reader.readString());
+            case "country" -> resource.setCountry(reader.readString());
+            case "region" -> resource.setRegion(reader.readString());
+            case "city" -> resource.setCity(reader.readString());
+            case "availability" -> {
+                List<Availability> availability = new ArrayList<>();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    availability.add(AvailabilityBson.read(reader));
+                }
+                reader.readEndArray();
+                resource.setAvailability(availability);
+            }
+            case "kWh" -> resource.setKWh(readDouble(reader));
+            case "memberEmail" -> resource.setMemberEmail(reader.readString());
+            case "status" -> resource.setStatus(Resource.Status.valueOf(reader.readString()));
+            case "currentTaskId" -> resource.setCurrentTaskId(reader.readString());
+            case "version" -> resource.setVersion(readLong(reader));
+            case "lastStatusSequence" -> resource.setLastStatusSequence(readLong(reader));
+            case "changeSequence" -> resource.setChangeSequence(readLong(reader));
+            case "changedAt" -> resource.setChangedAt(Instant.ofEpochMilli(reader.readDateTime()));
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean decodeSpecific(BsonReader reader, String field, Resource resource) {
+        switch (resource) {
+            case ResourceCPU resourceCPU -> {
+                switch (field) {
+                    case "architecture" -> resourceCPU.setArchitecture(reader.readString());
+                    case "cores" -> resourceCPU.setCores((int) readLong(reader));
+                    case "threads" -> resourceCPU.setThreads((int) readLong(reader));
+                    case "baseFrequency" -> resourceCPU.setBaseFrequency(readDouble(reader));
+                    case "maxFrequency" -> resourceCPU.setMaxFrequency(readDouble(reader));
+                    case "cacheSize" -> resourceCPU.setCacheSize((int) readLong(reader));
+                    case "tdp" -> resourceCPU.setTdp(readDouble(reader));
+                    case "hyperThreading" -> resourceCPU.setHyperThreading(reader.readBoolean());
+                    case "overclockingSupport" -> resourceCPU.setOverclockingSupport(reader.readBoolean());
+                    case "singleCoreScore" -> resourceCPU.setSingleCoreScore(readDouble(reader));
+                    case "multicoreScore" -> resourceCPU.setMulticoreScore(readDouble(reader));
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            case ResourceGPU resourceGPU -> {
+                switch (field) {
+                    case "architecture" -> resourceGPU.setArchitecture(reader.readString());
+                    case "vramType" -> resourceGPU.setVramType(reader.readString());
+                    case "vramSize" -> resourceGPU.setVramSize((int) readLong(reader));
+                    case "coreClock" -> resourceGPU.setCoreClock(readDouble(reader));
+                    case "boostClock" -> resourceGPU.setBoostClock(readDouble(reader));
+                    case "memoryClock" -> resourceGPU.setMemoryClock(reader.readString());
+                    case "tdp" -> resourceGPU.setTdp(readDouble(reader));
+                    case "rayTracingSupport" -> resourceGPU.setRayTracingSupport(reader.readBoolean());
+                    case "dlssSupport" -> resourceGPU.setDlssSupport(reader.readBoolean());
+                    case "openclScore" -> resourceGPU.setOpenclScore(readDouble(reader));
+                    case "vulkanScore" -> resourceGPU.setVulkanScore(readDouble(reader));
+                    case "cudaScore" -> resourceGPU.setCudaScore(readDouble(reader));
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            case ResourceSoC resourceSoC -> {
+                switch (field) {
+                    case "architecture" -> resourceSoC.setArchitecture(reader.readString());
+                    case "cpuCores" -> resourceSoC.setCpuCores((int) readLong(reader));
+                    case "gpuCores" -> resourceSoC.setGpuCores((int) readLong(reader));
+                    case "cpuBaseFrequency" -> resourceSoC.setCpuBaseFrequency(readDouble(reader));
+                    case "cpuMaxFrequency" -> resourceSoC.setCpuMaxFrequency(readDouble(reader));
+                    case "gpuBaseFrequency" -> resourceSoC.setGpuBaseFrequency(readDouble(reader));
+                    case "gpuMaxFrequency" -> resourceSoC.setGpuMaxFrequency(readDouble(reader));
+                    case "tdp" -> resourceSoC.setTdp(readDouble(reader));
+                    case "singleCoreScore" -> resourceSoC.setSingleCoreScore(readDouble(reader));
+                    case "multicoreScore" -> resourceSoC.setMulticoreScore(readDouble(reader));
+                    case "openclScore" -> resourceSoC.setOpenclScore(readDouble(reader));
+                    case "vulkanScore" -> resourceSoC.setVulkanScore(readDouble(reader));
+                    case "cudaScore" -> resourceSoC.setCudaScore(readDouble(reader));
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String typeAlias(Resource resource) {
+        return switch (resource) {
+            case ResourceCPU ignored -> ResourceCPU.TYPE_ALIAS;
+            case ResourceGPU ignored -> ResourceGPU.TYPE_ALIAS;
+            case ResourceSoC ignored -> ResourceSoC.TYPE_ALIAS;
+            default -> throw new BsonSerializationException("Unsupported resource type: " + resource.getClass().getName());
+        };
+    }
+
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    /**
+     * Reads any numeric value as a double, since updates such as $inc may change the stored numeric type.
+     */
+    private static double readDouble(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            case DECIMAL128 -> reader.readDecimal128().doubleValue();
+            default -> reader.readDouble();
+        };
+    }
+
+    private static long readLong(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case DOUBLE -> (long) reader.readDouble();
+            case DECIMAL128 -> reader.readDecimal128().longValue();
+            default -> reader.readInt64();
+        };
+    }
+}
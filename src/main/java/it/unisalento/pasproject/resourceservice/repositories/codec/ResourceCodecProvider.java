@@ -0,0 +1,22 @@
+package it.unisalento.pasproject.resourceservice.repositories.codec;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * The ResourceCodecProvider class provides the ResourceCodec for Resource and each of its subclasses.
+ */
+public class ResourceCodecProvider implements CodecProvider {
+    private final ResourceCodec resourceCodec = new ResourceCodec();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (Resource.class.isAssignableFrom(clazz)) {
+            return (Codec<T>) resourceCodec;
+        }
+        return null;
+    }
+}
@@ -54,14 +54,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authorizationHeader = request.getHeader("Authorization");
 
         String username = null;
-        String jwt = null;
         String role = null;
+        VerifiedClaims claims = null;
 
         try {
             if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-                jwt = authorizationHeader.substring(7);
-                username = jwtUtilities.extractUsername(jwt);
-                role = jwtUtilities.extractRole(jwt);
+                // Parse and verify the token once, every later check works on the verified claims
+                claims = jwtUtilities.verify(authorizationHeader.substring(7));
+                username = claims.getSubject();
+                role = claims.getRole();
             } else {
                 throw new AccessDeniedException("Missing token");
             }
@@ -71,7 +72,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
 
         if (username != null && role != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetailsDTO user = this.userCheckService.loadUserByUsername(username);
+            // In trusted-claims mode the verified claims are enough, only the revocation list is checked
+            UserDetailsDTO user = this.userCheckService.isTrustedClaimsMode()
+                    ? this.userCheckService.loadUserFromClaims(claims)
+                    : this.userCheckService.loadUserByUsername(username);
 
             String userEmail;
             String userRole;
@@ -94,7 +98,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     .authorities(userRole) // Set roles or authorities from the UserDetailsDTO
                     .build();
 
-            if (jwtUtilities.validateToken(jwt, userDetails, userRole) && userCheckService.isEnable(userEnabled)) {
+            if (jwtUtilities.validateToken(claims, userDetails, userRole) && userCheckService.isEnable(userEnabled)) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 usernamePasswordAuthenticationToken
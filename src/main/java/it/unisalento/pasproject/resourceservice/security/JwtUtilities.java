@@ -1,32 +1,68 @@
 package it.unisalento.pasproject.resourceservice.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
 /**
  * The JwtUtilities class provides utility methods for handling JSON Web Tokens (JWTs).
  * It includes methods for extracting claims from a token, validating a token, and checking if a token is expired.
+ * Tokens are parsed and verified once by {@link #verify(String)}; the result is cached until the token expires,
+ * so repeated requests with the same bearer token do not repeat the signature check.
  */
 @Service
 public class JwtUtilities {
-    private final Key key;
+    /**
+     * The parser used to verify JWTs. It is immutable and thread-safe, so it is built only once.
+     */
+    private final JwtParser parser;
+
+    /**
+     * The verified claims of the recently seen tokens, keyed by the SHA-256 hash of the token.
+     */
+    private final Map<String, VerifiedClaims> verifiedTokens = new ConcurrentHashMap<>();
+
+    /**
+     * The hashes of the cached tokens in insertion order. Tokens are issued with the same lifetime,
+     * so the oldest entry is the first to expire and eviction only needs to look at the head.
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The maximum number of verified tokens kept in the cache.
+     */
+    private final int maxCachedTokens;
 
     /**
      * The key used for signing JWTs.
      */
     @Autowired
-    public JwtUtilities(SecurityConstants securityConstants) {
-        key = Keys.hmacShaKeyFor(securityConstants.getJWT_SECRET().getBytes());
+    public JwtUtilities(SecurityConstants securityConstants, @Value("${security.jwt.cache.max-entries:10000}") int maxCachedTokens) {
+        Key key = Keys.hmacShaKeyFor(securityConstants.getJWT_SECRET().getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.maxCachedTokens = maxCachedTokens;
     }
 
     /**
@@ -34,17 +70,48 @@ public class JwtUtilities {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtUtilities.class);
 
+    /**
+     * Verifies the given JWT and returns its claims.
+     * The signature is checked only the first time a token is seen; later calls are served from the cache
+     * until the token expires.
+     * @param token the JWT
+     * @return the verified claims
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, has an invalid signature, is expired or has no expiration
+     */
+    public VerifiedClaims verify(String token) {
+        final String tokenHash = hash(token);
+        final long now = System.currentTimeMillis();
+
+        VerifiedClaims cached = verifiedTokens.get(tokenHash);
+        if (cached != null && !cached.isExpired(now)) {
+            return cached;
+        }
+
+        // An expired token fails the parsing below; its entry is left to the eviction of the cache
+        final Claims claims = extractAllClaims(token);
+
+        if (claims.getExpiration() == null) {
+            throw new MalformedJwtException("Token has no expiration");
+        }
+
+        VerifiedClaims verified = new VerifiedClaims(claims.getSubject(), claims.get("role", String.class), claims.getExpiration());
+
+        cache(tokenHash, verified, now);
+
+        return verified;
+    }
+
     /**
      * Extracts the username from the given JWT.
      * @param token the JWT
      * @return the username
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).getSubject();
     }
 
     public String extractRole(String token) {
-        return extractClaim(token, claims -> claims.get("role", String.class));
+        return verify(token).getRole();
     }
 
     /**
@@ -53,11 +120,12 @@ public class JwtUtilities {
      * @return the expiration date
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verify(token).getExpiration();
     }
 
     /**
      * Extracts a claim from the given JWT using the provided claims' resolver.
+     * Unlike the other extractors this always parses the token, so it should be used only for uncommon claims.
      * @param token the JWT
      * @param claimsResolver the claims resolver
      * @return the claim
@@ -73,31 +141,79 @@ public class JwtUtilities {
      * @return the claims
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
-     * Checks if the given JWT is expired.
+     * Validates the given JWT against the provided UserDetails.
      * @param token the JWT
-     * @return true if the JWT is expired, false otherwise
+     * @param userDetails the UserDetails
+     * @return true if the JWT is valid, false otherwise
      */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public Boolean validateToken(String token, UserDetails userDetails, String role) {
+        return validateToken(verify(token), userDetails, role);
     }
 
     /**
-     * Validates the given JWT against the provided UserDetails.
-     * @param token the JWT
+     * Validates already verified claims against the provided UserDetails.
+     * @param claims the verified claims of the JWT
      * @param userDetails the UserDetails
-     * @return true if the JWT is valid, false otherwise
+     * @param role the expected role
+     * @return true if the claims are valid, false otherwise
      */
-    public Boolean validateToken(String token, UserDetails userDetails, String role) {
-        final String username = extractUsername(token);
-        final String tokenRole = extractRole(token);
-        return (username.equals(userDetails.getUsername()) && tokenRole.equalsIgnoreCase(role)  && !isTokenExpired(token));
+    public Boolean validateToken(VerifiedClaims claims, UserDetails userDetails, String role) {
+        return claims.getSubject() != null
+                && claims.getSubject().equals(userDetails.getUsername())
+                && claims.getRole() != null
+                && claims.getRole().equalsIgnoreCase(role)
+                && !claims.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Stores verified claims in the cache. When the cache is full the expired entries at the head of the
+     * insertion order are dropped; if the oldest entry is still valid the token is simply not cached.
+     * @param tokenHash the hash of the token
+     * @param verified the verified claims
+     * @param now the current time in epoch millis
+     */
+    private void cache(String tokenHash, VerifiedClaims verified, long now) {
+        while (verifiedTokens.size() >= maxCachedTokens) {
+            String oldest = insertionOrder.peek();
+
+            if (oldest == null) {
+                break;
+            }
+
+            VerifiedClaims claims = verifiedTokens.get(oldest);
+
+            if (claims != null && !claims.isExpired(now)) {
+                LOGGER.debug("Verified token cache is full, token not cached");
+                return;
+            }
+
+            // The entry is at the head, so removing it does not scan the queue
+            if (insertionOrder.remove(oldest) && claims != null) {
+                verifiedTokens.remove(oldest, claims);
+            }
+        }
+
+        // A concurrent request may have cached the same token meanwhile
+        if (verifiedTokens.putIfAbsent(tokenHash, verified) == null) {
+            insertionOrder.add(tokenHash);
+        }
+    }
+
+    /**
+     * Hashes a token so that raw bearer tokens are never kept in memory as map keys.
+     * @param token the JWT
+     * @return the Base64 encoded SHA-256 hash of the token
+     */
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
@@ -0,0 +1,57 @@
+package it.unisalento.pasproject.resourceservice.security;
+
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The VerifiedClaims class is an immutable view of the claims of a JWT whose signature has already been verified.
+ * It includes the subject, the role and the expiration date of the token.
+ */
+@Getter
+public final class VerifiedClaims {
+    /**
+     * The subject (email) of the token.
+     */
+    private final String subject;
+
+    /**
+     * The role claim of the token.
+     */
+    private final String role;
+
+    /**
+     * The expiration date of the token, kept as epoch millis to avoid sharing a mutable Date.
+     */
+    private final long expirationMillis;
+
+    /**
+     * Constructor for the VerifiedClaims.
+     * @param subject the subject of the token
+     * @param role the role claim of the token
+     * @param expiration the expiration date of the token, required since tokens without expiration are not accepted
+     */
+    public VerifiedClaims(String subject, String role, Date expiration) {
+        this.subject = subject;
+        this.role = role;
+        this.expirationMillis = Objects.requireNonNull(expiration, "expiration").getTime();
+    }
+
+    /**
+     * Returns a copy of the expiration date of the token.
+     * @return the expiration date
+     */
+    public Date getExpiration() {
+        return new Date(expirationMillis);
+    }
+
+    /**
+     * Checks if the token is expired at the given instant.
+     * @param nowMillis the current time in epoch millis
+     * @return true if the token is expired, false otherwise
+     */
+    public boolean isExpired(long nowMillis) {
+        return expirationMillis <= nowMillis;
+    }
+}
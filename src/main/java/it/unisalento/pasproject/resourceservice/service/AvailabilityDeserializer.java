@@ -1,65 +1,209 @@
 package it.unisalento.pasproject.resourceservice.service;
 
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidAvailabilityException;
 
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.DayOfWeek;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
+/**
+ * The AvailabilityDeserializer class reads an availability list straight from the parser tokens, without building a tree.
+ * In the same pass it validates every interval, rejects overlapping intervals and merges adjacent ones of the same day.
+ * Errors are reported as InvalidAvailabilityException with the location of the offending value.
+ * It is used both by the REST DTOs and by the AMQP messages, for JSON as well as CBOR payloads.
+ */
 public class AvailabilityDeserializer extends JsonDeserializer<List<Availability>> {
+    /**
+     * Intervals must start and end on a boundary of this many minutes.
+     */
+    private static final int AVAILABILITY_SLOT_MINUTES = 30;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * A parsed interval, kept with its position in the input for error reporting.
+     */
+    private record Slot(int index, DayOfWeek dayOfWeek, int startMinute, int endMinute, JsonLocation location) {
+    }
+
     @Override
     public List<Availability> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        var treeNode = p.getCodec().readTree(p);
-        var availabilityList = new ArrayList<Availability>();
+        if (!p.isExpectedStartArrayToken()) {
+            throw new InvalidAvailabilityException(p, "Availability must be an array of intervals.", p.currentTokenLocation());
+        }
+
+        List<Slot> slots = new ArrayList<>();
 
-        if (treeNode instanceof ArrayNode arrayNode) {
-            for (JsonNode node : arrayNode) {
-                var availability = deserializeAvailability(node);
-                availabilityList.add(availability);
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new InvalidAvailabilityException(p, "Availability entry %d must be an object.".formatted(slots.size()), p.currentTokenLocation());
             }
+
+            slots.add(readSlot(p, slots.size()));
         }
 
-        return availabilityList;
+        return normalize(p, slots);
     }
 
-    private Availability deserializeAvailability(JsonNode node) {
-        var availability = new Availability();
+    private Slot readSlot(JsonParser p, int index) throws IOException {
+        JsonLocation location = p.currentTokenLocation();
+
+        DayOfWeek dayOfWeek = null;
+        LocalTime startTime = null;
+        LocalTime endTime = null;
 
-        availability.setDayOfWeek(deserializeDayOfWeek(node));
-        availability.setStartTime(deserializeStartTime(node));
-        availability.setEndTime(deserializeEndTime(node));
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+
+            switch (field) {
+                case "dayOfWeek" -> dayOfWeek = readDayOfWeek(p, index);
+                case "startTime" -> startTime = readTime(p, index, field);
+                case "endTime" -> endTime = readTime(p, index, field);
+                default -> p.skipChildren();
+            }
+        }
+
+        if (dayOfWeek == null || startTime == null || endTime == null) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d must have dayOfWeek, startTime and endTime.".formatted(index), location);
+        }
+
+        if (!isOnSlotBoundary(startTime) || !isOnSlotBoundary(endTime)) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d: startTime and endTime must be on a %d minute boundary."
+                    .formatted(index, AVAILABILITY_SLOT_MINUTES), location);
+        }
+
+        int startMinute = startTime.toSecondOfDay() / 60;
+        // An interval ending at midnight runs until the end of the day
+        int endMinute = endTime.equals(LocalTime.MIDNIGHT) ? MINUTES_PER_DAY : endTime.toSecondOfDay() / 60;
+
+        if (endMinute <= startMinute) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d: endTime must be after startTime.".formatted(index), location);
+        }
+
+        return new Slot(index, dayOfWeek, startMinute, endMinute, location);
+    }
 
-        return availability;
+    /**
+     * Checks that a time has no seconds nor nanos, which the minute of the day would silently drop, and falls on a slot boundary.
+     */
+    private static boolean isOnSlotBoundary(LocalTime time) {
+        return time.getSecond() == 0 && time.getNano() == 0 && time.getMinute() % AVAILABILITY_SLOT_MINUTES == 0;
     }
 
-    private DayOfWeek deserializeDayOfWeek(JsonNode node) {
-        var dayOfWeekString = node.get("dayOfWeek").asText();
-        if (!dayOfWeekString.isEmpty()) {
-            return DayOfWeek.valueOf(dayOfWeekString.toUpperCase());
+    private DayOfWeek readDayOfWeek(JsonParser p, int index) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        String value = p.getValueAsString();
+
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return DayOfWeek.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d: invalid dayOfWeek '%s'.".formatted(index, value), p.currentTokenLocation());
         }
-        return null;
     }
 
-    private LocalTime deserializeStartTime(JsonNode node) {
-        var startTimeString = node.get("startTime").asText();
-        if (!startTimeString.isEmpty()) {
-            return LocalTime.parse(startTimeString);
+    /**
+     * Reads a time written either as an ISO string ("09:30") or as a [hour, minute, second, nano] array,
+     * which is how time values are written when dates are serialized as timestamps.
+     */
+    private LocalTime readTime(JsonParser p, int index, String field) throws IOException {
+        JsonLocation location = p.currentTokenLocation();
+
+        try {
+            switch (p.currentToken()) {
+                case VALUE_NULL -> {
+                    return null;
+                }
+                case VALUE_STRING -> {
+                    String value = p.getText();
+                    return value.isEmpty() ? null : LocalTime.parse(value);
+                }
+                case START_ARRAY -> {
+                    int[] parts = new int[4];
+                    int count = 0;
+
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (count == parts.length || p.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+                            throw new InvalidAvailabilityException(p, "Availability entry %d: invalid %s.".formatted(index, field), location);
+                        }
+                        parts[count++] = p.getIntValue();
+                    }
+
+                    if (count < 2) {
+                        throw new InvalidAvailabilityException(p, "Availability entry %d: invalid %s.".formatted(index, field), location);
+                    }
+
+                    return LocalTime.of(parts[0], parts[1], parts[2], parts[3]);
+                }
+                default -> throw new InvalidAvailabilityException(p, "Availability entry %d: invalid %s.".formatted(index, field), location);
+            }
+        } catch (DateTimeParseException e) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d: invalid %s '%s'.".formatted(index, field, e.getParsedString()), location);
+        } catch (DateTimeException e) {
+            throw new InvalidAvailabilityException(p, "Availability entry %d: invalid %s.".formatted(index, field), location);
         }
-        return null;
     }
 
-    private LocalTime deserializeEndTime(JsonNode node) {
-        var endTimeString = node.get("endTime").asText();
-        if (!endTimeString.isEmpty()) {
-            return LocalTime.parse(endTimeString);
+    /**
+     * Sorts the intervals by day and start time, rejects overlaps and merges intervals that touch.
+     */
+    private List<Availability> normalize(JsonParser p, List<Slot> slots) throws InvalidAvailabilityException {
+        slots.sort(Comparator.comparing(Slot::dayOfWeek).thenComparingInt(Slot::startMinute));
+
+        List<Availability> availabilityList = new ArrayList<>(slots.size());
+        Slot previous = null;
+        Availability current = null;
+        int currentEnd = 0;
+
+        for (Slot slot : slots) {
+            if (previous != null && slot.dayOfWeek() == previous.dayOfWeek()) {
+                if (slot.startMinute() < currentEnd) {
+                    throw new InvalidAvailabilityException(p, "Availability entry %d overlaps entry %d on %s."
+                            .formatted(slot.index(), previous.index(), slot.dayOfWeek()), slot.location());
+                }
+
+                if (slot.startMinute() == currentEnd) {
+                    currentEnd = slot.endMinute();
+                    current.setEndTime(toTime(currentEnd));
+                    previous = slot;
+                    continue;
+                }
+            }
+
+            current = new Availability();
+            current.setDayOfWeek(slot.dayOfWeek());
+            current.setStartTime(toTime(slot.startMinute()));
+            current.setEndTime(toTime(slot.endMinute()));
+            availabilityList.add(current);
+
+            currentEnd = slot.endMinute();
+            previous = slot;
         }
-        return null;
+
+        return availabilityList;
+    }
+
+    private static LocalTime toTime(int minuteOfDay) {
+        return minuteOfDay == MINUTES_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.ofSecondOfDay(minuteOfDay * 60L);
     }
 }
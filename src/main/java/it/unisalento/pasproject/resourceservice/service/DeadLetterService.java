@@ -0,0 +1,195 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import it.unisalento.pasproject.resourceservice.dto.DeadLetterDTO;
+import it.unisalento.pasproject.resourceservice.dto.DeadLetterListDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The DeadLetterService class provides methods for inspecting and replaying the dead letter queues.
+ * Messages are read with basic.get on a single channel: inspected messages are returned to the queue,
+ * replayed messages are republished on the resource data exchange with their original routing key and acked once
+ * the broker confirms the republish.
+ */
+@Service
+public class DeadLetterService {
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.exchange.data.name}")
+    private String dataExchange;
+
+    @Value("${rabbitmq.queue.resourceassignment.dlq.name}")
+    private String resourceAssignmentDeadLetterQueue;
+
+    @Value("${rabbitmq.queue.resourcedeallocation.dlq.name}")
+    private String resourceUsageDeadLetterQueue;
+
+    @Value("${rabbitmq.queue.resourcesnapshot.dlq.name}")
+    private String resourceSnapshotDeadLetterQueue;
+
+    @Value("${rabbitmq.deadletter.max-batch}")
+    private int maxBatch;
+
+    @Value("${rabbitmq.deadletter.confirm-timeout-ms}")
+    private long confirmTimeout;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterService.class);
+
+    /**
+     * Constructor for the DeadLetterService.
+     * @param rabbitTemplate The RabbitTemplate to be used for reading and republishing the messages.
+     */
+    @Autowired
+    public DeadLetterService(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * Reads the messages at the head of a dead letter queue and returns them to the queue.
+     * @param queue The dead letter queue: assignment, deallocation or snapshot.
+     * @param limit The maximum number of messages to read.
+     * @return The content of the queue.
+     */
+    public DeadLetterListDTO inspect(String queue, int limit) {
+        String queueName = resolveQueue(queue);
+
+        return rabbitTemplate.execute(channel -> {
+            DeadLetterListDTO deadLetterListDTO = new DeadLetterListDTO();
+            deadLetterListDTO.setQueue(queueName);
+            deadLetterListDTO.setMessageCount(channel.messageCount(queueName));
+
+            long lastDeliveryTag = -1;
+
+            try {
+                for (int i = 0; i < Math.min(limit, maxBatch); i++) {
+                    GetResponse response = channel.basicGet(queueName, false);
+
+                    if (response == null) {
+                        break;
+                    }
+
+                    lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                    deadLetterListDTO.getMessages().add(getDeadLetterDTO(response));
+                }
+            } finally {
+                if (lastDeliveryTag >= 0) {
+                    channel.basicNack(lastDeliveryTag, true, true);
+                }
+            }
+
+            return deadLetterListDTO;
+        });
+    }
+
+    /**
+     * Republishes the messages at the head of a dead letter queue on the resource data exchange.
+     * The messages are acked only once the broker confirms all the republishes, otherwise they are returned to the
+     * queue, so a failure may replay a message twice but never lose it.
+     * @param queue The dead letter queue: assignment, deallocation or snapshot.
+     * @param limit The maximum number of messages to replay.
+     * @return The number of replayed messages.
+     * @throws AmqpException if the broker does not confirm the republishes.
+     */
+    public int replay(String queue, int limit) {
+        String queueName = resolveQueue(queue);
+
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            int count = 0;
+            long lastDeliveryTag = -1;
+            boolean confirmed = false;
+
+            // The cached channel stays in confirm mode, which only makes the broker confirm its later publishes too
+            channel.confirmSelect();
+
+            try {
+                for (int i = 0; i < Math.min(limit, maxBatch); i++) {
+                    GetResponse response = channel.basicGet(queueName, false);
+
+                    if (response == null) {
+                        break;
+                    }
+
+                    channel.basicPublish(dataExchange, response.getEnvelope().getRoutingKey(), response.getProps(), response.getBody());
+                    lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                    count++;
+                }
+
+                confirmed = count == 0 || channel.waitForConfirms(confirmTimeout);
+            } catch (TimeoutException e) {
+                LOGGER.error("Republish of {} messages from {} not confirmed in time", count, queueName);
+            } finally {
+                if (lastDeliveryTag >= 0) {
+                    if (confirmed) {
+                        channel.basicAck(lastDeliveryTag, true);
+                    } else {
+                        channel.basicNack(lastDeliveryTag, true, true);
+                    }
+                }
+            }
+
+            if (!confirmed) {
+                throw new AmqpException("Cannot replay " + count + " messages from " + queueName + ": the broker did not confirm them");
+            }
+
+            return count;
+        });
+
+        LOGGER.info("Replayed {} messages from {}", replayed, queueName);
+
+        return replayed != null ? replayed : 0;
+    }
+
+    private String resolveQueue(String queue) {
+        return switch (queue) {
+            case "assignment" -> resourceAssignmentDeadLetterQueue;
+            case "deallocation" -> resourceUsageDeadLetterQueue;
+            case "snapshot" -> resourceSnapshotDeadLetterQueue;
+            default -> throw new ResourceNotFoundException("Dead letter queue not found: " + queue + ".");
+        };
+    }
+
+    private DeadLetterDTO getDeadLetterDTO(GetResponse response) {
+        DeadLetterDTO deadLetterDTO = new DeadLetterDTO();
+        AMQP.BasicProperties properties = response.getProps();
+
+        deadLetterDTO.setRoutingKey(response.getEnvelope().getRoutingKey());
+        deadLetterDTO.setContentType(properties.getContentType());
+
+        if (properties.getContentType() != null && properties.getContentType().startsWith(MessageProperties.CONTENT_TYPE_JSON)) {
+            deadLetterDTO.setPayload(new String(response.getBody(), StandardCharsets.UTF_8));
+        } else {
+            deadLetterDTO.setPayload(Base64.getEncoder().encodeToString(response.getBody()));
+        }
+
+        // The first x-death entry describes the latest dead-lettering
+        if (properties.getHeaders() != null && properties.getHeaders().get("x-death") instanceof List<?> deaths
+                && !deaths.isEmpty() && deaths.getFirst() instanceof Map<?, ?> death) {
+            deadLetterDTO.setReason(String.valueOf(death.get("reason")));
+            if (death.get("count") instanceof Number count) {
+                deadLetterDTO.setCount(count.longValue());
+            }
+        } else if (properties.getHeaders() != null && properties.getHeaders().get(RepublishMessageRecoverer.X_EXCEPTION_MESSAGE) != null) {
+            // Republished by the status listeners, whose queues have no dead letter exchange
+            deadLetterDTO.setReason(String.valueOf(properties.getHeaders().get(RepublishMessageRecoverer.X_EXCEPTION_MESSAGE)));
+        }
+
+        return deadLetterDTO;
+    }
+}
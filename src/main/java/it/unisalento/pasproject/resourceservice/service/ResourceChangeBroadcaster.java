@@ -0,0 +1,273 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceChangeMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.AsyncConsumerRestartedEvent;
+import org.springframework.amqp.rabbit.listener.AsyncConsumerStartedEvent;
+import org.springframework.amqp.rabbit.listener.AsyncConsumerStoppedEvent;
+import org.springframework.amqp.rabbit.listener.ListenerContainerConsumerFailedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ResourceChangeBroadcaster class shares the ResourceChangedEvents between the instances.
+ * Local changes are announced on the resource changes exchange; changes announced by the other instances
+ * are published again here as remote ResourceChangedEvents, so caches and change counters of every instance see every write.
+ * Local changes are announced by a background thread, so a write never waits for the broker: the changes pending
+ * while it publishes are folded by resource, and the ones it fails to publish are retried until the instance stops.
+ * The announcements are received on an anonymous queue, which is lost with the connection: the ResourceChangeTracker
+ * only answers from memory while its consumer is running.
+ */
+@Service
+public class ResourceChangeBroadcaster implements SmartLifecycle {
+    private static final String LISTENER_ID = "resourceChangesListener";
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final MessageProducer messageProducer;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final ResourceChangeTracker resourceChangeTracker;
+
+    /**
+     * The changes not announced yet, by resource id in the order they were first seen; guarded by itself.
+     */
+    private final Map<String, ResourceChangeMessageDTO> pending = new LinkedHashMap<>();
+
+    private Thread announcer;
+
+    private volatile boolean running;
+
+    @Value("${rabbitmq.exchange.resourcechanges.name}")
+    private String resourceChangesExchange;
+
+    @Value("${resource.changes.announce-retry-interval-ms:1000}")
+    private long retryInterval;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceChangeBroadcaster.class);
+
+    @Autowired
+    public ResourceChangeBroadcaster(MessageProducer messageProducer, ApplicationEventPublisher applicationEventPublisher,
+                                     ResourceChangeTracker resourceChangeTracker, ConnectionFactory connectionFactory) {
+        this.messageProducer = messageProducer;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.resourceChangeTracker = resourceChangeTracker;
+
+        // The consumer is restarted only after the recovery interval, changes are missed from the moment the connection is lost
+        connectionFactory.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onCreate(Connection connection) {
+            }
+
+            @Override
+            public void onShutDown(ShutdownSignalException signal) {
+                resourceChangeTracker.stopTracking();
+            }
+        });
+    }
+
+    /**
+     * Queues the announcement of a local change to the other instances.
+     * Before the announcer starts and after it stops, the change is announced right away.
+     * @param event The change.
+     */
+    @EventListener
+    public void onResourceChanged(ResourceChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+
+        ResourceMessageDTO.Status previousStatus = event.getPreviousStatus() != null ? ResourceMessageDTO.Status.valueOf(event.getPreviousStatus().name()) : null;
+        ResourceMessageDTO.Status status = event.getStatus() != null ? ResourceMessageDTO.Status.valueOf(event.getStatus().name()) : null;
+        ResourceChangeMessageDTO message = new ResourceChangeMessageDTO(instanceId, event.getResourceId(), previousStatus, status);
+
+        synchronized (pending) {
+            if (running) {
+                pending.merge(event.getResourceId(), message, ResourceChangeBroadcaster::foldChanges);
+                pending.notifyAll();
+                return;
+            }
+        }
+
+        try {
+            messageProducer.sendMessage(message, "", resourceChangesExchange);
+        } catch (Exception e) {
+            LOGGER.error("Cannot announce change of resource {}: {}", event.getResourceId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Folds two changes of the same resource, the second one made after the first one.
+     * @param first The earlier change.
+     * @param second The later change.
+     * @return A change from the status before the first one to the status after the second one.
+     */
+    static ResourceChangeMessageDTO foldChanges(ResourceChangeMessageDTO first, ResourceChangeMessageDTO second) {
+        return new ResourceChangeMessageDTO(second.getInstanceId(), second.getResourceId(), first.getPreviousStatus(),
+                second.getStatus() != null ? second.getStatus() : first.getStatus());
+    }
+
+    private void announce() {
+        while (true) {
+            List<ResourceChangeMessageDTO> batch;
+
+            synchronized (pending) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            int sent = 0;
+            try {
+                for (ResourceChangeMessageDTO message : batch) {
+                    messageProducer.sendMessage(message, "", resourceChangesExchange);
+                    sent++;
+                }
+            } catch (Exception e) {
+                List<ResourceChangeMessageDTO> unsent = batch.subList(sent, batch.size());
+
+                if (!running) {
+                    LOGGER.error("Cannot announce {} resource changes while stopping: {}", unsent.size(), e.getMessage());
+                    return;
+                }
+
+                LOGGER.error("Cannot announce {} resource changes, retrying: {}", unsent.size(), e.getMessage());
+                requeue(unsent);
+
+                try {
+                    Thread.sleep(retryInterval);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts unsent changes back, folded before the changes made since they were taken.
+     */
+    private void requeue(List<ResourceChangeMessageDTO> unsent) {
+        synchronized (pending) {
+            Map<String, ResourceChangeMessageDTO> newer = new LinkedHashMap<>(pending);
+            pending.clear();
+
+            for (ResourceChangeMessageDTO message : unsent) {
+                pending.put(message.getResourceId(), message);
+            }
+
+            newer.forEach((id, message) -> pending.merge(id, message, ResourceChangeBroadcaster::foldChanges));
+        }
+    }
+
+    /**
+     * Receives a change announced by an instance, this one included.
+     * @param message The received message.
+     */
+    @RabbitListener(id = LISTENER_ID, queues = "#{resourceChangesQueue.name}")
+    public void receiveResourceChangeMessage(ResourceChangeMessageDTO message) {
+        if (message.getInstanceId() == null || instanceId.equals(message.getInstanceId())) {
+            return;
+        }
+
+        Resource.Status previousStatus = message.getPreviousStatus() != null ? Resource.Status.valueOf(message.getPreviousStatus().name()) : null;
+        Resource.Status status = message.getStatus() != null ? Resource.Status.valueOf(message.getStatus().name()) : null;
+
+        applicationEventPublisher.publishEvent(new ResourceChangedEvent(this, message.getResourceId(), previousStatus, status, true));
+    }
+
+    /**
+     * Lets the tracker answer from memory once the consumer of the announcements is running.
+     * @param event The start of a consumer.
+     */
+    @EventListener
+    public void onConsumerStarted(AsyncConsumerStartedEvent event) {
+        if (isChangesListener(event.getSource())) {
+            resourceChangeTracker.startTracking();
+        }
+    }
+
+    /**
+     * Stops the tracker from answering from memory when the consumer of the announcements fails, restarts or stops.
+     * @param event The failure.
+     */
+    @EventListener({ListenerContainerConsumerFailedEvent.class, AsyncConsumerRestartedEvent.class, AsyncConsumerStoppedEvent.class})
+    public void onConsumerInterrupted(ApplicationEvent event) {
+        if (isChangesListener(event.getSource())) {
+            LOGGER.warn("Resource change announcements interrupted, conditional requests are not answered from memory");
+            resourceChangeTracker.stopTracking();
+        }
+    }
+
+    private static boolean isChangesListener(Object source) {
+        return source instanceof AbstractMessageListenerContainer container && LISTENER_ID.equals(container.getListenerId());
+    }
+
+    @Override
+    public void start() {
+        synchronized (pending) {
+            running = true;
+        }
+
+        announcer = Thread.ofPlatform().name("resource-change-announcer").daemon(true).start(this::announce);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (pending) {
+            if (!running) {
+                return;
+            }
+
+            // The announcer is not interrupted, so the pending changes are announced before it exits
+            running = false;
+            pending.notifyAll();
+        }
+
+        try {
+            announcer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
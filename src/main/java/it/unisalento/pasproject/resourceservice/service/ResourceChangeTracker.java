@@ -0,0 +1,149 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ResourceChangeTracker class computes the ETags of the resource reads without reading or serializing the resources.
+ * A single resource is tagged with its id and version; the versions read by this instance are remembered until the resource changes,
+ * so a conditional request can be answered from memory.
+ * A list is tagged with a counter of the changes seen by this instance, local and remote, prefixed by an epoch
+ * that differs between instances and restarts, since their counters are unrelated.
+ * Tags are only answered from memory while the ResourceChangeBroadcaster is receiving the remote changes: when announcements
+ * may be missed, tracking stops and list reads are not tagged. Known versions are also remembered for at most the version
+ * time-to-live, as a bound on how long a resource is served from memory.
+ */
+@Service
+public class ResourceChangeTracker {
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * A version remembered until the resource changes or the time-to-live expires.
+     */
+    private record KnownVersion(long version, long expiresAt) {
+    }
+
+    private final Map<String, KnownVersion> knownVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Whether remote changes are being received; nothing is answered from memory otherwise.
+     */
+    private volatile boolean tracking;
+
+    @Value("${resource.etag.version-ttl-ms:30000}")
+    private long versionTtlMillis;
+
+    /**
+     * Returns the number of changes seen so far, to be read before querying the resources a tag is computed for.
+     * @return the change count
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns the ETag of a resource whose current version is known without reading it.
+     * @param id the id of the resource
+     * @return the ETag, or null if the current version is not known
+     */
+    public String getResourceTag(String id) {
+        Long version = getKnownVersion(id);
+        return version != null ? resourceTag(id, version) : null;
+    }
+
+    /**
+     * Returns the current version of a resource, if it is known without reading it.
+     * @param id the id of the resource
+     * @return the version, or null if it is not known
+     */
+    public Long getKnownVersion(String id) {
+        KnownVersion known = tracking ? knownVersions.get(id) : null;
+
+        if (known == null) {
+            return null;
+        }
+
+        if (known.expiresAt() <= System.currentTimeMillis()) {
+            knownVersions.remove(id, known);
+            return null;
+        }
+
+        return known.version();
+    }
+
+    /**
+     * Remembers the version of a resource just read, unless a change was seen since the read started.
+     * @param id the id of the resource
+     * @param version the version read
+     * @param changeCountBefore the change count before the read
+     * @return the ETag of the resource read
+     */
+    public String recordVersion(String id, long version, long changeCountBefore) {
+        if (tracking) {
+            KnownVersion known = new KnownVersion(version, System.currentTimeMillis() + versionTtlMillis);
+
+            // Atomic with the removal in onResourceChanged, so a version older than a seen change is never remembered
+            knownVersions.compute(id, (key, current) -> changeCount.get() == changeCountBefore ? known : current);
+        }
+
+        return resourceTag(id, version);
+    }
+
+    /**
+     * Returns the ETag of a list, which changes with every change seen by this instance.
+     * @param changeCountBefore the change count before the list is queried
+     * @param key the key of the list, such as its query string
+     * @return the ETag, or null if remote changes are not being received
+     */
+    public String getListTag(long changeCountBefore, String key) {
+        if (!tracking) {
+            return null;
+        }
+
+        return "\"" + epoch + "-" + changeCountBefore + "-" + Integer.toHexString(key != null ? key.hashCode() : 0) + "\"";
+    }
+
+    /**
+     * Starts answering from memory, once remote changes are being received.
+     * Whatever was remembered before may have missed changes, so it is forgotten.
+     */
+    public void startTracking() {
+        forget();
+        tracking = true;
+    }
+
+    /**
+     * Stops answering from memory, when remote changes may be missed.
+     */
+    public void stopTracking() {
+        tracking = false;
+        forget();
+    }
+
+    private void forget() {
+        // Reads in progress see the change and do not remember what they read
+        changeCount.incrementAndGet();
+        knownVersions.clear();
+    }
+
+    private static String resourceTag(String id, long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    @EventListener
+    public void onResourceChanged(ResourceChangedEvent event) {
+        changeCount.incrementAndGet();
+
+        if (event.getResourceId() != null) {
+            knownVersions.remove(event.getResourceId());
+        }
+    }
+}
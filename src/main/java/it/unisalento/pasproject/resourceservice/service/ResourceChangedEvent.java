@@ -0,0 +1,49 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * The ResourceChangedEvent class is published inside the application after a resource has been written,
+ * by the REST updates as well as by the status messages.
+ * Changes made by other instances are published again here as remote events.
+ */
+@Getter
+public class ResourceChangedEvent extends ApplicationEvent {
+    /**
+     * The id of the changed resource.
+     */
+    private final String resourceId;
+
+    /**
+     * The status of the resource before the change, or null if it is not known.
+     */
+    private final Resource.Status previousStatus;
+
+    /**
+     * The status of the resource after the change, or null if the change did not set it.
+     */
+    private final Resource.Status status;
+
+    /**
+     * Whether the change was made by another instance.
+     */
+    private final boolean remote;
+
+    public ResourceChangedEvent(Object source, String resourceId, Resource.Status status) {
+        this(source, resourceId, null, status, false);
+    }
+
+    public ResourceChangedEvent(Object source, String resourceId, Resource.Status previousStatus, Resource.Status status) {
+        this(source, resourceId, previousStatus, status, false);
+    }
+
+    public ResourceChangedEvent(Object source, String resourceId, Resource.Status previousStatus, Resource.Status status, boolean remote) {
+        super(source);
+        this.resourceId = resourceId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+        this.remote = remote;
+    }
+}
@@ -0,0 +1,102 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceChangesDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidChangeTokenException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceChangeSequence;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ResourceChangesService class serves the delta sync of the catalog: the resources whose change sequence is greater than a token.
+ * The sequence is assigned before the write, so a write may become visible after a greater one.
+ * The returned token is therefore the greatest sequence among the changes older than the settle window, whose smaller sequences
+ * have had the time to be written; newer changes are returned as well, and again on the next request.
+ * Each entry is the current state of the resource, which mirrors replace by id, so receiving one twice is harmless.
+ */
+@Service
+public class ResourceChangesService {
+    private final ResourceRepository resourceRepository;
+
+    private final ResourceService resourceService;
+
+    @Value("${resource.changes.page-size:1000}")
+    private int pageSize;
+
+    @Value("${resource.changes.settle-ms:5000}")
+    private long settleMillis;
+
+    @Autowired
+    public ResourceChangesService(ResourceRepository resourceRepository, ResourceService resourceService) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+    }
+
+    /**
+     * Returns the resources changed since a token, oldest change first.
+     * @param since the token of the previous request, or null for a full sync
+     * @return a page of changes with the next token
+     * @throws InvalidChangeTokenException if the token is not valid
+     */
+    public ResourceChangesDTO getChanges(String since) {
+        long sequence = parseToken(since);
+
+        Query query = new Query(Criteria.where(ResourceChangeSequence.SEQUENCE_FIELD).gt(sequence))
+                .with(Sort.by(ResourceChangeSequence.SEQUENCE_FIELD))
+                .limit(pageSize + 1);
+
+        List<Resource> resources = resourceRepository.findByQuery(query);
+        boolean fullPage = resources.size() > pageSize;
+
+        if (fullPage) {
+            resources = resources.subList(0, pageSize);
+        }
+
+        Instant settled = Instant.now().minusMillis(settleMillis);
+        long token = sequence;
+        List<ResourceDTO> list = new ArrayList<>(resources.size());
+
+        for (Resource resource : resources) {
+            if (resource.getChangedAt() == null || !resource.getChangedAt().isAfter(settled)) {
+                token = resource.getChangeSequence();
+            }
+            list.add(resourceService.getResourceDTO(resource));
+        }
+
+        ResourceChangesDTO resourceChangesDTO = new ResourceChangesDTO();
+        resourceChangesDTO.setResourcesList(list);
+        resourceChangesDTO.setToken(Long.toString(token));
+        // A page whose token did not move would be returned again, so the client waits instead of asking for it right away
+        resourceChangesDTO.setHasMore(fullPage && token > sequence);
+
+        return resourceChangesDTO;
+    }
+
+    private static long parseToken(String token) {
+        if (token == null || token.isBlank()) {
+            return 0;
+        }
+
+        try {
+            long sequence = Long.parseLong(token);
+
+            if (sequence >= 0) {
+                return sequence;
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below
+        }
+
+        throw new InvalidChangeTokenException("Invalid change token: " + token + ".");
+    }
+}
@@ -0,0 +1,148 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidFieldException;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * The ResourceFieldsSerializer class writes sparse fieldsets of the resources: only the requested ResourceDTO properties are written,
+ * and only the stored fields they come from are read from MongoDB.
+ * id and type are always included, since clients need the type to deserialize the polymorphic ResourceDTO.
+ */
+@Service
+public class ResourceFieldsSerializer {
+    private static final Set<String> REQUIRED_FIELDS = Set.of("id", "type");
+
+    /**
+     * The ResourceDTO properties, of any resource type.
+     */
+    private static final Set<String> FIELDS = Set.of(
+            "id", "name", "type", "brand", "model", "greenEnergyType", "country", "region", "city", "availability", "kwh",
+            "memberEmail", "status", "currentTaskId",
+            "architecture", "cores", "threads", "baseFrequency", "maxFrequency", "cacheSize", "tdp", "hyperThreading",
+            "overclockingSupport", "singleCoreScore", "multicoreScore",
+            "vramType", "vramSize", "coreClock", "boostClock", "memoryClock", "rayTracingSupport", "dlssSupport",
+            "openclScore", "vulkanScore", "cudaScore",
+            "cpuCores", "gpuCores", "cpuBaseFrequency", "cpuMaxFrequency", "gpuBaseFrequency", "gpuMaxFrequency");
+
+    /**
+     * The properties stored under another field; brand and model are derived from the name as in ResourceMapper.
+     */
+    private static final Map<String, String> STORED_FIELDS = Map.of("id", "_id", "kwh", "kWh", "brand", "name", "model", "name");
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter objectWriter;
+
+    private final ResourceService resourceService;
+
+    @Autowired
+    public ResourceFieldsSerializer(ObjectMapper objectMapper, ResourceService resourceService) {
+        this.objectMapper = objectMapper;
+        // Resources are written into one generator, which is flushed once at the end
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.resourceService = resourceService;
+    }
+
+    /**
+     * Validates the requested fields.
+     * @param fields the requested ResourceDTO properties
+     * @return the properties to write, or null if all of them are to be written
+     * @throws InvalidFieldException if a property does not exist
+     */
+    public static Set<String> parseFields(Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+
+        Set<String> parsed = new HashSet<>(REQUIRED_FIELDS);
+
+        for (String field : fields) {
+            String name = field.trim();
+
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            if (!FIELDS.contains(name)) {
+                throw new InvalidFieldException("Unknown resource field: " + name + ".");
+            }
+
+            parsed.add(name);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Returns the stored fields to project to read the given properties, the type discriminator included.
+     * @param fields the properties, as returned by parseFields
+     * @return the stored field names
+     */
+    public static String[] getStoredFields(Set<String> fields) {
+        Set<String> stored = new HashSet<>();
+        stored.add(ResourceCodec.TYPE_FIELD);
+
+        for (String field : fields) {
+            stored.add(STORED_FIELDS.getOrDefault(field, field));
+        }
+
+        return stored.toArray(new String[0]);
+    }
+
+    /**
+     * Writes resources as a ResourceListDTO holding only the given properties.
+     * @param resources the resources, possibly read with the projection of getStoredFields
+     * @param fields the properties, as returned by parseFields
+     * @param outputStream the stream to write to, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeResourceList(List<Resource> resources, Set<String> fields, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            // Only the top-level properties of each resource are filtered, their values are written whole
+            JsonGenerator filtered = new FilteringGeneratorDelegate(generator, new PropertyFilter(fields),
+                    TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("resourcesList");
+
+            for (Resource resource : resources) {
+                objectWriter.writeValue(filtered, resourceService.getResourceDTO(resource));
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Includes the listed properties of the root object.
+     */
+    private static final class PropertyFilter extends TokenFilter {
+        private final Set<String> properties;
+
+        private PropertyFilter(Set<String> properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return properties.contains(name) ? TokenFilter.INCLUDE_ALL : null;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ResourceJsonCache class keeps the serialized ResourceDTO JSON of each resource, keyed by id and version.
+ * A cached fragment is only served for the version it was built from, and the fragments of a resource are dropped
+ * as soon as a ResourceChangedEvent reports a write, so list responses can be assembled by copying bytes.
+ * The cache is bounded: when full, the least recently used fragment is evicted.
+ */
+@Service
+public class ResourceJsonCache {
+    private static final byte[] LIST_START = "{\"resourcesList\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] LIST_END = "]}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * A serialized resource with the version it was serialized from.
+     */
+    private record Entry(long version, byte[] json) {
+    }
+
+    /**
+     * The fragments in access order, guarded by the lock since a lookup reorders them.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final Lock lock = new ReentrantLock();
+
+    private final ResourceService resourceService;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${resource.listing.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Autowired
+    public ResourceJsonCache(ResourceService resourceService, ObjectMapper objectMapper) {
+        this.resourceService = resourceService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the ResourceDTO JSON of a resource, serializing it only if the cached one is missing or of another version.
+     * @param resource the resource
+     * @return the JSON bytes, which must not be modified
+     */
+    public byte[] getJson(Resource resource) {
+        Entry entry = get(resource.getId());
+
+        if (entry != null && entry.version() == resource.getVersion()) {
+            return entry.json();
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(resourceService.getResourceDTO(resource));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        lock.lock();
+        try {
+            // A concurrent lookup may have cached a newer version meanwhile
+            entries.merge(resource.getId(), new Entry(resource.getVersion(), json),
+                    (current, next) -> next.version() >= current.version() ? next : current);
+        } finally {
+            lock.unlock();
+        }
+
+        return json;
+    }
+
+    /**
+     * Returns the cached ResourceDTO JSON of a resource, without reading the resource.
+     * @param id the id of the resource
+     * @param version the current version of the resource
+     * @return the JSON bytes, which must not be modified, or null if they are not cached for that version
+     */
+    public byte[] getCachedJson(String id, long version) {
+        Entry entry = get(id);
+        return entry != null && entry.version() == version ? entry.json() : null;
+    }
+
+    private Entry get(String id) {
+        lock.lock();
+        try {
+            return entries.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a list of resources as a ResourceListDTO, concatenating their cached JSON.
+     * @param resources the resources to write
+     * @param outputStream the stream to write to, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeResourceList(List<Resource> resources, OutputStream outputStream) throws IOException {
+        outputStream.write(LIST_START);
+
+        for (int i = 0; i < resources.size(); i++) {
+            if (i > 0) {
+                outputStream.write(',');
+            }
+            outputStream.write(getJson(resources.get(i)));
+        }
+
+        outputStream.write(LIST_END);
+    }
+
+    @EventListener
+    public void onResourceChanged(ResourceChangedEvent event) {
+        if (event.getResourceId() != null) {
+            lock.lock();
+            try {
+                entries.remove(event.getResourceId());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceFactory;
+import it.unisalento.pasproject.resourceservice.repositories.codec.AvailabilityBson;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ResourceJsonTranscoder class streams resource lists from MongoDB to JSON without building Resource or ResourceDTO objects.
+ * It reads RawBsonDocuments from the cursor and writes each field straight to a JsonGenerator, in the shape Jackson gives a ResourceDTO:
+ * _id becomes id, kWh becomes kwh, the availability is expanded from its compact encoding,
+ * brand and model are derived from the name as in ResourceMapper, and absent properties are written with their default value.
+ */
+@Service
+public class ResourceJsonTranscoder {
+    private enum Kind { STRING, INT, DOUBLE, BOOLEAN }
+
+    /**
+     * A ResourceDTO property, with the name of the stored field it comes from and its position in the seen-fields mask.
+     */
+    private record JsonField(String stored, String json, Kind kind, int index) {
+    }
+
+    private static final String[] COMMON_FIELDS = {
+            "id", "name", "type", "brand", "model", "greenEnergyType", "country", "region", "city", "availability", "memberEmail", "status", "currentTaskId"
+    };
+
+    private static final Map<ResourceFactory.ResourceType, Map<String, JsonField>> FIELDS = Map.of(
+            ResourceFactory.ResourceType.CPU, fields(
+                    "architecture", Kind.STRING, "cores", Kind.INT, "threads", Kind.INT, "baseFrequency", Kind.DOUBLE,
+                    "maxFrequency", Kind.DOUBLE, "cacheSize", Kind.INT, "tdp", Kind.DOUBLE, "hyperThreading", Kind.BOOLEAN,
+                    "overclockingSupport", Kind.BOOLEAN, "singleCoreScore", Kind.DOUBLE, "multicoreScore", Kind.DOUBLE),
+            ResourceFactory.ResourceType.GPU, fields(
+                    "architecture", Kind.STRING, "vramType", Kind.STRING, "vramSize", Kind.INT, "coreClock", Kind.DOUBLE,
+                    "boostClock", Kind.DOUBLE, "memoryClock", Kind.STRING, "tdp", Kind.DOUBLE, "rayTracingSupport", Kind.BOOLEAN,
+                    "dlssSupport", Kind.BOOLEAN, "openclScore", Kind.DOUBLE, "vulkanScore", Kind.DOUBLE, "cudaScore", Kind.DOUBLE),
+            ResourceFactory.ResourceType.SOC, fields(
+                    "architecture", Kind.STRING, "cpuCores", Kind.INT, "gpuCores", Kind.INT, "cpuBaseFrequency", Kind.DOUBLE,
+                    "cpuMaxFrequency", Kind.DOUBLE, "gpuBaseFrequency", Kind.DOUBLE, "gpuMaxFrequency", Kind.DOUBLE, "tdp", Kind.DOUBLE,
+                    "singleCoreScore", Kind.DOUBLE, "multicoreScore", Kind.DOUBLE, "openclScore", Kind.DOUBLE,
+                    "vulkanScore", Kind.DOUBLE, "cudaScore", Kind.DOUBLE)
+    );
+
+    /**
+     * The stored fields that are not part of a ResourceDTO.
+     */
+    private static final Bson PROJECTION = Projections.exclude("brand", "model", "version", "lastStatusSequence", "changeSequence", "changedAt");
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final QueryMapper queryMapper;
+
+    private final MongoPersistentEntity<?> resourceEntity;
+
+    @Autowired
+    public ResourceJsonTranscoder(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        this.resourceEntity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Resource.class);
+    }
+
+    /**
+     * Builds the field table of a resource type: the common properties first, then the specific ones given as name/kind pairs.
+     */
+    private static Map<String, JsonField> fields(Object... specific) {
+        Map<String, JsonField> fields = new HashMap<>();
+        int index = 0;
+
+        for (String name : COMMON_FIELDS) {
+            fields.put(name, new JsonField(name, name, Kind.STRING, index++));
+        }
+        // Stored as _id and kWh, serialized by Jackson as id and kwh
+        fields.put("_id", new JsonField("_id", "id", Kind.STRING, fields.remove("id").index()));
+        fields.put("kWh", new JsonField("kWh", "kwh", Kind.DOUBLE, index++));
+
+        for (int i = 0; i < specific.length; i += 2) {
+            String name = (String) specific[i];
+            fields.put(name, new JsonField(name, name, (Kind) specific[i + 1], index++));
+        }
+
+        return Map.copyOf(fields);
+    }
+
+    /**
+     * Writes the resources matching a query as a ResourceListDTO.
+     * @param query the query, as built by ResourceService
+     * @param outputStream the stream to write the JSON to, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeResourceList(Query query, OutputStream outputStream) throws IOException {
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), resourceEntity);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+             MongoCursor<RawBsonDocument> cursor = mongoTemplate.getCollection(resourceEntity.getCollection())
+                     .withDocumentClass(RawBsonDocument.class)
+                     .find(filter)
+                     .projection(PROJECTION)
+                     .iterator()) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("resourcesList");
+
+            while (cursor.hasNext()) {
+                try (BsonBinaryReader reader = new BsonBinaryReader(cursor.next().getByteBuffer().asNIO())) {
+                    writeResource(reader, generator);
+                }
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeResource(BsonReader reader, JsonGenerator generator) throws IOException {
+        Map<String, JsonField> fields = FIELDS.get(ResourceCodec.readType(reader));
+        long seen = 0;
+
+        generator.writeStartObject();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            JsonField field = fields.get(reader.readName());
+
+            if (field == null || reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (field.stored()) {
+                case "_id" -> generator.writeStringField(field.json(), reader.getCurrentBsonType() == BsonType.OBJECT_ID
+                        ? reader.readObjectId().toHexString() : reader.readString());
+                case "name" -> {
+                    String name = reader.readString();
+                    String[] brandAndModel = ResourceMapper.getBrandAndModel(name);
+
+                    generator.writeStringField("name", name);
+                    generator.writeStringField("brand", brandAndModel != null ? brandAndModel[0] : null);
+                    generator.writeStringField("model", brandAndModel != null ? brandAndModel[1] : null);
+                    seen |= bit(fields.get("brand")) | bit(fields.get("model"));
+                }
+                case "availability" -> writeAvailability(reader, generator);
+                default -> writeValue(reader, generator, field);
+            }
+
+            seen |= bit(field);
+        }
+        reader.readEndDocument();
+
+        for (JsonField field : fields.values()) {
+            if ((seen & bit(field)) == 0) {
+                writeDefault(generator, field);
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    private static long bit(JsonField field) {
+        return 1L << field.index();
+    }
+
+    private static void writeValue(BsonReader reader, JsonGenerator generator, JsonField field) throws IOException {
+        generator.writeFieldName(field.json());
+
+        switch (field.kind()) {
+            case STRING -> generator.writeString(reader.readString());
+            case BOOLEAN -> generator.writeBoolean(reader.readBoolean());
+            case INT -> generator.writeNumber(switch (reader.getCurrentBsonType()) {
+                case INT64 -> (int) reader.readInt64();
+                case DOUBLE -> (int) reader.readDouble();
+                default -> reader.readInt32();
+            });
+            case DOUBLE -> generator.writeNumber(switch (reader.getCurrentBsonType()) {
+                case INT32 -> reader.readInt32();
+                case INT64 -> reader.readInt64();
+                default -> reader.readDouble();
+            });
+        }
+    }
+
+    private static void writeDefault(JsonGenerator generator, JsonField field) throws IOException {
+        generator.writeFieldName(field.json());
+
+        switch (field.kind()) {
+            case STRING -> generator.writeNull();
+            case BOOLEAN -> generator.writeBoolean(false);
+            case INT -> generator.writeNumber(0);
+            case DOUBLE -> generator.writeNumber(0.0);
+        }
+    }
+
+    private static void writeAvailability(BsonReader reader, JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("availability");
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Availability availability = AvailabilityBson.read(reader);
+
+            generator.writeStartObject();
+            generator.writeStringField("dayOfWeek", availability.getDayOfWeek() != null ? availability.getDayOfWeek().name() : null);
+            generator.writeStringField("startTime", formatTime(availability.getStartTime()));
+            generator.writeStringField("endTime", formatTime(availability.getEndTime()));
+            generator.writeEndObject();
+        }
+        reader.readEndArray();
+
+        generator.writeEndArray();
+    }
+
+    private static String formatTime(LocalTime time) {
+        return time != null ? DateTimeFormatter.ISO_LOCAL_TIME.format(time) : null;
+    }
+}
@@ -0,0 +1,184 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceListDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidIdListException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The ResourceLookupService class holds the read path shared by the REST and AMQP queries.
+ * Lists of ids are resolved in one request: resources whose current version is known and cached are served from the ResourceJsonCache;
+ * the others are read with a single $in query. Results follow the order of the ids, with a marker for the ones not found:
+ * {@code {"resources":[{"id":"...","found":true,"resource":{...}},{"id":"...","found":false}]}}.
+ * Filtered lists are written as ResourceListDTOs for GET /find, GET /find/all and the AMQP queries.
+ */
+@Service
+public class ResourceLookupService {
+    private static final byte[] RESULTS_START = "{\"resources\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RESULTS_END = "]}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RESULT_START = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] FOUND = ",\"found\":true,\"resource\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] NOT_FOUND = ",\"found\":false}".getBytes(StandardCharsets.UTF_8);
+
+    private final ResourceRepository resourceRepository;
+
+    private final ResourceService resourceService;
+
+    private final ResourceJsonCache resourceJsonCache;
+
+    private final ResourceChangeTracker resourceChangeTracker;
+
+    private final ResourceJsonTranscoder resourceJsonTranscoder;
+
+    private final ResourceFieldsSerializer resourceFieldsSerializer;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${resource.lookup.max-ids:5000}")
+    private int maxIds;
+
+    @Value("${resource.listing.transcode.enabled:false}")
+    private boolean transcodeEnabled;
+
+    @Value("${resource.listing.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Autowired
+    public ResourceLookupService(ResourceRepository resourceRepository, ResourceService resourceService, ResourceJsonCache resourceJsonCache,
+                                 ResourceChangeTracker resourceChangeTracker, ResourceJsonTranscoder resourceJsonTranscoder,
+                                 ResourceFieldsSerializer resourceFieldsSerializer, ObjectMapper objectMapper) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+        this.resourceJsonCache = resourceJsonCache;
+        this.resourceChangeTracker = resourceChangeTracker;
+        this.resourceJsonTranscoder = resourceJsonTranscoder;
+        this.resourceFieldsSerializer = resourceFieldsSerializer;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the resources with the given ids, in the same order.
+     * @param ids the ids of the resources, possibly repeated
+     * @param outputStream the stream to write to, which is not closed
+     * @throws InvalidIdListException if the ids are missing, null or too many
+     * @throws IOException if writing fails
+     */
+    public void writeResources(List<String> ids, OutputStream outputStream) throws IOException {
+        if (ids == null || ids.contains(null)) {
+            throw new InvalidIdListException("The ids must be a list of non-null strings.");
+        }
+
+        if (ids.size() > maxIds) {
+            throw new InvalidIdListException("At most " + maxIds + " ids can be requested at once.");
+        }
+
+        Map<String, byte[]> jsonById = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+
+        for (String id : ids) {
+            if (jsonById.containsKey(id) || missing.contains(id)) {
+                continue;
+            }
+
+            byte[] json = null;
+
+            if (cacheEnabled) {
+                Long version = resourceChangeTracker.getKnownVersion(id);
+                json = version != null ? resourceJsonCache.getCachedJson(id, version) : null;
+            }
+
+            if (json != null) {
+                jsonById.put(id, json);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long changeCount = resourceChangeTracker.getChangeCount();
+
+            for (Resource resource : resourceRepository.findByIds(missing)) {
+                resourceChangeTracker.recordVersion(resource.getId(), resource.getVersion(), changeCount);
+                jsonById.put(resource.getId(), cacheEnabled
+                        ? resourceJsonCache.getJson(resource)
+                        : objectMapper.writeValueAsBytes(resourceService.getResourceDTO(resource)));
+            }
+        }
+
+        outputStream.write(RESULTS_START);
+
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            byte[] json = jsonById.get(id);
+
+            if (i > 0) {
+                outputStream.write(',');
+            }
+
+            outputStream.write(RESULT_START);
+            outputStream.write(objectMapper.writeValueAsBytes(id));
+
+            if (json != null) {
+                outputStream.write(FOUND);
+                outputStream.write(json);
+                outputStream.write('}');
+            } else {
+                outputStream.write(NOT_FOUND);
+            }
+        }
+
+        outputStream.write(RESULTS_END);
+    }
+
+    /**
+     * Writes the resources matching the filters as a ResourceListDTO, choosing the writer:
+     * sparse fieldsets first, then transcoding, then the JSON cache.
+     * @param resourceQueryFilters the filters
+     * @param outputStream the stream to write to, which is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeResourceList(ResourceQueryFilters resourceQueryFilters, OutputStream outputStream) throws IOException {
+        Set<String> fields = ResourceFieldsSerializer.parseFields(resourceQueryFilters.getFields());
+
+        if (fields != null) {
+            resourceFieldsSerializer.writeResourceList(resourceService.findResources(resourceQueryFilters), fields, outputStream);
+            return;
+        }
+
+        if (transcodeEnabled) {
+            resourceJsonTranscoder.writeResourceList(resourceService.getResourceQuery(resourceQueryFilters), outputStream);
+            return;
+        }
+
+        List<Resource> resources = resourceService.findResources(resourceQueryFilters);
+
+        if (cacheEnabled) {
+            resourceJsonCache.writeResourceList(resources, outputStream);
+            return;
+        }
+
+        ResourceListDTO resourceListDTO = new ResourceListDTO();
+        List<ResourceDTO> list = new ArrayList<>(resources.size());
+        resourceListDTO.setResourcesList(list);
+
+        for (Resource resource : resources) {
+            list.add(resourceService.getResourceDTO(resource));
+        }
+
+        outputStream.write(objectMapper.writeValueAsBytes(resourceListDTO));
+    }
+}
@@ -0,0 +1,159 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.domain.ResourceGPU;
+import it.unisalento.pasproject.resourceservice.domain.ResourceSoC;
+import it.unisalento.pasproject.resourceservice.dto.*;
+import org.mapstruct.*;
+
+/**
+ * The ResourceMapper class maps resources to and from their DTOs and messages.
+ * The implementation is generated at compile time by MapStruct as plain getter/setter calls per subtype,
+ * without reflection, boxing or intermediate objects.
+ * Update mappings skip null values of the DTO, so a partial DTO only changes the fields it carries.
+ * Brand and model are never copied, they are derived from the name.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE,
+        unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public abstract class ResourceMapper {
+
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    public abstract ResourceCpuDTO toResourceDTO(ResourceCPU resource);
+
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    public abstract ResourceGpuDTO toResourceDTO(ResourceGPU resource);
+
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    public abstract ResourceSoCDTO toResourceDTO(ResourceSoC resource);
+
+    /**
+     * Copies the fields of a DTO onto a resource, except the id, the version and the scores,
+     * which are assigned by the service.
+     * @param resourceDTO The source DTO.
+     * @param resource The resource to update.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastStatusSequence", ignore = true)
+    @Mapping(target = "singleCoreScore", ignore = true)
+    @Mapping(target = "multicoreScore", ignore = true)
+    public abstract void updateResource(ResourceCpuDTO resourceDTO, @MappingTarget ResourceCPU resource);
+
+    /**
+     * Copies the fields of a DTO onto a resource, except the id, the version and the scores,
+     * which are assigned by the service.
+     * @param resourceDTO The source DTO.
+     * @param resource The resource to update.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastStatusSequence", ignore = true)
+    @Mapping(target = "openclScore", ignore = true)
+    @Mapping(target = "vulkanScore", ignore = true)
+    @Mapping(target = "cudaScore", ignore = true)
+    public abstract void updateResource(ResourceGpuDTO resourceDTO, @MappingTarget ResourceGPU resource);
+
+    /**
+     * Copies the fields of a DTO onto a resource, except the id, the version and the scores,
+     * which are assigned by the service.
+     * @param resourceDTO The source DTO.
+     * @param resource The resource to update.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "brand", ignore = true)
+    @Mapping(target = "model", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastStatusSequence", ignore = true)
+    @Mapping(target = "singleCoreScore", ignore = true)
+    @Mapping(target = "multicoreScore", ignore = true)
+    @Mapping(target = "openclScore", ignore = true)
+    @Mapping(target = "vulkanScore", ignore = true)
+    @Mapping(target = "cudaScore", ignore = true)
+    public abstract void updateResource(ResourceSoCDTO resourceDTO, @MappingTarget ResourceSoC resource);
+
+    public abstract ResourceMessageDTO toResourceMessageDTO(ResourceCPU resource);
+
+    public abstract ResourceMessageDTO toResourceMessageDTO(ResourceGPU resource);
+
+    public abstract ResourceMessageDTO toResourceMessageDTO(ResourceSoC resource);
+
+    /**
+     * Derives the brand and model of a DTO from the name of its resource.
+     * @param resource The source resource.
+     * @param resourceDTO The mapped DTO.
+     */
+    @AfterMapping
+    protected void setDTOBrandAndModel(Resource resource, @MappingTarget ResourceDTO resourceDTO) {
+        String[] brandAndModel = getBrandAndModel(resource.getName());
+
+        if (brandAndModel != null) {
+            resourceDTO.setBrand(brandAndModel[0]);
+            resourceDTO.setModel(brandAndModel[1]);
+        }
+    }
+
+    /**
+     * Derives the brand and model shown in a DTO from the name of a resource.
+     * @param name The name of the resource.
+     * @return The brand and the model, or null if the name does not contain both.
+     */
+    public static String[] getBrandAndModel(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String[] parts = name.split(" ", 2);
+        if (parts.length < 2) {
+            return null;
+        }
+
+        return switch (parts[0]) {
+            case "Radeon" -> new String[] { "AMD", name };
+            case "GeForce" -> new String[] { "NVIDIA", name };
+            default -> parts;
+        };
+    }
+
+    /**
+     * Derives the brand and model of a resource from the name of the DTO, when the DTO carries one.
+     * @param resourceDTO The source DTO.
+     * @param resource The updated resource.
+     */
+    @AfterMapping
+    protected void setResourceBrandAndModel(ResourceDTO resourceDTO, @MappingTarget Resource resource) {
+        if (resourceDTO.getName() == null) {
+            return;
+        }
+
+        String[] parts = resourceDTO.getName().split(" ", 2);
+        if (parts.length >= 2) {
+            switch (parts[0]) {
+                case "Radeon" -> {
+                    resource.setBrand("AMD");
+                    resource.setModel(resourceDTO.getName());
+                }
+                case "GeForce" -> {
+                    resource.setBrand("NVIDIA");
+                    resource.setModel(resourceDTO.getName());
+                }
+                case "Arc", "Iris", "UHD" -> {
+                    resource.setBrand("Intel");
+                    resource.setModel(resourceDTO.getName());
+                }
+                default -> {
+                    resource.setBrand(parts[0]);
+                    resource.setModel(parts[1]);
+                }
+            }
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package it.unisalento.pasproject.resourceservice.service;
 
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.rabbitmq.client.Channel;
 import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchanger;
 import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
 import it.unisalento.pasproject.resourceservice.domain.Resource;
 import it.unisalento.pasproject.resourceservice.dto.*;
 import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceChangeSequence;
 import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
 
 /**
  * The ResourceMessageHandler class provides methods for handling messages related to resources.
@@ -25,6 +44,13 @@ public class ResourceMessageHandler {
     private final ResourceRepository resourceRepository;
     private final MessageProducer messageProducer;
     private final MessageExchanger messageExchanger;
+    private final MongoTemplate mongoTemplate;
+    private final MessageConverter messageConverter;
+    private final ResourceUpdateCoalescer resourceUpdateCoalescer;
+    private final ResourceStatusHistoryWriter resourceStatusHistoryWriter;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ResourceChangeSequence resourceChangeSequence;
+    private final MessageRecoverer statusDeadLetterRecoverer;
 
     @Value("${rabbitmq.exchange.data.name}")
     private String dataExchange;
@@ -44,12 +70,29 @@ public class ResourceMessageHandler {
      * Constructor for the ResourceMessageHandler.
      * @param resourceRepository The ResourceRepository to be used for accessing resource data.
      * @param messageProducer The MessageProducer to be used for sending messages.
+     * @param mongoTemplate The MongoTemplate to be used for bulk status updates.
+     * @param messageConverter The MessageConverter to be used for converting batched messages.
+     * @param resourceUpdateCoalescer The ResourceUpdateCoalescer to be used for publishing updates.
+     * @param resourceStatusHistoryWriter The ResourceStatusHistoryWriter to be used for recording the status transitions.
+     * @param applicationEventPublisher The publisher of the ResourceChangedEvents.
+     * @param resourceChangeSequence The ResourceChangeSequence to be used for sequencing the status updates.
+     * @param statusDeadLetterRecoverer The MessageRecoverer dead-lettering the rejected status messages.
      */
     @Autowired
-    public ResourceMessageHandler(ResourceRepository resourceRepository, MessageProducer messageProducer, MessageExchanger messageExchanger) {
+    public ResourceMessageHandler(ResourceRepository resourceRepository, MessageProducer messageProducer, MessageExchanger messageExchanger,
+                                  MongoTemplate mongoTemplate, MessageConverter messageConverter, ResourceUpdateCoalescer resourceUpdateCoalescer,
+                                  ResourceStatusHistoryWriter resourceStatusHistoryWriter, ApplicationEventPublisher applicationEventPublisher,
+                                  ResourceChangeSequence resourceChangeSequence, MessageRecoverer statusDeadLetterRecoverer) {
         this.resourceRepository = resourceRepository;
         this.messageProducer = messageProducer;
         this.messageExchanger = messageExchanger;
+        this.mongoTemplate = mongoTemplate;
+        this.messageConverter = messageConverter;
+        this.resourceUpdateCoalescer = resourceUpdateCoalescer;
+        this.resourceStatusHistoryWriter = resourceStatusHistoryWriter;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.resourceChangeSequence = resourceChangeSequence;
+        this.statusDeadLetterRecoverer = statusDeadLetterRecoverer;
     }
 
     /**
@@ -61,11 +104,12 @@ public class ResourceMessageHandler {
     }
 
     /**
-     * Sends an update resource message.
+     * Sends a resource delta message, carrying only the fields changed by an update.
+     * Deltas go through the coalescer, which merges the deltas of a resource within its window.
      * @param message The message to be sent.
      */
-    public void sendUpdateResourceMessage(ResourceMessageDTO message) {
-        messageProducer.sendMessage(message, newResourceTopic, dataExchange);
+    public void sendResourceDeltaMessage(ResourceDeltaDTO message) {
+        resourceUpdateCoalescer.submit(message);
     }
 
     public ScoreDTO requestResourceScore(ScoreMessageDTO message) {
@@ -73,53 +117,313 @@ public class ResourceMessageHandler {
     }
 
     /**
-     * Receives a resource assignment message.
-     * @param message The received message.
+     * Receives a batch of resource assignment messages.
+     * @param messages The received messages.
+     * @param channel The channel the messages were received on, used to acknowledge them.
+     * @throws IOException if a message cannot be acknowledged.
+     */
+    @RabbitListener(queues = "${rabbitmq.queue.resourceassignment.name}", containerFactory = "batchListenerContainerFactory",
+            autoStartup = "#{'${rabbitmq.sharding.enabled}' != 'true'}")
+    public void receiveResourceAssignmentMessage(List<Message> messages, Channel channel) throws IOException {
+        LOGGER.info("Received {} resource assignment messages", messages.size());
+        applyStatusMessages(messages, channel);
+    }
+
+    /**
+     * Receives a batch of resource usage messages.
+     * @param messages The received messages.
+     * @param channel The channel the messages were received on, used to acknowledge them.
+     * @throws IOException if a message cannot be acknowledged.
+     */
+    @RabbitListener(queues = "${rabbitmq.queue.resourcedeallocation.name}", containerFactory = "batchListenerContainerFactory",
+            autoStartup = "#{'${rabbitmq.sharding.enabled}' != 'true'}")
+    public void receiveResourceDeallocationMessage(List<Message> messages, Channel channel) throws IOException {
+        LOGGER.info("Received {} resource deallocation messages", messages.size());
+        applyStatusMessages(messages, channel);
+    }
+
+    /**
+     * Applies a batch of status messages with a single unordered bulk write.
+     * The messages of a resource are folded into one update: sequenced messages are whole states, so the one with the
+     * highest sequence wins; unsequenced messages only carry the fields they change, so they are folded in arrival order.
+     * Each write is conditional on changing the status or the task, so that no-op messages do not bump the version
+     * and the change sequence; a sequenced write is also conditional on the sequence being greater than the last applied
+     * one, so stale and duplicated messages match nothing. A sequenced message that changes nothing only advances the
+     * last applied sequence, with a second update that is exclusive with the first one.
+     * Messages that cannot be converted, that refer to an unknown resource or whose update fails are rejected without
+     * requeue and dead-lettered. If the bulk write fails as a whole nothing is acked and the exception is rethrown,
+     * so the batch is retried with backoff.
+     * The resources are read back only when some update may not have changed its resource, to tell applied changes
+     * from no-ops, stale messages and unknown resources by the change sequence assigned to each update.
+     * Every applied status change is recorded in the status history.
+     * It is also used by the shard containers of the sharded consumption mode.
+     * @param messages The received messages.
+     * @param channel The channel the messages were received on.
+     * @throws IOException if a message cannot be acknowledged.
      */
-    @RabbitListener(queues = "${rabbitmq.queue.resourceassignment.name}")
-    public void receiveResourceAssignmentMessage(ResourceMessageStatusDTO message) {
-        Optional<Resource> resource = resourceRepository.findById(message.getId());
+    public void applyStatusMessages(List<Message> messages, Channel channel) throws IOException {
+        Map<String, List<Message>> messagesById = new LinkedHashMap<>();
+        Map<String, ResourceMessageStatusDTO> latestById = new LinkedHashMap<>();
+        // Rejected only once the batch cannot be retried anymore, a retried batch would reject them twice
+        List<Message> malformed = new ArrayList<>();
 
-        if (resource.isEmpty()) {
-            throw new ResourceNotFoundException("Resource not found");
+        for (Message message : messages) {
+            ResourceMessageStatusDTO statusMessage = convertStatusMessage(message);
+
+            if (statusMessage == null || statusMessage.getId() == null) {
+                malformed.add(message);
+                continue;
+            }
+
+            latestById.merge(statusMessage.getId(), statusMessage, ResourceMessageHandler::foldStatusMessages);
+            messagesById.computeIfAbsent(statusMessage.getId(), id -> new ArrayList<>()).add(message);
+        }
+
+        if (latestById.isEmpty()) {
+            rejectMalformed(malformed, channel);
+            return;
         }
 
-        Resource retResource = resource.get();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Resource.class);
+        List<String> writtenIds = new ArrayList<>();
+        // The change sequence assigned to the update of each resource, telling whether it changed the resource
+        Map<String, Long> changeSequences = new HashMap<>();
+        // Whether the outcome of each update can be told from the matched count alone
+        boolean readBack = false;
+
+        // One block of change sequence values for the whole batch; unapplied updates leave gaps, which the delta sync skips
+        long changeSequence = resourceChangeSequence.allocate(latestById.size()) - latestById.size();
+        Instant changedAt = Instant.now();
+
+        for (ResourceMessageStatusDTO statusMessage : latestById.values()) {
+            String id = statusMessage.getId();
+            Resource.Status status = statusMessage.getStatus() != null ? Resource.Status.valueOf(statusMessage.getStatus().name()) : null;
+            List<Criteria> changes = new ArrayList<>();
+            List<Criteria> unchanged = new ArrayList<>();
+            Update update = new Update().inc("version", 1)
+                    .set(ResourceChangeSequence.SEQUENCE_FIELD, ++changeSequence)
+                    .set(ResourceChangeSequence.CHANGED_AT_FIELD, changedAt);
+
+            if (status != null) {
+                update.set("status", status);
+                changes.add(Criteria.where("status").ne(status));
+                unchanged.add(Criteria.where("status").is(status));
+            }
+
+            if (statusMessage.getCurrentTaskId() != null) {
+                update.set("currentTaskId", statusMessage.getCurrentTaskId());
+                changes.add(Criteria.where("currentTaskId").ne(statusMessage.getCurrentTaskId()));
+                unchanged.add(Criteria.where("currentTaskId").is(statusMessage.getCurrentTaskId()));
+            }
 
-        LOGGER.info("Received resource assignment message with status: " + message.getStatus());
+            if (statusMessage.getSequence() == null) {
+                if (changes.isEmpty()) {
+                    // Nothing to apply, acked as a no-op
+                    readBack = true;
+                    continue;
+                }
 
-        Optional.ofNullable(message.getStatus())
-                .map(Enum::name)
-                .map(Resource.Status::valueOf)
-                .ifPresent(retResource::setStatus);
-        Optional.ofNullable(message.getCurrentTaskId()).ifPresent(retResource::setCurrentTaskId);
+                bulkOperations.updateOne(Query.query(new Criteria().andOperator(
+                        Criteria.where("id").is(id),
+                        new Criteria().orOperator(changes))), update);
+            } else {
+                Criteria newer = new Criteria().orOperator(
+                        Criteria.where("lastStatusSequence").exists(false),
+                        Criteria.where("lastStatusSequence").lt(statusMessage.getSequence()));
 
-        resourceRepository.save(retResource);
+                update.set("lastStatusSequence", statusMessage.getSequence());
+
+                if (!changes.isEmpty()) {
+                    bulkOperations.updateOne(Query.query(new Criteria().andOperator(
+                            Criteria.where("id").is(id), newer,
+                            new Criteria().orOperator(changes))), update);
+                }
+
+                // Matches exactly when the update above does not, and after either one the sequence is not newer anymore
+                List<Criteria> noop = new ArrayList<>(List.of(Criteria.where("id").is(id), newer));
+                noop.addAll(unchanged);
+                bulkOperations.updateOne(Query.query(new Criteria().andOperator(noop)),
+                        new Update().set("lastStatusSequence", statusMessage.getSequence()));
+                readBack = true;
+            }
+
+            writtenIds.add(id);
+            changeSequences.put(id, changeSequence);
+        }
+
+        Set<String> failedIds = new HashSet<>();
+        BulkOperationException writeFailure = null;
+        long matched = 0;
+
+        if (!writtenIds.isEmpty()) {
+            try {
+                matched = bulkOperations.execute().getMatchedCount();
+            } catch (BulkOperationException e) {
+                // Unordered, so the write errors do not tell which operation of a resource failed; its messages are rejected
+                e.getErrors().forEach(error -> failedIds.add(operationId(writtenIds, latestById, error.getIndex())));
+                writeFailure = e;
+                matched = e.getResult().getMatchedCount();
+                LOGGER.error("Bulk status update failed for {} of {} resources", failedIds.size(), writtenIds.size());
+                readBack = true;
+            } catch (DataAccessException e) {
+                LOGGER.error("Bulk status update failed: {}", e.getMessage());
+                throw e;
+            }
+        }
+
+        rejectMalformed(malformed, channel);
+
+        // Only read when the matched count does not tell that every update changed its resource
+        Map<String, Long> applied = readBack || matched < writtenIds.size()
+                ? findChangeSequences(latestById.keySet())
+                : null;
+
+        for (ResourceMessageStatusDTO statusMessage : latestById.values()) {
+            String id = statusMessage.getId();
+            List<Message> idMessages = messagesById.get(id);
+
+            if (failedIds.contains(id)) {
+                reject(idMessages, channel, writeFailure);
+            } else if (applied != null && !applied.containsKey(id)) {
+                LOGGER.error("Resource {} not found, rejecting {} status messages", id, idMessages.size());
+                reject(idMessages, channel, new ResourceNotFoundException("Resource not found: " + id + "."));
+            } else {
+                // The update changed the resource if the resource now has the change sequence assigned to it
+                if (changeSequences.containsKey(id) && (applied == null || changeSequences.get(id).equals(applied.get(id)))) {
+                    recordStatus(statusMessage, idMessages.getLast());
+                    applicationEventPublisher.publishEvent(new ResourceChangedEvent(this, id, statusMessage.getStatus() != null
+                            ? Resource.Status.valueOf(statusMessage.getStatus().name()) : null));
+                }
+
+                ack(idMessages, channel);
+            }
+        }
     }
 
     /**
-     * Receives a resource usage message.
-     * @param message The received message.
+     * Folds two status messages of the same resource, the second one received after the first one.
+     * Two sequenced messages are whole states, so the one with the higher sequence wins. Otherwise the fields of the
+     * second message override the ones of the first, and the fields it does not carry are kept, with the highest sequence.
+     * @param current The message folded so far.
+     * @param next The message received after it.
+     * @return The folded message.
      */
-    @RabbitListener(queues = "${rabbitmq.queue.resourcedeallocation.name}")
-    public void receiveResourceDeallocationMessage(ResourceMessageStatusDTO message) {
-        Optional<Resource> resource = resourceRepository.findById(message.getId());
+    static ResourceMessageStatusDTO foldStatusMessages(ResourceMessageStatusDTO current, ResourceMessageStatusDTO next) {
+        if (current.getSequence() != null && next.getSequence() != null) {
+            return next.getSequence() > current.getSequence() ? next : current;
+        }
+
+        ResourceMessageStatusDTO folded = new ResourceMessageStatusDTO();
+        folded.setId(next.getId());
+        folded.setStatus(next.getStatus() != null ? next.getStatus() : current.getStatus());
+        folded.setCurrentTaskId(next.getCurrentTaskId() != null ? next.getCurrentTaskId() : current.getCurrentTaskId());
+        folded.setSequence(current.getSequence() == null ? next.getSequence()
+                : next.getSequence() == null ? current.getSequence()
+                : Math.max(current.getSequence(), next.getSequence()));
+        return folded;
+    }
 
-        if (resource.isEmpty()) {
-            throw new ResourceNotFoundException("Resource not found");
+    /**
+     * Returns the resource id of an operation of the bulk write, which has one or two operations per resource.
+     */
+    private static String operationId(List<String> writtenIds, Map<String, ResourceMessageStatusDTO> latestById, int index) {
+        int operation = 0;
+
+        for (String id : writtenIds) {
+            ResourceMessageStatusDTO statusMessage = latestById.get(id);
+            boolean hasChanges = statusMessage.getStatus() != null || statusMessage.getCurrentTaskId() != null;
+            operation += statusMessage.getSequence() != null && hasChanges ? 2 : 1;
+
+            if (index < operation) {
+                return id;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Converts an AMQP message into a ResourceMessageStatusDTO.
+     * @param message The AMQP message.
+     * @return The converted message, or null if it cannot be converted.
+     */
+    private ResourceMessageStatusDTO convertStatusMessage(Message message) {
+        try {
+            message.getMessageProperties().setInferredArgumentType(ResourceMessageStatusDTO.class);
+            return messageConverter.fromMessage(message) instanceof ResourceMessageStatusDTO statusMessage ? statusMessage : null;
+        } catch (MessageConversionException e) {
+            LOGGER.error("Cannot convert status message: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records an applied status message in the status history.
+     * The member and the previous status are not known here, the history writer completes them asynchronously.
+     * @param statusMessage The applied status message.
+     * @param message The AMQP message, whose timestamp is the time of the transition when set.
+     */
+    private void recordStatus(ResourceMessageStatusDTO statusMessage, Message message) {
+        if (statusMessage.getStatus() == null) {
+            return;
+        }
+
+        Date timestamp = message.getMessageProperties().getTimestamp();
+
+        resourceStatusHistoryWriter.record(statusMessage.getId(), null, null,
+                Resource.Status.valueOf(statusMessage.getStatus().name()), statusMessage.getCurrentTaskId(),
+                timestamp != null ? timestamp.toInstant() : Instant.now());
+    }
+
+    /**
+     * Finds which of the given resource ids exist and their change sequence,
+     * with a single query that reads only these fields.
+     * @param ids The ids to look for.
+     * @return The change sequence of the existing resources, by id; null values for resources without one.
+     */
+    private Map<String, Long> findChangeSequences(Collection<String> ids) {
+        List<Object> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(ObjectId.isValid(id) ? new ObjectId(id) : id);
         }
 
-        Resource retResource = resource.get();
+        Map<String, Long> sequences = new HashMap<>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Resource.class))
+                .find(Filters.in("_id", keys))
+                .projection(Projections.include(ResourceChangeSequence.SEQUENCE_FIELD))
+                .forEach(document -> {
+                    Number sequence = document.get(ResourceChangeSequence.SEQUENCE_FIELD, Number.class);
+                    sequences.put(document.get("_id").toString(), sequence != null ? sequence.longValue() : null);
+                });
+
+        return sequences;
+    }
 
-        LOGGER.info("Received resource assignment message with status: " + message.getStatus());
+    private void rejectMalformed(List<Message> messages, Channel channel) throws IOException {
+        if (!messages.isEmpty()) {
+            LOGGER.error("Rejecting {} malformed status messages", messages.size());
+            reject(messages, channel, new MessageConversionException("Malformed status message"));
+        }
+    }
 
-        Optional.ofNullable(message.getStatus())
-                .map(Enum::name)
-                .map(Resource.Status::valueOf)
-                .ifPresent(retResource::setStatus);
+    private static long deliveryTag(Message message) {
+        return message.getMessageProperties().getDeliveryTag();
+    }
 
-        Optional.ofNullable(message.getCurrentTaskId()).ifPresent(retResource::setCurrentTaskId);
+    private static void ack(List<Message> messages, Channel channel) throws IOException {
+        for (Message message : messages) {
+            channel.basicAck(deliveryTag(message), false);
+        }
+    }
 
-        resourceRepository.save(retResource);
+    /**
+     * Rejects messages without requeue, after republishing them to the dead letter exchange if their queue has none.
+     * If they cannot be republished the exception is rethrown and they are left unacknowledged.
+     */
+    private void reject(List<Message> messages, Channel channel, Throwable cause) throws IOException {
+        for (Message message : messages) {
+            statusDeadLetterRecoverer.recover(message, cause);
+            channel.basicNack(deliveryTag(message), false, false);
+        }
     }
 }
@@ -4,6 +4,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Getter
 @Setter
@@ -25,4 +26,6 @@ public class ResourceQueryFilters {
     private Double kWh;
     private String memberEmail;
     private Status status;
+    // ResourceDTO properties to return, all of them if empty
+    private Set<String> fields;
 }
@@ -0,0 +1,117 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unisalento.pasproject.resourceservice.dto.ResourceQueryDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceQueryRequestDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.global.CustomErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ResourceQueryHandler class answers the resource queries that internal services send over AMQP,
+ * so they can read the catalog without going through HTTP and the per-request authentication.
+ * A request carries several queries; the reply is {@code {"results":[...]}} with one result per query, in the same order,
+ * each being the body GET /find or POST /find/ids would return, or {@code {"error":"..."}} if the query is invalid or fails.
+ * A failed query does not fail the others, nor leave the request without a reply.
+ * Results are produced by the ResourceLookupService, with the same caches as the REST endpoints.
+ */
+@Service
+public class ResourceQueryHandler {
+    private static final byte[] RESULTS_START = "{\"results\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RESULTS_END = "]}".getBytes(StandardCharsets.UTF_8);
+
+    private final ResourceLookupService resourceLookupService;
+
+    private final ObjectMapper objectMapper;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceQueryHandler.class);
+
+    /**
+     * Constructor for the ResourceQueryHandler.
+     * @param resourceLookupService The ResourceLookupService to be used for answering the queries.
+     * @param objectMapper The ObjectMapper to be used for writing the errors.
+     */
+    @Autowired
+    public ResourceQueryHandler(ResourceLookupService resourceLookupService, ObjectMapper objectMapper) {
+        this.resourceLookupService = resourceLookupService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Receives a batch of queries and replies with their results.
+     * The reply is built as JSON bytes, so cached resources are copied without being serialized again.
+     * @param request The queries.
+     * @return The reply message.
+     */
+    @RabbitListener(queues = "${rabbitmq.queue.resourcequery.name}")
+    public Message receiveQueryRequest(ResourceQueryRequestDTO request) {
+        List<ResourceQueryDTO> queries = request.getQueries() != null ? request.getQueries() : List.of();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        try {
+            body.write(RESULTS_START);
+
+            for (int i = 0; i < queries.size(); i++) {
+                if (i > 0) {
+                    body.write(',');
+                }
+                writeResult(queries.get(i), body);
+            }
+
+            body.write(RESULTS_END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setContentEncoding(StandardCharsets.UTF_8.name());
+
+        return new Message(body.toByteArray(), messageProperties);
+    }
+
+    private void writeResult(ResourceQueryDTO query, ByteArrayOutputStream body) throws IOException {
+        // Each result is buffered on its own, so a failed query does not leave a partial result in the reply
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try {
+            if (query == null || (query.getIds() == null && query.getFilters() == null)) {
+                writeError("A query needs ids or filters.", body);
+                return;
+            }
+
+            if (query.getIds() != null) {
+                resourceLookupService.writeResources(query.getIds(), result);
+            } else {
+                resourceLookupService.writeResourceList(query.getFilters(), result);
+            }
+        } catch (CustomErrorException e) {
+            LOGGER.error("Invalid resource query: {}", e.getMessage());
+            writeError(e.getMessage(), body);
+            return;
+        } catch (RuntimeException e) {
+            LOGGER.error("Resource query failed", e);
+            writeError("The query could not be answered.", body);
+            return;
+        }
+
+        result.writeTo(body);
+    }
+
+    private void writeError(String message, ByteArrayOutputStream body) throws IOException {
+        body.write(objectMapper.writeValueAsBytes(Map.of("error", message)));
+    }
+}
@@ -2,21 +2,24 @@ package it.unisalento.pasproject.resourceservice.service;
 
 import it.unisalento.pasproject.resourceservice.domain.*;
 import it.unisalento.pasproject.resourceservice.dto.*;
-import it.unisalento.pasproject.resourceservice.exceptions.BadFormatAvailabilityException;
 import it.unisalento.pasproject.resourceservice.exceptions.ResourceStatusUpdateException;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceVersionConflictException;
 import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import it.unisalento.pasproject.resourceservice.repositories.codec.AvailabilityBson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * The ResourceService class provides methods for managing resources.
@@ -26,9 +29,12 @@ import java.util.Optional;
 @Service
 public class ResourceService {
     //TODO: Vedere se fino alla fine inglobare il Metal
-    private final MongoTemplate mongoTemplate;
+    /**
+     * Attempts of a status update whose resource is changed meanwhile by a status message.
+     */
+    private static final int STATUS_UPDATE_ATTEMPTS = 3;
 
-    private final ResourceDTOFactory resourceDTOFactory;
+    private final MongoTemplate mongoTemplate;
 
     private final ResourceFactory resourceFactory;
 
@@ -36,112 +42,31 @@ public class ResourceService {
 
     private final ResourceRepository resourceRepository;
 
-    private static final int AVAILABILITY_TRESHOLD = 30;
+    private final ResourceStatusHistoryWriter resourceStatusHistoryWriter;
+
+    private final ResourceMapper resourceMapper;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourceService.class);
 
     /**
      * Constructor for the ResourceService.
      * @param mongoTemplate The MongoTemplate to be used for MongoDB operations.
+     * @param resourceMapper The generated ResourceMapper to be used for converting resources to and from DTOs.
+     * @param applicationEventPublisher The publisher of the ResourceChangedEvents.
      */
     @Autowired
-    public ResourceService(MongoTemplate mongoTemplate, ResourceMessageHandler resourceMessageHandler, ResourceRepository resourceRepository) {
+    public ResourceService(MongoTemplate mongoTemplate, ResourceMessageHandler resourceMessageHandler, ResourceRepository resourceRepository,
+                           ResourceStatusHistoryWriter resourceStatusHistoryWriter, ResourceMapper resourceMapper,
+                           ApplicationEventPublisher applicationEventPublisher) {
         this.resourceFactory = new ResourceFactory();
-        this.resourceDTOFactory = new ResourceDTOFactory();
         this.mongoTemplate = mongoTemplate;
         this.resourceMessageHandler = resourceMessageHandler;
         this.resourceRepository = resourceRepository;
-    }
-
-    private void setBrandAndModel(Resource resource, String name) {
-        String[] parts = name.split(" ", 2);
-        if (parts.length >= 2) {
-            switch (parts[0]) {
-                case "Radeon" -> {
-                    resource.setBrand("AMD");
-                    resource.setModel(name);
-                }
-                case "GeForce" -> {
-                    resource.setBrand("NVIDIA");
-                    resource.setModel(name);
-                }
-                case "Arc", "Iris", "UHD" -> {
-                    resource.setBrand("Intel");
-                    resource.setModel(name);
-                }
-                default -> {
-                    resource.setBrand(parts[0]);
-                    resource.setModel(parts[1]);
-                }
-            }
-        }
-    }
-
-    private void setBrandAndModel(ResourceDTO resourceDTO, String name) {
-        String[] parts = name.split(" ", 2);
-        if (parts.length >= 2) {
-            switch (parts[0]) {
-                case "Radeon" -> {
-                    resourceDTO.setBrand("AMD");
-                    resourceDTO.setModel(name);
-                }
-                case "GeForce" -> {
-                    resourceDTO.setBrand("NVIDIA");
-                    resourceDTO.setModel(name);
-                }
-                default -> {
-                    resourceDTO.setBrand(parts[0]);
-                    resourceDTO.setModel(parts[1]);
-                }
-            }
-        }
-    }
-
-    public Resource setCommonAttributes(Resource resource, ResourceDTO resourceDTO) {
-        Optional.ofNullable(resourceDTO.getName()).ifPresent(name -> {
-            resource.setName(name);
-            setBrandAndModel(resource, name);
-        });
-        Optional.ofNullable(resourceDTO.getType()).ifPresent(resource::setType);
-        Optional.ofNullable(resourceDTO.getGreenEnergyType()).ifPresent(resource::setGreenEnergyType);
-        Optional.ofNullable(resourceDTO.getCountry()).ifPresent(resource::setCountry);
-        Optional.ofNullable(resourceDTO.getRegion()).ifPresent(resource::setRegion);
-        Optional.ofNullable(resourceDTO.getCity()).ifPresent(resource::setCity);
-        checkTimeDifference(resourceDTO.getAvailability());
-        Optional.ofNullable(resourceDTO.getAvailability()).ifPresent(resource::setAvailability);
-        Optional.of(resourceDTO.getKWh()).ifPresent(resource::setKWh);
-        Optional.ofNullable(resourceDTO.getMemberEmail()).ifPresent(resource::setMemberEmail);
-        Optional.ofNullable(resourceDTO.getStatus())
-                .map(Enum::name)
-                .map(Resource.Status::valueOf)
-                .ifPresent(resource::setStatus);
-        Optional.ofNullable(resourceDTO.getCurrentTaskId()).ifPresent(resource::setCurrentTaskId);
-
-        return resource;
-    }
-
-    public ResourceDTO setCommonAttributes(ResourceDTO resourceDTO, Resource resource) {
-        Optional.ofNullable(resource.getId()).ifPresent(resourceDTO::setId);
-        Optional.ofNullable(resource.getName()).ifPresent(name -> {
-            resourceDTO.setName(name);
-            setBrandAndModel(resourceDTO, name);
-        });
-        Optional.ofNullable(resource.getType()).ifPresent(resourceDTO::setType);
-        Optional.ofNullable(resource.getGreenEnergyType()).ifPresent(resourceDTO::setGreenEnergyType);
-        Optional.ofNullable(resource.getCountry()).ifPresent(resourceDTO::setCountry);
-        Optional.ofNullable(resource.getRegion()).ifPresent(resourceDTO::setRegion);
-        Optional.ofNullable(resource.getCity()).ifPresent(resourceDTO::setCity);
-        checkTimeDifference(resource.getAvailability());
-        Optional.ofNullable(resource.getAvailability()).ifPresent(resourceDTO::setAvailability);
-        Optional.of(resource.getKWh()).ifPresent(resourceDTO::setKWh);
-        Optional.ofNullable(resource.getMemberEmail()).ifPresent(resourceDTO::setMemberEmail);
-        Optional.ofNullable(resource.getStatus())
-                .map(Enum::name)
-                .map(ResourceDTO.Status::valueOf)
-                .ifPresent(resourceDTO::setStatus);
-        Optional.ofNullable(resource.getCurrentTaskId()).ifPresent(resourceDTO::setCurrentTaskId);
-
-        return resourceDTO;
+        this.resourceStatusHistoryWriter = resourceStatusHistoryWriter;
+        this.resourceMapper = resourceMapper;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public Resource getResource(ResourceDTO resourceDTO) {
@@ -155,21 +80,10 @@ public class ResourceService {
 
                 ResourceCPU resourceCPU = (ResourceCPU) resourceFactory.getResourceType(ResourceFactory.ResourceType.CPU);
 
-                // Set common properties
-                resourceCPU = (ResourceCPU) setCommonAttributes(resourceCPU, resourceCpuDTO);
-
-                // Set CPU-specific properties
-                Optional.ofNullable(resourceCpuDTO.getArchitecture()).ifPresent(resourceCPU::setArchitecture);
-                Optional.of(resourceCpuDTO.getCores()).ifPresent(resourceCPU::setCores);
-                Optional.of(resourceCpuDTO.getThreads()).ifPresent(resourceCPU::setThreads);
-                Optional.of(resourceCpuDTO.getBaseFrequency()).ifPresent(resourceCPU::setBaseFrequency);
-                Optional.of(resourceCpuDTO.getMaxFrequency()).ifPresent(resourceCPU::setMaxFrequency);
-                Optional.of(resourceCpuDTO.getCacheSize()).ifPresent(resourceCPU::setCacheSize);
-                Optional.of(resourceCpuDTO.getTdp()).ifPresent(resourceCPU::setTdp);
-                Optional.of(resourceCpuDTO.isHyperThreading()).ifPresent(resourceCPU::setHyperThreading);
-                Optional.of(resourceCpuDTO.isOverclockingSupport()).ifPresent(resourceCPU::setOverclockingSupport);
-                Optional.of(scoreDTO.getScore()).ifPresent(resourceCPU::setSingleCoreScore);
-                Optional.of(scoreDTO.getMulticore_score()).ifPresent(resourceCPU::setMulticoreScore);
+                resourceMapper.updateResource(resourceCpuDTO, resourceCPU);
+
+                resourceCPU.setSingleCoreScore(scoreDTO.getScore());
+                resourceCPU.setMulticoreScore(scoreDTO.getMulticore_score());
 
                 LOGGER.info("ResourceCpuDTO: %s".formatted(resourceCPU.getSingleCoreScore()));
 
@@ -184,22 +98,11 @@ public class ResourceService {
 
                 ResourceGPU resourceGPU = (ResourceGPU) resourceFactory.getResourceType(ResourceFactory.ResourceType.GPU);
 
-                // Set common properties
-                resourceGPU = (ResourceGPU) setCommonAttributes(resourceGPU, resourceGpuDTO);
-
-                // Set GPU-specific properties
-                Optional.ofNullable(resourceGpuDTO.getArchitecture()).ifPresent(resourceGPU::setArchitecture);
-                Optional.ofNullable(resourceGpuDTO.getVramType()).ifPresent(resourceGPU::setVramType);
-                Optional.of(resourceGpuDTO.getVramSize()).ifPresent(resourceGPU::setVramSize);
-                Optional.of(resourceGpuDTO.getCoreClock()).ifPresent(resourceGPU::setCoreClock);
-                Optional.of(resourceGpuDTO.getBoostClock()).ifPresent(resourceGPU::setBoostClock);
-                Optional.ofNullable(resourceGpuDTO.getMemoryClock()).ifPresent(resourceGPU::setMemoryClock);
-                Optional.of(resourceGpuDTO.getTdp()).ifPresent(resourceGPU::setTdp);
-                Optional.of(resourceGpuDTO.isRayTracingSupport()).ifPresent(resourceGPU::setRayTracingSupport);
-                Optional.of(resourceGpuDTO.isDlssSupport()).ifPresent(resourceGPU::setDlssSupport);
-                Optional.of(scoreDTO.getOpencl()).ifPresent(resourceGPU::setOpenclScore);
-                Optional.of(scoreDTO.getVulkan()).ifPresent(resourceGPU::setVulkanScore);
-                Optional.of(scoreDTO.getCuda()).ifPresent(resourceGPU::setCudaScore);
+                resourceMapper.updateResource(resourceGpuDTO, resourceGPU);
+
+                resourceGPU.setOpenclScore(scoreDTO.getOpencl());
+                resourceGPU.setVulkanScore(scoreDTO.getVulkan());
+                resourceGPU.setCudaScore(scoreDTO.getCuda());
 
                 return resourceGPU;
             }
@@ -212,23 +115,13 @@ public class ResourceService {
 
                 ResourceSoC resourceSoC = (ResourceSoC) resourceFactory.getResourceType(ResourceFactory.ResourceType.SOC);
 
-                // Set common properties
-                resourceSoC = (ResourceSoC) setCommonAttributes(resourceSoC, resourceSoCDTO);
-
-                // Set SoC-specific properties
-                Optional.ofNullable(resourceSoCDTO.getArchitecture()).ifPresent(resourceSoC::setArchitecture);
-                Optional.of(resourceSoCDTO.getCpuCores()).ifPresent(resourceSoC::setCpuCores);
-                Optional.of(resourceSoCDTO.getGpuCores()).ifPresent(resourceSoC::setGpuCores);
-                Optional.of(resourceSoCDTO.getCpuBaseFrequency()).ifPresent(resourceSoC::setCpuBaseFrequency);
-                Optional.of(resourceSoCDTO.getCpuMaxFrequency()).ifPresent(resourceSoC::setCpuMaxFrequency);
-                Optional.of(resourceSoCDTO.getGpuBaseFrequency()).ifPresent(resourceSoC::setGpuBaseFrequency);
-                Optional.of(resourceSoCDTO.getGpuMaxFrequency()).ifPresent(resourceSoC::setGpuMaxFrequency);
-                Optional.of(resourceSoCDTO.getTdp()).ifPresent(resourceSoC::setTdp);
-                Optional.of(scoreDTO.getScore()).ifPresent(resourceSoC::setSingleCoreScore);
-                Optional.of(scoreDTO.getMulticore_score()).ifPresent(resourceSoC::setMulticoreScore);
-                Optional.of(scoreDTO.getOpencl()).ifPresent(resourceSoC::setOpenclScore);
-                Optional.of(scoreDTO.getVulkan()).ifPresent(resourceSoC::setVulkanScore);
-                Optional.of(scoreDTO.getCuda()).ifPresent(resourceSoC::setCudaScore);
+                resourceMapper.updateResource(resourceSoCDTO, resourceSoC);
+
+                resourceSoC.setSingleCoreScore(scoreDTO.getScore());
+                resourceSoC.setMulticoreScore(scoreDTO.getMulticore_score());
+                resourceSoC.setOpenclScore(scoreDTO.getOpencl());
+                resourceSoC.setVulkanScore(scoreDTO.getVulkan());
+                resourceSoC.setCudaScore(scoreDTO.getCuda());
 
                 return resourceSoC;
             }
@@ -238,91 +131,13 @@ public class ResourceService {
         }
     }
 
-    private void checkTimeDifference(List<Availability> availabilities) {
-        for (Availability availability : availabilities) {
-            LocalTime startTime = availability.getStartTime();
-            LocalTime endTime = availability.getEndTime();
-
-            long minutes = ChronoUnit.MINUTES.between(startTime, endTime);
-
-            if (minutes % AVAILABILITY_TRESHOLD != 0) {
-                throw new BadFormatAvailabilityException("The difference between endTime and startTime must be a multiple of 30 minutes.");
-            }
-        }
-    }
-
     public ResourceDTO getResourceDTO(Resource resource) {
-        switch (resource) {
-            case ResourceCPU resourceCPU -> {
-                ResourceCpuDTO resourceCpuDTO = (ResourceCpuDTO) resourceDTOFactory.getResourceDTOType(ResourceDTOFactory.ResourceDTOType.CPU);
-
-                // Set common properties
-                resourceCpuDTO = (ResourceCpuDTO) setCommonAttributes(resourceCpuDTO, resourceCPU);
-
-                // Set CPU-specific properties
-                Optional.ofNullable(resourceCPU.getArchitecture()).ifPresent(resourceCpuDTO::setArchitecture);
-                Optional.of(resourceCPU.getCores()).ifPresent(resourceCpuDTO::setCores);
-                Optional.of(resourceCPU.getThreads()).ifPresent(resourceCpuDTO::setThreads);
-                Optional.of(resourceCPU.getBaseFrequency()).ifPresent(resourceCpuDTO::setBaseFrequency);
-                Optional.of(resourceCPU.getMaxFrequency()).ifPresent(resourceCpuDTO::setMaxFrequency);
-                Optional.of(resourceCPU.getCacheSize()).ifPresent(resourceCpuDTO::setCacheSize);
-                Optional.of(resourceCPU.getTdp()).ifPresent(resourceCpuDTO::setTdp);
-                Optional.of(resourceCPU.isHyperThreading()).ifPresent(resourceCpuDTO::setHyperThreading);
-                Optional.of(resourceCPU.isOverclockingSupport()).ifPresent(resourceCpuDTO::setOverclockingSupport);
-                Optional.of(resourceCPU.getSingleCoreScore()).ifPresent(resourceCpuDTO::setSingleCoreScore);
-                Optional.of(resourceCPU.getMulticoreScore()).ifPresent(resourceCpuDTO::setMulticoreScore);
-
-                return resourceCpuDTO;
-            }
-            case ResourceGPU resourceGPU -> {
-                ResourceGpuDTO resourceGpuDTO = (ResourceGpuDTO) resourceDTOFactory.getResourceDTOType(ResourceDTOFactory.ResourceDTOType.GPU);
-
-                // Set common properties
-                resourceGpuDTO = (ResourceGpuDTO) setCommonAttributes(resourceGpuDTO, resourceGPU);
-
-                // Set GPU-specific properties
-                Optional.ofNullable(resourceGPU.getArchitecture()).ifPresent(resourceGpuDTO::setArchitecture);
-                Optional.ofNullable(resourceGPU.getVramType()).ifPresent(resourceGpuDTO::setVramType);
-                Optional.of(resourceGPU.getVramSize()).ifPresent(resourceGpuDTO::setVramSize);
-                Optional.of(resourceGPU.getCoreClock()).ifPresent(resourceGpuDTO::setCoreClock);
-                Optional.of(resourceGPU.getBoostClock()).ifPresent(resourceGpuDTO::setBoostClock);
-                Optional.ofNullable(resourceGPU.getMemoryClock()).ifPresent(resourceGpuDTO::setMemoryClock);
-                Optional.of(resourceGPU.getTdp()).ifPresent(resourceGpuDTO::setTdp);
-                Optional.of(resourceGPU.isRayTracingSupport()).ifPresent(resourceGpuDTO::setRayTracingSupport);
-                Optional.of(resourceGPU.isDlssSupport()).ifPresent(resourceGpuDTO::setDlssSupport);
-                Optional.of(resourceGPU.getOpenclScore()).ifPresent(resourceGpuDTO::setOpenclScore);
-                Optional.of(resourceGPU.getVulkanScore()).ifPresent(resourceGpuDTO::setVulkanScore);
-                Optional.of(resourceGPU.getCudaScore()).ifPresent(resourceGpuDTO::setCudaScore);
-
-                return resourceGpuDTO;
-            }
-            case ResourceSoC resourceSoC -> {
-                ResourceSoCDTO resourceSoCDTO = (ResourceSoCDTO) resourceDTOFactory.getResourceDTOType(ResourceDTOFactory.ResourceDTOType.SOC);
-
-                // Set common properties
-                resourceSoCDTO = (ResourceSoCDTO) setCommonAttributes(resourceSoCDTO, resourceSoC);
-
-                // Set SoC-specific properties
-                Optional.ofNullable(resourceSoC.getArchitecture()).ifPresent(resourceSoCDTO::setArchitecture);
-                Optional.of(resourceSoC.getCpuCores()).ifPresent(resourceSoCDTO::setCpuCores);
-                Optional.of(resourceSoC.getGpuCores()).ifPresent(resourceSoCDTO::setGpuCores);
-                Optional.of(resourceSoC.getCpuBaseFrequency()).ifPresent(resourceSoCDTO::setCpuBaseFrequency);
-                Optional.of(resourceSoC.getCpuMaxFrequency()).ifPresent(resourceSoCDTO::setCpuMaxFrequency);
-                Optional.of(resourceSoC.getGpuBaseFrequency()).ifPresent(resourceSoCDTO::setGpuBaseFrequency);
-                Optional.of(resourceSoC.getGpuMaxFrequency()).ifPresent(resourceSoCDTO::setGpuMaxFrequency);
-                Optional.of(resourceSoC.getTdp()).ifPresent(resourceSoCDTO::setTdp);
-                Optional.of(resourceSoC.getSingleCoreScore()).ifPresent(resourceSoCDTO::setSingleCoreScore);
-                Optional.of(resourceSoC.getMulticoreScore()).ifPresent(resourceSoCDTO::setMulticoreScore);
-                Optional.of(resourceSoC.getOpenclScore()).ifPresent(resourceSoCDTO::setOpenclScore);
-                Optional.of(resourceSoC.getVulkanScore()).ifPresent(resourceSoCDTO::setVulkanScore);
-                Optional.of(resourceSoC.getCudaScore()).ifPresent(resourceSoCDTO::setCudaScore);
-
-                return resourceSoCDTO;
-            }
-            case null, default -> {
-                return null;
-            }
-        }
+        return switch (resource) {
+            case ResourceCPU resourceCPU -> resourceMapper.toResourceDTO(resourceCPU);
+            case ResourceGPU resourceGPU -> resourceMapper.toResourceDTO(resourceGPU);
+            case ResourceSoC resourceSoC -> resourceMapper.toResourceDTO(resourceSoC);
+            case null, default -> null;
+        };
     }
 
     public ResourceDTO insertResource(ResourceDTO resourceDTO) {
@@ -333,9 +148,12 @@ public class ResourceService {
         }
 
         Resource resource = getResource(resourceDTO);
+        resource.setVersion(1);
 
         resource = resourceRepository.save(resource);
 
+        applicationEventPublisher.publishEvent(new ResourceChangedEvent(this, resource.getId(), resource.getStatus()));
+
         resourceMessageHandler.sendNewResourceMessage(getResourceMessageDTO(resource));
 
         return getResourceDTO(resource);
@@ -354,6 +172,8 @@ public class ResourceService {
             throw new ResourceStatusUpdateException("The resource must be UNAVAILABLE to be updated. Please wait until it becomes available to change its status and then update it.");
         }
 
+        ResourceMessageDTO before = getResourceMessageDTO(retResource);
+
         switch (resourceDTO) {
             case ResourceCpuDTO resourceCpuDTO -> {
                 ResourceCPU resourceCPU = (ResourceCPU) retResource;
@@ -368,25 +188,13 @@ public class ResourceService {
                         return null;
                     }
 
-                    Optional.of(resourceCpuDTO.getSingleCoreScore()).ifPresent(resourceCPU::setSingleCoreScore);
-                    Optional.of(resourceCpuDTO.getMulticoreScore()).ifPresent(resourceCPU::setMulticoreScore);
+                    resourceCPU.setSingleCoreScore(resourceCpuDTO.getSingleCoreScore());
+                    resourceCPU.setMulticoreScore(resourceCpuDTO.getMulticoreScore());
                 }
 
-                resourceCPU = (ResourceCPU) setCommonAttributes(resourceCPU, resourceCpuDTO);
-
-                Optional.ofNullable(resourceCpuDTO.getArchitecture()).ifPresent(resourceCPU::setArchitecture);
-                Optional.of(resourceCpuDTO.getCores()).ifPresent(resourceCPU::setCores);
-                Optional.of(resourceCpuDTO.getThreads()).ifPresent(resourceCPU::setThreads);
-                Optional.of(resourceCpuDTO.getBaseFrequency()).ifPresent(resourceCPU::setBaseFrequency);
-                Optional.of(resourceCpuDTO.getMaxFrequency()).ifPresent(resourceCPU::setMaxFrequency);
-                Optional.of(resourceCpuDTO.getCacheSize()).ifPresent(resourceCPU::setCacheSize);
-                Optional.of(resourceCpuDTO.getTdp()).ifPresent(resourceCPU::setTdp);
-                Optional.of(resourceCpuDTO.isHyperThreading()).ifPresent(resourceCPU::setHyperThreading);
-                Optional.of(resourceCpuDTO.isOverclockingSupport()).ifPresent(resourceCPU::setOverclockingSupport);
+                resourceMapper.updateResource(resourceCpuDTO, resourceCPU);
 
-                resourceCPU = resourceRepository.save(resourceCPU);
-
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceCPU));
+                resourceCPU = saveAndPublishDelta(resourceCPU, before);
 
                 return getResourceDTO(resourceCPU);
             }
@@ -404,26 +212,14 @@ public class ResourceService {
                         return null;
                     }
 
-                    Optional.of(resourceGpuDTO.getOpenclScore()).ifPresent(resourceGPU::setOpenclScore);
-                    Optional.of(resourceGpuDTO.getVulkanScore()).ifPresent(resourceGPU::setVulkanScore);
-                    Optional.of(resourceGpuDTO.getCudaScore()).ifPresent(resourceGPU::setCudaScore);
+                    resourceGPU.setOpenclScore(resourceGpuDTO.getOpenclScore());
+                    resourceGPU.setVulkanScore(resourceGpuDTO.getVulkanScore());
+                    resourceGPU.setCudaScore(resourceGpuDTO.getCudaScore());
                 }
 
-                resourceGPU = (ResourceGPU) setCommonAttributes(resourceGPU, resourceGpuDTO);
-
-                Optional.ofNullable(resourceGpuDTO.getArchitecture()).ifPresent(resourceGPU::setArchitecture);
-                Optional.ofNullable(resourceGpuDTO.getVramType()).ifPresent(resourceGPU::setVramType);
-                Optional.of(resourceGpuDTO.getVramSize()).ifPresent(resourceGPU::setVramSize);
-                Optional.of(resourceGpuDTO.getCoreClock()).ifPresent(resourceGPU::setCoreClock);
-                Optional.of(resourceGpuDTO.getBoostClock()).ifPresent(resourceGPU::setBoostClock);
-                Optional.ofNullable(resourceGpuDTO.getMemoryClock()).ifPresent(resourceGPU::setMemoryClock);
-                Optional.of(resourceGpuDTO.getTdp()).ifPresent(resourceGPU::setTdp);
-                Optional.of(resourceGpuDTO.isRayTracingSupport()).ifPresent(resourceGPU::setRayTracingSupport);
-                Optional.of(resourceGpuDTO.isDlssSupport()).ifPresent(resourceGPU::setDlssSupport);
+                resourceMapper.updateResource(resourceGpuDTO, resourceGPU);
 
-                resourceGPU = resourceRepository.save(resourceGPU);
-
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceGPU));
+                resourceGPU = saveAndPublishDelta(resourceGPU, before);
 
                 return getResourceDTO(resourceGPU);
             }
@@ -443,27 +239,16 @@ public class ResourceService {
                         return null;
                     }
 
-                    Optional.of(resourceSoCDTO.getSingleCoreScore()).ifPresent(resourceSoC::setSingleCoreScore);
-                    Optional.of(resourceSoCDTO.getMulticoreScore()).ifPresent(resourceSoC::setMulticoreScore);
-                    Optional.of(resourceSoCDTO.getOpenclScore()).ifPresent(resourceSoC::setOpenclScore);
-                    Optional.of(resourceSoCDTO.getVulkanScore()).ifPresent(resourceSoC::setVulkanScore);
-                    Optional.of(resourceSoCDTO.getCudaScore()).ifPresent(resourceSoC::setCudaScore);
+                    resourceSoC.setSingleCoreScore(resourceSoCDTO.getSingleCoreScore());
+                    resourceSoC.setMulticoreScore(resourceSoCDTO.getMulticoreScore());
+                    resourceSoC.setOpenclScore(resourceSoCDTO.getOpenclScore());
+                    resourceSoC.setVulkanScore(resourceSoCDTO.getVulkanScore());
+                    resourceSoC.setCudaScore(resourceSoCDTO.getCudaScore());
                 }
 
-                resourceSoC = (ResourceSoC) setCommonAttributes(resourceSoC, resourceSoCDTO);
-
-                Optional.ofNullable(resourceSoCDTO.getArchitecture()).ifPresent(resourceSoC::setArchitecture);
-                Optional.of(resourceSoCDTO.getCpuCores()).ifPresent(resourceSoC::setCpuCores);
-                Optional.of(resourceSoCDTO.getGpuCores()).ifPresent(resourceSoC::setGpuCores);
-                Optional.of(resourceSoCDTO.getCpuBaseFrequency()).ifPresent(resourceSoC::setCpuBaseFrequency);
-                Optional.of(resourceSoCDTO.getCpuMaxFrequency()).ifPresent(resourceSoC::setCpuMaxFrequency);
-                Optional.of(resourceSoCDTO.getGpuBaseFrequency()).ifPresent(resourceSoC::setGpuBaseFrequency);
-                Optional.of(resourceSoCDTO.getGpuMaxFrequency()).ifPresent(resourceSoC::setGpuMaxFrequency);
-                Optional.of(resourceSoCDTO.getTdp()).ifPresent(resourceSoC::setTdp);
+                resourceMapper.updateResource(resourceSoCDTO, resourceSoC);
 
-                resourceSoC = resourceRepository.save(resourceSoC);
-
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceSoC));
+                resourceSoC = saveAndPublishDelta(resourceSoC, before);
 
                 return getResourceDTO(resourceSoC);
             }
@@ -474,38 +259,78 @@ public class ResourceService {
     }
 
     public ResourceDTO updateStatus(String id, Resource.Status status) {
-        Optional<Resource> resource = resourceRepository.findById(id);
+        for (int attempt = 1; attempt <= STATUS_UPDATE_ATTEMPTS; attempt++) {
+            Optional<Resource> resource = resourceRepository.findById(id);
 
-        if(resource.isEmpty()) {
-            return null;
-        }
+            if(resource.isEmpty()) {
+                return null;
+            }
 
-        Resource retResource = resource.get();
+            Resource retResource = resource.get();
 
-        if (retResource.getStatus().equals(Resource.Status.BUSY)) {
-            throw new ResourceStatusUpdateException("Resource is busy and its status cannot be updated");
-        }
+            if (retResource.getStatus().equals(Resource.Status.BUSY)) {
+                throw new ResourceStatusUpdateException("Resource is busy and its status cannot be updated");
+            }
 
-        retResource.setStatus(status);
-        retResource = resourceRepository.save(retResource);
+            ResourceMessageDTO before = getResourceMessageDTO(retResource);
+            Resource.Status oldStatus = retResource.getStatus();
 
-        switch (retResource) {
-            case ResourceCPU resourceCPU -> {
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceCPU));
-                return getResourceDTO(resourceCPU);
-            }
-            case ResourceGPU resourceGPU -> {
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceGPU));
-                return getResourceDTO(resourceGPU);
-            }
-            case ResourceSoC resourceSoC -> {
-                resourceMessageHandler.sendUpdateResourceMessage(getResourceMessageDTO(resourceSoC));
-                return getResourceDTO(resourceSoC);
+            retResource.setStatus(status);
+
+            // A status message may change the resource meanwhile, then it is read again
+            if (!updateAndPublishDelta(retResource, before)) {
+                continue;
             }
-            default -> {
-                return null;
+
+            if (oldStatus != status) {
+                resourceStatusHistoryWriter.record(retResource.getId(), retResource.getMemberEmail(), oldStatus, status,
+                        retResource.getCurrentTaskId(), Instant.now());
             }
+
+            return getResourceDTO(retResource);
         }
+
+        throw new ResourceVersionConflictException("The resource is changing too often, retry the status update.");
+    }
+
+    /**
+     * Saves an updated resource with the next version and publishes the fields that changed.
+     * @param resource The updated resource.
+     * @param before The message of the resource before the update.
+     * @return The saved resource.
+     * @throws ResourceVersionConflictException if the resource changed since it was read.
+     */
+    private <T extends Resource> T saveAndPublishDelta(T resource, ResourceMessageDTO before) {
+        if (!updateAndPublishDelta(resource, before)) {
+            throw new ResourceVersionConflictException("The resource was changed meanwhile, read it again and retry the update.");
+        }
+
+        return resource;
+    }
+
+    /**
+     * Writes an updated resource, if it is still at the version it was read at, and publishes the fields that changed.
+     * The write is conditional on the version, so a status message applied meanwhile is never overwritten
+     * and two different states of the resource never share a version.
+     * @param resource The updated resource, with the version it was read at.
+     * @param before The message of the resource before the update.
+     * @return true if the resource was written, false if it changed since it was read.
+     */
+    private boolean updateAndPublishDelta(Resource resource, ResourceMessageDTO before) {
+        if (!resourceRepository.updateIfVersion(resource, resource.getVersion())) {
+            return false;
+        }
+
+        Resource.Status previousStatus = before.getStatus() != null ? Resource.Status.valueOf(before.getStatus().name()) : null;
+        applicationEventPublisher.publishEvent(new ResourceChangedEvent(this, resource.getId(), previousStatus, resource.getStatus()));
+
+        ResourceDeltaDTO resourceDeltaDTO = getResourceDeltaDTO(before, getResourceMessageDTO(resource));
+
+        if (!resourceDeltaDTO.isEmpty()) {
+            resourceMessageHandler.sendResourceDeltaMessage(resourceDeltaDTO);
+        }
+
+        return true;
     }
 
     /**
@@ -514,42 +339,39 @@ public class ResourceService {
      * @return The resulting ResourceMessageDTO.
      */
     public ResourceMessageDTO getResourceMessageDTO(Resource resource) {
-        ResourceMessageDTO resourceMessageDTO = new ResourceMessageDTO();
-
-        Optional.ofNullable(resource.getId()).ifPresent(resourceMessageDTO::setId);
-        Optional.ofNullable(resource.getName()).ifPresent(resourceMessageDTO::setName);
-        Optional.ofNullable(resource.getAvailability()).ifPresent(resourceMessageDTO::setAvailability);
-        Optional.of(resource.getKWh()).ifPresent(resourceMessageDTO::setKWh);
-        Optional.ofNullable(resource.getMemberEmail()).ifPresent(resourceMessageDTO::setMemberEmail);
-        Optional.ofNullable(resource.getStatus())
-                .map(Enum::name)
-                .map(ResourceMessageDTO.Status::valueOf)
-                .ifPresent(resourceMessageDTO::setStatus);
-        Optional.ofNullable(resource.getCurrentTaskId()).ifPresent(resourceMessageDTO::setCurrentTaskId);
-
-        switch (resource) {
-            case ResourceCPU resourceCPU -> {
-                Optional.of(resourceCPU.getSingleCoreScore()).ifPresent(resourceMessageDTO::setSingleCoreScore);
-                Optional.of(resourceCPU.getMulticoreScore()).ifPresent(resourceMessageDTO::setMulticoreScore);
-            }
-            case ResourceGPU resourceGPU -> {
-                Optional.of(resourceGPU.getOpenclScore()).ifPresent(resourceMessageDTO::setOpenclScore);
-                Optional.of(resourceGPU.getVulkanScore()).ifPresent(resourceMessageDTO::setVulkanScore);
-                Optional.of(resourceGPU.getCudaScore()).ifPresent(resourceMessageDTO::setCudaScore);
-            }
-            case ResourceSoC resourceSoC -> {
-                Optional.of(resourceSoC.getSingleCoreScore()).ifPresent(resourceMessageDTO::setSingleCoreScore);
-                Optional.of(resourceSoC.getMulticoreScore()).ifPresent(resourceMessageDTO::setMulticoreScore);
-                Optional.of(resourceSoC.getOpenclScore()).ifPresent(resourceMessageDTO::setOpenclScore);
-                Optional.of(resourceSoC.getVulkanScore()).ifPresent(resourceMessageDTO::setVulkanScore);
-                Optional.of(resourceSoC.getCudaScore()).ifPresent(resourceMessageDTO::setCudaScore);
-            }
-            default -> {
-                return null;
-            }
-        }
+        return switch (resource) {
+            case ResourceCPU resourceCPU -> resourceMapper.toResourceMessageDTO(resourceCPU);
+            case ResourceGPU resourceGPU -> resourceMapper.toResourceMessageDTO(resourceGPU);
+            case ResourceSoC resourceSoC -> resourceMapper.toResourceMessageDTO(resourceSoC);
+            case null, default -> null;
+        };
+    }
 
-        return resourceMessageDTO;
+    /**
+     * Gets a ResourceDeltaDTO with the fields that differ between two messages of the same resource.
+     * @param before The message of the resource before the change.
+     * @param after The message of the resource after the change.
+     * @return The resulting ResourceDeltaDTO, with the id and version of the resource after the change.
+     */
+    public ResourceDeltaDTO getResourceDeltaDTO(ResourceMessageDTO before, ResourceMessageDTO after) {
+        ResourceDeltaDTO resourceDeltaDTO = new ResourceDeltaDTO();
+
+        resourceDeltaDTO.setId(after.getId());
+        resourceDeltaDTO.setVersion(after.getVersion());
+
+        if (!Objects.equals(before.getName(), after.getName())) resourceDeltaDTO.setName(after.getName());
+        if (!Objects.equals(before.getAvailability(), after.getAvailability())) resourceDeltaDTO.setAvailability(after.getAvailability());
+        if (Double.compare(before.getKWh(), after.getKWh()) != 0) resourceDeltaDTO.setKWh(after.getKWh());
+        if (!Objects.equals(before.getMemberEmail(), after.getMemberEmail())) resourceDeltaDTO.setMemberEmail(after.getMemberEmail());
+        if (before.getStatus() != after.getStatus()) resourceDeltaDTO.setStatus(after.getStatus());
+        if (!Objects.equals(before.getCurrentTaskId(), after.getCurrentTaskId())) resourceDeltaDTO.setCurrentTaskId(after.getCurrentTaskId());
+        if (Double.compare(before.getSingleCoreScore(), after.getSingleCoreScore()) != 0) resourceDeltaDTO.setSingleCoreScore(after.getSingleCoreScore());
+        if (Double.compare(before.getMulticoreScore(), after.getMulticoreScore()) != 0) resourceDeltaDTO.setMulticoreScore(after.getMulticoreScore());
+        if (Double.compare(before.getOpenclScore(), after.getOpenclScore()) != 0) resourceDeltaDTO.setOpenclScore(after.getOpenclScore());
+        if (Double.compare(before.getVulkanScore(), after.getVulkanScore()) != 0) resourceDeltaDTO.setVulkanScore(after.getVulkanScore());
+        if (Double.compare(before.getCudaScore(), after.getCudaScore()) != 0) resourceDeltaDTO.setCudaScore(after.getCudaScore());
+
+        return resourceDeltaDTO;
     }
 
     public ScoreMessageDTO getScoreMessageDTO(Resource resource) {
@@ -568,10 +390,33 @@ public class ResourceService {
 
     /**
      * Finds resources based on the provided parameters.
+     * When fields are requested, only the stored fields they need are read.
      * @param resourceQueryFilters The name of the resource.
      * @return A list of resources that match the provided parameters.
      */
     public List<Resource> findResources(ResourceQueryFilters resourceQueryFilters) {
+        Query query = getResourceQuery(resourceQueryFilters);
+        Set<String> fields = ResourceFieldsSerializer.parseFields(resourceQueryFilters.getFields());
+
+        if (fields != null) {
+            query.fields().include(ResourceFieldsSerializer.getStoredFields(fields));
+        }
+
+        LOGGER.info("\n{}\n", query);
+
+        List<Resource> resources = resourceRepository.findByQuery(query);
+
+        LOGGER.info("\nResources: {}\n", resources);
+
+        return resources;
+    }
+
+    /**
+     * Builds the query matching the provided parameters.
+     * @param resourceQueryFilters The filters of the query.
+     * @return The query on the resource collection.
+     */
+    public Query getResourceQuery(ResourceQueryFilters resourceQueryFilters) {
         Query query = new Query();
 
         if (resourceQueryFilters.getStatus() != null) {
@@ -604,27 +449,74 @@ public class ResourceService {
         }
 
         if (resourceQueryFilters.getFrom() != null) {
-            query.addCriteria(Criteria.where("availability.startTime").gte(resourceQueryFilters.getFrom()));
+            query.addCriteria(Criteria.where("availability." + AvailabilityBson.START_FIELD)
+                    .gte(AvailabilityBson.startMinute(resourceQueryFilters.getFrom().toLocalTime())));
         }
 
         if (resourceQueryFilters.getTo() != null) {
-            query.addCriteria(Criteria.where("availability.endTime").lte(resourceQueryFilters.getTo()));
+            query.addCriteria(Criteria.where("availability." + AvailabilityBson.END_FIELD)
+                    .lte(AvailabilityBson.endMinute(resourceQueryFilters.getTo().toLocalTime())));
         }
 
         if (resourceQueryFilters.getKWh() != null) {
-            query.addCriteria(Criteria.where("kwh").lte(resourceQueryFilters.getKWh()));
+            query.addCriteria(Criteria.where("kWh").lte(resourceQueryFilters.getKWh()));
         }
 
         if (resourceQueryFilters.getMemberEmail() != null) {
             query.addCriteria(Criteria.where("memberEmail").is(resourceQueryFilters.getMemberEmail()));
         }
 
-        LOGGER.info("\n{}\n", query);
+        return query;
+    }
+
+    /**
+     * Checks a resource against the filters with the semantics of the query built by getResourceQuery,
+     * so resources that are already in memory can be matched without querying them again.
+     * @param resource The resource.
+     * @param resourceQueryFilters The filters.
+     * @return true if the resource matches every filter provided.
+     */
+    public boolean matchesFilters(Resource resource, ResourceQueryFilters resourceQueryFilters) {
+        if (resourceQueryFilters.getStatus() != null
+                && (resource.getStatus() == null || !resource.getStatus().name().equals(resourceQueryFilters.getStatus().name()))) {
+            return false;
+        }
 
-        List<Resource> resources = mongoTemplate.find(query, Resource.class, mongoTemplate.getCollectionName(Resource.class));
+        if (!matches(resourceQueryFilters.getType(), resource.getType())
+                || !matches(resourceQueryFilters.getName(), resource.getName())
+                || !matches(resourceQueryFilters.getGreenEnergyType(), resource.getGreenEnergyType())
+                || !matches(resourceQueryFilters.getCountry(), resource.getCountry())
+                || !matches(resourceQueryFilters.getRegion(), resource.getRegion())
+                || !matches(resourceQueryFilters.getCity(), resource.getCity())
+                || !matches(resourceQueryFilters.getMemberEmail(), resource.getMemberEmail())) {
+            return false;
+        }
 
-        LOGGER.info("\nResources: {}\n", resources);
+        if (resourceQueryFilters.getKWh() != null && resource.getKWh() > resourceQueryFilters.getKWh()) {
+            return false;
+        }
 
-        return resources;
+        // As in the query, each bound is satisfied by any availability interval
+        if (resourceQueryFilters.getFrom() != null) {
+            int from = AvailabilityBson.startMinute(resourceQueryFilters.getFrom().toLocalTime());
+
+            if (resource.getAvailability() == null || resource.getAvailability().stream()
+                    .noneMatch(availability -> availability.getStartTime() != null && AvailabilityBson.startMinute(availability.getStartTime()) >= from)) {
+                return false;
+            }
+        }
+
+        if (resourceQueryFilters.getTo() != null) {
+            int to = AvailabilityBson.endMinute(resourceQueryFilters.getTo().toLocalTime());
+
+            return resource.getAvailability() != null && resource.getAvailability().stream()
+                    .anyMatch(availability -> availability.getEndTime() != null && AvailabilityBson.endMinute(availability.getEndTime()) <= to);
+        }
+
+        return true;
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.equals(value);
     }
-}
\ No newline at end of file
+}
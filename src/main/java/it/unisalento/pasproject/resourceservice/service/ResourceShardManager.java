@@ -0,0 +1,305 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.configuration.RabbitMQShardingConfig;
+import it.unisalento.pasproject.resourceservice.dto.ShardMemberMessageDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * The ResourceShardManager class runs the sharded consumption of status messages.
+ * Every instance announces itself on the shard membership exchange; each shard is owned by the live instance
+ * with the highest rendezvous hash for it, so shards move only when an instance joins or leaves.
+ * An owned shard is consumed by a single-threaded batch container, and shard queues have a single active consumer,
+ * so a shard is never consumed concurrently even while ownership is moving.
+ * The partitioning relies on the producers setting the resource id in the hash header; messages without it all land
+ * on the same shard, so they are still applied but reported, to detect the producers breaking the contract.
+ */
+@Service
+@ConditionalOnProperty(name = "rabbitmq.sharding.enabled", havingValue = "true")
+public class ResourceShardManager implements SmartLifecycle {
+    private final ConnectionFactory connectionFactory;
+    private final ResourceMessageHandler resourceMessageHandler;
+    private final RabbitMQService rabbitMQService;
+    private final MessageProducer messageProducer;
+    private final RetryOperationsInterceptor batchListenerRetryInterceptor;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * The live instances, with the time they were last seen.
+     */
+    private final Map<String, Long> members = new ConcurrentHashMap<>();
+
+    /**
+     * The running containers, by shard.
+     */
+    private final Map<Integer, SimpleMessageListenerContainer> containers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    private final AtomicLong unkeyedMessages = new AtomicLong();
+
+    @Value("${rabbitmq.sharding.hash-header}")
+    private String hashHeader;
+
+    @Value("${rabbitmq.queue.sharded.prefix}")
+    private String shardQueuePrefix;
+
+    @Value("${rabbitmq.sharding.shards}")
+    private int shards;
+
+    @Value("${rabbitmq.sharding.heartbeat-interval}")
+    private long heartbeatInterval;
+
+    @Value("${rabbitmq.sharding.member-timeout}")
+    private long memberTimeout;
+
+    @Value("${rabbitmq.listener.batch.size}")
+    private int batchSize;
+
+    @Value("${rabbitmq.listener.batch.receive-timeout}")
+    private long batchReceiveTimeout;
+
+    @Value("${rabbitmq.exchange.shardmembership.name}")
+    private String shardMembershipExchange;
+
+    @Value("${rabbitmq.exchange.data.name}")
+    private String dataExchange;
+
+    @Value("${rabbitmq.queue.resourceassignment.name}")
+    private String resourceAssignmentQueue;
+
+    @Value("${rabbitmq.routing.resourceassignment.key}")
+    private String resourceAssignmentTopic;
+
+    @Value("${rabbitmq.queue.resourcedeallocation.name}")
+    private String resourceUsageQueue;
+
+    @Value("${rabbitmq.routing.resourceusage.key}")
+    private String resourceUsageTopic;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceShardManager.class);
+
+    /**
+     * Constructor for the ResourceShardManager.
+     * @param connectionFactory The ConnectionFactory used by the shard containers.
+     * @param resourceMessageHandler The ResourceMessageHandler applying the status messages.
+     * @param rabbitMQService The RabbitMQService used to unbind the unsharded queues.
+     * @param messageProducer The MessageProducer used to announce this instance.
+     * @param batchListenerRetryInterceptor The retry interceptor of the shard containers.
+     */
+    @Autowired
+    public ResourceShardManager(ConnectionFactory connectionFactory, ResourceMessageHandler resourceMessageHandler,
+                                RabbitMQService rabbitMQService, MessageProducer messageProducer,
+                                @Qualifier("batchListenerRetryInterceptor") RetryOperationsInterceptor batchListenerRetryInterceptor) {
+        this.connectionFactory = connectionFactory;
+        this.resourceMessageHandler = resourceMessageHandler;
+        this.rabbitMQService = rabbitMQService;
+        this.messageProducer = messageProducer;
+        this.batchListenerRetryInterceptor = batchListenerRetryInterceptor;
+    }
+
+    @Override
+    public void start() {
+        // Status messages now go through the shards only, the unsharded queues would otherwise fill up
+        rabbitMQService.unbindQueueFromTopic(resourceAssignmentQueue, dataExchange, resourceAssignmentTopic);
+        rabbitMQService.unbindQueueFromTopic(resourceUsageQueue, dataExchange, resourceUsageTopic);
+
+        members.put(instanceId, System.currentTimeMillis());
+        running = true;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-shard-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+
+        LOGGER.info("Shard manager started as {} for {} shards", instanceId, shards);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        containers.values().forEach(SimpleMessageListenerContainer::stop);
+        containers.clear();
+
+        try {
+            messageProducer.sendMessage(new ShardMemberMessageDTO(instanceId, true), "", shardMembershipExchange);
+        } catch (Exception e) {
+            LOGGER.error("Cannot announce shard manager shutdown: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Receives a membership message from an instance, this one included.
+     * @param message The received message.
+     */
+    @RabbitListener(queues = "#{shardMembershipQueue.name}")
+    public void receiveShardMemberMessage(ShardMemberMessageDTO message) {
+        if (message.getInstanceId() == null || instanceId.equals(message.getInstanceId())) {
+            return;
+        }
+
+        boolean changed = message.isLeaving()
+                ? members.remove(message.getInstanceId()) != null
+                : members.put(message.getInstanceId(), System.currentTimeMillis()) == null;
+
+        if (changed && running) {
+            LOGGER.info("Shard member {} {}", message.getInstanceId(), message.isLeaving() ? "left" : "joined");
+            scheduler.execute(this::rebalance);
+        }
+    }
+
+    /**
+     * Announces this instance, expires silent members and rebalances the shards.
+     */
+    private void heartbeat() {
+        try {
+            messageProducer.sendMessage(new ShardMemberMessageDTO(instanceId, false), "", shardMembershipExchange);
+        } catch (Exception e) {
+            LOGGER.error("Cannot send shard heartbeat: {}", e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        members.put(instanceId, now);
+        members.entrySet().removeIf(member -> now - member.getValue() > memberTimeout);
+
+        rebalance();
+    }
+
+    /**
+     * Starts the containers of the shards owned by this instance and stops the others.
+     */
+    private synchronized void rebalance() {
+        if (!running) {
+            return;
+        }
+
+        for (int shard = 0; shard < shards; shard++) {
+            boolean owned = instanceId.equals(owner(shard));
+            SimpleMessageListenerContainer container = containers.get(shard);
+
+            if (owned && container == null) {
+                containers.put(shard, startContainer(shard));
+                LOGGER.info("Shard {} assigned to this instance", shard);
+            } else if (!owned && container != null) {
+                container.stop();
+                containers.remove(shard);
+                LOGGER.info("Shard {} released", shard);
+            }
+        }
+    }
+
+    /**
+     * Returns the live instance that owns a shard, using rendezvous hashing.
+     * @param shard The shard index.
+     * @return The id of the owner instance.
+     */
+    private String owner(int shard) {
+        String owner = null;
+        long best = -1;
+
+        for (String member : members.keySet()) {
+            CRC32 crc = new CRC32();
+            crc.update((member + "#" + shard).getBytes(StandardCharsets.UTF_8));
+            long weight = crc.getValue();
+
+            if (weight > best || (weight == best && member.compareTo(owner) > 0)) {
+                best = weight;
+                owner = member;
+            }
+        }
+
+        return owner;
+    }
+
+    /**
+     * Reports the messages without the hash header, which the consistent-hash exchange cannot partition.
+     * The warning is logged for the first one and then every thousand, to point at the producer without flooding the log.
+     * @param messages The messages of a batch.
+     */
+    private void checkHashHeader(List<Message> messages) {
+        for (Message message : messages) {
+            if (message.getMessageProperties().getHeader(hashHeader) != null) {
+                continue;
+            }
+
+            long count = unkeyedMessages.incrementAndGet();
+
+            if (count % 1000 == 1) {
+                LOGGER.warn("Status message with routing key {} has no {} header and cannot be partitioned, {} such messages so far",
+                        message.getMessageProperties().getReceivedRoutingKey(), hashHeader, count);
+            }
+        }
+    }
+
+    /**
+     * Starts a single-threaded batch container on a shard queue.
+     * @param shard The shard index.
+     * @return The started container.
+     */
+    private SimpleMessageListenerContainer startContainer(int shard) {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(RabbitMQShardingConfig.shardQueueName(shardQueuePrefix, shard));
+        container.setConcurrentConsumers(1);
+        container.setConsumerBatchEnabled(true);
+        container.setBatchSize(batchSize);
+        container.setReceiveTimeout(batchReceiveTimeout);
+        container.setPrefetchCount(batchSize);
+        container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        container.setDefaultRequeueRejected(false);
+        container.setAdviceChain(batchListenerRetryInterceptor);
+        container.setMessageListener((ChannelAwareBatchMessageListener) (messages, channel) -> {
+            checkHashHeader(messages);
+
+            try {
+                resourceMessageHandler.applyStatusMessages(messages, channel);
+            } catch (IOException e) {
+                throw new AmqpIOException(e);
+            }
+        });
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+}
@@ -0,0 +1,54 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceSnapshotRequestDTO;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * The ResourceSnapshotHandler class answers the explicit requests for the full snapshot of a resource.
+ * Updates are published as deltas, so a consumer that missed one asks for the snapshot and then applies
+ * only the deltas with a greater version.
+ */
+@Service
+public class ResourceSnapshotHandler {
+    private final ResourceRepository resourceRepository;
+    private final ResourceService resourceService;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceSnapshotHandler.class);
+
+    /**
+     * Constructor for the ResourceSnapshotHandler.
+     * @param resourceRepository The ResourceRepository to be used for reading the resource.
+     * @param resourceService The ResourceService to be used for building the snapshot.
+     */
+    @Autowired
+    public ResourceSnapshotHandler(ResourceRepository resourceRepository, ResourceService resourceService) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+    }
+
+    /**
+     * Receives a snapshot request and replies with the full resource message.
+     * @param request The snapshot request.
+     * @return The full resource message, or null if the resource does not exist.
+     */
+    @RabbitListener(queues = "${rabbitmq.queue.resourcesnapshot.name}")
+    public ResourceMessageDTO receiveSnapshotRequest(ResourceSnapshotRequestDTO request) {
+        if (request.getId() == null) {
+            LOGGER.error("Snapshot request without resource id");
+            return null;
+        }
+
+        return resourceRepository.findById(request.getId())
+                .map(resourceService::getResourceMessageDTO)
+                .orElseGet(() -> {
+                    LOGGER.error("Snapshot requested for unknown resource {}", request.getId());
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,139 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceStatusEvent;
+import it.unisalento.pasproject.resourceservice.dto.MemberUtilizationDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceUtilizationDTO;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * The ResourceStatusHistoryService class answers utilization queries on the status history.
+ * The time spent in each status is computed by MongoDB: a window stage pairs every transition with the next one
+ * of the same resource, and the durations are summed per resource and status.
+ */
+@Service
+public class ResourceStatusHistoryService {
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * How far before the range the status at its start is looked for.
+     */
+    @Value("${resource.history.lookback-days:30}")
+    private long lookbackDays;
+
+    /**
+     * Constructor for the ResourceStatusHistoryService.
+     * @param mongoTemplate The MongoTemplate used to aggregate the history.
+     */
+    @Autowired
+    public ResourceStatusHistoryService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Gets the utilization of a resource over a range.
+     * @param resourceId The id of the resource.
+     * @param from The start of the range.
+     * @param to The end of the range, capped to now.
+     * @return The utilization of the resource.
+     */
+    public ResourceUtilizationDTO getResourceUtilization(String resourceId, Instant from, Instant to) {
+        Map<String, Map<Resource.Status, Long>> durations = aggregateDurations("meta.resourceId", resourceId, from, to);
+
+        return getResourceUtilizationDTO(resourceId, durations.getOrDefault(resourceId, Map.of()));
+    }
+
+    /**
+     * Gets the utilization of the resources of a member over a range.
+     * @param memberEmail The email of the member.
+     * @param from The start of the range.
+     * @param to The end of the range, capped to now.
+     * @return The utilization of every resource of the member and their totals.
+     */
+    public MemberUtilizationDTO getMemberUtilization(String memberEmail, Instant from, Instant to) {
+        MemberUtilizationDTO memberUtilizationDTO = new MemberUtilizationDTO();
+        memberUtilizationDTO.setMemberEmail(memberEmail);
+        memberUtilizationDTO.setFrom(from);
+        memberUtilizationDTO.setTo(to);
+
+        aggregateDurations("meta.memberEmail", memberEmail, from, to).forEach((resourceId, statusDurations) -> {
+            ResourceUtilizationDTO resourceUtilizationDTO = getResourceUtilizationDTO(resourceId, statusDurations);
+            memberUtilizationDTO.getResources().add(resourceUtilizationDTO);
+            memberUtilizationDTO.setBusySeconds(memberUtilizationDTO.getBusySeconds() + resourceUtilizationDTO.getBusySeconds());
+            memberUtilizationDTO.setAvailableSeconds(memberUtilizationDTO.getAvailableSeconds() + resourceUtilizationDTO.getAvailableSeconds());
+            memberUtilizationDTO.setUnavailableSeconds(memberUtilizationDTO.getUnavailableSeconds() + resourceUtilizationDTO.getUnavailableSeconds());
+        });
+
+        memberUtilizationDTO.setUtilization(utilization(memberUtilizationDTO.getBusySeconds(), memberUtilizationDTO.getAvailableSeconds()));
+
+        return memberUtilizationDTO;
+    }
+
+    /**
+     * Sums the time spent in each status over a range, per resource.
+     * The transitions since the lookback before the range are read, so the status at the start of the range is known;
+     * each transition lasts until the next one of the same resource, or until the end of the range.
+     * @param metaField The meta field to filter on.
+     * @param value The value of the meta field.
+     * @param from The start of the range.
+     * @param to The end of the range, capped to now.
+     * @return The milliseconds spent in each status, by resource id.
+     */
+    private Map<String, Map<Resource.Status, Long>> aggregateDurations(String metaField, String value, Instant from, Instant to) {
+        Date start = Date.from(from);
+        Date end = Date.from(to.isAfter(Instant.now()) ? Instant.now() : to);
+        Date since = Date.from(from.minus(lookbackDays, ChronoUnit.DAYS));
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document(metaField, value)
+                        .append("timestamp", new Document("$gte", since).append("$lt", end))),
+                new Document("$setWindowFields", new Document("partitionBy", "$meta.resourceId")
+                        .append("sortBy", new Document("timestamp", 1))
+                        .append("output", new Document("next", new Document("$shift",
+                                new Document("output", "$timestamp").append("by", 1).append("default", end))))),
+                new Document("$project", new Document("resourceId", "$meta.resourceId")
+                        .append("status", "$newStatus")
+                        .append("start", new Document("$max", List.of("$timestamp", start)))
+                        .append("end", new Document("$min", List.of("$next", end)))),
+                new Document("$match", new Document("$expr", new Document("$gt", List.of("$end", "$start")))),
+                new Document("$group", new Document("_id", new Document("resourceId", "$resourceId").append("status", "$status"))
+                        .append("millis", new Document("$sum", new Document("$subtract", List.of("$end", "$start"))))));
+
+        Map<String, Map<Resource.Status, Long>> durations = new LinkedHashMap<>();
+
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(ResourceStatusEvent.class))
+                .aggregate(pipeline)
+                .forEach(document -> {
+                    Document id = document.get("_id", Document.class);
+                    durations.computeIfAbsent(id.getString("resourceId"), key -> new EnumMap<>(Resource.Status.class))
+                            .put(Resource.Status.valueOf(id.getString("status")), document.get("millis", Number.class).longValue());
+                });
+
+        return durations;
+    }
+
+    private ResourceUtilizationDTO getResourceUtilizationDTO(String resourceId, Map<Resource.Status, Long> durations) {
+        ResourceUtilizationDTO resourceUtilizationDTO = new ResourceUtilizationDTO();
+
+        resourceUtilizationDTO.setResourceId(resourceId);
+        resourceUtilizationDTO.setBusySeconds(durations.getOrDefault(Resource.Status.BUSY, 0L) / 1000);
+        resourceUtilizationDTO.setAvailableSeconds(durations.getOrDefault(Resource.Status.AVAILABLE, 0L) / 1000);
+        resourceUtilizationDTO.setUnavailableSeconds(durations.getOrDefault(Resource.Status.UNAVAILABLE, 0L) / 1000);
+        resourceUtilizationDTO.setUtilization(utilization(resourceUtilizationDTO.getBusySeconds(), resourceUtilizationDTO.getAvailableSeconds()));
+
+        return resourceUtilizationDTO;
+    }
+
+    private static double utilization(long busySeconds, long availableSeconds) {
+        long offered = busySeconds + availableSeconds;
+        return offered > 0 ? (double) busySeconds / offered : 0;
+    }
+}
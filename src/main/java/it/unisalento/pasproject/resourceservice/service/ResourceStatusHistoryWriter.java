@@ -0,0 +1,264 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceStatusEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ResourceStatusHistoryWriter class appends the status transitions to the status history time-series collection.
+ * Transitions are queued in memory and written in batches by a background thread, so recording one never waits
+ * for MongoDB; when the queue is full the transition is dropped rather than slowing the write path down.
+ * Transitions recorded without the member or the previous status, as the ones of the AMQP status messages,
+ * are completed by the writer before being inserted.
+ */
+@Service
+public class ResourceStatusHistoryWriter implements SmartLifecycle {
+    private final MongoTemplate mongoTemplate;
+
+    private BlockingQueue<ResourceStatusEvent> queue;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Value("${resource.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${resource.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${resource.history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${resource.history.flush-interval-ms:1000}")
+    private long flushInterval;
+
+    /**
+     * How far back the previous status of a resource is looked for.
+     */
+    @Value("${resource.history.lookback-days:30}")
+    private long lookbackDays;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceStatusHistoryWriter.class);
+
+    /**
+     * Constructor for the ResourceStatusHistoryWriter.
+     * @param mongoTemplate The MongoTemplate used to write the history.
+     */
+    @Autowired
+    public ResourceStatusHistoryWriter(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Records a status transition.
+     * @param resourceId The id of the resource.
+     * @param memberEmail The member owning the resource, null if unknown.
+     * @param oldStatus The status before the transition, null if unknown.
+     * @param newStatus The status after the transition.
+     * @param currentTaskId The task the resource is assigned to after the transition.
+     * @param timestamp The time of the transition.
+     */
+    public void record(String resourceId, String memberEmail, Resource.Status oldStatus, Resource.Status newStatus,
+                       String currentTaskId, Instant timestamp) {
+        if (!running || newStatus == null) {
+            return;
+        }
+
+        ResourceStatusEvent event = new ResourceStatusEvent();
+        ResourceStatusEvent.Meta meta = new ResourceStatusEvent.Meta();
+        meta.setResourceId(resourceId);
+        meta.setMemberEmail(memberEmail);
+        event.setMeta(meta);
+        event.setOldStatus(oldStatus);
+        event.setNewStatus(newStatus);
+        event.setCurrentTaskId(currentTaskId);
+        event.setTimestamp(timestamp);
+
+        if (!queue.offer(event) && dropped.incrementAndGet() % 1000 == 1) {
+            LOGGER.warn("Status history queue full, {} transitions dropped so far", dropped.get());
+        }
+    }
+
+    private void run() {
+        List<ResourceStatusEvent> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                ResourceStatusEvent first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Completes and inserts a batch of transitions with a single insert.
+     * @param batch The transitions, in recording order.
+     */
+    private void write(List<ResourceStatusEvent> batch) {
+        try {
+            complete(batch);
+
+            if (!batch.isEmpty()) {
+                mongoTemplate.insert(batch, ResourceStatusEvent.class);
+            }
+        } catch (DataAccessException e) {
+            LOGGER.error("Cannot write {} status transitions: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Fills the member and the previous status of the transitions that miss them, and drops the ones that left the status unchanged.
+     * The previous status is taken from the preceding transition of the same resource in the batch,
+     * or from the latest stored one; members are read from the resources with one query.
+     * @param batch The transitions, in recording order.
+     */
+    private void complete(List<ResourceStatusEvent> batch) {
+        Set<String> missingMember = new HashSet<>();
+        Set<String> missingStatus = new HashSet<>();
+        Map<String, Resource.Status> previous = new HashMap<>();
+
+        for (ResourceStatusEvent event : batch) {
+            String resourceId = event.getMeta().getResourceId();
+
+            if (event.getMeta().getMemberEmail() == null) {
+                missingMember.add(resourceId);
+            }
+
+            if (event.getOldStatus() == null && !previous.containsKey(resourceId)) {
+                missingStatus.add(resourceId);
+            }
+
+            previous.put(resourceId, event.getNewStatus());
+        }
+
+        Map<String, String> members = missingMember.isEmpty() ? Map.of() : findMembers(missingMember);
+        Map<String, Resource.Status> lastStored = missingStatus.isEmpty() ? Map.of() : findLastStatuses(missingStatus);
+
+        previous.clear();
+
+        for (ResourceStatusEvent event : batch) {
+            String resourceId = event.getMeta().getResourceId();
+
+            if (event.getMeta().getMemberEmail() == null) {
+                event.getMeta().setMemberEmail(members.get(resourceId));
+            }
+
+            if (event.getOldStatus() == null) {
+                event.setOldStatus(previous.containsKey(resourceId) ? previous.get(resourceId) : lastStored.get(resourceId));
+            }
+
+            previous.put(resourceId, event.getNewStatus());
+        }
+
+        // A status message repeating the current status, or only changing the task, is not a transition
+        batch.removeIf(event -> event.getOldStatus() == event.getNewStatus());
+    }
+
+    private Map<String, String> findMembers(Collection<String> ids) {
+        List<Object> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(ObjectId.isValid(id) ? new ObjectId(id) : id);
+        }
+
+        Map<String, String> members = new HashMap<>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Resource.class))
+                .find(Filters.in("_id", keys))
+                .projection(Projections.include("memberEmail"))
+                .forEach(document -> members.put(document.get("_id").toString(), document.getString("memberEmail")));
+
+        return members;
+    }
+
+    private Map<String, Resource.Status> findLastStatuses(Collection<String> ids) {
+        Date since = Date.from(Instant.now().minus(lookbackDays, ChronoUnit.DAYS));
+
+        Map<String, Resource.Status> statuses = new HashMap<>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(ResourceStatusEvent.class))
+                .aggregate(List.of(
+                        new Document("$match", new Document("meta.resourceId", new Document("$in", List.copyOf(ids)))
+                                .append("timestamp", new Document("$gte", since))),
+                        new Document("$sort", new Document("timestamp", -1)),
+                        new Document("$group", new Document("_id", "$meta.resourceId")
+                                .append("status", new Document("$first", "$newStatus")))))
+                .forEach(document -> statuses.put(document.getString("_id"), Resource.Status.valueOf(document.getString("status"))));
+
+        return statuses;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            if (!mongoTemplate.collectionExists(ResourceStatusEvent.class)) {
+                // Created explicitly, a collection created by the first insert would not be a time-series one
+                mongoTemplate.createCollection(ResourceStatusEvent.class);
+            }
+        } catch (DataAccessException e) {
+            LOGGER.error("Cannot create the status history collection: {}", e.getMessage());
+        }
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = Thread.ofPlatform().name("resource-status-history").daemon(true).start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+
+        // The writer is not interrupted, so an insert in progress completes and the queue is drained
+        running = false;
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.info("Status history writer stopped, {} transitions dropped", dropped.get());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,306 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoException;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.exceptions.TooManySubscribersException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ResourceSubscriptionService class pushes the resource changes to the subscribers of the server-sent event stream.
+ * It is fed by the ResourceChangedEvents, local and remote: the ids of the changed resources are queued and a dispatcher thread
+ * reads them in batches with a single query, serializes each resource once and offers it to the subscribers whose filters match.
+ * A change is also sent to the subscribers whose filters the resource matched before it, so that they see it leave their filters:
+ * the ones it was last sent to as matching, and, when the status before the change is known, the ones matching that status.
+ * Each subscriber has a bounded buffer drained by its own virtual thread, so an idle subscriber is a parked virtual thread;
+ * a subscriber whose buffer is full is too slow and is disconnected, and can resynchronize through /changes.
+ */
+@Service
+public class ResourceSubscriptionService implements SmartLifecycle {
+    private static final int DISPATCH_BATCH_SIZE = 500;
+
+    private final ResourceRepository resourceRepository;
+
+    private final ResourceService resourceService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private BlockingQueue<ResourceChangedEvent> changes;
+
+    private Thread dispatcher;
+
+    private volatile boolean running;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Value("${resource.stream.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${resource.stream.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${resource.stream.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${resource.stream.heartbeat-ms:30000}")
+    private long heartbeatMillis;
+
+    @Value("${resource.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceSubscriptionService.class);
+
+    /**
+     * A subscriber of the stream, with its filters and its buffer of serialized resources.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+
+        private final ResourceQueryFilters filters;
+
+        private final BlockingQueue<String> buffer;
+
+        /**
+         * The ids of the resources last sent as matching the filters, only accessed by the dispatcher.
+         */
+        private final Set<String> matching = new HashSet<>();
+
+        private Thread sender;
+
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, ResourceQueryFilters filters) {
+            this.emitter = emitter;
+            this.filters = filters;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * Buffers a resource, disconnecting the subscriber if it is not keeping up.
+         */
+        private void offer(String json) {
+            if (!buffer.offer(json)) {
+                LOGGER.warn("Disconnecting a slow resource stream subscriber");
+                emitter.complete();
+                close();
+            }
+        }
+
+        /**
+         * Sends the buffered resources, and a comment when idle so that closed connections are detected.
+         */
+        private void send() {
+            try {
+                while (!closed) {
+                    String json = buffer.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+
+                    if (json == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().name("resource").data(json));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter was completed
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            subscribers.remove(this);
+
+            if (sender != null && sender != Thread.currentThread()) {
+                sender.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Constructor for the ResourceSubscriptionService.
+     * @param resourceRepository The ResourceRepository used to read the changed resources.
+     * @param resourceService The ResourceService used to match the filters and build the DTOs.
+     * @param objectMapper The ObjectMapper used to serialize the resources.
+     */
+    @Autowired
+    public ResourceSubscriptionService(ResourceRepository resourceRepository, ResourceService resourceService, ObjectMapper objectMapper) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Subscribes to the changes of the resources matching the filters.
+     * @param resourceQueryFilters The filters, with the semantics of /find.
+     * @return The emitter of the stream.
+     * @throws TooManySubscribersException if the stream is not running or has too many subscribers.
+     */
+    public SseEmitter subscribe(ResourceQueryFilters resourceQueryFilters) {
+        if (!running || subscribers.size() >= maxSubscribers) {
+            throw new TooManySubscribersException("The resource stream cannot accept more subscribers.");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, resourceQueryFilters);
+
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        subscribers.add(subscriber);
+        subscriber.sender = Thread.ofVirtual().name("resource-stream-subscriber").start(subscriber::send);
+
+        return emitter;
+    }
+
+    /**
+     * Queues a changed resource for the subscribers; the publisher never waits for the stream.
+     * @param event The change.
+     */
+    @EventListener
+    public void onResourceChanged(ResourceChangedEvent event) {
+        if (!running || subscribers.isEmpty() || event.getResourceId() == null) {
+            return;
+        }
+
+        if (!changes.offer(event) && dropped.incrementAndGet() % 1000 == 1) {
+            LOGGER.warn("Resource stream queue full, {} changes dropped so far", dropped.get());
+        }
+    }
+
+    private void dispatch() {
+        List<ResourceChangedEvent> batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
+
+        while (running) {
+            try {
+                ResourceChangedEvent first = changes.poll(1, TimeUnit.SECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                changes.drainTo(batch, DISPATCH_BATCH_SIZE - 1);
+
+                // A resource changed several times in the batch is read and sent once, in its latest state,
+                // to the subscribers it matched before the first of the changes
+                Map<String, Resource.Status> previousStatuses = new HashMap<>();
+
+                for (ResourceChangedEvent event : batch) {
+                    previousStatuses.putIfAbsent(event.getResourceId(), event.getPreviousStatus());
+                }
+
+                for (Resource resource : resourceRepository.findByIds(previousStatuses.keySet())) {
+                    publish(resource, previousStatuses.get(resource.getId()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (DataAccessException | MongoException e) {
+                LOGGER.error("Cannot read {} changed resources for the stream: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(Resource resource, Resource.Status previousStatus) {
+        String json = null;
+
+        for (Subscriber subscriber : subscribers) {
+            if (resourceService.matchesFilters(resource, subscriber.filters)) {
+                subscriber.matching.add(resource.getId());
+            } else if (!subscriber.matching.remove(resource.getId()) && !matchedBefore(resource, previousStatus, subscriber.filters)) {
+                continue;
+            }
+
+            if (json == null) {
+                try {
+                    json = objectMapper.writeValueAsString(resourceService.getResourceDTO(resource));
+                } catch (JsonProcessingException e) {
+                    LOGGER.error("Cannot serialize resource {} for the stream: {}", resource.getId(), e.getMessage());
+                    return;
+                }
+            }
+
+            subscriber.offer(json);
+        }
+    }
+
+    /**
+     * Checks if a resource matched the filters with its status before the change.
+     * The other properties are the current ones, so this only detects a resource leaving the filters by a status change.
+     */
+    private boolean matchedBefore(Resource resource, Resource.Status previousStatus, ResourceQueryFilters filters) {
+        if (previousStatus == null || previousStatus == resource.getStatus()) {
+            return false;
+        }
+
+        // The resource was read by the dispatcher and is not shared, so its status can be swapped for the check
+        Resource.Status status = resource.getStatus();
+        resource.setStatus(previousStatus);
+
+        try {
+            return resourceService.matchesFilters(resource, filters);
+        } finally {
+            resource.setStatus(status);
+        }
+    }
+
+    @Override
+    public void start() {
+        changes = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        dispatcher = Thread.ofVirtual().name("resource-stream-dispatcher").start(this::dispatch);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        dispatcher.interrupt();
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+            subscriber.close();
+        }
+
+        LOGGER.info("Resource stream stopped, {} changes dropped", dropped.get());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
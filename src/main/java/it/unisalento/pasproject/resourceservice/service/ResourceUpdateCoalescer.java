@@ -0,0 +1,161 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDeltaDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The ResourceUpdateCoalescer class debounces the resource delta events.
+ * The deltas of each resource within a window are merged into one; the first delta of a resource schedules
+ * its publication at the end of the window, so an update is never delayed by more than the window.
+ * Pending updates are flushed when the application shuts down; deltas submitted from then on are published right away.
+ */
+@Service
+public class ResourceUpdateCoalescer implements SmartLifecycle {
+    private final MessageProducer messageProducer;
+
+    /**
+     * The merged pending delta of each resource.
+     */
+    private final Map<String, ResourceDeltaDTO> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Held for reading while a delta is submitted and for writing while stopping, so no delta is left pending after the flush.
+     */
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    @Value("${rabbitmq.exchange.data.name}")
+    private String dataExchange;
+
+    @Value("${rabbitmq.routing.resourcedelta.key}")
+    private String resourceDeltaTopic;
+
+    /**
+     * The coalescing window in milliseconds, 0 disables coalescing.
+     */
+    @Value("${rabbitmq.coalescer.window-ms:0}")
+    private long window;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceUpdateCoalescer.class);
+
+    /**
+     * Constructor for the ResourceUpdateCoalescer.
+     * @param messageProducer The MessageProducer used to publish the coalesced updates.
+     */
+    @Autowired
+    public ResourceUpdateCoalescer(MessageProducer messageProducer) {
+        this.messageProducer = messageProducer;
+    }
+
+    /**
+     * Submits a delta, merging it into the pending delta of the same resource.
+     * @param message The delta to publish.
+     */
+    public void submit(ResourceDeltaDTO message) {
+        if (window <= 0 || message.getId() == null) {
+            publish(message);
+            return;
+        }
+
+        lifecycleLock.readLock().lock();
+        try {
+            if (!running) {
+                publish(message);
+                return;
+            }
+
+            AtomicBoolean first = new AtomicBoolean();
+
+            pending.compute(message.getId(), (id, older) -> {
+                if (older == null) {
+                    first.set(true);
+                    return message;
+                }
+
+                older.merge(message);
+                return older;
+            });
+
+            if (first.get()) {
+                try {
+                    scheduler.schedule(() -> flush(message.getId()), window, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // The delta would never be flushed, so it is published now
+                    flush(message.getId());
+                }
+            }
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Publishes the pending delta of a resource, if any.
+     * @param id The id of the resource.
+     */
+    private void flush(String id) {
+        ResourceDeltaDTO message = pending.remove(id);
+
+        if (message != null) {
+            publish(message);
+        }
+    }
+
+    private void publish(ResourceDeltaDTO message) {
+        try {
+            messageProducer.sendMessage(message, resourceDeltaTopic, dataExchange);
+        } catch (Exception e) {
+            LOGGER.error("Cannot publish update of resource {}: {}", message.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-update-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        lifecycleLock.writeLock().lock();
+        try {
+            running = false;
+            scheduler.shutdownNow();
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+
+        // Whatever is still pending is published before the connections are closed
+        pending.keySet().forEach(this::flush);
+
+        LOGGER.info("Resource update coalescer flushed");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
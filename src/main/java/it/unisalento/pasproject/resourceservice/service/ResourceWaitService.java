@@ -0,0 +1,203 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.mongodb.MongoException;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceListDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.TooManySubscribersException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ResourceWaitService class parks the requests waiting for a resource matching their filters to become available.
+ * A waiting request is a DeferredResult, which holds no thread; it is completed by the ResourceChangedEvents reporting
+ * an AVAILABLE status, such as the ones of updateStatus and of the deallocation messages, or with an empty list at its deadline.
+ * As for the stream, the events only queue the resource ids, and a dispatcher thread reads them in batches and matches the waiters.
+ */
+@Service
+public class ResourceWaitService implements SmartLifecycle {
+    private static final int DISPATCH_BATCH_SIZE = 500;
+
+    private final ResourceRepository resourceRepository;
+
+    private final ResourceService resourceService;
+
+    /**
+     * A waiting request, with its filters.
+     */
+    private record Waiter(ResourceQueryFilters filters, DeferredResult<ResourceListDTO> result) {
+    }
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    private BlockingQueue<String> available;
+
+    private Thread dispatcher;
+
+    private volatile boolean running;
+
+    @Value("${resource.wait.max-waiters:10000}")
+    private int maxWaiters;
+
+    @Value("${resource.wait.default-timeout-ms:30000}")
+    private long defaultTimeoutMillis;
+
+    @Value("${resource.wait.max-timeout-ms:60000}")
+    private long maxTimeoutMillis;
+
+    @Value("${resource.wait.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceWaitService.class);
+
+    /**
+     * Constructor for the ResourceWaitService.
+     * @param resourceRepository The ResourceRepository used to read the resources that became available.
+     * @param resourceService The ResourceService used to query and match the resources.
+     */
+    @Autowired
+    public ResourceWaitService(ResourceRepository resourceRepository, ResourceService resourceService) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+    }
+
+    /**
+     * Waits for available resources matching the filters.
+     * The request is registered before the available resources are queried, so a resource becoming available meanwhile is not missed.
+     * @param resourceQueryFilters The filters, with the semantics of /find; the status is always AVAILABLE.
+     * @param timeout The milliseconds to wait, null for the default; capped to the maximum.
+     * @return The result, completed with the matching resources, or with an empty list at the deadline.
+     * @throws TooManySubscribersException if too many requests are waiting.
+     */
+    public DeferredResult<ResourceListDTO> waitForAvailable(ResourceQueryFilters resourceQueryFilters, Long timeout) {
+        if (!running || waiters.size() >= maxWaiters) {
+            throw new TooManySubscribersException("Too many requests are waiting for resources.");
+        }
+
+        resourceQueryFilters.setStatus(ResourceQueryFilters.Status.AVAILABLE);
+        resourceQueryFilters.setFields(null);
+
+        long timeoutMillis = timeout != null && timeout > 0 ? Math.min(timeout, maxTimeoutMillis) : defaultTimeoutMillis;
+        DeferredResult<ResourceListDTO> result = new DeferredResult<>(timeoutMillis, () -> toResourceListDTO(List.of()));
+        Waiter waiter = new Waiter(resourceQueryFilters, result);
+
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+
+        List<Resource> resources = resourceService.findResources(resourceQueryFilters);
+
+        if (!resources.isEmpty()) {
+            result.setResult(toResourceListDTO(resources));
+        }
+
+        return result;
+    }
+
+    /**
+     * Queues a resource that became available, if some request is waiting.
+     * @param event The change.
+     */
+    @EventListener
+    public void onResourceChanged(ResourceChangedEvent event) {
+        if (!running || waiters.isEmpty() || event.getResourceId() == null || event.getStatus() != Resource.Status.AVAILABLE) {
+            return;
+        }
+
+        if (!available.offer(event.getResourceId())) {
+            LOGGER.warn("Resource wait queue full, dropping available resource {}", event.getResourceId());
+        }
+    }
+
+    private void dispatch() {
+        List<String> batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
+
+        while (running) {
+            try {
+                String first = available.poll(1, TimeUnit.SECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                available.drainTo(batch, DISPATCH_BATCH_SIZE - 1);
+
+                List<Resource> resources = resourceRepository.findByIds(new HashSet<>(batch));
+
+                for (Waiter waiter : waiters) {
+                    List<Resource> matching = new ArrayList<>();
+
+                    for (Resource resource : resources) {
+                        // Read after the event, so the resource may have been taken meanwhile
+                        if (resourceService.matchesFilters(resource, waiter.filters())) {
+                            matching.add(resource);
+                        }
+                    }
+
+                    if (!matching.isEmpty()) {
+                        waiter.result().setResult(toResourceListDTO(matching));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (DataAccessException | MongoException e) {
+                LOGGER.error("Cannot read {} available resources for the waiting requests: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private ResourceListDTO toResourceListDTO(List<Resource> resources) {
+        ResourceListDTO resourceListDTO = new ResourceListDTO();
+        List<ResourceDTO> list = new ArrayList<>(resources.size());
+        resourceListDTO.setResourcesList(list);
+
+        for (Resource resource : resources) {
+            list.add(resourceService.getResourceDTO(resource));
+        }
+
+        return resourceListDTO;
+    }
+
+    @Override
+    public void start() {
+        available = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        dispatcher = Thread.ofVirtual().name("resource-wait-dispatcher").start(this::dispatch);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        dispatcher.interrupt();
+
+        for (Waiter waiter : waiters) {
+            waiter.result().setResult(toResourceListDTO(List.of()));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,161 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchanger;
+import it.unisalento.pasproject.resourceservice.dto.RevocationMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.RevocationSnapshotDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RevocationListService class keeps an in-memory set of revoked (disabled) users.
+ * The set is loaded from a snapshot requested to the security service at startup and then kept
+ * up to date by the revocation messages the security service pushes over RabbitMQ.
+ * It is used by the trusted-claims authentication mode, where users are not looked up on every request.
+ * Until the snapshot is loaded the set is incomplete, so the callers must not rely on it; the snapshot is requested
+ * again until it arrives, and the revocations pushed meanwhile take precedence over it.
+ */
+@Service
+public class RevocationListService {
+    private final MessageExchanger messageExchanger;
+
+    private final Set<String> revokedUsers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The revocations pushed before the snapshot was loaded, which are newer than the snapshot.
+     */
+    private final Map<String, Boolean> pushedBeforeSnapshot = new HashMap<>();
+
+    private volatile boolean snapshotLoaded;
+
+    @Value("${security.auth.mode:cqrs}")
+    private String authMode;
+
+    @Value("${rabbitmq.exchange.security.name}")
+    private String securityExchange;
+
+    @Value("${rabbitmq.routing.security.snapshot.key}")
+    private String snapshotRoutingKey;
+
+    @Value("${security.revocation.snapshot-retry-ms:5000}")
+    private long snapshotRetryMillis;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationListService.class);
+
+    /**
+     * Constructor for the RevocationListService.
+     * @param messageExchanger The MessageExchanger used to request the revocation snapshot.
+     */
+    @Autowired
+    public RevocationListService(MessageExchanger messageExchanger) {
+        this.messageExchanger = messageExchanger;
+    }
+
+    /**
+     * Starts loading the revocation snapshot when the application is ready.
+     * The snapshot is only needed in trusted-claims mode; it is requested until it is loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshot() {
+        if (!UserCheckService.AUTH_MODE_CLAIMS.equalsIgnoreCase(authMode)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("revocation-snapshot-loader").start(() -> {
+            try {
+                while (!requestSnapshot()) {
+                    Thread.sleep(snapshotRetryMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Requests the revocation snapshot to the security service and merges it with the pushed revocations.
+     * @return true if the snapshot was loaded, false otherwise.
+     */
+    boolean requestSnapshot() {
+        RevocationSnapshotDTO snapshot = null;
+
+        try {
+            snapshot = messageExchanger.exchangeMessage("snapshot", snapshotRoutingKey, securityExchange, RevocationSnapshotDTO.class);
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage());
+        }
+
+        if (snapshot == null || snapshot.getRevokedUsers() == null) {
+            LOGGER.warn("Revocation snapshot not available, retrying in {} ms", snapshotRetryMillis);
+            return false;
+        }
+
+        synchronized (pushedBeforeSnapshot) {
+            for (String email : snapshot.getRevokedUsers()) {
+                // A revocation pushed while the snapshot was requested is newer than the snapshot
+                if (!pushedBeforeSnapshot.containsKey(email)) {
+                    revokedUsers.add(email);
+                }
+            }
+
+            pushedBeforeSnapshot.clear();
+            snapshotLoaded = true;
+        }
+
+        LOGGER.info("Revocation snapshot loaded with {} revoked users", snapshot.getRevokedUsers().size());
+
+        return true;
+    }
+
+    /**
+     * Receives a revocation message pushed by the security service.
+     * @param message The received message.
+     */
+    @RabbitListener(queues = "#{revocationQueue.name}")
+    public void receiveRevocationMessage(RevocationMessageDTO message) {
+        if (message.getEmail() == null) {
+            return;
+        }
+
+        synchronized (pushedBeforeSnapshot) {
+            if (!snapshotLoaded) {
+                pushedBeforeSnapshot.put(message.getEmail(), message.isRevoked());
+            }
+
+            if (message.isRevoked()) {
+                revokedUsers.add(message.getEmail());
+            } else {
+                revokedUsers.remove(message.getEmail());
+            }
+        }
+
+        LOGGER.info("Revocation received for {}: {}", message.getEmail(), message.isRevoked());
+    }
+
+    /**
+     * Checks if the revocation snapshot is loaded, so that the revocation list is complete.
+     * @return true if the snapshot is loaded, false otherwise.
+     */
+    public boolean isSnapshotLoaded() {
+        return snapshotLoaded;
+    }
+
+    /**
+     * Checks if a user is revoked.
+     * @param email The email of the user.
+     * @return true if the user is revoked, false otherwise.
+     */
+    public boolean isRevoked(String email) {
+        return revokedUsers.contains(email);
+    }
+}
@@ -4,7 +4,7 @@ package it.unisalento.pasproject.resourceservice.service;
 import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchangeStrategy;
 import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchanger;
 import it.unisalento.pasproject.resourceservice.dto.UserDetailsDTO;
-import it.unisalento.pasproject.resourceservice.exceptions.UserNotAuthorizedException;
+import it.unisalento.pasproject.resourceservice.security.VerifiedClaims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,11 +23,32 @@ import static it.unisalento.pasproject.resourceservice.security.SecurityConstant
  */
 @Service
 public class UserCheckService {
+    /**
+     * Authentication mode in which every user is looked up in the security service.
+     */
+    public static final String AUTH_MODE_CQRS = "cqrs";
+
+    /**
+     * Authentication mode in which verified JWT claims are trusted and only the revocation list is checked.
+     */
+    public static final String AUTH_MODE_CLAIMS = "claims";
+
     /**
      * The MessageExchanger used for exchanging messages.
      */
     private final MessageExchanger messageExchanger;
 
+    /**
+     * The RevocationListService used in trusted-claims mode.
+     */
+    private final RevocationListService revocationListService;
+
+    /**
+     * The authentication mode, either cqrs or claims.
+     */
+    @Value("${security.auth.mode:cqrs}")
+    private String authMode;
+
     /**
      * The name of the security exchange.
      */
@@ -46,8 +67,9 @@ public class UserCheckService {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserCheckService.class);
 
     @Autowired
-    public UserCheckService(MessageExchanger messageExchanger, @Qualifier("RabbitMQExchange") MessageExchangeStrategy messageExchangeStrategy) {
+    public UserCheckService(MessageExchanger messageExchanger, @Qualifier("RabbitMQExchange") MessageExchangeStrategy messageExchangeStrategy, RevocationListService revocationListService) {
         this.messageExchanger = messageExchanger;
+        this.revocationListService = revocationListService;
         this.messageExchanger.setStrategy(messageExchangeStrategy);
     }
 
@@ -74,6 +96,43 @@ public class UserCheckService {
         return user;
     }
 
+    /**
+     * Checks if the service runs in trusted-claims mode.
+     * @return true if users are authorized from verified claims only, false otherwise.
+     */
+    public boolean isTrustedClaimsMode() {
+        return AUTH_MODE_CLAIMS.equalsIgnoreCase(authMode);
+    }
+
+    /**
+     * Builds the user details from verified JWT claims, without asking the security service.
+     * The user is disabled if it is in the revocation list pushed by the security service.
+     * Until the revocation snapshot is loaded the list is incomplete, so the user is looked up in the security service.
+     * @param claims The verified claims of the token.
+     * @return The UserDetailsDTO of the user.
+     */
+    public UserDetailsDTO loadUserFromClaims(VerifiedClaims claims) {
+        if (!revocationListService.isSnapshotLoaded()) {
+            UserDetailsDTO user = loadUserByUsername(claims.getSubject());
+
+            if (user == null) {
+                // The revocations cannot be checked, so the user is not trusted
+                user = new UserDetailsDTO();
+                user.setEmail(claims.getSubject());
+                user.setRole(claims.getRole());
+                user.setEnabled(false);
+            }
+
+            return user;
+        }
+
+        UserDetailsDTO user = new UserDetailsDTO();
+        user.setEmail(claims.getSubject());
+        user.setRole(claims.getRole());
+        user.setEnabled(!revocationListService.isRevoked(claims.getSubject()));
+        return user;
+    }
+
     /**
      * Checks if a user is enabled.
      * @param enable The enabled status of the user.
@@ -97,7 +156,7 @@ public class UserCheckService {
      * @return true if the current user is an administrator, false otherwise
      */
     public Boolean isAdministrator(){
-        String currentRole = SecurityContextHolder.getContext().getAuthentication().getAuthorities().toString();
-        return currentRole.equalsIgnoreCase(ROLE_ADMIN);
+        return SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
+                .anyMatch(authority -> ROLE_ADMIN.equalsIgnoreCase(authority.getAuthority()));
     }
 }
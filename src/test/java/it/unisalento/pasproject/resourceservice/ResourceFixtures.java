@@ -0,0 +1,54 @@
+package it.unisalento.pasproject.resourceservice;
+
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import org.bson.types.ObjectId;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * The ResourceFixtures class builds the domain objects shared by the tests.
+ */
+public final class ResourceFixtures {
+    private ResourceFixtures() {}
+
+    public static Availability availability(DayOfWeek dayOfWeek, LocalTime startTime, LocalTime endTime) {
+        Availability availability = new Availability();
+        availability.setDayOfWeek(dayOfWeek);
+        availability.setStartTime(startTime);
+        availability.setEndTime(endTime);
+        return availability;
+    }
+
+    /**
+     * Builds a CPU with the common and the CPU properties set, including an interval ending at midnight.
+     */
+    public static ResourceCPU cpu() {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId(new ObjectId().toHexString());
+        resource.setName("Intel Core i9");
+        resource.setType("cpu");
+        resource.setGreenEnergyType("Solar");
+        resource.setCountry("Italy");
+        resource.setRegion("Puglia");
+        resource.setCity("Lecce");
+        resource.setAvailability(List.of(
+                availability(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(12, 30)),
+                availability(DayOfWeek.SUNDAY, LocalTime.of(22, 0), LocalTime.MIDNIGHT)));
+        resource.setKWh(95.5);
+        resource.setMemberEmail("user@example.com");
+        resource.setStatus(Resource.Status.BUSY);
+        resource.setCurrentTaskId("task1");
+        resource.setVersion(7);
+        resource.setArchitecture("x86_64");
+        resource.setCores(8);
+        resource.setThreads(16);
+        resource.setBaseFrequency(3.6);
+        resource.setHyperThreading(true);
+        resource.setMulticoreScore(4800);
+        return resource;
+    }
+}
@@ -0,0 +1,94 @@
+package it.unisalento.pasproject.resourceservice.business.io.consumer;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.AmqpIOException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class MessageBatchTest {
+    private Channel channel;
+
+    private MessageBatch<String> messageBatch;
+
+    @BeforeEach
+    void setup() {
+        channel = mock(Channel.class);
+        messageBatch = new MessageBatch<>(channel, new ArrayList<>(List.of(
+                new MessageBatch.PulledMessage<>("a", 1),
+                new MessageBatch.PulledMessage<>("b", 2),
+                new MessageBatch.PulledMessage<>("c", 3))));
+    }
+
+    @Test
+    void acksTheWholeBatchAtOnce() throws Exception {
+        messageBatch.ack();
+
+        verify(channel).basicAck(3, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void nacksTheWholeBatchAtOnce() throws Exception {
+        messageBatch.nack(false);
+
+        verify(channel).basicNack(3, true, false);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void settlesEachMessageOnce() throws Exception {
+        MessageBatch.PulledMessage<String> first = messageBatch.getMessages().getFirst();
+
+        messageBatch.ack(first);
+        messageBatch.ack(first);
+        messageBatch.nack(first, true);
+
+        verify(channel, times(1)).basicAck(1, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void closeRequeuesTheUnsettledMessagesAndClosesTheChannel() throws Exception {
+        when(channel.isOpen()).thenReturn(true);
+
+        try (MessageBatch<String> batch = messageBatch) {
+            assertEquals(List.of("a", "b", "c"), batch.getPayloads());
+            batch.ack(batch.getMessages().getFirst());
+        }
+
+        InOrder inOrder = inOrder(channel);
+        inOrder.verify(channel).basicAck(1, false);
+        inOrder.verify(channel).basicNack(3, true, true);
+        inOrder.verify(channel).close();
+    }
+
+    @Test
+    void closeAfterTheBatchIsSettledOnlyClosesTheChannel() throws Exception {
+        when(channel.isOpen()).thenReturn(true);
+
+        messageBatch.ack();
+        messageBatch.close();
+
+        verify(channel).basicAck(3, true);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(channel).close();
+    }
+
+    @Test
+    void closeStillClosesTheChannelWhenTheRequeueFails() throws Exception {
+        when(channel.isOpen()).thenReturn(true);
+        doThrow(new IOException("Channel closed")).when(channel).basicNack(anyLong(), anyBoolean(), anyBoolean());
+
+        assertThrows(AmqpIOException.class, messageBatch::close);
+        verify(channel).close();
+    }
+}
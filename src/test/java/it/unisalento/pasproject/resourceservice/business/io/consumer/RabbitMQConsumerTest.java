@@ -0,0 +1,117 @@
+package it.unisalento.pasproject.resourceservice.business.io.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageStatusDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RabbitMQConsumerTest {
+    private Channel channel;
+
+    private RabbitMQConsumer rabbitMQConsumer;
+
+    @BeforeEach
+    void setup() throws Exception {
+        channel = mock(Channel.class);
+        Connection connection = mock(Connection.class);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        when(rabbitTemplate.getMessageConverter()).thenReturn(new Jackson2JsonMessageConverter());
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createChannel(false)).thenReturn(channel);
+        when(channel.isOpen()).thenReturn(true);
+
+        rabbitMQConsumer = new RabbitMQConsumer(rabbitTemplate);
+    }
+
+    /**
+     * Delivers the given bodies as JSON messages as soon as the consumer is registered.
+     */
+    private void queued(String... bodies) throws Exception {
+        when(channel.basicConsume(eq("status-queue"), eq(false), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer consumer = invocation.getArgument(2);
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().contentType(MessageProperties.CONTENT_TYPE_JSON).build();
+
+            for (int i = 0; i < bodies.length; i++) {
+                consumer.handleDelivery("ctag", new Envelope(i + 1, false, "", "status-queue"), properties,
+                        bodies[i].getBytes(StandardCharsets.UTF_8));
+            }
+
+            return "ctag";
+        });
+    }
+
+    private static List<String> ids(MessageBatch<ResourceMessageStatusDTO> messageBatch) {
+        return messageBatch.getPayloads().stream().map(ResourceMessageStatusDTO::getId).toList();
+    }
+
+    @Test
+    void pullsUpToTheBatchSizeWithAMatchingPrefetch() throws Exception {
+        queued("{\"id\":\"r1\"}", "{\"id\":\"r2\"}", "{\"id\":\"r3\"}");
+
+        try (MessageBatch<ResourceMessageStatusDTO> messageBatch =
+                     rabbitMQConsumer.consumeBatch("status-queue", 2, Duration.ofSeconds(1), ResourceMessageStatusDTO.class)) {
+            assertEquals(List.of("r1", "r2"), ids(messageBatch));
+            assertEquals(2, messageBatch.getMessages().getLast().deliveryTag());
+        }
+
+        verify(channel).basicQos(2);
+        verify(channel).basicCancel("ctag");
+    }
+
+    @Test
+    void returnsAPartialBatchWhenTheWaitExpires() throws Exception {
+        queued("{\"id\":\"r1\"}");
+
+        try (MessageBatch<ResourceMessageStatusDTO> messageBatch =
+                     rabbitMQConsumer.consumeBatch("status-queue", 10, Duration.ofMillis(50), ResourceMessageStatusDTO.class)) {
+            assertEquals(List.of("r1"), ids(messageBatch));
+        }
+    }
+
+    @Test
+    void dropsTheUnconvertibleMessagesFromTheBatch() throws Exception {
+        queued("{\"id\":\"r1\"}", "not json", "{\"id\":\"r3\"}");
+
+        try (MessageBatch<ResourceMessageStatusDTO> messageBatch =
+                     rabbitMQConsumer.consumeBatch("status-queue", 3, Duration.ofSeconds(1), ResourceMessageStatusDTO.class)) {
+            assertEquals(List.of("r1", "r3"), ids(messageBatch));
+            verify(channel).basicNack(2, false, false);
+
+            messageBatch.ack(messageBatch.getMessages().getFirst());
+        }
+
+        // Closing requeues the last outstanding message and the ones below it, the rejected one is already settled
+        verify(channel).basicAck(1, false);
+        verify(channel).basicNack(3, true, true);
+    }
+
+    @Test
+    void closesTheChannelWhenThePullFails() throws Exception {
+        when(channel.basicConsume(anyString(), anyBoolean(), any(Consumer.class))).thenThrow(new IOException("Queue not found"));
+
+        assertThrows(AmqpIOException.class,
+                () -> rabbitMQConsumer.consumeBatch("status-queue", 10, Duration.ofMillis(50), ResourceMessageStatusDTO.class));
+        verify(channel).close();
+    }
+}
@@ -0,0 +1,158 @@
+package it.unisalento.pasproject.resourceservice.business.io.producer;
+
+import com.rabbitmq.client.ConnectionFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RabbitMQBatchProducerTest {
+    private RabbitTemplate rabbitTemplate;
+
+    private RabbitMQBatchProducer rabbitMQBatchProducer;
+
+    /**
+     * The payloads published through the batch operations, in order.
+     */
+    private final List<Object> published = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        CachingConnectionFactory connectionFactory = mock(CachingConnectionFactory.class);
+        when(connectionFactory.getRabbitConnectionFactory()).thenReturn(new ConnectionFactory());
+
+        rabbitMQBatchProducer = new RabbitMQBatchProducer(connectionFactory, new Jackson2JsonMessageConverter(), new SimpleMeterRegistry(), 100);
+        ReflectionTestUtils.setField(rabbitMQBatchProducer, "batchSize", 10);
+        ReflectionTestUtils.setField(rabbitMQBatchProducer, "maxAttempts", 3);
+        ReflectionTestUtils.setField(rabbitMQBatchProducer, "confirmTimeout", 1000L);
+
+        rabbitTemplate = mock(RabbitTemplate.class);
+        ReflectionTestUtils.setField(rabbitMQBatchProducer, "rabbitTemplate", rabbitTemplate);
+    }
+
+    @AfterEach
+    void teardown() {
+        if (rabbitMQBatchProducer.isRunning()) {
+            rabbitMQBatchProducer.stop();
+        }
+    }
+
+    /**
+     * Publishes the batches through operations that confirm each message with the given outcome, the first publish of failing throwing.
+     */
+    private void batches(String failing, boolean ack) {
+        RabbitOperations operations = mock(RabbitOperations.class);
+        List<Object> failed = new CopyOnWriteArrayList<>();
+
+        doAnswer(invocation -> {
+            Object payload = invocation.getArgument(2);
+
+            if (payload.equals(failing) && !failed.contains(payload)) {
+                failed.add(payload);
+                throw new AmqpIOException(new IOException("Channel closed"));
+            }
+
+            published.add(payload);
+            invocation.<CorrelationData>getArgument(4).getFuture().complete(new CorrelationData.Confirm(ack || published.size() > 1, "nack"));
+            return null;
+        }).when(operations).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations));
+    }
+
+    /**
+     * Confirms the messages published on the calling thread with the given outcome.
+     */
+    private void direct(boolean ack) {
+        doAnswer(invocation -> {
+            published.add(invocation.getArgument(2));
+            invocation.<CorrelationData>getArgument(4).getFuture().complete(new CorrelationData.Confirm(ack, "nack"));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    private void awaitPublished(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+
+        while (published.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void publishesTheQueuedMessagesInOrder() throws Exception {
+        batches(null, true);
+        rabbitMQBatchProducer.start();
+
+        rabbitMQBatchProducer.sendMessage("a", "key", "exchange");
+        rabbitMQBatchProducer.sendMessage("b", "key", "exchange");
+        rabbitMQBatchProducer.sendMessage("c", "key", "exchange");
+
+        awaitPublished(3);
+        assertEquals(List.of("a", "b", "c"), published);
+    }
+
+    @Test
+    void publishesAFailedMessageAgainBeforeTheQueuedOnes() throws Exception {
+        batches("a", true);
+        rabbitMQBatchProducer.start();
+
+        rabbitMQBatchProducer.sendMessage("a", "key", "exchange");
+        rabbitMQBatchProducer.sendMessage("b", "key", "exchange");
+        rabbitMQBatchProducer.sendMessage("c", "key", "exchange");
+
+        awaitPublished(3);
+        assertEquals(List.of("a", "b", "c"), published);
+    }
+
+    @Test
+    void publishesANackedMessageAgain() throws Exception {
+        // The first confirm is a nack
+        batches(null, false);
+        rabbitMQBatchProducer.start();
+
+        rabbitMQBatchProducer.sendMessage("a", "key", "exchange");
+
+        awaitPublished(2);
+        assertEquals(List.of("a", "a"), published);
+    }
+
+    @Test
+    void publishesSynchronouslyAfterStop() {
+        batches(null, true);
+        direct(true);
+        rabbitMQBatchProducer.start();
+        rabbitMQBatchProducer.stop();
+
+        rabbitMQBatchProducer.sendMessage("a", "key", "exchange", "reply");
+
+        assertEquals(List.of("a"), published);
+        verify(rabbitTemplate).convertAndSend(eq("exchange"), eq("key"), eq("a"), any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void throwsWhenAMessageSentAfterStopIsNotConfirmed() {
+        direct(false);
+
+        assertThrows(AmqpException.class, () -> rabbitMQBatchProducer.sendMessage("a", "key", "exchange"));
+        assertEquals(List.of("a", "a", "a"), published);
+    }
+}
@@ -0,0 +1,189 @@
+package it.unisalento.pasproject.resourceservice.configuration;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import it.unisalento.pasproject.resourceservice.business.io.converter.Jackson2CborMessageConverter;
+import it.unisalento.pasproject.resourceservice.business.io.exchanger.RabbitMQExchange;
+import it.unisalento.pasproject.resourceservice.dto.ScoreDTO;
+import it.unisalento.pasproject.resourceservice.dto.ScoreMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.UserDetailsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RabbitMQConfigTest {
+    private RabbitMQConfig rabbitMQConfig;
+
+    /**
+     * The requests received by the replier, as sent on the wire.
+     */
+    private final List<Message> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        rabbitMQConfig = new RabbitMQConfig();
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceDataExchange", "resource-data-exchange");
+        ReflectionTestUtils.setField(rabbitMQConfig, "newResourceTopic", "resource.data.consistency");
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceDeltaTopic", "resource.data.delta");
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceStream", "resource-data-stream");
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceStreamMaxAge", "7D");
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceStreamMaxLengthBytes", 5_000_000_000L);
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceStreamMaxSegmentSizeBytes", 100_000_000L);
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceAssignmentQueue", "resource-assignment-queue");
+        ReflectionTestUtils.setField(rabbitMQConfig, "resourceUsageQueue", "resource-deallocation-queue");
+        ReflectionTestUtils.setField(rabbitMQConfig, "deadLetterExchange", "resource-dead-letter-exchange");
+    }
+
+    @Test
+    void declaresTheResourceDataStreamWithItsRetention() {
+        Queue stream = rabbitMQConfig.resourceStream();
+
+        assertEquals("resource-data-stream", stream.getName());
+        assertTrue(stream.isDurable());
+        assertEquals("stream", stream.getArguments().get("x-queue-type"));
+        assertEquals("7D", stream.getArguments().get("x-max-age"));
+        assertEquals(5_000_000_000L, stream.getArguments().get("x-max-length-bytes"));
+        assertEquals(100_000_000L, stream.getArguments().get("x-stream-max-segment-size-bytes"));
+    }
+
+    @Test
+    void feedsTheStreamWithTheSnapshotsAndTheDeltas() {
+        Binding snapshots = rabbitMQConfig.resourceStreamBinding();
+        Binding deltas = rabbitMQConfig.resourceStreamDeltaBinding();
+
+        assertEquals("resource-data-stream", snapshots.getDestination());
+        assertEquals("resource-data-exchange", snapshots.getExchange());
+        assertEquals("resource.data.consistency", snapshots.getRoutingKey());
+        assertEquals("resource-data-stream", deltas.getDestination());
+        assertEquals("resource-data-exchange", deltas.getExchange());
+        assertEquals("resource.data.delta", deltas.getRoutingKey());
+    }
+
+    private static Message received(String queue, String routingKey) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(queue);
+        properties.setReceivedRoutingKey(routingKey);
+        return new Message("{}".getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    @Test
+    void republishesTheRejectedStatusMessagesWithTheirRoutingKey() throws Exception {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        Channel channel = mock(Channel.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createChannel(anyBoolean())).thenReturn(channel);
+        when(channel.isOpen()).thenReturn(true);
+
+        MessageRecoverer recoverer = rabbitMQConfig.statusDeadLetterRecoverer(connectionFactory);
+        recoverer.recover(received("resource-assignment-queue", "resource.assignment"), new IllegalStateException("Write failed"));
+
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel).basicPublish(eq("resource-dead-letter-exchange"), eq("resource.assignment"), anyBoolean(), properties.capture(), any());
+        assertEquals("Write failed", properties.getValue().getHeaders().get(RepublishMessageRecoverer.X_EXCEPTION_MESSAGE).toString());
+    }
+
+    @Test
+    void leavesTheMessagesOfTheShardQueuesToTheBroker() {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+
+        MessageRecoverer recoverer = rabbitMQConfig.statusDeadLetterRecoverer(connectionFactory);
+        recoverer.recover(received("resource-status-shard.0", "resource.assignment"), new IllegalStateException("Write failed"));
+
+        verify(connectionFactory, never()).createConnection();
+    }
+
+    /**
+     * Builds a template with the configured converter, whose broker is a replier decoding each request and encoding its reply with that converter.
+     */
+    private RabbitTemplate replyingTemplate(Function<Object, Object> replier) {
+        RabbitTemplate configured = (RabbitTemplate) rabbitMQConfig.amqpTemplate(mock(ConnectionFactory.class));
+        MessageConverter converter = configured.getMessageConverter();
+
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(mock(ConnectionFactory.class)) {
+            @Override
+            protected Message doSendAndReceive(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+                requests.add(message);
+                return converter.toMessage(replier.apply(converter.fromMessage(message)), new MessageProperties());
+            }
+        };
+        rabbitTemplate.setMessageConverter(converter);
+        return rabbitTemplate;
+    }
+
+    private static ScoreDTO score(Object request) {
+        ScoreMessageDTO scoreMessageDTO = assertInstanceOf(ScoreMessageDTO.class, request);
+        assertEquals("Intel Core i9", scoreMessageDTO.getResourceName());
+
+        ScoreDTO scoreDTO = new ScoreDTO();
+        scoreDTO.setScore(1800);
+        scoreDTO.setMulticore_score(4800);
+        return scoreDTO;
+    }
+
+    private static ScoreMessageDTO scoreRequest() {
+        ScoreMessageDTO scoreMessageDTO = new ScoreMessageDTO();
+        scoreMessageDTO.setResourceName("Intel Core i9");
+        scoreMessageDTO.setResourceType("cpu");
+        return scoreMessageDTO;
+    }
+
+    @Test
+    void exchangesAScoreRequestAsJson() {
+        RabbitMQExchange rabbitMQExchange = new RabbitMQExchange(replyingTemplate(RabbitMQConfigTest::score));
+
+        ScoreDTO scoreDTO = rabbitMQExchange.exchangeMessage(scoreRequest(), "score", "score-exchange", ScoreDTO.class);
+
+        assertEquals(1800, scoreDTO.getScore());
+        assertEquals(4800, scoreDTO.getMulticore_score());
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, requests.get(0).getMessageProperties().getContentType());
+    }
+
+    @Test
+    void exchangesAScoreRequestAsCbor() {
+        ReflectionTestUtils.setField(rabbitMQConfig, "binaryOutbound", true);
+        RabbitMQExchange rabbitMQExchange = new RabbitMQExchange(replyingTemplate(RabbitMQConfigTest::score));
+
+        ScoreDTO scoreDTO = rabbitMQExchange.exchangeMessage(scoreRequest(), "score", "score-exchange", ScoreDTO.class);
+
+        assertEquals(1800, scoreDTO.getScore());
+        assertEquals(Jackson2CborMessageConverter.CONTENT_TYPE_CBOR, requests.get(0).getMessageProperties().getContentType());
+    }
+
+    @Test
+    void exchangesAUserLookup() {
+        RabbitMQExchange rabbitMQExchange = new RabbitMQExchange(replyingTemplate(request -> {
+            UserDetailsDTO userDetailsDTO = new UserDetailsDTO();
+            userDetailsDTO.setEmail((String) request);
+            userDetailsDTO.setRole("ADMIN");
+            userDetailsDTO.setEnabled(false);
+            return userDetailsDTO;
+        }));
+
+        UserDetailsDTO userDetailsDTO = rabbitMQExchange.exchangeMessage("user@example.com", "security", "security-exchange", UserDetailsDTO.class);
+
+        assertEquals("user@example.com", userDetailsDTO.getEmail());
+        assertFalse(userDetailsDTO.getEnabled());
+    }
+}
@@ -0,0 +1,86 @@
+package it.unisalento.pasproject.resourceservice.controller;
+
+import it.unisalento.pasproject.resourceservice.TestSecurityConfig;
+import it.unisalento.pasproject.resourceservice.dto.DeadLetterListDTO;
+import it.unisalento.pasproject.resourceservice.service.DeadLetterService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(DeadLetterController.class)
+@AutoConfigureMockMvc
+@ExtendWith(SpringExtension.class)
+@Import({TestSecurityConfig.class, DeadLetterControllerTest.MethodSecurityConfig.class})
+public class DeadLetterControllerTest {
+    // The endpoints are guarded by @Secured, which the test security configuration does not enable
+    @TestConfiguration
+    @EnableMethodSecurity(securedEnabled = true)
+    static class MethodSecurityConfig {
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private DeadLetterService deadLetterService;
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void inspectIsAllowedToAdministrators() throws Exception {
+        DeadLetterListDTO deadLetterListDTO = new DeadLetterListDTO();
+        deadLetterListDTO.setQueue("resource-assignment-queue.dlq");
+        deadLetterListDTO.setMessageCount(3);
+        when(deadLetterService.inspect("assignment", 5)).thenReturn(deadLetterListDTO);
+
+        mockMvc.perform(get("/api/resource/admin/deadletter/assignment").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queue", is("resource-assignment-queue.dlq")))
+                .andExpect(jsonPath("$.messageCount", is(3)));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void replayIsAllowedToAdministrators() throws Exception {
+        when(deadLetterService.replay("deallocation", 20)).thenReturn(4);
+
+        mockMvc.perform(post("/api/resource/admin/deadletter/deallocation/replay"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", is("Replayed 4 messages.")));
+    }
+
+    @Test
+    @WithMockUser(authorities = "MEMBRO")
+    void inspectIsForbiddenToMembers() throws Exception {
+        mockMvc.perform(get("/api/resource/admin/deadletter/assignment"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(deadLetterService);
+    }
+
+    @Test
+    @WithMockUser(authorities = "MEMBRO")
+    void replayIsForbiddenToMembers() throws Exception {
+        mockMvc.perform(post("/api/resource/admin/deadletter/assignment/replay"))
+                .andExpect(status().isForbidden());
+
+        verify(deadLetterService, never()).replay(anyString(), anyInt());
+    }
+}
@@ -9,12 +9,18 @@ import it.unisalento.pasproject.resourceservice.domain.ResourceSoC;
 import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
 import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
 import it.unisalento.pasproject.resourceservice.dto.ResourceGpuDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceListDTO;
 import it.unisalento.pasproject.resourceservice.dto.ResourceSoCDTO;
 import it.unisalento.pasproject.resourceservice.exceptions.ExistingResourceException;
 import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
 import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import it.unisalento.pasproject.resourceservice.service.ResourceChangeTracker;
+import it.unisalento.pasproject.resourceservice.service.ResourceChangesService;
+import it.unisalento.pasproject.resourceservice.service.ResourceLookupService;
 import it.unisalento.pasproject.resourceservice.service.ResourceQueryFilters;
 import it.unisalento.pasproject.resourceservice.service.ResourceService;
+import it.unisalento.pasproject.resourceservice.service.ResourceSubscriptionService;
+import it.unisalento.pasproject.resourceservice.service.ResourceWaitService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,13 +37,20 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -55,6 +68,21 @@ public class ResourceControllerTest {
     @MockBean
     private ResourceService resourceService;
 
+    @MockBean
+    private ResourceChangeTracker resourceChangeTracker;
+
+    @MockBean
+    private ResourceChangesService resourceChangesService;
+
+    @MockBean
+    private ResourceSubscriptionService resourceSubscriptionService;
+
+    @MockBean
+    private ResourceWaitService resourceWaitService;
+
+    @MockBean
+    private ResourceLookupService resourceLookupService;
+
     private List<Resource> resources;
 
     private List<ResourceDTO> resourceDTOs;
@@ -246,11 +274,13 @@ public class ResourceControllerTest {
     @Test
     @WithMockUser(roles = "MEMBRO")
     void getAllResourcesShouldReturnListOfResources() throws Exception {
-        when(resourceRepository.findAll()).thenReturn(resources);
+        ResourceListDTO allResources = new ResourceListDTO();
+        allResources.setResourcesList(resourceDTOs);
 
-        when(resourceService.getResourceDTO(resources.get(0))).thenReturn(resourceDTOs.get(0));
-        when(resourceService.getResourceDTO(resources.get(1))).thenReturn(resourceDTOs.get(1));
-        when(resourceService.getResourceDTO(resources.get(2))).thenReturn(resourceDTOs.get(2));
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new ObjectMapper().writeValueAsBytes(allResources));
+            return null;
+        }).when(resourceLookupService).writeResourceList(ArgumentMatchers.any(ResourceQueryFilters.class), ArgumentMatchers.any());
 
         mockMvc.perform(get("/api/resource/find/all"))
                 .andExpect(status().isOk())
@@ -258,39 +288,68 @@ public class ResourceControllerTest {
                 .andExpect(jsonPath("$.resourcesList[0].name", is("Intel Core i9")))
                 .andExpect(jsonPath("$.resourcesList[1].name", is("NVIDIA RTX 3080")))
                 .andExpect(jsonPath("$.resourcesList[2].name", is("Apple M1")));
+
+        // Unfiltered, as GET /find without parameters
+        verify(resourceLookupService).writeResourceList(ArgumentMatchers.argThat(filters -> filters.getType() == null && filters.getFields() == null), ArgumentMatchers.any());
     }
 
     @Test
     @WithMockUser(roles = "MEMBRO")
     void getAllResourcesWhenNoResourcesShouldReturnEmptyList() throws Exception {
-        given(resourceRepository.findAll()).willReturn(new ArrayList<>());
+        ResourceListDTO noResources = new ResourceListDTO();
+        noResources.setResourcesList(new ArrayList<>());
+
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new ObjectMapper().writeValueAsBytes(noResources));
+            return null;
+        }).when(resourceLookupService).writeResourceList(ArgumentMatchers.any(ResourceQueryFilters.class), ArgumentMatchers.any());
 
         mockMvc.perform(get("/api/resource/find/all"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.resourcesList", hasSize(0)));
     }
 
+    @Test
+    @WithMockUser(roles = "MEMBRO")
+    void getAllResourcesPassesTheRequestedFields() throws Exception {
+        mockMvc.perform(get("/api/resource/find/all")
+                        .param("fields", "name", "status"))
+                .andExpect(status().isOk());
+
+        verify(resourceLookupService).writeResourceList(ArgumentMatchers.argThat(filters ->
+                Set.of("name", "status").equals(filters.getFields())), ArgumentMatchers.any());
+    }
+
     @Test
     @WithMockUser(roles = "MEMBRO")
     void getByFilterShouldReturnMatchingResources() throws Exception {
-        List<Resource> filteredResources = List.of(resources.getFirst());
+        ResourceListDTO filteredResources = new ResourceListDTO();
+        filteredResources.setResourcesList(List.of(resourceDTOs.getFirst()));
 
-        when(resourceService.findResources(ArgumentMatchers.any(ResourceQueryFilters.class))).thenReturn(filteredResources);
-        when(resourceService.getResourceDTO(ArgumentMatchers.any())).thenReturn(resourceDTOs.getFirst());
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new ObjectMapper().writeValueAsBytes(filteredResources));
+            return null;
+        }).when(resourceLookupService).writeResourceList(ArgumentMatchers.any(ResourceQueryFilters.class), ArgumentMatchers.any());
 
         mockMvc.perform(get("/api/resource/find")
                         .param("type", "cpu"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.resourcesList", hasSize(1)))
                 .andExpect(jsonPath("$.resourcesList[0].name", is("Intel Core i9")));
+
+        verify(resourceLookupService).writeResourceList(ArgumentMatchers.argThat(filters -> "cpu".equals(filters.getType())), ArgumentMatchers.any());
     }
 
     @Test
     @WithMockUser(roles = "MEMBRO")
     void getByFilterWhenNoResourcesMatchShouldReturnEmptyList() throws Exception {
-        ResourceQueryFilters filters = new ResourceQueryFilters();
-        filters.setType("NonExistentType");
-        given(resourceService.findResources(filters)).willReturn(new ArrayList<>());
+        ResourceListDTO noResources = new ResourceListDTO();
+        noResources.setResourcesList(new ArrayList<>());
+
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new ObjectMapper().writeValueAsBytes(noResources));
+            return null;
+        }).when(resourceLookupService).writeResourceList(ArgumentMatchers.any(ResourceQueryFilters.class), ArgumentMatchers.any());
 
         mockMvc.perform(get("/api/resource/find")
                         .param("type", "NonExistentType"))
@@ -431,4 +490,52 @@ public class ResourceControllerTest {
         mockMvc.perform(put("/api/resource/unavailable/nonExistentId"))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @WithMockUser(roles = "MEMBRO")
+    void getResourceWithTheKnownTagIsNotModifiedWithoutReadingIt() throws Exception {
+        when(resourceChangeTracker.getResourceTag("cpu1")).thenReturn("\"cpu1-3\"");
+
+        mockMvc.perform(get("/api/resource/find/cpu1").header("If-None-Match", "\"cpu1-3\""))
+                .andExpect(status().isNotModified());
+
+        verify(resourceRepository, never()).findById(ArgumentMatchers.any());
+    }
+
+    @Test
+    @WithMockUser(roles = "MEMBRO")
+    void getResourceReturnsTheTagOfTheVersionRead() throws Exception {
+        when(resourceRepository.findById("cpu1")).thenReturn(Optional.of(resources.getFirst()));
+        when(resourceChangeTracker.recordVersion(ArgumentMatchers.eq("cpu1"), ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong())).thenReturn("\"cpu1-3\"");
+        when(resourceService.getResourceDTO(resources.getFirst())).thenReturn(resourceDTOs.getFirst());
+
+        mockMvc.perform(get("/api/resource/find/cpu1").header("If-None-Match", "\"cpu1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"cpu1-3\""))
+                .andExpect(jsonPath("$.name", is("Intel Core i9")));
+    }
+
+    @Test
+    @WithMockUser(roles = "MEMBRO")
+    void getResourceReadAgainIsNotModifiedWhenItsVersionDidNotChange() throws Exception {
+        when(resourceRepository.findById("cpu1")).thenReturn(Optional.of(resources.getFirst()));
+        when(resourceChangeTracker.recordVersion(ArgumentMatchers.eq("cpu1"), ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong())).thenReturn("\"cpu1-3\"");
+
+        mockMvc.perform(get("/api/resource/find/cpu1").header("If-None-Match", "\"cpu1-3\""))
+                .andExpect(status().isNotModified());
+
+        verify(resourceService, never()).getResourceDTO(ArgumentMatchers.any());
+    }
+
+    @Test
+    @WithMockUser(roles = "MEMBRO")
+    void getAllResourcesWithTheCurrentListTagIsNotModified() throws Exception {
+        when(resourceChangeTracker.getChangeCount()).thenReturn(5L);
+        when(resourceChangeTracker.getListTag(ArgumentMatchers.eq(5L), ArgumentMatchers.anyString())).thenReturn("\"epoch-5-1f\"");
+
+        mockMvc.perform(get("/api/resource/find/all").header("If-None-Match", "\"epoch-5-1f\""))
+                .andExpect(status().isNotModified());
+
+        verify(resourceLookupService, never()).writeResourceList(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
 }
@@ -0,0 +1,121 @@
+package it.unisalento.pasproject.resourceservice.controller;
+
+import it.unisalento.pasproject.resourceservice.TestSecurityConfig;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceUtilizationDTO;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import it.unisalento.pasproject.resourceservice.service.ResourceStatusHistoryService;
+import it.unisalento.pasproject.resourceservice.service.UserCheckService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ResourceHistoryController.class)
+@AutoConfigureMockMvc
+@ExtendWith(SpringExtension.class)
+@Import(TestSecurityConfig.class)
+public class ResourceHistoryControllerTest {
+    private static final String FROM = "2026-01-01T00:00:00Z";
+
+    private static final String TO = "2026-01-02T00:00:00Z";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ResourceStatusHistoryService resourceStatusHistoryService;
+
+    @MockBean
+    private UserCheckService userCheckService;
+
+    @MockBean
+    private ResourceRepository resourceRepository;
+
+    @BeforeEach
+    void setup() {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId("cpu1");
+        resource.setMemberEmail("owner@example.com");
+        when(resourceRepository.findById("cpu1")).thenReturn(Optional.of(resource));
+
+        ResourceUtilizationDTO resourceUtilizationDTO = new ResourceUtilizationDTO();
+        resourceUtilizationDTO.setResourceId("cpu1");
+        resourceUtilizationDTO.setBusySeconds(3600);
+        when(resourceStatusHistoryService.getResourceUtilization("cpu1", Instant.parse(FROM), Instant.parse(TO))).thenReturn(resourceUtilizationDTO);
+    }
+
+    @Test
+    @WithMockUser(username = "owner@example.com", authorities = "MEMBRO")
+    void theOwnerReadsTheUtilizationOfTheResource() throws Exception {
+        when(userCheckService.isAdministrator()).thenReturn(false);
+        when(userCheckService.isCorrectUser("owner@example.com")).thenReturn(true);
+
+        mockMvc.perform(get("/api/resource/history/utilization/resource/cpu1").param("from", FROM).param("to", TO))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.busySeconds", is(3600)));
+    }
+
+    @Test
+    @WithMockUser(username = "other@example.com", authorities = "MEMBRO")
+    void anotherMemberCannotReadTheUtilizationOfTheResource() throws Exception {
+        when(userCheckService.isAdministrator()).thenReturn(false);
+        when(userCheckService.isCorrectUser("owner@example.com")).thenReturn(false);
+
+        mockMvc.perform(get("/api/resource/history/utilization/resource/cpu1").param("from", FROM).param("to", TO))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(resourceStatusHistoryService);
+    }
+
+    @Test
+    @WithMockUser(username = "admin@example.com", authorities = "ADMIN")
+    void anAdministratorReadsTheUtilizationOfAnyResource() throws Exception {
+        when(userCheckService.isAdministrator()).thenReturn(true);
+
+        mockMvc.perform(get("/api/resource/history/utilization/resource/cpu1").param("from", FROM).param("to", TO))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resourceId", is("cpu1")));
+
+        verify(resourceRepository, never()).findById(any());
+    }
+
+    @Test
+    @WithMockUser(username = "owner@example.com", authorities = "MEMBRO")
+    void aMemberGetsNotFoundForAnUnknownResource() throws Exception {
+        when(userCheckService.isAdministrator()).thenReturn(false);
+        when(resourceRepository.findById("unknown")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/resource/history/utilization/resource/unknown").param("from", FROM).param("to", TO))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(resourceStatusHistoryService);
+    }
+
+    @Test
+    @WithMockUser(username = "other@example.com", authorities = "MEMBRO")
+    void aMemberCannotReadTheUtilizationOfAnotherMember() throws Exception {
+        when(userCheckService.isAdministrator()).thenReturn(false);
+        when(userCheckService.isCorrectUser("owner@example.com")).thenReturn(false);
+
+        mockMvc.perform(get("/api/resource/history/utilization/member/owner@example.com").param("from", FROM).param("to", TO))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,157 @@
+package it.unisalento.pasproject.resourceservice.repositories.codec;
+
+import com.mongodb.MongoClientSettings;
+import it.unisalento.pasproject.resourceservice.domain.*;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonSerializationException;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.Date;
+import java.util.List;
+
+import static it.unisalento.pasproject.resourceservice.ResourceFixtures.availability;
+import static it.unisalento.pasproject.resourceservice.ResourceFixtures.cpu;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceCodecTest {
+    private final ResourceCodec resourceCodec = new ResourceCodec();
+
+    private BsonDocument encode(Resource resource) {
+        BsonDocument document = new BsonDocument();
+        resourceCodec.encode(new BsonDocumentWriter(document), resource, EncoderContext.builder().build());
+        return document;
+    }
+
+    private Resource decode(BsonDocument document) {
+        return resourceCodec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    private Resource decode(Document document) {
+        return decode(document.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+    }
+
+    private static Date legacyTime(LocalTime time) {
+        return Date.from(time.atDate(LocalDate.of(1970, 1, 1)).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void roundTripsACpu() {
+        ResourceCPU resource = cpu();
+        resource.setLastStatusSequence(3L);
+        resource.setChangeSequence(42);
+        resource.setChangedAt(Instant.ofEpochMilli(1_700_000_000_000L));
+
+        BsonDocument document = encode(resource);
+
+        assertEquals(ResourceCPU.TYPE_ALIAS, document.getString(ResourceCodec.TYPE_FIELD).getValue());
+        assertTrue(document.get(ResourceCodec.ID_FIELD).isObjectId());
+        assertFalse(document.containsKey("brand"));
+        assertEquals(1440, document.getArray("availability").get(1).asDocument().getInt32(AvailabilityBson.END_FIELD).getValue());
+
+        ResourceCPU decoded = assertInstanceOf(ResourceCPU.class, decode(document));
+        assertEquals(resource.getId(), decoded.getId());
+        assertEquals("Intel Core i9", decoded.getName());
+        assertEquals("Lecce", decoded.getCity());
+        assertNull(decoded.getBrand());
+        assertEquals(resource.getAvailability(), decoded.getAvailability());
+        assertEquals(95.5, decoded.getKWh());
+        assertEquals(Resource.Status.BUSY, decoded.getStatus());
+        assertEquals("task1", decoded.getCurrentTaskId());
+        assertEquals(7, decoded.getVersion());
+        assertEquals(3L, decoded.getLastStatusSequence());
+        assertEquals(42, decoded.getChangeSequence());
+        assertEquals(resource.getChangedAt(), decoded.getChangedAt());
+        assertEquals(8, decoded.getCores());
+        assertEquals(3.6, decoded.getBaseFrequency());
+        assertTrue(decoded.isHyperThreading());
+        assertEquals(4800, decoded.getMulticoreScore());
+    }
+
+    @Test
+    void roundTripsAGpuAndASoC() {
+        ResourceGPU gpu = new ResourceGPU();
+        gpu.setId("not-an-object-id");
+        gpu.setVramType("GDDR6X");
+        gpu.setVramSize(24);
+        gpu.setRayTracingSupport(true);
+        gpu.setCudaScore(250000);
+
+        BsonDocument gpuDocument = encode(gpu);
+        assertTrue(gpuDocument.get(ResourceCodec.ID_FIELD).isString());
+
+        ResourceGPU decodedGpu = assertInstanceOf(ResourceGPU.class, decode(gpuDocument));
+        assertEquals("not-an-object-id", decodedGpu.getId());
+        assertEquals("GDDR6X", decodedGpu.getVramType());
+        assertEquals(24, decodedGpu.getVramSize());
+        assertTrue(decodedGpu.isRayTracingSupport());
+        assertEquals(250000, decodedGpu.getCudaScore());
+        assertNull(decodedGpu.getAvailability());
+
+        ResourceSoC soc = new ResourceSoC();
+        soc.setCpuCores(10);
+        soc.setGpuCores(16);
+        soc.setVulkanScore(60000);
+
+        ResourceSoC decodedSoc = assertInstanceOf(ResourceSoC.class, decode(encode(soc)));
+        assertNull(decodedSoc.getId());
+        assertEquals(10, decodedSoc.getCpuCores());
+        assertEquals(16, decodedSoc.getGpuCores());
+        assertEquals(60000, decodedSoc.getVulkanScore());
+    }
+
+    @Test
+    void decodesLegacyDocuments() {
+        ObjectId id = new ObjectId();
+        Document legacy = new Document("_id", id)
+                .append("name", "Intel Core i9")
+                .append("availability", List.of(new Document("dayOfWeek", "TUESDAY")
+                        .append("startTime", legacyTime(LocalTime.of(8, 30)))
+                        .append("endTime", legacyTime(LocalTime.of(17, 0)))))
+                .append("kWh", 95)
+                .append("status", "AVAILABLE")
+                .append("currentTaskId", null)
+                .append("cores", 8.0)
+                .append("threads", 16L)
+                .append("unknownField", new Document("nested", true))
+                // Written by Spring Data before the type aliases, and not as the first field
+                .append("_class", ResourceCPU.class.getName());
+
+        ResourceCPU decoded = assertInstanceOf(ResourceCPU.class, decode(legacy));
+
+        assertEquals(id.toHexString(), decoded.getId());
+        assertEquals("Intel Core i9", decoded.getName());
+        assertEquals(List.of(availability(DayOfWeek.TUESDAY, LocalTime.of(8, 30), LocalTime.of(17, 0))), decoded.getAvailability());
+        assertEquals(95.0, decoded.getKWh());
+        assertEquals(Resource.Status.AVAILABLE, decoded.getStatus());
+        assertNull(decoded.getCurrentTaskId());
+        assertEquals(8, decoded.getCores());
+        assertEquals(16, decoded.getThreads());
+        assertEquals(0, decoded.getVersion());
+        assertNull(decoded.getLastStatusSequence());
+    }
+
+    @Test
+    void rejectsDocumentsOfUnknownType() {
+        assertThrows(BsonSerializationException.class, () -> decode(new Document("name", "untyped")));
+        assertThrows(BsonSerializationException.class, () -> decode(new Document("_class", "tpu")));
+    }
+
+    @Test
+    void convertsLegacyAvailabilityToTheCompactEncoding() {
+        Document legacy = new Document("dayOfWeek", "FRIDAY")
+                .append("startTime", legacyTime(LocalTime.of(20, 0)))
+                .append("endTime", legacyTime(LocalTime.MIDNIGHT));
+
+        Document compact = AvailabilityBson.toDocument(AvailabilityBson.fromDocument(legacy));
+
+        assertEquals(new Document(AvailabilityBson.DAY_FIELD, 5).append(AvailabilityBson.START_FIELD, 1200).append(AvailabilityBson.END_FIELD, 1440), compact);
+        assertEquals(availability(DayOfWeek.FRIDAY, LocalTime.of(20, 0), LocalTime.MIDNIGHT), AvailabilityBson.fromDocument(compact));
+    }
+}
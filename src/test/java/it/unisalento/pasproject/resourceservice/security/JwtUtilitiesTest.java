@@ -0,0 +1,89 @@
+package it.unisalento.pasproject.resourceservice.security;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilitiesTest {
+    private static final String SECRET = "test-secret-key-with-at-least-32-bytes-of-entropy";
+
+    private SecurityConstants securityConstants;
+
+    @BeforeEach
+    void setup() {
+        securityConstants = new SecurityConstants();
+        securityConstants.JWT_SECRET = SECRET;
+    }
+
+    private static String token(String subject, Date expiration) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .claim("role", SecurityConstants.ROLE_MEMBRO)
+                .setExpiration(expiration)
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    private static Date inOneHour() {
+        return new Date(System.currentTimeMillis() + 3_600_000L);
+    }
+
+    @Test
+    void verifyReturnsTheClaimsAndCachesThem() {
+        JwtUtilities jwtUtilities = new JwtUtilities(securityConstants, 10);
+        String token = token("user@example.com", inOneHour());
+
+        VerifiedClaims claims = jwtUtilities.verify(token);
+
+        assertEquals("user@example.com", claims.getSubject());
+        assertEquals(SecurityConstants.ROLE_MEMBRO, claims.getRole());
+        assertSame(claims, jwtUtilities.verify(token));
+    }
+
+    @Test
+    void verifyRejectsTokensWithoutExpiration() {
+        JwtUtilities jwtUtilities = new JwtUtilities(securityConstants, 10);
+
+        assertThrows(JwtException.class, () -> jwtUtilities.verify(token("user@example.com", null)));
+    }
+
+    @Test
+    void verifyRejectsExpiredTokens() {
+        JwtUtilities jwtUtilities = new JwtUtilities(securityConstants, 10);
+
+        assertThrows(JwtException.class, () -> jwtUtilities.verify(token("user@example.com", new Date(System.currentTimeMillis() - 1000))));
+    }
+
+    @Test
+    void verifyRejectsTokensSignedWithAnotherKey() {
+        JwtUtilities jwtUtilities = new JwtUtilities(securityConstants, 10);
+        String token = Jwts.builder()
+                .setSubject("user@example.com")
+                .setExpiration(inOneHour())
+                .signWith(Keys.hmacShaKeyFor("another-secret-key-with-at-least-32-bytes".getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertThrows(JwtException.class, () -> jwtUtilities.verify(token));
+    }
+
+    @Test
+    void verifyDoesNotCacheWhenTheCacheIsFullOfLiveTokens() {
+        JwtUtilities jwtUtilities = new JwtUtilities(securityConstants, 2);
+
+        jwtUtilities.verify(token("first@example.com", inOneHour()));
+        jwtUtilities.verify(token("second@example.com", inOneHour()));
+
+        String token = token("third@example.com", inOneHour());
+        VerifiedClaims claims = jwtUtilities.verify(token);
+
+        assertEquals("third@example.com", claims.getSubject());
+        assertNotSame(claims, jwtUtilities.verify(token));
+    }
+}
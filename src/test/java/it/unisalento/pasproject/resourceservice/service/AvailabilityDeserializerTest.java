@@ -0,0 +1,132 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import it.unisalento.pasproject.resourceservice.domain.Availability;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidAvailabilityException;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static it.unisalento.pasproject.resourceservice.ResourceFixtures.availability;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvailabilityDeserializerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Holds an availability list as the DTOs do.
+     */
+    static class Holder {
+        @JsonDeserialize(using = AvailabilityDeserializer.class)
+        public List<Availability> availability;
+    }
+
+    private List<Availability> read(String availability) throws Exception {
+        return objectMapper.readValue("{\"availability\":" + availability + "}", Holder.class).availability;
+    }
+
+    @Test
+    void sortsAndMergesAdjacentIntervalsOfTheSameDay() throws Exception {
+        List<Availability> availability = read("""
+                [{"dayOfWeek":"TUESDAY","startTime":"10:00","endTime":"11:00"},
+                 {"dayOfWeek":"MONDAY","startTime":"10:00","endTime":"12:00"},
+                 {"dayOfWeek":"monday","startTime":"09:00","endTime":"10:00"}]""");
+
+        assertEquals(List.of(
+                availability(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(12, 0)),
+                availability(DayOfWeek.TUESDAY, LocalTime.of(10, 0), LocalTime.of(11, 0))), availability);
+    }
+
+    @Test
+    void keepsSeparateIntervalsThatDoNotTouch() throws Exception {
+        List<Availability> availability = read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00","endTime":"10:00"},
+                 {"dayOfWeek":"MONDAY","startTime":"10:30","endTime":"11:00"}]""");
+
+        assertEquals(2, availability.size());
+    }
+
+    @Test
+    void rejectsOverlappingIntervals() {
+        InvalidAvailabilityException exception = assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00","endTime":"11:00"},
+                 {"dayOfWeek":"MONDAY","startTime":"10:30","endTime":"12:00"}]"""));
+
+        assertTrue(exception.getOriginalMessage().contains("overlaps"));
+    }
+
+    @Test
+    void readsIntervalsEndingAtMidnight() throws Exception {
+        List<Availability> availability = read("""
+                [{"dayOfWeek":"FRIDAY","startTime":"23:00","endTime":"00:00"},
+                 {"dayOfWeek":"FRIDAY","startTime":"22:00","endTime":"23:00"},
+                 {"dayOfWeek":"SUNDAY","startTime":"00:00","endTime":"00:00"}]""");
+
+        assertEquals(List.of(
+                availability(DayOfWeek.FRIDAY, LocalTime.of(22, 0), LocalTime.MIDNIGHT),
+                availability(DayOfWeek.SUNDAY, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT)), availability);
+    }
+
+    @Test
+    void rejectsInvalidIntervals() {
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"11:00","endTime":"10:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00","endTime":"09:45"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"SOMEDAY","startTime":"09:00","endTime":"10:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"9 o'clock","endTime":"10:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("{}"));
+    }
+
+    @Test
+    void rejectsTimesOffTheSlotBoundaries() {
+        // Thirty minutes long, but not on the slot boundaries
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:10","endTime":"09:40"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00","endTime":"09:15"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00:59","endTime":"10:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:00","endTime":"10:00:00.5"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":[9,0,0,1],"endTime":"10:00"}]"""));
+    }
+
+    @Test
+    void acceptsZeroSecondsAndNanos() throws Exception {
+        List<Availability> availability = read("""
+                [{"dayOfWeek":"MONDAY","startTime":"09:30:00","endTime":[10,0,0,0]}]""");
+
+        assertEquals(List.of(availability(DayOfWeek.MONDAY, LocalTime.of(9, 30), LocalTime.of(10, 0))), availability);
+    }
+
+    @Test
+    void readsTimeArraysFromCbor() throws Exception {
+        CBORMapper cborMapper = new CBORMapper();
+        byte[] payload = cborMapper.writeValueAsBytes(Map.of("availability", List.of(
+                Map.of("dayOfWeek", "WEDNESDAY", "startTime", List.of(8, 30), "endTime", List.of(10, 0, 0, 0)),
+                Map.of("dayOfWeek", "WEDNESDAY", "startTime", "10:00", "endTime", List.of(0, 0)))));
+
+        List<Availability> availability = cborMapper.readValue(payload, Holder.class).availability;
+
+        assertEquals(List.of(availability(DayOfWeek.WEDNESDAY, LocalTime.of(8, 30), LocalTime.MIDNIGHT)), availability);
+    }
+
+    @Test
+    void rejectsMalformedTimeArrays() {
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":[9],"endTime":"10:00"}]"""));
+        assertThrows(InvalidAvailabilityException.class, () -> read("""
+                [{"dayOfWeek":"MONDAY","startTime":[9,0,0,0,0],"endTime":"10:00"}]"""));
+    }
+}
@@ -0,0 +1,121 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import it.unisalento.pasproject.resourceservice.dto.DeadLetterListDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DeadLetterServiceTest {
+    private Channel channel;
+
+    private DeadLetterService deadLetterService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        channel = mock(Channel.class);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<ChannelCallback<?>>getArgument(0).doInRabbit(channel));
+
+        deadLetterService = new DeadLetterService(rabbitTemplate);
+        ReflectionTestUtils.setField(deadLetterService, "dataExchange", "resource-data-exchange");
+        ReflectionTestUtils.setField(deadLetterService, "resourceAssignmentDeadLetterQueue", "resource-assignment-queue.dlq");
+        ReflectionTestUtils.setField(deadLetterService, "resourceUsageDeadLetterQueue", "resource-deallocation-queue.dlq");
+        ReflectionTestUtils.setField(deadLetterService, "resourceSnapshotDeadLetterQueue", "resource-snapshot-queue.dlq");
+        ReflectionTestUtils.setField(deadLetterService, "maxBatch", 100);
+        ReflectionTestUtils.setField(deadLetterService, "confirmTimeout", 1000L);
+    }
+
+    private static GetResponse deadLetter(long deliveryTag, Map<String, Object> headers) {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .contentType(MessageProperties.CONTENT_TYPE_JSON)
+                .headers(headers)
+                .build();
+        return new GetResponse(new Envelope(deliveryTag, false, "resource-dead-letter-exchange", "resource.assignment"),
+                properties, "{\"id\":\"r1\"}".getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    private void queued(GetResponse... responses) throws Exception {
+        GetResponse[] rest = new GetResponse[responses.length];
+        System.arraycopy(responses, 1, rest, 0, responses.length - 1);
+        when(channel.basicGet("resource-assignment-queue.dlq", false)).thenReturn(responses[0], rest);
+    }
+
+    @Test
+    void inspectReturnsTheMessagesToTheQueue() throws Exception {
+        when(channel.messageCount("resource-assignment-queue.dlq")).thenReturn(2L);
+        queued(deadLetter(1, Map.of("x-death", List.of(Map.of("reason", "rejected", "count", 3L)))),
+                deadLetter(2, Map.of(RepublishMessageRecoverer.X_EXCEPTION_MESSAGE, "Resource not found: r1.")));
+
+        DeadLetterListDTO deadLetterListDTO = deadLetterService.inspect("assignment", 20);
+
+        assertEquals(2, deadLetterListDTO.getMessageCount());
+        assertEquals(2, deadLetterListDTO.getMessages().size());
+        assertEquals("{\"id\":\"r1\"}", deadLetterListDTO.getMessages().get(0).getPayload());
+        assertEquals("rejected", deadLetterListDTO.getMessages().get(0).getReason());
+        assertEquals(3, deadLetterListDTO.getMessages().get(0).getCount());
+        assertEquals("Resource not found: r1.", deadLetterListDTO.getMessages().get(1).getReason());
+        verify(channel).basicNack(2, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void replayAcksTheMessagesOnceTheBrokerConfirmsThem() throws Exception {
+        queued(deadLetter(1, null), deadLetter(2, null));
+        when(channel.waitForConfirms(1000L)).thenReturn(true);
+
+        assertEquals(2, deadLetterService.replay("assignment", 20));
+
+        verify(channel).confirmSelect();
+        verify(channel, times(2)).basicPublish(eq("resource-data-exchange"), eq("resource.assignment"), any(), any());
+        verify(channel).basicAck(2, true);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void replayReturnsTheMessagesToTheQueueWhenTheBrokerNacksThem() throws Exception {
+        queued(deadLetter(1, null));
+        when(channel.waitForConfirms(1000L)).thenReturn(false);
+
+        assertThrows(AmqpException.class, () -> deadLetterService.replay("assignment", 20));
+
+        verify(channel).basicNack(1, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void replayReturnsTheMessagesToTheQueueWhenTheConfirmsTimeOut() throws Exception {
+        queued(deadLetter(1, null));
+        when(channel.waitForConfirms(1000L)).thenThrow(new TimeoutException());
+
+        assertThrows(AmqpException.class, () -> deadLetterService.replay("assignment", 20));
+
+        verify(channel).basicNack(1, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void rejectsUnknownQueues() {
+        assertThrows(ResourceNotFoundException.class, () -> deadLetterService.inspect("unknown", 20));
+        assertThrows(ResourceNotFoundException.class, () -> deadLetterService.replay("unknown", 20));
+    }
+}
@@ -0,0 +1,111 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceChangeMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceChangeBroadcasterTest {
+    private MessageProducer messageProducer;
+
+    private ResourceChangeBroadcaster resourceChangeBroadcaster;
+
+    @BeforeEach
+    void setup() {
+        messageProducer = mock(MessageProducer.class);
+        resourceChangeBroadcaster = new ResourceChangeBroadcaster(messageProducer, mock(ApplicationEventPublisher.class),
+                mock(ResourceChangeTracker.class), mock(ConnectionFactory.class));
+        ReflectionTestUtils.setField(resourceChangeBroadcaster, "resourceChangesExchange", "resource-changes");
+        ReflectionTestUtils.setField(resourceChangeBroadcaster, "retryInterval", 10L);
+    }
+
+    @AfterEach
+    void teardown() {
+        if (resourceChangeBroadcaster.isRunning()) {
+            resourceChangeBroadcaster.stop();
+        }
+    }
+
+    private static ResourceChangedEvent changed(String id, Resource.Status previousStatus, Resource.Status status) {
+        return new ResourceChangedEvent(new Object(), id, previousStatus, status);
+    }
+
+    private List<ResourceChangeMessageDTO> announced(int count) {
+        ArgumentCaptor<ResourceChangeMessageDTO> message = ArgumentCaptor.forClass(ResourceChangeMessageDTO.class);
+        verify(messageProducer, timeout(2000).times(count)).sendMessage(message.capture(), eq(""), eq("resource-changes"));
+        return message.getAllValues();
+    }
+
+    @Test
+    void announcesTheChangesOffTheWritingThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(2, TimeUnit.SECONDS)).when(messageProducer).sendMessage(any(), any(), any());
+        resourceChangeBroadcaster.start();
+
+        // Returns while the announcement is still blocked on the broker
+        resourceChangeBroadcaster.onResourceChanged(changed("a", Resource.Status.AVAILABLE, Resource.Status.BUSY));
+        release.countDown();
+
+        ResourceChangeMessageDTO message = announced(1).get(0);
+        assertEquals("a", message.getResourceId());
+        assertEquals(ResourceMessageDTO.Status.AVAILABLE, message.getPreviousStatus());
+        assertEquals(ResourceMessageDTO.Status.BUSY, message.getStatus());
+    }
+
+    @Test
+    void foldsTheChangesOfAResource() {
+        ResourceChangeMessageDTO first = new ResourceChangeMessageDTO("i", "a", ResourceMessageDTO.Status.AVAILABLE, ResourceMessageDTO.Status.BUSY);
+        ResourceChangeMessageDTO second = new ResourceChangeMessageDTO("i", "a", ResourceMessageDTO.Status.BUSY, null);
+
+        ResourceChangeMessageDTO folded = ResourceChangeBroadcaster.foldChanges(first, second);
+
+        assertEquals("a", folded.getResourceId());
+        assertEquals(ResourceMessageDTO.Status.AVAILABLE, folded.getPreviousStatus());
+        // The second change did not set the status, so it is still the one set by the first
+        assertEquals(ResourceMessageDTO.Status.BUSY, folded.getStatus());
+    }
+
+    @Test
+    void announcesAFailedChangeAgain() {
+        doThrow(new AmqpIOException(new IOException("Channel closed"))).doNothing()
+                .when(messageProducer).sendMessage(any(), any(), any());
+        resourceChangeBroadcaster.start();
+
+        resourceChangeBroadcaster.onResourceChanged(changed("a", Resource.Status.AVAILABLE, Resource.Status.BUSY));
+
+        List<ResourceChangeMessageDTO> messages = announced(2);
+        assertEquals("a", messages.get(1).getResourceId());
+        assertEquals(ResourceMessageDTO.Status.BUSY, messages.get(1).getStatus());
+    }
+
+    @Test
+    void announcesRightAwayWhenNotRunning() {
+        resourceChangeBroadcaster.onResourceChanged(changed("a", null, Resource.Status.AVAILABLE));
+
+        verify(messageProducer).sendMessage(any(ResourceChangeMessageDTO.class), eq(""), eq("resource-changes"));
+    }
+
+    @Test
+    void doesNotAnnounceRemoteChanges() {
+        resourceChangeBroadcaster.onResourceChanged(new ResourceChangedEvent(new Object(), "a", null, Resource.Status.AVAILABLE, true));
+
+        verifyNoInteractions(messageProducer);
+    }
+}
@@ -0,0 +1,96 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceChangeTrackerTest {
+    private ResourceChangeTracker resourceChangeTracker;
+
+    @BeforeEach
+    void setup() {
+        resourceChangeTracker = new ResourceChangeTracker();
+        ReflectionTestUtils.setField(resourceChangeTracker, "versionTtlMillis", 60_000L);
+        resourceChangeTracker.startTracking();
+    }
+
+    private void changed(String id) {
+        resourceChangeTracker.onResourceChanged(new ResourceChangedEvent(this, id, Resource.Status.AVAILABLE));
+    }
+
+    @Test
+    void tagsAResourceWithItsIdAndVersion() {
+        assertEquals("\"a-3\"", resourceChangeTracker.recordVersion("a", 3, resourceChangeTracker.getChangeCount()));
+        assertEquals("\"a-3\"", resourceChangeTracker.getResourceTag("a"));
+        assertNull(resourceChangeTracker.getResourceTag("b"));
+    }
+
+    @Test
+    void forgetsTheVersionOfAChangedResource() {
+        resourceChangeTracker.recordVersion("a", 3, resourceChangeTracker.getChangeCount());
+
+        changed("a");
+
+        assertNull(resourceChangeTracker.getResourceTag("a"));
+    }
+
+    @Test
+    void doesNotRememberAVersionReadAcrossAChange() {
+        long changeCount = resourceChangeTracker.getChangeCount();
+        changed("b");
+
+        // The tag of the version read is still returned, but it is not answered from memory
+        assertEquals("\"a-3\"", resourceChangeTracker.recordVersion("a", 3, changeCount));
+        assertNull(resourceChangeTracker.getResourceTag("a"));
+    }
+
+    @Test
+    void forgetsAVersionAfterItsTimeToLive() {
+        ReflectionTestUtils.setField(resourceChangeTracker, "versionTtlMillis", 0L);
+
+        resourceChangeTracker.recordVersion("a", 3, resourceChangeTracker.getChangeCount());
+
+        assertNull(resourceChangeTracker.getResourceTag("a"));
+    }
+
+    @Test
+    void tagsAListWithTheChangesSeenAndItsKeyOnly() {
+        long changeCount = resourceChangeTracker.getChangeCount();
+        String tag = resourceChangeTracker.getListTag(changeCount, "type=cpu");
+
+        // Stable for as long as nothing changes
+        assertEquals(tag, resourceChangeTracker.getListTag(changeCount, "type=cpu"));
+        assertNotEquals(tag, resourceChangeTracker.getListTag(changeCount, "type=gpu"));
+
+        changed("a");
+
+        assertNotEquals(tag, resourceChangeTracker.getListTag(resourceChangeTracker.getChangeCount(), "type=cpu"));
+    }
+
+    @Test
+    void tagsNothingFromMemoryWhileNotTracking() {
+        resourceChangeTracker.recordVersion("a", 3, resourceChangeTracker.getChangeCount());
+
+        resourceChangeTracker.stopTracking();
+
+        assertNull(resourceChangeTracker.getResourceTag("a"));
+        assertNull(resourceChangeTracker.getListTag(resourceChangeTracker.getChangeCount(), "type=cpu"));
+        assertEquals("\"a-4\"", resourceChangeTracker.recordVersion("a", 4, resourceChangeTracker.getChangeCount()));
+        assertNull(resourceChangeTracker.getKnownVersion("a"));
+    }
+
+    @Test
+    void forgetsTheVersionsRememberedBeforeTrackingStarts() {
+        resourceChangeTracker.recordVersion("a", 3, resourceChangeTracker.getChangeCount());
+        String tag = resourceChangeTracker.getListTag(resourceChangeTracker.getChangeCount(), "type=cpu");
+
+        resourceChangeTracker.stopTracking();
+        resourceChangeTracker.startTracking();
+
+        assertNull(resourceChangeTracker.getResourceTag("a"));
+        assertNotEquals(tag, resourceChangeTracker.getListTag(resourceChangeTracker.getChangeCount(), "type=cpu"));
+    }
+}
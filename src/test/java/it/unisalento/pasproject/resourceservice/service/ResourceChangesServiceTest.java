@@ -0,0 +1,146 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceChangesDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidChangeTokenException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceChangeSequence;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceChangesServiceTest {
+    private ResourceRepository resourceRepository;
+
+    private ResourceChangesService resourceChangesService;
+
+    @BeforeEach
+    void setup() {
+        resourceRepository = mock(ResourceRepository.class);
+        ResourceService resourceService = mock(ResourceService.class);
+        resourceChangesService = new ResourceChangesService(resourceRepository, resourceService);
+        ReflectionTestUtils.setField(resourceChangesService, "pageSize", 3);
+        ReflectionTestUtils.setField(resourceChangesService, "settleMillis", 5000L);
+
+        when(resourceService.getResourceDTO(any())).thenAnswer(invocation -> {
+            ResourceCpuDTO resourceDTO = new ResourceCpuDTO();
+            resourceDTO.setId(invocation.<Resource>getArgument(0).getId());
+            return resourceDTO;
+        });
+    }
+
+    private static Resource changed(long sequence, Instant changedAt) {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId("r" + sequence);
+        resource.setChangeSequence(sequence);
+        resource.setChangedAt(changedAt);
+        return resource;
+    }
+
+    private static Instant settled() {
+        return Instant.now().minusSeconds(60);
+    }
+
+    private static List<String> ids(ResourceChangesDTO resourceChangesDTO) {
+        List<String> ids = new ArrayList<>();
+        for (ResourceDTO resourceDTO : resourceChangesDTO.getResourcesList()) {
+            ids.add(resourceDTO.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void returnsTheChangesAfterTheTokenOldestFirst() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(changed(5, settled()), changed(7, settled())));
+
+        ResourceChangesDTO resourceChangesDTO = resourceChangesService.getChanges("4");
+
+        assertEquals(List.of("r5", "r7"), ids(resourceChangesDTO));
+        assertEquals("7", resourceChangesDTO.getToken());
+        assertFalse(resourceChangesDTO.isHasMore());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(resourceRepository).findByQuery(query.capture());
+        assertEquals(new Document(ResourceChangeSequence.SEQUENCE_FIELD, new Document("$gt", 4L)), query.getValue().getQueryObject());
+        assertEquals(new Document(ResourceChangeSequence.SEQUENCE_FIELD, 1), query.getValue().getSortObject());
+        assertEquals(4, query.getValue().getLimit());
+    }
+
+    @Test
+    void aFullSyncStartsFromTheBeginning() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(changed(1, null)));
+
+        ResourceChangesDTO resourceChangesDTO = resourceChangesService.getChanges(null);
+
+        // Resources backfilled without a change time are long settled
+        assertEquals("1", resourceChangesDTO.getToken());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(resourceRepository).findByQuery(query.capture());
+        assertEquals(new Document(ResourceChangeSequence.SEQUENCE_FIELD, new Document("$gt", 0L)), query.getValue().getQueryObject());
+    }
+
+    @Test
+    void theTokenDoesNotMovePastUnsettledChanges() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(changed(5, settled()), changed(6, Instant.now()), changed(8, Instant.now())));
+
+        ResourceChangesDTO resourceChangesDTO = resourceChangesService.getChanges("4");
+
+        // The unsettled changes are returned now and again with the next token
+        assertEquals(List.of("r5", "r6", "r8"), ids(resourceChangesDTO));
+        assertEquals("5", resourceChangesDTO.getToken());
+    }
+
+    @Test
+    void theTokenStaysWhenNoChangeIsSettled() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(changed(9, Instant.now())));
+
+        assertEquals("8", resourceChangesService.getChanges("8").getToken());
+    }
+
+    @Test
+    void returnsOnePageAtATime() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(
+                changed(1, settled()), changed(2, settled()), changed(3, settled()), changed(4, settled())));
+
+        ResourceChangesDTO resourceChangesDTO = resourceChangesService.getChanges("0");
+
+        assertEquals(List.of("r1", "r2", "r3"), ids(resourceChangesDTO));
+        assertEquals("3", resourceChangesDTO.getToken());
+        assertTrue(resourceChangesDTO.isHasMore());
+    }
+
+    @Test
+    void aFullPageOfUnsettledChangesHasNoMore() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(
+                changed(5, Instant.now()), changed(6, Instant.now()), changed(7, Instant.now()), changed(8, Instant.now())));
+
+        ResourceChangesDTO resourceChangesDTO = resourceChangesService.getChanges("4");
+
+        // The token stays, so asking again right away would return the same page
+        assertEquals(List.of("r5", "r6", "r7"), ids(resourceChangesDTO));
+        assertEquals("4", resourceChangesDTO.getToken());
+        assertFalse(resourceChangesDTO.isHasMore());
+    }
+
+    @Test
+    void rejectsInvalidTokens() {
+        assertThrows(InvalidChangeTokenException.class, () -> resourceChangesService.getChanges("abc"));
+        assertThrows(InvalidChangeTokenException.class, () -> resourceChangesService.getChanges("-1"));
+        verifyNoInteractions(resourceRepository);
+    }
+}
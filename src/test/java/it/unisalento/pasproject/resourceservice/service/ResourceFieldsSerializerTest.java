@@ -0,0 +1,148 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidFieldException;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static it.unisalento.pasproject.resourceservice.ResourceFixtures.cpu;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceFieldsSerializerTest {
+    // Configured as the ObjectMapper of Spring Boot, which writes times as ISO strings
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final ResourceCodec resourceCodec = new ResourceCodec();
+
+    private final ResourceMapper resourceMapper = Mappers.getMapper(ResourceMapper.class);
+
+    private ResourceFieldsSerializer resourceFieldsSerializer;
+
+    @BeforeEach
+    void setup() {
+        ResourceService resourceService = mock(ResourceService.class);
+        when(resourceService.getResourceDTO(any())).thenAnswer(invocation ->
+                resourceMapper.toResourceDTO(invocation.<ResourceCPU>getArgument(0)));
+
+        resourceFieldsSerializer = new ResourceFieldsSerializer(objectMapper, resourceService);
+    }
+
+    /**
+     * Reads a stored resource back with only the given fields, as MongoDB returns it for the projection of getStoredFields.
+     */
+    private Resource project(Resource resource, String... storedFields) {
+        BsonDocument stored = new RawBsonDocument(resource, resourceCodec).toBsonDocument();
+        BsonDocument projected = new BsonDocument();
+
+        for (String field : storedFields) {
+            if (stored.containsKey(field)) {
+                projected.put(field, stored.get(field));
+            }
+        }
+
+        return resourceCodec.decode(new BsonDocumentReader(projected), DecoderContext.builder().build());
+    }
+
+    private JsonNode write(List<Resource> resources, Set<String> fields) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        resourceFieldsSerializer.writeResourceList(resources, fields, outputStream);
+        return objectMapper.readTree(outputStream.toByteArray()).get("resourcesList");
+    }
+
+    private static List<String> names(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> iterator = node.fieldNames(); iterator.hasNext(); ) {
+            names.add(iterator.next());
+        }
+        names.sort(null);
+        return names;
+    }
+
+    @Test
+    void alwaysIncludesTheIdAndTheType() {
+        assertEquals(Set.of("id", "type", "name"), ResourceFieldsSerializer.parseFields(List.of("name", " ", "name")));
+    }
+
+    @Test
+    void includesEverythingWhenNoFieldIsRequested() {
+        assertNull(ResourceFieldsSerializer.parseFields(null));
+        assertNull(ResourceFieldsSerializer.parseFields(List.of()));
+    }
+
+    @Test
+    void rejectsUnknownFields() {
+        assertThrows(InvalidFieldException.class, () -> ResourceFieldsSerializer.parseFields(List.of("name", "password")));
+        // Stored field names are not ResourceDTO properties
+        assertThrows(InvalidFieldException.class, () -> ResourceFieldsSerializer.parseFields(List.of("kWh")));
+        assertThrows(InvalidFieldException.class, () -> ResourceFieldsSerializer.parseFields(List.of("_id")));
+    }
+
+    @Test
+    void readsThePropertiesFromTheFieldsTheyAreStoredUnder() {
+        Set<String> fields = ResourceFieldsSerializer.parseFields(List.of("kwh", "brand", "model"));
+
+        assertEquals(Set.of(ResourceCodec.TYPE_FIELD, ResourceCodec.ID_FIELD, "type", "kWh", "name"),
+                Set.of(ResourceFieldsSerializer.getStoredFields(fields)));
+    }
+
+    @Test
+    void writesOnlyTheRequestedProperties() throws Exception {
+        ResourceCPU resource = cpu();
+        Set<String> fields = ResourceFieldsSerializer.parseFields(List.of("kwh", "brand", "model", "cores"));
+
+        JsonNode written = write(List.of(project(resource, ResourceFieldsSerializer.getStoredFields(fields))), fields).get(0);
+        JsonNode full = objectMapper.valueToTree(resourceMapper.toResourceDTO(resource));
+
+        assertEquals(List.of("brand", "cores", "id", "kwh", "model", "type"), names(written));
+        for (String field : fields) {
+            assertEquals(full.get(field), written.get(field), field);
+        }
+    }
+
+    @Test
+    void writesTheNestedAvailabilityWhole() throws Exception {
+        ResourceCPU resource = cpu();
+        Set<String> fields = ResourceFieldsSerializer.parseFields(List.of("availability"));
+
+        List<String> storedFields = List.of(ResourceFieldsSerializer.getStoredFields(fields));
+        assertTrue(storedFields.contains("availability"));
+
+        JsonNode written = write(List.of(project(resource, storedFields.toArray(new String[0]))), fields).get(0);
+        JsonNode full = objectMapper.valueToTree(resourceMapper.toResourceDTO(resource));
+
+        assertEquals(List.of("availability", "id", "type"), names(written));
+        assertEquals(2, written.get("availability").size());
+        assertEquals(full.get("availability"), written.get("availability"));
+    }
+
+    @Test
+    void writesAnEmptyList() throws Exception {
+        JsonNode list = write(List.of(), ResourceFieldsSerializer.parseFields(List.of("name")));
+
+        assertTrue(list.isArray());
+        assertEquals(0, list.size());
+    }
+}
@@ -0,0 +1,114 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceJsonCacheTest {
+    private final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    private ResourceService resourceService;
+
+    private ResourceJsonCache resourceJsonCache;
+
+    @BeforeEach
+    void setup() {
+        resourceService = mock(ResourceService.class);
+        when(resourceService.getResourceDTO(any())).thenAnswer(invocation -> {
+            ResourceCPU resource = invocation.getArgument(0);
+            ResourceCpuDTO resourceDTO = new ResourceCpuDTO();
+            resourceDTO.setId(resource.getId());
+            resourceDTO.setName(resource.getName());
+            return resourceDTO;
+        });
+
+        resourceJsonCache = new ResourceJsonCache(resourceService, objectMapper);
+        ReflectionTestUtils.setField(resourceJsonCache, "maxEntries", 2);
+    }
+
+    private static ResourceCPU resource(String id, long version) {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId(id);
+        resource.setName("Intel Core i9 v" + version);
+        resource.setVersion(version);
+        return resource;
+    }
+
+    private static String text(byte[] json) {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void servesTheCachedJsonOfTheSameVersion() {
+        byte[] json = resourceJsonCache.getJson(resource("a", 1));
+
+        assertSame(json, resourceJsonCache.getJson(resource("a", 1)));
+        assertSame(json, resourceJsonCache.getCachedJson("a", 1));
+        verify(resourceService, times(1)).getResourceDTO(any());
+    }
+
+    @Test
+    void serializesAgainForAnotherVersion() {
+        resourceJsonCache.getJson(resource("a", 1));
+
+        assertTrue(text(resourceJsonCache.getJson(resource("a", 2))).contains("Intel Core i9 v2"));
+        assertNull(resourceJsonCache.getCachedJson("a", 1));
+        assertNotNull(resourceJsonCache.getCachedJson("a", 2));
+        verify(resourceService, times(2)).getResourceDTO(any());
+    }
+
+    @Test
+    void keepsTheNewerVersion() {
+        resourceJsonCache.getJson(resource("a", 2));
+        // A lookup that read the resource before its last write
+        resourceJsonCache.getJson(resource("a", 1));
+
+        assertNotNull(resourceJsonCache.getCachedJson("a", 2));
+    }
+
+    @Test
+    void dropsTheJsonOfAChangedResource() {
+        resourceJsonCache.getJson(resource("a", 1));
+
+        resourceJsonCache.onResourceChanged(new ResourceChangedEvent(this, "a", null));
+
+        assertNull(resourceJsonCache.getCachedJson("a", 1));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedResourceWhenFull() {
+        resourceJsonCache.getJson(resource("a", 1));
+        resourceJsonCache.getJson(resource("b", 1));
+        // Makes b the least recently used
+        resourceJsonCache.getCachedJson("a", 1);
+
+        resourceJsonCache.getJson(resource("c", 1));
+
+        assertNotNull(resourceJsonCache.getCachedJson("a", 1));
+        assertNull(resourceJsonCache.getCachedJson("b", 1));
+        assertNotNull(resourceJsonCache.getCachedJson("c", 1));
+    }
+
+    @Test
+    void writesAResourceList() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceJsonCache.writeResourceList(List.of(resource("a", 1), resource("b", 1)), outputStream);
+
+        assertEquals(List.of("a", "b"), objectMapper.readTree(outputStream.toByteArray()).get("resourcesList")
+                .findValuesAsText("id"));
+    }
+}
@@ -0,0 +1,145 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import it.unisalento.pasproject.resourceservice.domain.*;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceListDTO;
+import it.unisalento.pasproject.resourceservice.repositories.codec.ResourceCodec;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static it.unisalento.pasproject.resourceservice.ResourceFixtures.cpu;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceJsonTranscoderTest {
+    // Configured as the ObjectMapper of Spring Boot, which writes times as ISO strings
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final ResourceCodec resourceCodec = new ResourceCodec();
+
+    private final ResourceMapper resourceMapper = Mappers.getMapper(ResourceMapper.class);
+
+    private MongoCursor<RawBsonDocument> cursor;
+
+    private ResourceJsonTranscoder resourceJsonTranscoder;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        MongoCollection<RawBsonDocument> rawCollection = mock(MongoCollection.class);
+        FindIterable<RawBsonDocument> findIterable = mock(FindIterable.class);
+        cursor = mock(MongoCursor.class);
+
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollection(any())).thenReturn(collection);
+        when(collection.withDocumentClass(RawBsonDocument.class)).thenReturn(rawCollection);
+        when(rawCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.projection(any())).thenReturn(findIterable);
+        when(findIterable.iterator()).thenReturn(cursor);
+
+        resourceJsonTranscoder = new ResourceJsonTranscoder(mongoTemplate, objectMapper);
+    }
+
+    private void stored(Resource... resources) {
+        List<RawBsonDocument> documents = new ArrayList<>();
+
+        for (Resource resource : resources) {
+            documents.add(new RawBsonDocument(resource, resourceCodec));
+        }
+
+        Iterator<RawBsonDocument> iterator = documents.iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+    }
+
+    private JsonNode transcode() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        resourceJsonTranscoder.writeResourceList(new Query(), outputStream);
+        return objectMapper.readTree(outputStream.toByteArray());
+    }
+
+    private JsonNode serialize(Resource... resources) {
+        List<ResourceDTO> list = new ArrayList<>();
+
+        for (Resource resource : resources) {
+            list.add(switch (resource) {
+                case ResourceCPU resourceCPU -> resourceMapper.toResourceDTO(resourceCPU);
+                case ResourceGPU resourceGPU -> resourceMapper.toResourceDTO(resourceGPU);
+                case ResourceSoC resourceSoC -> resourceMapper.toResourceDTO(resourceSoC);
+                default -> throw new IllegalArgumentException();
+            });
+        }
+
+        ResourceListDTO resourceListDTO = new ResourceListDTO();
+        resourceListDTO.setResourcesList(list);
+        return objectMapper.valueToTree(resourceListDTO);
+    }
+
+    @Test
+    void writesTheSameJsonAsTheDTOs() throws Exception {
+        ResourceCPU cpu = cpu();
+        cpu.setChangeSequence(12);
+
+        ResourceGPU gpu = new ResourceGPU();
+        gpu.setId(new ObjectId().toHexString());
+        gpu.setName("GeForce RTX 4090");
+        gpu.setType("gpu");
+        gpu.setStatus(Resource.Status.AVAILABLE);
+        gpu.setVramType("GDDR6X");
+        gpu.setVramSize(24);
+        gpu.setDlssSupport(true);
+        gpu.setCudaScore(250000);
+
+        ResourceSoC soc = new ResourceSoC();
+        soc.setId("soc-1");
+        soc.setName("M2");
+        soc.setType("soc");
+        soc.setCpuCores(8);
+        soc.setGpuBaseFrequency(1.4);
+
+        stored(cpu, gpu, soc);
+
+        assertEquals(serialize(cpu, gpu, soc), transcode());
+    }
+
+    @Test
+    void writesAnEmptyList() throws Exception {
+        stored();
+
+        JsonNode list = transcode().get("resourcesList");
+        assertTrue(list.isArray());
+        assertEquals(0, list.size());
+    }
+}
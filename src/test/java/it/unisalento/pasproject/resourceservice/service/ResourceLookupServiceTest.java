@@ -0,0 +1,148 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidIdListException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceLookupServiceTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ResourceRepository resourceRepository;
+
+    private ResourceService resourceService;
+
+    private ResourceJsonTranscoder resourceJsonTranscoder;
+
+    private ResourceFieldsSerializer resourceFieldsSerializer;
+
+    private ResourceLookupService resourceLookupService;
+
+    @BeforeEach
+    void setup() {
+        resourceRepository = mock(ResourceRepository.class);
+        resourceService = mock(ResourceService.class);
+        resourceJsonTranscoder = mock(ResourceJsonTranscoder.class);
+        resourceFieldsSerializer = mock(ResourceFieldsSerializer.class);
+        resourceLookupService = new ResourceLookupService(resourceRepository, resourceService, mock(ResourceJsonCache.class),
+                mock(ResourceChangeTracker.class), resourceJsonTranscoder, resourceFieldsSerializer, objectMapper);
+        ReflectionTestUtils.setField(resourceLookupService, "maxIds", 3);
+
+        when(resourceService.getResourceDTO(any())).thenAnswer(invocation -> {
+            Resource resource = invocation.getArgument(0);
+            ResourceCpuDTO resourceDTO = new ResourceCpuDTO();
+            resourceDTO.setId(resource.getId());
+            resourceDTO.setName(resource.getName());
+            return resourceDTO;
+        });
+    }
+
+    private static ResourceCPU cpu(String id) {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId(id);
+        resource.setName("cpu " + id);
+        resource.setVersion(1);
+        return resource;
+    }
+
+    @Test
+    void writeResourcesFollowsTheOrderOfTheIdsAndMarksTheMissingOnes() throws Exception {
+        when(resourceRepository.findByIds(Set.of("a", "b", "c"))).thenReturn(List.of(cpu("b"), cpu("a")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceLookupService.writeResources(List.of("a", "c", "b"), outputStream);
+
+        JsonNode results = objectMapper.readTree(outputStream.toByteArray()).get("resources");
+        assertEquals(3, results.size());
+        assertEquals("a", results.get(0).get("id").asText());
+        assertTrue(results.get(0).get("found").asBoolean());
+        assertEquals("cpu a", results.get(0).get("resource").get("name").asText());
+        assertEquals("c", results.get(1).get("id").asText());
+        assertFalse(results.get(1).get("found").asBoolean());
+        assertNull(results.get(1).get("resource"));
+        assertEquals("b", results.get(2).get("id").asText());
+        assertEquals("cpu b", results.get(2).get("resource").get("name").asText());
+    }
+
+    @Test
+    void writeResourcesReadsRepeatedIdsOnce() throws Exception {
+        when(resourceRepository.findByIds(Set.of("a"))).thenReturn(List.of(cpu("a")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceLookupService.writeResources(List.of("a", "a"), outputStream);
+
+        JsonNode results = objectMapper.readTree(outputStream.toByteArray()).get("resources");
+        assertEquals(2, results.size());
+        assertTrue(results.get(1).get("found").asBoolean());
+        verify(resourceRepository, times(1)).findByIds(any());
+    }
+
+    @Test
+    void writeResourcesRejectsInvalidIdLists() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThrows(InvalidIdListException.class, () -> resourceLookupService.writeResources(null, outputStream));
+        assertThrows(InvalidIdListException.class, () -> resourceLookupService.writeResources(Arrays.asList("a", null), outputStream));
+        assertThrows(InvalidIdListException.class, () -> resourceLookupService.writeResources(List.of("a", "b", "c", "d"), outputStream));
+        verifyNoInteractions(resourceRepository);
+    }
+
+    @Test
+    void writeResourceListWritesTheDTOsByDefault() throws Exception {
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        when(resourceService.findResources(resourceQueryFilters)).thenReturn(List.of(cpu("a"), cpu("b")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceLookupService.writeResourceList(resourceQueryFilters, outputStream);
+
+        JsonNode list = objectMapper.readTree(outputStream.toByteArray()).get("resourcesList");
+        assertEquals(2, list.size());
+        assertEquals("cpu a", list.get(0).get("name").asText());
+        assertEquals("cpu b", list.get(1).get("name").asText());
+    }
+
+    @Test
+    void writeResourceListPrefersSparseFieldsetsOverTranscoding() throws Exception {
+        ReflectionTestUtils.setField(resourceLookupService, "transcodeEnabled", true);
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        resourceQueryFilters.setFields(Set.of("name"));
+        List<Resource> resources = List.of(cpu("a"));
+        when(resourceService.findResources(resourceQueryFilters)).thenReturn(resources);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceLookupService.writeResourceList(resourceQueryFilters, outputStream);
+
+        verify(resourceFieldsSerializer).writeResourceList(same(resources), any(), same(outputStream));
+        verifyNoInteractions(resourceJsonTranscoder);
+    }
+
+    @Test
+    void writeResourceListTranscodesWhenEnabled() throws Exception {
+        ReflectionTestUtils.setField(resourceLookupService, "transcodeEnabled", true);
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        Query query = new Query();
+        when(resourceService.getResourceQuery(resourceQueryFilters)).thenReturn(query);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        resourceLookupService.writeResourceList(resourceQueryFilters, outputStream);
+
+        verify(resourceJsonTranscoder).writeResourceList(same(query), same(outputStream));
+        verify(resourceService, never()).findResources(any());
+    }
+}
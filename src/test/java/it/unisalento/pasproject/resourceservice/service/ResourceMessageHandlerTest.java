@@ -0,0 +1,240 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.rabbitmq.client.Channel;
+import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchanger;
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.dto.ResourceMessageStatusDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceNotFoundException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceChangeSequence;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceMessageHandlerTest {
+    private static final String ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+
+    private BulkOperations bulkOperations;
+
+    private FindIterable<Document> resources;
+
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private Channel channel;
+
+    private MessageRecoverer statusDeadLetterRecoverer;
+
+    private ResourceMessageHandler resourceMessageHandler;
+
+    private long deliveryTag;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulkOperations = mock(BulkOperations.class);
+        resources = mock(FindIterable.class);
+        applicationEventPublisher = mock(ApplicationEventPublisher.class);
+        channel = mock(Channel.class);
+        statusDeadLetterRecoverer = mock(MessageRecoverer.class);
+
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Resource.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.getCollectionName(Resource.class)).thenReturn("resource");
+        when(mongoTemplate.getCollection("resource")).thenReturn(collection);
+        when(collection.find(any(Bson.class))).thenReturn(resources);
+        when(resources.projection(any())).thenReturn(resources);
+
+        ResourceChangeSequence resourceChangeSequence = mock(ResourceChangeSequence.class);
+        when(resourceChangeSequence.allocate(anyInt())).thenAnswer(invocation -> 100L + invocation.<Integer>getArgument(0));
+
+        resourceMessageHandler = new ResourceMessageHandler(mock(ResourceRepository.class), mock(MessageProducer.class),
+                mock(MessageExchanger.class), mongoTemplate, new Jackson2JsonMessageConverter(), mock(ResourceUpdateCoalescer.class),
+                mock(ResourceStatusHistoryWriter.class), applicationEventPublisher, resourceChangeSequence, statusDeadLetterRecoverer);
+    }
+
+    private Message message(String json) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setDeliveryTag(++deliveryTag);
+        return new Message(json.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private void matched(int count) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getMatchedCount()).thenReturn(count);
+        when(bulkOperations.execute()).thenReturn(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stored(Long changeSequence) {
+        doAnswer(invocation -> {
+            invocation.<Consumer<Document>>getArgument(0).accept(new Document("_id", new ObjectId(ID)).append(ResourceChangeSequence.SEQUENCE_FIELD, changeSequence));
+            return null;
+        }).when(resources).forEach(any(Consumer.class));
+    }
+
+    private static ResourceMessageStatusDTO status(ResourceMessageStatusDTO.Status status, String currentTaskId, Long sequence) {
+        ResourceMessageStatusDTO message = new ResourceMessageStatusDTO();
+        message.setId(ID);
+        message.setStatus(status);
+        message.setCurrentTaskId(currentTaskId);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    @Test
+    void foldKeepsTheFieldsOfUnsequencedMessages() {
+        ResourceMessageStatusDTO folded = ResourceMessageHandler.foldStatusMessages(
+                status(ResourceMessageStatusDTO.Status.BUSY, "task1", null),
+                status(ResourceMessageStatusDTO.Status.AVAILABLE, null, null));
+
+        assertEquals(ResourceMessageStatusDTO.Status.AVAILABLE, folded.getStatus());
+        assertEquals("task1", folded.getCurrentTaskId());
+        assertNull(folded.getSequence());
+    }
+
+    @Test
+    void foldKeepsTheSequencedMessageWithTheHighestSequence() {
+        ResourceMessageStatusDTO newer = status(ResourceMessageStatusDTO.Status.AVAILABLE, null, 7L);
+        ResourceMessageStatusDTO older = status(ResourceMessageStatusDTO.Status.BUSY, "task1", 6L);
+
+        assertSame(newer, ResourceMessageHandler.foldStatusMessages(newer, older));
+        assertSame(newer, ResourceMessageHandler.foldStatusMessages(older, newer));
+    }
+
+    @Test
+    void foldMergesUnsequencedFieldsIntoASequencedMessage() {
+        ResourceMessageStatusDTO folded = ResourceMessageHandler.foldStatusMessages(
+                status(ResourceMessageStatusDTO.Status.BUSY, "task1", 3L),
+                status(null, "task2", null));
+
+        assertEquals(ResourceMessageStatusDTO.Status.BUSY, folded.getStatus());
+        assertEquals("task2", folded.getCurrentTaskId());
+        assertEquals(3L, folded.getSequence());
+    }
+
+    @Test
+    void unsequencedMessagesOfAResourceAreFoldedIntoOneUpdate() throws Exception {
+        matched(1);
+
+        resourceMessageHandler.applyStatusMessages(List.of(
+                message("{\"id\":\"" + ID + "\",\"status\":\"BUSY\",\"currentTaskId\":\"task1\"}"),
+                message("{\"id\":\"" + ID + "\",\"status\":\"AVAILABLE\"}")), channel);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(1)).updateOne(any(Query.class), update.capture());
+
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(Resource.Status.AVAILABLE, set.get("status"));
+        assertEquals("task1", set.get("currentTaskId"));
+
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(applicationEventPublisher).publishEvent(any(ResourceChangedEvent.class));
+    }
+
+    @Test
+    void messagesThatChangeNothingAreAckedWithoutAChange() throws Exception {
+        matched(0);
+        stored(42L);
+
+        resourceMessageHandler.applyStatusMessages(List.of(message("{\"id\":\"" + ID + "\",\"status\":\"BUSY\"}")), channel);
+
+        verify(channel).basicAck(1, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void sequencedMessagesAdvanceTheSequenceEvenWhenTheyChangeNothing() throws Exception {
+        matched(1);
+        stored(42L);
+
+        resourceMessageHandler.applyStatusMessages(List.of(message("{\"id\":\"" + ID + "\",\"status\":\"BUSY\",\"sequence\":5}")), channel);
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+
+        Document noop = (Document) updates.getAllValues().get(1).getUpdateObject().get("$set");
+        assertEquals(5L, noop.get("lastStatusSequence"));
+        assertFalse(updates.getAllValues().get(1).getUpdateObject().containsKey("$inc"));
+
+        verify(channel).basicAck(1, false);
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void appliedSequencedMessagesAreToldByTheirChangeSequence() throws Exception {
+        matched(1);
+        // The first value of the block allocated for the batch
+        stored(101L);
+
+        resourceMessageHandler.applyStatusMessages(List.of(message("{\"id\":\"" + ID + "\",\"status\":\"BUSY\",\"sequence\":5}")), channel);
+
+        verify(channel).basicAck(1, false);
+        verify(applicationEventPublisher).publishEvent(any(ResourceChangedEvent.class));
+    }
+
+    @Test
+    void messagesOfUnknownResourcesAreRejected() throws Exception {
+        matched(0);
+
+        resourceMessageHandler.applyStatusMessages(List.of(message("{\"id\":\"" + ID + "\",\"status\":\"BUSY\"}")), channel);
+
+        verify(statusDeadLetterRecoverer).recover(any(Message.class), any(ResourceNotFoundException.class));
+        verify(channel).basicNack(1, false, false);
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void malformedMessagesAreDeadLetteredBeforeBeingRejected() throws Exception {
+        Message malformed = message("{\"status\":\"BUSY\"}");
+
+        resourceMessageHandler.applyStatusMessages(List.of(malformed), channel);
+
+        InOrder inOrder = inOrder(statusDeadLetterRecoverer, channel);
+        inOrder.verify(statusDeadLetterRecoverer).recover(eq(malformed), any(MessageConversionException.class));
+        inOrder.verify(channel).basicNack(1, false, false);
+    }
+
+    @Test
+    void messagesThatCannotBeDeadLetteredAreLeftUnacknowledged() throws Exception {
+        doThrow(new AmqpConnectException(new ConnectException("Connection refused")))
+                .when(statusDeadLetterRecoverer).recover(any(), any());
+
+        assertThrows(AmqpConnectException.class,
+                () -> resourceMessageHandler.applyStatusMessages(List.of(message("{\"status\":\"BUSY\"}")), channel));
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+}
@@ -0,0 +1,110 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unisalento.pasproject.resourceservice.dto.ResourceQueryDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceQueryRequestDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.InvalidIdListException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceQueryHandlerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ResourceLookupService resourceLookupService;
+
+    private ResourceQueryHandler resourceQueryHandler;
+
+    @BeforeEach
+    void setup() throws Exception {
+        resourceLookupService = mock(ResourceLookupService.class);
+        resourceQueryHandler = new ResourceQueryHandler(resourceLookupService, objectMapper);
+
+        doAnswer(invocation -> {
+            // Writes part of the result before failing, as a query failing halfway through the stream would
+            invocation.getArgument(1, OutputStream.class).write("{\"resources\":[".getBytes(StandardCharsets.UTF_8));
+
+            List<String> ids = invocation.getArgument(0);
+            if (ids.contains("invalid")) {
+                throw new InvalidIdListException("Invalid ids.");
+            }
+            if (ids.contains("failing")) {
+                throw new UncategorizedMongoDbException("Connection reset", null);
+            }
+
+            invocation.getArgument(1, OutputStream.class).write("]}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(resourceLookupService).writeResources(any(), any());
+    }
+
+    private static ResourceQueryDTO ids(String... ids) {
+        ResourceQueryDTO query = new ResourceQueryDTO();
+        query.setIds(Arrays.asList(ids));
+        return query;
+    }
+
+    private JsonNode reply(ResourceQueryDTO... queries) throws Exception {
+        ResourceQueryRequestDTO request = new ResourceQueryRequestDTO();
+        request.setQueries(Arrays.asList(queries));
+
+        Message message = resourceQueryHandler.receiveQueryRequest(request);
+
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, message.getMessageProperties().getContentType());
+        return objectMapper.readTree(message.getBody()).get("results");
+    }
+
+    @Test
+    void answersEachQueryInOrder() throws Exception {
+        ResourceQueryDTO filtered = new ResourceQueryDTO();
+        filtered.setFilters(new ResourceQueryFilters());
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("{\"resourcesList\":[]}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(resourceLookupService).writeResourceList(any(), any());
+
+        JsonNode results = reply(ids("a"), filtered);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).get("resources").isArray());
+        assertTrue(results.get(1).get("resourcesList").isArray());
+    }
+
+    @Test
+    void reportsAnInvalidQueryAsAnError() throws Exception {
+        JsonNode results = reply(ids("invalid"), new ResourceQueryDTO(), ids("a"));
+
+        assertEquals("Invalid ids.", results.get(0).get("error").asText());
+        assertEquals("A query needs ids or filters.", results.get(1).get("error").asText());
+        assertTrue(results.get(2).get("resources").isArray());
+    }
+
+    @Test
+    void reportsAFailedQueryAsAnErrorWithoutFailingTheOthers() throws Exception {
+        JsonNode results = reply(ids("a"), ids("failing"), ids("b"));
+
+        // The partial result of the failed query is not in the reply
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).get("resources").isArray());
+        assertEquals("The query could not be answered.", results.get(1).get("error").asText());
+        assertNull(results.get(1).get("resources"));
+        assertTrue(results.get(2).get("resources").isArray());
+    }
+
+    @Test
+    void repliesToARequestWithoutQueries() throws Exception {
+        assertEquals(0, reply().size());
+        verifyNoInteractions(resourceLookupService);
+    }
+}
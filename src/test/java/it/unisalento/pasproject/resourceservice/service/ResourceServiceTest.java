@@ -0,0 +1,127 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceCpuDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDeltaDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceStatusUpdateException;
+import it.unisalento.pasproject.resourceservice.exceptions.ResourceVersionConflictException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceServiceTest {
+    private ResourceRepository resourceRepository;
+
+    private ResourceMessageHandler resourceMessageHandler;
+
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private ResourceService resourceService;
+
+    @BeforeEach
+    void setup() {
+        resourceRepository = mock(ResourceRepository.class);
+        resourceMessageHandler = mock(ResourceMessageHandler.class);
+        applicationEventPublisher = mock(ApplicationEventPublisher.class);
+        resourceService = new ResourceService(mock(MongoTemplate.class), resourceMessageHandler, resourceRepository,
+                mock(ResourceStatusHistoryWriter.class), Mappers.getMapper(ResourceMapper.class), applicationEventPublisher);
+    }
+
+    private static ResourceCPU cpu(Resource.Status status, long version) {
+        ResourceCPU resource = new ResourceCPU();
+        resource.setId("cpu1");
+        resource.setName("Intel Core i9");
+        resource.setType("cpu");
+        resource.setMemberEmail("user@example.com");
+        resource.setStatus(status);
+        resource.setVersion(version);
+        return resource;
+    }
+
+    @Test
+    void updateStatusWritesConditionallyOnTheVersionRead() {
+        when(resourceRepository.findById("cpu1")).thenReturn(Optional.of(cpu(Resource.Status.UNAVAILABLE, 4)));
+        when(resourceRepository.updateIfVersion(any(), eq(4L))).thenReturn(true);
+
+        ResourceDTO resourceDTO = resourceService.updateStatus("cpu1", Resource.Status.AVAILABLE);
+
+        assertEquals(ResourceDTO.Status.AVAILABLE, resourceDTO.getStatus());
+        verify(resourceRepository).updateIfVersion(any(), eq(4L));
+        verify(resourceRepository, never()).save(any());
+        verify(resourceMessageHandler).sendResourceDeltaMessage(any(ResourceDeltaDTO.class));
+        verify(applicationEventPublisher).publishEvent(any(ResourceChangedEvent.class));
+    }
+
+    @Test
+    void updateStatusReadsTheResourceAgainAfterAConcurrentChange() {
+        when(resourceRepository.findById("cpu1")).thenReturn(
+                Optional.of(cpu(Resource.Status.UNAVAILABLE, 4)),
+                Optional.of(cpu(Resource.Status.UNAVAILABLE, 5)));
+        when(resourceRepository.updateIfVersion(any(), eq(4L))).thenReturn(false);
+        when(resourceRepository.updateIfVersion(any(), eq(5L))).thenReturn(true);
+
+        assertNotNull(resourceService.updateStatus("cpu1", Resource.Status.AVAILABLE));
+        verify(applicationEventPublisher, times(1)).publishEvent(any(ResourceChangedEvent.class));
+    }
+
+    @Test
+    void updateStatusFailsWithAConflictWhenTheResourceKeepsChanging() {
+        when(resourceRepository.findById("cpu1")).thenAnswer(invocation -> Optional.of(cpu(Resource.Status.UNAVAILABLE, 4)));
+        when(resourceRepository.updateIfVersion(any(), anyLong())).thenReturn(false);
+
+        assertThrows(ResourceVersionConflictException.class, () -> resourceService.updateStatus("cpu1", Resource.Status.AVAILABLE));
+        verify(resourceMessageHandler, never()).sendResourceDeltaMessage(any());
+    }
+
+    @Test
+    void updateStatusDoesNotRetryWhenTheResourceBecameBusy() {
+        when(resourceRepository.findById("cpu1")).thenReturn(
+                Optional.of(cpu(Resource.Status.UNAVAILABLE, 4)),
+                Optional.of(cpu(Resource.Status.BUSY, 5)));
+        when(resourceRepository.updateIfVersion(any(), anyLong())).thenReturn(false);
+
+        assertThrows(ResourceStatusUpdateException.class, () -> resourceService.updateStatus("cpu1", Resource.Status.AVAILABLE));
+        verify(resourceRepository, times(1)).updateIfVersion(any(), anyLong());
+    }
+
+    @Test
+    void updateResourceFailsWithAConflictWhenTheResourceChangedMeanwhile() {
+        when(resourceRepository.findById("cpu1")).thenReturn(Optional.of(cpu(Resource.Status.UNAVAILABLE, 4)));
+        when(resourceRepository.updateIfVersion(any(), eq(4L))).thenReturn(false);
+
+        ResourceCpuDTO resourceCpuDTO = new ResourceCpuDTO();
+        resourceCpuDTO.setId("cpu1");
+        resourceCpuDTO.setName("Intel Core i9");
+        resourceCpuDTO.setCity("Lecce");
+
+        assertThrows(ResourceVersionConflictException.class, () -> resourceService.updateResource(resourceCpuDTO));
+        verify(resourceMessageHandler, never()).sendResourceDeltaMessage(any());
+    }
+
+    @Test
+    void theQueryAndTheMatchOfTheFiltersAgreeOnTheEnergy() {
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        resourceQueryFilters.setKWh(90.0);
+
+        // The stored field is kWh, as written by ResourceCodec
+        assertEquals(new Document("kWh", new Document("$lte", 90.0)), resourceService.getResourceQuery(resourceQueryFilters).getQueryObject());
+
+        ResourceCPU resource = cpu(Resource.Status.AVAILABLE, 1);
+        resource.setKWh(90.0);
+        assertTrue(resourceService.matchesFilters(resource, resourceQueryFilters));
+        resource.setKWh(95.5);
+        assertFalse(resourceService.matchesFilters(resource, resourceQueryFilters));
+    }
+}
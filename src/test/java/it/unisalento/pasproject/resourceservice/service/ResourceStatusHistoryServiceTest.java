@@ -0,0 +1,133 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import it.unisalento.pasproject.resourceservice.domain.ResourceStatusEvent;
+import it.unisalento.pasproject.resourceservice.dto.MemberUtilizationDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceUtilizationDTO;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceStatusHistoryServiceTest {
+    private static final Instant FROM = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final Instant TO = Instant.parse("2026-01-02T00:00:00Z");
+
+    private MongoCollection<Document> history;
+
+    private AggregateIterable<Document> durations;
+
+    private ResourceStatusHistoryService resourceStatusHistoryService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        history = mock(MongoCollection.class);
+        durations = mock(AggregateIterable.class);
+
+        when(mongoTemplate.getCollectionName(ResourceStatusEvent.class)).thenReturn("resourceStatusHistory");
+        when(mongoTemplate.getCollection("resourceStatusHistory")).thenReturn(history);
+        when(history.aggregate(anyList())).thenReturn(durations);
+
+        resourceStatusHistoryService = new ResourceStatusHistoryService(mongoTemplate);
+        ReflectionTestUtils.setField(resourceStatusHistoryService, "lookbackDays", 30L);
+    }
+
+    private static Document duration(String resourceId, String status, long hours) {
+        return new Document("_id", new Document("resourceId", resourceId).append("status", status))
+                .append("millis", TimeUnit.HOURS.toMillis(hours));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void aggregated(Document... documents) {
+        doAnswer(invocation -> {
+            for (Document document : documents) {
+                invocation.<Consumer<Document>>getArgument(0).accept(document);
+            }
+            return null;
+        }).when(durations).forEach(any(Consumer.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Document> pipeline() {
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(history).aggregate(pipeline.capture());
+        return pipeline.getValue();
+    }
+
+    @Test
+    void sumsTheTimeSpentInEachStatusOfAResource() {
+        aggregated(duration("cpu1", "BUSY", 6), duration("cpu1", "AVAILABLE", 2), duration("cpu1", "UNAVAILABLE", 16));
+
+        ResourceUtilizationDTO resourceUtilizationDTO = resourceStatusHistoryService.getResourceUtilization("cpu1", FROM, TO);
+
+        assertEquals("cpu1", resourceUtilizationDTO.getResourceId());
+        assertEquals(6 * 3600, resourceUtilizationDTO.getBusySeconds());
+        assertEquals(2 * 3600, resourceUtilizationDTO.getAvailableSeconds());
+        assertEquals(16 * 3600, resourceUtilizationDTO.getUnavailableSeconds());
+        // The unavailable time is not offered, so it does not count
+        assertEquals(0.75, resourceUtilizationDTO.getUtilization());
+    }
+
+    @Test
+    void pairsEachTransitionWithTheNextOneWithinTheRange() {
+        aggregated();
+
+        resourceStatusHistoryService.getResourceUtilization("cpu1", FROM, TO);
+
+        List<Document> pipeline = pipeline();
+        Document match = pipeline.get(0).get("$match", Document.class);
+        assertEquals("cpu1", match.get("meta.resourceId"));
+        // Read from the lookback, so the status at the start of the range is known
+        assertEquals(Date.from(FROM.minus(30, ChronoUnit.DAYS)), match.get("timestamp", Document.class).get("$gte"));
+        assertEquals(Date.from(TO), match.get("timestamp", Document.class).get("$lt"));
+
+        Document shift = pipeline.get(1).get("$setWindowFields", Document.class)
+                .get("output", Document.class).get("next", Document.class).get("$shift", Document.class);
+        assertEquals("$meta.resourceId", pipeline.get(1).get("$setWindowFields", Document.class).get("partitionBy"));
+        assertEquals(1, shift.get("by"));
+        assertEquals(Date.from(TO), shift.get("default"));
+
+        assertTrue(pipeline.getLast().containsKey("$group"));
+    }
+
+    @Test
+    void returnsNoTimeForAResourceWithoutHistory() {
+        aggregated();
+
+        ResourceUtilizationDTO resourceUtilizationDTO = resourceStatusHistoryService.getResourceUtilization("cpu1", FROM, TO);
+
+        assertEquals(0, resourceUtilizationDTO.getBusySeconds());
+        assertEquals(0, resourceUtilizationDTO.getUtilization());
+    }
+
+    @Test
+    void totalsTheResourcesOfAMember() {
+        aggregated(duration("cpu1", "BUSY", 6), duration("cpu1", "AVAILABLE", 2),
+                duration("gpu1", "BUSY", 2), duration("gpu1", "AVAILABLE", 6));
+
+        MemberUtilizationDTO memberUtilizationDTO = resourceStatusHistoryService.getMemberUtilization("owner@example.com", FROM, TO);
+
+        assertEquals("owner@example.com", pipeline().get(0).get("$match", Document.class).get("meta.memberEmail"));
+        assertEquals(2, memberUtilizationDTO.getResources().size());
+        assertEquals(8 * 3600, memberUtilizationDTO.getBusySeconds());
+        assertEquals(8 * 3600, memberUtilizationDTO.getAvailableSeconds());
+        assertEquals(0.5, memberUtilizationDTO.getUtilization());
+    }
+}
@@ -0,0 +1,165 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceStatusEvent;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceStatusHistoryWriterTest {
+    private MongoTemplate mongoTemplate;
+
+    private ResourceStatusHistoryWriter resourceStatusHistoryWriter;
+
+    /**
+     * The inserted batches, copied since the writer reuses its batch list.
+     */
+    private final List<List<ResourceStatusEvent>> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> resources = mock(MongoCollection.class);
+        MongoCollection<Document> history = mock(MongoCollection.class);
+        FindIterable<Document> members = mock(FindIterable.class);
+        AggregateIterable<Document> lastStatuses = mock(AggregateIterable.class);
+
+        when(mongoTemplate.collectionExists(ResourceStatusEvent.class)).thenReturn(true);
+        when(mongoTemplate.getCollectionName(Resource.class)).thenReturn("resource");
+        when(mongoTemplate.getCollectionName(ResourceStatusEvent.class)).thenReturn("resourceStatusHistory");
+        when(mongoTemplate.getCollection("resource")).thenReturn(resources);
+        when(mongoTemplate.getCollection("resourceStatusHistory")).thenReturn(history);
+        when(resources.find(any(Bson.class))).thenReturn(members);
+        when(members.projection(any())).thenReturn(members);
+        when(history.aggregate(anyList())).thenReturn(lastStatuses);
+
+        // Every resource belongs to its owner, and was last stored as available
+        doAnswer(invocation -> {
+            invocation.<Consumer<Document>>getArgument(0).accept(new Document("_id", "r1").append("memberEmail", "owner@example.com"));
+            invocation.<Consumer<Document>>getArgument(0).accept(new Document("_id", "r2").append("memberEmail", "owner@example.com"));
+            return null;
+        }).when(members).forEach(any(Consumer.class));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Document>>getArgument(0).accept(new Document("_id", "r1").append("status", "AVAILABLE"));
+            invocation.<Consumer<Document>>getArgument(0).accept(new Document("_id", "r2").append("status", "AVAILABLE"));
+            return null;
+        }).when(lastStatuses).forEach(any(Consumer.class));
+
+        doAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.<Collection<ResourceStatusEvent>>getArgument(0)));
+            return null;
+        }).when(mongoTemplate).insert(anyCollection(), eq(ResourceStatusEvent.class));
+
+        resourceStatusHistoryWriter = new ResourceStatusHistoryWriter(mongoTemplate);
+        ReflectionTestUtils.setField(resourceStatusHistoryWriter, "enabled", true);
+        ReflectionTestUtils.setField(resourceStatusHistoryWriter, "queueCapacity", 100);
+        ReflectionTestUtils.setField(resourceStatusHistoryWriter, "batchSize", 2);
+        ReflectionTestUtils.setField(resourceStatusHistoryWriter, "flushInterval", 50L);
+        ReflectionTestUtils.setField(resourceStatusHistoryWriter, "lookbackDays", 30L);
+    }
+
+    @AfterEach
+    void teardown() {
+        if (resourceStatusHistoryWriter.isRunning()) {
+            resourceStatusHistoryWriter.stop();
+        }
+    }
+
+    private static ResourceStatusEvent event(String resourceId, String memberEmail, Resource.Status oldStatus, Resource.Status newStatus) {
+        ResourceStatusEvent event = new ResourceStatusEvent();
+        ResourceStatusEvent.Meta meta = new ResourceStatusEvent.Meta();
+        meta.setResourceId(resourceId);
+        meta.setMemberEmail(memberEmail);
+        event.setMeta(meta);
+        event.setOldStatus(oldStatus);
+        event.setNewStatus(newStatus);
+        event.setTimestamp(Instant.now());
+        return event;
+    }
+
+    private List<ResourceStatusEvent> inserted() {
+        List<ResourceStatusEvent> events = new ArrayList<>();
+        batches.forEach(events::addAll);
+        return events;
+    }
+
+    private void write(ResourceStatusEvent... events) {
+        ReflectionTestUtils.invokeMethod(resourceStatusHistoryWriter, "write", new ArrayList<>(List.of(events)));
+    }
+
+    @Test
+    void writesTheRecordedTransitionsInBatches() {
+        resourceStatusHistoryWriter.start();
+
+        for (int i = 0; i < 5; i++) {
+            resourceStatusHistoryWriter.record("r1", "owner@example.com", Resource.Status.AVAILABLE, Resource.Status.BUSY, "task" + i, Instant.now());
+        }
+
+        // Stopping drains the queue
+        resourceStatusHistoryWriter.stop();
+
+        assertTrue(batches.size() >= 3);
+        batches.forEach(events -> assertTrue(events.size() <= 2));
+        assertEquals(5, inserted().size());
+    }
+
+    @Test
+    void doesNotRecordWhenStopped() {
+        resourceStatusHistoryWriter.record("r1", "owner@example.com", Resource.Status.AVAILABLE, Resource.Status.BUSY, null, Instant.now());
+
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    void completesTheMemberAndThePreviousStatus() {
+        write(event("r1", null, null, Resource.Status.BUSY),
+                event("r1", null, null, Resource.Status.UNAVAILABLE),
+                event("r2", "owner@example.com", null, Resource.Status.BUSY));
+
+        List<ResourceStatusEvent> events = inserted();
+        assertEquals(3, events.size());
+        assertEquals("owner@example.com", events.get(0).getMeta().getMemberEmail());
+        // The first transition of a resource follows the stored one, the next ones follow the batch
+        assertEquals(Resource.Status.AVAILABLE, events.get(0).getOldStatus());
+        assertEquals(Resource.Status.BUSY, events.get(1).getOldStatus());
+        assertEquals(Resource.Status.AVAILABLE, events.get(2).getOldStatus());
+    }
+
+    @Test
+    void dropsTheMessagesThatDoNotChangeTheStatus() {
+        write(event("r1", "owner@example.com", null, Resource.Status.AVAILABLE),
+                event("r2", "owner@example.com", Resource.Status.BUSY, Resource.Status.BUSY),
+                event("r2", "owner@example.com", null, Resource.Status.AVAILABLE));
+
+        List<ResourceStatusEvent> events = inserted();
+        assertEquals(1, events.size());
+        assertEquals("r2", events.get(0).getMeta().getResourceId());
+        assertEquals(Resource.Status.BUSY, events.get(0).getOldStatus());
+    }
+
+    @Test
+    void writesNothingWhenNoTransitionIsLeft() {
+        write(event("r1", "owner@example.com", null, Resource.Status.AVAILABLE));
+
+        assertTrue(batches.isEmpty());
+    }
+}
@@ -0,0 +1,215 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.domain.ResourceGPU;
+import it.unisalento.pasproject.resourceservice.exceptions.TooManySubscribersException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceSubscriptionServiceTest {
+    private final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    /**
+     * The resources as stored, read by the dispatcher after each change.
+     */
+    private final Map<String, Resource> stored = new ConcurrentHashMap<>();
+
+    private ResourceSubscriptionService resourceSubscriptionService;
+
+    @BeforeEach
+    void setup() {
+        ResourceRepository resourceRepository = mock(ResourceRepository.class);
+        when(resourceRepository.findByIds(any())).thenAnswer(invocation -> {
+            List<Resource> resources = new ArrayList<>();
+            for (String id : invocation.<Collection<String>>getArgument(0)) {
+                if (stored.containsKey(id)) {
+                    resources.add(stored.get(id));
+                }
+            }
+            return resources;
+        });
+
+        ResourceService resourceService = new ResourceService(mock(MongoTemplate.class), mock(ResourceMessageHandler.class), resourceRepository,
+                mock(ResourceStatusHistoryWriter.class), Mappers.getMapper(ResourceMapper.class), mock(ApplicationEventPublisher.class));
+
+        resourceSubscriptionService = new ResourceSubscriptionService(resourceRepository, resourceService, objectMapper);
+        ReflectionTestUtils.setField(resourceSubscriptionService, "maxSubscribers", 10);
+        ReflectionTestUtils.setField(resourceSubscriptionService, "bufferSize", 64);
+        ReflectionTestUtils.setField(resourceSubscriptionService, "queueCapacity", 100);
+        ReflectionTestUtils.setField(resourceSubscriptionService, "heartbeatMillis", 60_000L);
+        ReflectionTestUtils.setField(resourceSubscriptionService, "timeoutMillis", 60_000L);
+        resourceSubscriptionService.start();
+    }
+
+    @AfterEach
+    void teardown() {
+        resourceSubscriptionService.stop();
+    }
+
+    private void store(String id, String type, Resource.Status status) {
+        Resource resource = "gpu".equals(type) ? new ResourceGPU() : new ResourceCPU();
+        resource.setId(id);
+        resource.setName(id);
+        resource.setType(type);
+        resource.setStatus(status);
+        stored.put(id, resource);
+    }
+
+    private void changed(String id, Resource.Status previousStatus) {
+        resourceSubscriptionService.onResourceChanged(new ResourceChangedEvent(this, id, previousStatus, stored.get(id).getStatus()));
+    }
+
+    private static ResourceQueryFilters filters(String type, ResourceQueryFilters.Status status) {
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        resourceQueryFilters.setType(type);
+        resourceQueryFilters.setStatus(status);
+        return resourceQueryFilters;
+    }
+
+    /**
+     * Returns the resources sent on a stream, which buffers its events until the response is initialized.
+     */
+    @SuppressWarnings("unchecked")
+    private List<JsonNode> sent(SseEmitter emitter) throws Exception {
+        StringBuilder text = new StringBuilder();
+
+        synchronized (emitter) {
+            for (ResponseBodyEmitter.DataWithMediaType data : (Set<ResponseBodyEmitter.DataWithMediaType>) ReflectionTestUtils.getField(emitter, "earlySendAttempts")) {
+                text.append(data.getData());
+            }
+        }
+
+        List<JsonNode> resources = new ArrayList<>();
+        for (String line : text.toString().split("\n")) {
+            if (line.startsWith("data:")) {
+                resources.add(objectMapper.readTree(line.substring("data:".length())));
+            }
+        }
+        return resources;
+    }
+
+    private List<String> sentIds(SseEmitter emitter) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode resource : sent(emitter)) {
+            ids.add(resource.get("id").asText());
+        }
+        return ids;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitSent(SseEmitter emitter, List<String> ids) throws Exception {
+        long deadline = System.currentTimeMillis() + 2000;
+
+        while (!sentIds(emitter).equals(ids) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(ids, sentIds(emitter));
+    }
+
+    @Test
+    void sendsEachSubscriberTheChangesMatchingItsFilters() throws Exception {
+        SseEmitter cpus = resourceSubscriptionService.subscribe(filters("cpu", null));
+        SseEmitter gpus = resourceSubscriptionService.subscribe(filters("gpu", null));
+
+        store("cpu1", "cpu", Resource.Status.AVAILABLE);
+        store("gpu1", "gpu", Resource.Status.AVAILABLE);
+        changed("cpu1", null);
+        changed("gpu1", null);
+
+        awaitSent(cpus, List.of("cpu1"));
+        awaitSent(gpus, List.of("gpu1"));
+    }
+
+    @Test
+    void sendsTheChangeOfAResourceLeavingTheFilters() throws Exception {
+        SseEmitter available = resourceSubscriptionService.subscribe(filters(null, ResourceQueryFilters.Status.AVAILABLE));
+
+        store("cpu1", "cpu", Resource.Status.AVAILABLE);
+        changed("cpu1", null);
+        awaitSent(available, List.of("cpu1"));
+
+        // The status before the change is not known, but the resource was last sent as matching
+        store("cpu1", "cpu", Resource.Status.BUSY);
+        changed("cpu1", null);
+        awaitSent(available, List.of("cpu1", "cpu1"));
+        assertEquals("BUSY", sent(available).get(1).get("status").asText());
+
+        // Once it left the filters, its changes are not sent anymore
+        store("cpu1", "cpu", Resource.Status.UNAVAILABLE);
+        changed("cpu1", null);
+        store("cpu2", "cpu", Resource.Status.AVAILABLE);
+        changed("cpu2", null);
+        awaitSent(available, List.of("cpu1", "cpu1", "cpu2"));
+    }
+
+    @Test
+    void sendsTheChangeOfAResourceThatMatchedWithItsPreviousStatus() throws Exception {
+        store("cpu1", "cpu", Resource.Status.AVAILABLE);
+        SseEmitter available = resourceSubscriptionService.subscribe(filters(null, ResourceQueryFilters.Status.AVAILABLE));
+
+        // Never sent to the subscriber, which sees it leave through the status before the change
+        store("cpu1", "cpu", Resource.Status.BUSY);
+        changed("cpu1", Resource.Status.AVAILABLE);
+
+        awaitSent(available, List.of("cpu1"));
+    }
+
+    @Test
+    void disconnectsASlowSubscriber() throws Exception {
+        ReflectionTestUtils.setField(resourceSubscriptionService, "bufferSize", 1);
+        SseEmitter emitter = resourceSubscriptionService.subscribe(new ResourceQueryFilters());
+        Set<?> subscribers = (Set<?>) ReflectionTestUtils.getField(resourceSubscriptionService, "subscribers");
+        Thread dispatcher = (Thread) ReflectionTestUtils.getField(resourceSubscriptionService, "dispatcher");
+
+        // Holding the emitter blocks its sender, as a client not reading the stream would
+        synchronized (emitter) {
+            for (String id : List.of("cpu1", "cpu2", "cpu3")) {
+                store(id, "cpu", Resource.Status.AVAILABLE);
+                changed(id, null);
+            }
+
+            // The dispatcher finds the buffer full and waits to complete the emitter
+            await(() -> dispatcher.getState() == Thread.State.BLOCKED);
+        }
+
+        await(subscribers::isEmpty);
+        assertTrue(subscribers.isEmpty());
+    }
+
+    @Test
+    void rejectsSubscribersOverTheLimit() {
+        ReflectionTestUtils.setField(resourceSubscriptionService, "maxSubscribers", 1);
+        resourceSubscriptionService.subscribe(new ResourceQueryFilters());
+
+        assertThrows(TooManySubscribersException.class, () -> resourceSubscriptionService.subscribe(new ResourceQueryFilters()));
+    }
+}
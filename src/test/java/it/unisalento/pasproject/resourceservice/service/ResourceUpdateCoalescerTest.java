@@ -0,0 +1,120 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.producer.MessageProducer;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDeltaDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceUpdateCoalescerTest {
+    private MessageProducer messageProducer;
+
+    private ResourceUpdateCoalescer resourceUpdateCoalescer;
+
+    @BeforeEach
+    void setup() {
+        messageProducer = mock(MessageProducer.class);
+        resourceUpdateCoalescer = new ResourceUpdateCoalescer(messageProducer);
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "dataExchange", "data");
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "resourceDeltaTopic", "resource.delta");
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "window", 100L);
+    }
+
+    @AfterEach
+    void teardown() {
+        if (resourceUpdateCoalescer.isRunning()) {
+            resourceUpdateCoalescer.stop();
+        }
+    }
+
+    private static ResourceDeltaDTO delta(String id, long version) {
+        ResourceDeltaDTO message = new ResourceDeltaDTO();
+        message.setId(id);
+        message.setVersion(version);
+        return message;
+    }
+
+    private List<ResourceDeltaDTO> published(int count) {
+        ArgumentCaptor<ResourceDeltaDTO> message = ArgumentCaptor.forClass(ResourceDeltaDTO.class);
+        verify(messageProducer, timeout(2000).times(count)).sendMessage(message.capture(), eq("resource.delta"), eq("data"));
+        return message.getAllValues();
+    }
+
+    @Test
+    void mergesTheDeltasOfAResourceWithinTheWindow() {
+        resourceUpdateCoalescer.start();
+
+        ResourceDeltaDTO first = delta("a", 1);
+        first.setName("Intel Core i9");
+        first.setKWh(80.0);
+        ResourceDeltaDTO second = delta("a", 2);
+        second.setKWh(95.5);
+
+        resourceUpdateCoalescer.submit(first);
+        resourceUpdateCoalescer.submit(second);
+        resourceUpdateCoalescer.submit(delta("b", 4));
+
+        List<ResourceDeltaDTO> messages = published(2);
+        ResourceDeltaDTO merged = messages.stream().filter(message -> message.getId().equals("a")).findFirst().orElseThrow();
+        assertEquals(2, merged.getVersion());
+        assertEquals("Intel Core i9", merged.getName());
+        assertEquals(95.5, merged.getKWh());
+    }
+
+    @Test
+    void publishesRightAwayWhenDisabled() {
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "window", 0L);
+        resourceUpdateCoalescer.start();
+
+        resourceUpdateCoalescer.submit(delta("a", 1));
+        resourceUpdateCoalescer.submit(delta("a", 2));
+
+        verify(messageProducer, times(2)).sendMessage(any(), any(), any());
+    }
+
+    @Test
+    void flushesThePendingDeltasOnStop() {
+        ReflectionTestUtils.setField(resourceUpdateCoalescer, "window", 60_000L);
+        resourceUpdateCoalescer.start();
+
+        resourceUpdateCoalescer.submit(delta("a", 1));
+        resourceUpdateCoalescer.submit(delta("a", 2));
+        verifyNoInteractions(messageProducer);
+
+        resourceUpdateCoalescer.stop();
+
+        assertEquals(2, published(1).get(0).getVersion());
+    }
+
+    @Test
+    void publishesRightAwayAfterStop() {
+        resourceUpdateCoalescer.start();
+        resourceUpdateCoalescer.stop();
+
+        resourceUpdateCoalescer.submit(delta("a", 1));
+
+        assertEquals(1, published(1).get(0).getVersion());
+    }
+
+    @Test
+    void publishesRightAwayWhenTheFlushCannotBeScheduled() {
+        resourceUpdateCoalescer.start();
+        // As if stop had shut the scheduler down between the running check and the scheduling
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(resourceUpdateCoalescer, "scheduler")).shutdownNow();
+
+        resourceUpdateCoalescer.submit(delta("a", 1));
+
+        assertEquals(1, published(1).get(0).getVersion());
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(resourceUpdateCoalescer, "pending")).isEmpty());
+    }
+}
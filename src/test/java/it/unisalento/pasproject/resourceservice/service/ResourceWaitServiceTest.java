@@ -0,0 +1,190 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.domain.Resource;
+import it.unisalento.pasproject.resourceservice.domain.ResourceCPU;
+import it.unisalento.pasproject.resourceservice.domain.ResourceGPU;
+import it.unisalento.pasproject.resourceservice.dto.ResourceDTO;
+import it.unisalento.pasproject.resourceservice.dto.ResourceListDTO;
+import it.unisalento.pasproject.resourceservice.exceptions.TooManySubscribersException;
+import it.unisalento.pasproject.resourceservice.repositories.ResourceRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceWaitServiceTest {
+    /**
+     * The resources as stored, read by the dispatcher after each change.
+     */
+    private final Map<String, Resource> stored = new ConcurrentHashMap<>();
+
+    private ResourceRepository resourceRepository;
+
+    private ResourceWaitService resourceWaitService;
+
+    @BeforeEach
+    void setup() {
+        resourceRepository = mock(ResourceRepository.class);
+        when(resourceRepository.findByIds(any())).thenAnswer(invocation -> {
+            List<Resource> resources = new ArrayList<>();
+            for (String id : invocation.<Collection<String>>getArgument(0)) {
+                if (stored.containsKey(id)) {
+                    resources.add(stored.get(id));
+                }
+            }
+            return resources;
+        });
+
+        ResourceService resourceService = new ResourceService(mock(MongoTemplate.class), mock(ResourceMessageHandler.class), resourceRepository,
+                mock(ResourceStatusHistoryWriter.class), Mappers.getMapper(ResourceMapper.class), mock(ApplicationEventPublisher.class));
+
+        resourceWaitService = new ResourceWaitService(resourceRepository, resourceService);
+        ReflectionTestUtils.setField(resourceWaitService, "maxWaiters", 10);
+        ReflectionTestUtils.setField(resourceWaitService, "defaultTimeoutMillis", 30_000L);
+        ReflectionTestUtils.setField(resourceWaitService, "maxTimeoutMillis", 60_000L);
+        ReflectionTestUtils.setField(resourceWaitService, "queueCapacity", 100);
+        resourceWaitService.start();
+    }
+
+    @AfterEach
+    void teardown() {
+        resourceWaitService.stop();
+    }
+
+    private Resource store(String id, String type, Resource.Status status) {
+        Resource resource = "gpu".equals(type) ? new ResourceGPU() : new ResourceCPU();
+        resource.setId(id);
+        resource.setName(id);
+        resource.setType(type);
+        resource.setStatus(status);
+        stored.put(id, resource);
+        return resource;
+    }
+
+    private void changed(String id, Resource.Status status) {
+        resourceWaitService.onResourceChanged(new ResourceChangedEvent(this, id, status));
+    }
+
+    private static ResourceQueryFilters type(String type) {
+        ResourceQueryFilters resourceQueryFilters = new ResourceQueryFilters();
+        resourceQueryFilters.setType(type);
+        return resourceQueryFilters;
+    }
+
+    private static List<String> ids(DeferredResult<ResourceListDTO> result) {
+        List<String> ids = new ArrayList<>();
+        for (ResourceDTO resourceDTO : ((ResourceListDTO) result.getResult()).getResourcesList()) {
+            ids.add(resourceDTO.getId());
+        }
+        return ids;
+    }
+
+    private static void awaitResult(DeferredResult<ResourceListDTO> result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(result.hasResult());
+    }
+
+    @Test
+    void returnsTheAvailableResourcesRightAway() {
+        when(resourceRepository.findByQuery(any())).thenReturn(List.of(store("cpu1", "cpu", Resource.Status.AVAILABLE)));
+
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), null);
+
+        assertEquals(List.of("cpu1"), ids(result));
+
+        // Only available resources are waited for, whatever the requested status
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(resourceRepository).findByQuery(query.capture());
+        assertEquals(new Document("status", ResourceQueryFilters.Status.AVAILABLE).append("type", "cpu"), query.getValue().getQueryObject());
+    }
+
+    @Test
+    void wakesAWaiterWhenAMatchingResourceBecomesAvailable() throws Exception {
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), null);
+        assertFalse(result.hasResult());
+
+        store("gpu1", "gpu", Resource.Status.AVAILABLE);
+        changed("gpu1", Resource.Status.AVAILABLE);
+        store("cpu1", "cpu", Resource.Status.AVAILABLE);
+        changed("cpu1", Resource.Status.AVAILABLE);
+
+        awaitResult(result);
+        assertEquals(List.of("cpu1"), ids(result));
+    }
+
+    @Test
+    void doesNotWakeAWaiterForAResourceTakenMeanwhile() throws Exception {
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), null);
+
+        // The event reports it available, but it was assigned before the dispatcher read it
+        store("cpu1", "cpu", Resource.Status.BUSY);
+        changed("cpu1", Resource.Status.AVAILABLE);
+        verify(resourceRepository, timeout(2000)).findByIds(any());
+
+        store("cpu2", "cpu", Resource.Status.AVAILABLE);
+        changed("cpu2", Resource.Status.AVAILABLE);
+
+        awaitResult(result);
+        assertEquals(List.of("cpu2"), ids(result));
+    }
+
+    @Test
+    void ignoresTheChangesToOtherStatuses() {
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), null);
+
+        store("cpu1", "cpu", Resource.Status.BUSY);
+        changed("cpu1", Resource.Status.BUSY);
+
+        verify(resourceRepository, after(200).never()).findByIds(any());
+        assertFalse(result.hasResult());
+    }
+
+    @Test
+    void completesWithAnEmptyListAtTheDeadline() throws Exception {
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), 50L);
+        Set<?> waiters = (Set<?>) ReflectionTestUtils.getField(resourceWaitService, "waiters");
+
+        // As the container does when the async request times out
+        DeferredResultProcessingInterceptor interceptor = ReflectionTestUtils.invokeMethod(result, "getLifecycleInterceptor");
+        interceptor.handleTimeout(null, result);
+        interceptor.afterCompletion(null, result);
+
+        assertEquals(List.of(), ids(result));
+        assertTrue(waiters.isEmpty());
+    }
+
+    @Test
+    void capsTheTimeout() {
+        DeferredResult<ResourceListDTO> result = resourceWaitService.waitForAvailable(type("cpu"), 600_000L);
+
+        assertEquals(60_000L, ReflectionTestUtils.getField(result, "timeoutValue"));
+    }
+
+    @Test
+    void rejectsWaitersOverTheLimit() {
+        ReflectionTestUtils.setField(resourceWaitService, "maxWaiters", 1);
+        resourceWaitService.waitForAvailable(type("cpu"), null);
+
+        assertThrows(TooManySubscribersException.class, () -> resourceWaitService.waitForAvailable(type("gpu"), null));
+    }
+}
@@ -0,0 +1,111 @@
+package it.unisalento.pasproject.resourceservice.service;
+
+import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchangeStrategy;
+import it.unisalento.pasproject.resourceservice.business.io.exchanger.MessageExchanger;
+import it.unisalento.pasproject.resourceservice.dto.RevocationMessageDTO;
+import it.unisalento.pasproject.resourceservice.dto.RevocationSnapshotDTO;
+import it.unisalento.pasproject.resourceservice.dto.UserDetailsDTO;
+import it.unisalento.pasproject.resourceservice.security.SecurityConstants;
+import it.unisalento.pasproject.resourceservice.security.VerifiedClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RevocationListServiceTest {
+    private MessageExchanger messageExchanger;
+
+    private RevocationListService revocationListService;
+
+    @BeforeEach
+    void setup() {
+        messageExchanger = mock(MessageExchanger.class);
+        revocationListService = new RevocationListService(messageExchanger);
+        ReflectionTestUtils.setField(revocationListService, "authMode", UserCheckService.AUTH_MODE_CLAIMS);
+        ReflectionTestUtils.setField(revocationListService, "securityExchange", "security-exchange");
+        ReflectionTestUtils.setField(revocationListService, "snapshotRoutingKey", "auth.revocation.snapshot");
+    }
+
+    private static RevocationMessageDTO revocation(String email, boolean revoked) {
+        RevocationMessageDTO message = new RevocationMessageDTO();
+        message.setEmail(email);
+        message.setRevoked(revoked);
+        return message;
+    }
+
+    private void replySnapshot(String... revokedUsers) {
+        RevocationSnapshotDTO snapshot = new RevocationSnapshotDTO();
+        snapshot.setRevokedUsers(List.of(revokedUsers));
+        when(messageExchanger.exchangeMessage(anyString(), anyString(), anyString(), eq(RevocationSnapshotDTO.class))).thenReturn(snapshot);
+    }
+
+    @Test
+    void snapshotIsNotLoadedWhenTheSecurityServiceDoesNotReply() {
+        when(messageExchanger.exchangeMessage(anyString(), anyString(), anyString(), eq(RevocationSnapshotDTO.class))).thenReturn(null);
+
+        assertFalse(revocationListService.requestSnapshot());
+        assertFalse(revocationListService.isSnapshotLoaded());
+    }
+
+    @Test
+    void snapshotRevokesTheListedUsers() {
+        replySnapshot("revoked@example.com");
+
+        assertTrue(revocationListService.requestSnapshot());
+        assertTrue(revocationListService.isSnapshotLoaded());
+        assertTrue(revocationListService.isRevoked("revoked@example.com"));
+        assertFalse(revocationListService.isRevoked("user@example.com"));
+    }
+
+    @Test
+    void revocationsPushedBeforeTheSnapshotTakePrecedence() {
+        revocationListService.receiveRevocationMessage(revocation("restored@example.com", false));
+        revocationListService.receiveRevocationMessage(revocation("revoked@example.com", true));
+        replySnapshot("restored@example.com");
+
+        revocationListService.requestSnapshot();
+
+        assertFalse(revocationListService.isRevoked("restored@example.com"));
+        assertTrue(revocationListService.isRevoked("revoked@example.com"));
+    }
+
+    @Test
+    void revocationsPushedAfterTheSnapshotAreApplied() {
+        replySnapshot("revoked@example.com");
+        revocationListService.requestSnapshot();
+
+        revocationListService.receiveRevocationMessage(revocation("revoked@example.com", false));
+        revocationListService.receiveRevocationMessage(revocation("user@example.com", true));
+
+        assertFalse(revocationListService.isRevoked("revoked@example.com"));
+        assertTrue(revocationListService.isRevoked("user@example.com"));
+    }
+
+    @Test
+    void usersAreLookedUpUntilTheSnapshotIsLoaded() {
+        UserCheckService userCheckService = new UserCheckService(messageExchanger, mock(MessageExchangeStrategy.class), revocationListService);
+        VerifiedClaims claims = new VerifiedClaims("user@example.com", SecurityConstants.ROLE_MEMBRO, new Date(System.currentTimeMillis() + 60_000L));
+
+        // The security service cannot be reached, so the user is not trusted
+        assertFalse(userCheckService.loadUserFromClaims(claims).getEnabled());
+
+        UserDetailsDTO disabled = new UserDetailsDTO();
+        disabled.setEmail("user@example.com");
+        disabled.setRole(SecurityConstants.ROLE_MEMBRO);
+        disabled.setEnabled(false);
+        when(messageExchanger.exchangeMessage(eq("user@example.com"), any(), any(), eq(UserDetailsDTO.class))).thenReturn(disabled);
+
+        assertFalse(userCheckService.loadUserFromClaims(claims).getEnabled());
+
+        replySnapshot();
+        revocationListService.requestSnapshot();
+
+        assertTrue(userCheckService.loadUserFromClaims(claims).getEnabled());
+    }
+}